@@ -0,0 +1,41 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.api.data.batch;
+
+import co.cask.cdap.api.annotation.Beta;
+
+import java.util.Collection;
+
+/**
+ * A {@link RecordScannable} that can read a subset of the fields of its records, so that the data of
+ * the fields that are not needed does not have to be read at all.
+ * @param <RECORD> the type of objects that represents a single record
+ */
+@Beta
+public interface ProjectableRecordScannable<RECORD> extends RecordScannable<RECORD> {
+
+  /**
+   * Creates a reader for the split of a dataset that only needs to read the given fields of each record.
+   * Field names are matched ignoring case, because query engines such as Hive do not preserve the case of
+   * column names. The records returned contain at least the given fields, but they may contain more.
+   *
+   * @param split The split to create a reader for.
+   * @param fields The names of the record fields to read.
+   * @return The instance of a {@link RecordScanner}.
+   */
+  RecordScanner<RECORD> createSplitRecordScanner(Split split, Collection<String> fields);
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014-2016 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -20,6 +20,7 @@ import co.cask.cdap.api.annotation.ReadOnly;
 import co.cask.cdap.api.annotation.ReadWrite;
 import co.cask.cdap.api.annotation.WriteOnly;
 import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.data.batch.ProjectableRecordScannable;
 import co.cask.cdap.api.data.batch.RecordScanner;
 import co.cask.cdap.api.data.batch.Split;
 import co.cask.cdap.api.data.batch.SplitReader;
@@ -96,7 +97,7 @@ import javax.annotation.Nullable;
  *
  * @see #INDEX_COLUMNS_CONF_KEY
  */
-public class IndexedTable extends AbstractDataset implements Table {
+public class IndexedTable extends AbstractDataset implements Table, ProjectableRecordScannable<StructuredRecord> {
   private static final Logger LOG = LoggerFactory.getLogger(IndexedTable.class);
 
   /**
@@ -212,11 +213,25 @@ public class IndexedTable extends AbstractDataset implements Table {
    */
   @ReadOnly
   public Scanner readByIndex(byte[] column, byte[] value) {
+    return readByIndex(column, value, null);
+  }
+
+  /**
+   * Reads the given columns of table rows by the given secondary index key. Rows that have none of the given
+   * columns are not returned.
+   *
+   * @param columns the columns to read from the data table, or {@code null} to read all columns
+   * @return a Scanner returning rows from the data table, whose stored value for the given column matches the
+   * given value.
+   * @throws java.lang.IllegalArgumentException if the given column is not configured for indexing.
+   */
+  @ReadOnly
+  public Scanner readByIndex(byte[] column, byte[] value, @Nullable byte[][] columns) {
     assertIndexedColumn(column);
     byte[] rowKeyPrefix = Bytes.concat(column, KEY_DELIMITER, value, KEY_DELIMITER);
     byte[] stopRow = Bytes.stopKeyForPrefix(rowKeyPrefix);
     Scanner indexScan = index.scan(rowKeyPrefix, stopRow);
-    return new IndexScanner(indexScan, column, value);
+    return new IndexScanner(indexScan, column, value, columns);
   }
 
   /**
@@ -234,6 +249,26 @@ public class IndexedTable extends AbstractDataset implements Table {
    */
   @ReadOnly
   public Scanner scanByIndex(byte[] column, @Nullable byte[] startValue, @Nullable byte[] endValue) {
+    return scanByIndex(column, startValue, endValue, null);
+  }
+
+  /**
+   * Reads the given columns of table rows within the given secondary index key range. Rows that have none of
+   * the given columns are not returned.
+   *
+   * @param column the column to use for the index lookup
+   * @param startValue the inclusive start of the range for which rows must fall within to be returned in the scan.
+   *                   {@code null} means start from first row of the table
+   * @param endValue the exclusive end of the range for which rows must fall within to be returned in the scan
+   *                 {@code null} means end with the last row of the table
+   * @param columns the columns to read from the data table, or {@code null} to read all columns
+   * @return a Scanner returning rows from the data table, whose stored value for the given column is within the the
+   *         given range.
+   * @throws java.lang.IllegalArgumentException if the given column is not configured for indexing.
+   */
+  @ReadOnly
+  public Scanner scanByIndex(byte[] column, @Nullable byte[] startValue, @Nullable byte[] endValue,
+                             @Nullable byte[][] columns) {
     assertIndexedColumn(column);
     // KEY_DELIMITER is not used at the end of the rowKeys, because they are used for a range scan,
     // instead of a fixed-match lookup
@@ -242,7 +277,7 @@ public class IndexedTable extends AbstractDataset implements Table {
     byte[] stopRow = endValue == null ? Bytes.stopKeyForPrefix(Bytes.concat(column, KEY_DELIMITER)) :
       Bytes.concat(column, KEY_DELIMITER, endValue);
     Scanner indexScan = index.scan(startRow, stopRow);
-    return new IndexRangeScanner(indexScan, column, startValue, endValue);
+    return new IndexRangeScanner(indexScan, column, startValue, endValue, columns);
   }
 
   private void assertIndexedColumn(byte[] column) {
@@ -607,6 +642,16 @@ public class IndexedTable extends AbstractDataset implements Table {
     return table.createSplitRecordScanner(split);
   }
 
+  @ReadOnly
+  @Override
+  @SuppressWarnings("unchecked")
+  public RecordScanner<StructuredRecord> createSplitRecordScanner(Split split, Collection<String> fields) {
+    if (table instanceof ProjectableRecordScannable) {
+      return ((ProjectableRecordScannable<StructuredRecord>) table).createSplitRecordScanner(split, fields);
+    }
+    return table.createSplitRecordScanner(split);
+  }
+
   @ReadOnly
   @Override
   public SplitReader<byte[], Row> createSplitReader(Split split) {
@@ -625,10 +670,21 @@ public class IndexedTable extends AbstractDataset implements Table {
     // scanner over index table
     private final Scanner baseScanner;
     private final byte[] column;
+    // columns to return from the data table, or null for all columns
+    private final byte[][] columns;
+    // columns to read from the data table, which include the index column if it has to be verified
+    private final byte[][] readColumns;
 
-    AbstractIndexScanner(Scanner baseScanner, byte[] column) {
+    AbstractIndexScanner(Scanner baseScanner, byte[] column, @Nullable byte[][] columns) {
       this.baseScanner = baseScanner;
       this.column = column;
+      this.columns = columns;
+      if (columns != null && hasColumnWithDelimiter) {
+        this.readColumns = Arrays.copyOf(columns, columns.length + 1);
+        this.readColumns[columns.length] = column;
+      } else {
+        this.readColumns = columns;
+      }
     }
 
     /**
@@ -656,14 +712,26 @@ public class IndexedTable extends AbstractDataset implements Table {
         // Verify that datarow matches the expected row key to avoid issues with column name or value
         // containing the delimiter used. This is a sufficient check, as long as columns don't contain the null byte.
         if (matches(columnValue)) {
-          Row row = table.get(rowkey);
+          Row row = readColumns == null ? table.get(rowkey) : table.get(rowkey, readColumns);
           // If a column has null byte (the key delimiter) in it, then we need to check against the data row's column
           // to be sure this row isn't a false positive in the scan.
           // For reference, take a look at IndexedTableTest#testIndexKeyDelimiterAmbiguity
           if (hasColumnWithDelimiter && !Bytes.equals(row.get(column), columnValue)) {
             continue;
           }
-          return row;
+          if (columns == null) {
+            return row;
+          }
+          Map<byte[], byte[]> projected = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+          for (byte[] col : columns) {
+            byte[] val = row.get(col);
+            if (val != null) {
+              projected.put(col, val);
+            }
+          }
+          if (!projected.isEmpty()) {
+            return new Result(row.getRow(), projected);
+          }
         }
       }
       // end of index
@@ -680,8 +748,8 @@ public class IndexedTable extends AbstractDataset implements Table {
   private class IndexScanner extends AbstractIndexScanner {
     private final byte[] value;
 
-    IndexScanner(Scanner baseScanner, byte[] column, byte[] value) {
-      super(baseScanner, column);
+    IndexScanner(Scanner baseScanner, byte[] column, byte[] value, @Nullable byte[][] columns) {
+      super(baseScanner, column, columns);
       this.value = value;
     }
 
@@ -696,8 +764,9 @@ public class IndexedTable extends AbstractDataset implements Table {
     private final byte[] start;
     private final byte[] end;
 
-    IndexRangeScanner(Scanner baseScanner, byte[] column, @Nullable byte[] start, @Nullable byte[] end) {
-      super(baseScanner, column);
+    IndexRangeScanner(Scanner baseScanner, byte[] column, @Nullable byte[] start, @Nullable byte[] end,
+                      @Nullable byte[][] columns) {
+      super(baseScanner, column, columns);
       this.start = start;
       this.end = end;
     }
@@ -0,0 +1,54 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.api.dataset.lib;
+
+import co.cask.cdap.api.annotation.Beta;
+import co.cask.cdap.api.data.batch.ProjectableRecordScannable;
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.dataset.table.Scan;
+
+import java.util.Collection;
+
+/**
+ * An {@link ObjectMappedTable} that can read objects partially, by giving the names of the fields to read.
+ * Only the columns of those fields are then read from the table, and the other fields of the returned objects
+ * are left at the default value of their type.
+ *
+ * @param <T> the type of objects in the table
+ */
+@Beta
+public interface ProjectableObjectMappedTable<T> extends ObjectMappedTable<T>,
+  ProjectableRecordScannable<StructuredRecord> {
+
+  /**
+   * Read the given fields of an object with a given key.
+   *
+   * @param key the key of the object
+   * @param fields the names of the fields to read
+   * @return the object if found, or null if not found
+   */
+  T read(byte[] key, Collection<String> fields);
+
+  /**
+   * Scans table, only reading the given fields of each object. The columns of the scan are ignored.
+   *
+   * @param scan Scan object to scan the table with.
+   * @param fields the names of the fields to read
+   * @return {@link CloseableIterator} over {@link KeyValue KeyValue&lt;byte[], T&gt;}
+   */
+  CloseableIterator<KeyValue<byte[], T>> scan(Scan scan, Collection<String> fields);
+}
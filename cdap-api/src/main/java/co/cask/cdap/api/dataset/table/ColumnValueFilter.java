@@ -0,0 +1,91 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.api.dataset.table;
+
+import co.cask.cdap.api.annotation.Beta;
+import co.cask.cdap.api.common.Bytes;
+
+/**
+ * {@link Filter} that matches rows by the value of a single column. The value of the column is compared
+ * lexicographically with the given value, and the row matches if the comparison satisfies the {@link CompareOp}.
+ * Rows that do not have the column never match. It is an experimental feature.
+ */
+@Beta
+public class ColumnValueFilter implements Filter {
+
+  /**
+   * Comparison of the column value against the value of the filter.
+   */
+  public enum CompareOp {
+    LESS,
+    LESS_OR_EQUAL,
+    EQUAL,
+    NOT_EQUAL,
+    GREATER_OR_EQUAL,
+    GREATER
+  }
+
+  private final byte[] column;
+  private final CompareOp compareOp;
+  private final byte[] value;
+
+  /**
+   * Creates a filter that matches rows for which the given column satisfies {@code <column value> <op> <value>}.
+   * @param column the column to compare
+   * @param compareOp the comparison to perform
+   * @param value the value to compare with, must not be empty
+   */
+  public ColumnValueFilter(byte[] column, CompareOp compareOp, byte[] value) {
+    if (value.length == 0) {
+      throw new IllegalArgumentException("Value to compare with must not be empty");
+    }
+    this.column = column;
+    this.compareOp = compareOp;
+    this.value = value;
+  }
+
+  /**
+   * Creates a filter that matches rows for which the given column satisfies {@code <column value> <op> <value>}.
+   * @param column the column to compare
+   * @param compareOp the comparison to perform
+   * @param value the value to compare with, must not be empty
+   */
+  public ColumnValueFilter(String column, CompareOp compareOp, String value) {
+    this(Bytes.toBytes(column), compareOp, Bytes.toBytes(value));
+  }
+
+  public byte[] getColumn() {
+    return column;
+  }
+
+  public CompareOp getCompareOp() {
+    return compareOp;
+  }
+
+  public byte[] getValue() {
+    return value;
+  }
+
+  @Override
+  public String toString() {
+    return "ColumnValueFilter{" +
+      "column=" + Bytes.toStringBinary(column) +
+      ", compareOp=" + compareOp +
+      ", value=" + Bytes.toStringBinary(value) +
+      '}';
+  }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 Cask Data, Inc.
+ * Copyright © 2015-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -20,6 +20,10 @@ import co.cask.cdap.api.annotation.Beta;
 
 /**
  * Filter to be applied to {@link Scan}. It is an experimental feature.
+ *
+ * @see ColumnValueFilter
+ * @see RowPrefixFilter
+ * @see FilterList
  */
 @Beta
 public interface Filter {
@@ -0,0 +1,87 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.api.dataset.table;
+
+import co.cask.cdap.api.annotation.Beta;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@link Filter} that combines a list of filters. Depending on the {@link Operator}, a row matches if it matches
+ * all or any of the filters. It is an experimental feature.
+ */
+@Beta
+public class FilterList implements Filter {
+
+  /**
+   * How the filters of the list are combined.
+   */
+  public enum Operator {
+    /**
+     * A row must match all filters (AND).
+     */
+    MUST_PASS_ALL,
+    /**
+     * A row must match at least one filter (OR).
+     */
+    MUST_PASS_ONE
+  }
+
+  private final Operator operator;
+  private final List<Filter> filters;
+
+  /**
+   * Creates a filter that combines the given filters with the given operator.
+   * @param operator how to combine the filters
+   * @param filters the filters to combine, at least one must be given
+   */
+  public FilterList(Operator operator, Filter... filters) {
+    this(operator, Arrays.asList(filters));
+  }
+
+  /**
+   * Creates a filter that combines the given filters with the given operator.
+   * @param operator how to combine the filters
+   * @param filters the filters to combine, at least one must be given
+   */
+  public FilterList(Operator operator, List<? extends Filter> filters) {
+    if (filters.isEmpty()) {
+      throw new IllegalArgumentException("At least one filter must be given");
+    }
+    this.operator = operator;
+    this.filters = Collections.unmodifiableList(new ArrayList<>(filters));
+  }
+
+  public Operator getOperator() {
+    return operator;
+  }
+
+  public List<Filter> getFilters() {
+    return filters;
+  }
+
+  @Override
+  public String toString() {
+    return "FilterList{" +
+      "operator=" + operator +
+      ", filters=" + filters +
+      '}';
+  }
+}
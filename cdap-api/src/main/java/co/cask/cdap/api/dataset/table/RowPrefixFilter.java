@@ -0,0 +1,68 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.api.dataset.table;
+
+import co.cask.cdap.api.annotation.Beta;
+import co.cask.cdap.api.common.Bytes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@link Filter} that matches rows whose key starts with any of the given prefixes. It is an experimental feature.
+ */
+@Beta
+public class RowPrefixFilter implements Filter {
+
+  private final List<byte[]> prefixes;
+
+  /**
+   * Creates a filter that matches rows whose key starts with any of the given prefixes.
+   * @param prefixes the row key prefixes, at least one must be given
+   */
+  public RowPrefixFilter(byte[]... prefixes) {
+    this(Arrays.asList(prefixes));
+  }
+
+  /**
+   * Creates a filter that matches rows whose key starts with any of the given prefixes.
+   * @param prefixes the row key prefixes, at least one must be given
+   */
+  public RowPrefixFilter(List<byte[]> prefixes) {
+    if (prefixes.isEmpty()) {
+      throw new IllegalArgumentException("At least one row prefix must be given");
+    }
+    this.prefixes = Collections.unmodifiableList(new ArrayList<>(prefixes));
+  }
+
+  public List<byte[]> getPrefixes() {
+    return prefixes;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder("RowPrefixFilter{prefixes=[");
+    String sep = "";
+    for (byte[] prefix : prefixes) {
+      sb.append(sep).append(Bytes.toStringBinary(prefix));
+      sep = ", ";
+    }
+    return sb.append("]}").toString();
+  }
+}
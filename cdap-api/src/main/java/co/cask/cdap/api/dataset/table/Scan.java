@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 Cask Data, Inc.
+ * Copyright 2015-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -35,6 +35,8 @@ public class Scan {
   private final byte[] stopRow;
   @Nullable
   private final Filter filter;
+  @Nullable
+  private final byte[][] columns;
 
   private final Map<String, String> properties = new HashMap<>();
 
@@ -54,9 +56,23 @@ public class Scan {
    * @param filter filter to be used on scan
    */
   public Scan(@Nullable byte[] startRow, @Nullable byte[] stopRow, @Nullable Filter filter) {
+    this(startRow, stopRow, filter, null);
+  }
+
+  /**
+   * Creates {@link Scan} for a given start and stop row keys and filter, that only returns the given columns
+   * of each row. Rows that have none of the given columns are not returned.
+   * @param startRow start row inclusive; {@code null} means start from first row of the table
+   * @param stopRow stop row exclusive; {@code null} means scan all rows to the end of the table
+   * @param filter filter to be used on scan
+   * @param columns columns to return; {@code null} means all columns
+   */
+  public Scan(@Nullable byte[] startRow, @Nullable byte[] stopRow, @Nullable Filter filter,
+              @Nullable byte[][] columns) {
     this.startRow = startRow;
     this.stopRow = stopRow;
     this.filter = filter;
+    this.columns = columns;
   }
 
   /**
@@ -85,6 +101,14 @@ public class Scan {
     return filter;
   }
 
+  /**
+   * @return the columns to return for each row, or {@code null} if all columns are returned
+   */
+  @Nullable
+  public byte[][] getColumns() {
+    return columns;
+  }
+
   public Map<String, String> getProperties() {
     return Collections.unmodifiableMap(properties);
   }
@@ -95,7 +119,22 @@ public class Scan {
       "startRow=" + Bytes.toStringBinary(startRow) +
       ", stopRow=" + Bytes.toStringBinary(stopRow) +
       ", filter=" + filter +
+      ", columns=" + columnsToString() +
       ", properties=" + properties +
       '}';
   }
+
+  @Nullable
+  private String columnsToString() {
+    if (columns == null) {
+      return null;
+    }
+    StringBuilder sb = new StringBuilder("[");
+    String sep = "";
+    for (byte[] column : columns) {
+      sb.append(sep).append(Bytes.toStringBinary(column));
+      sep = ", ";
+    }
+    return sb.append("]").toString();
+  }
 }
@@ -0,0 +1,38 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.api.spark;
+
+import co.cask.cdap.api.annotation.Beta;
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+
+/**
+ * Spark configurations for how CDAP serializes data in a {@link Spark} program.
+ */
+@Beta
+public final class SparkSerializationProperties {
+
+  /**
+   * Spark configuration for a JSON array of the {@link Schema}s of the {@link StructuredRecord}s processed by the
+   * program. Records of these schemas are serialized with the hash of their schema instead of the full schema.
+   */
+  public static final String KNOWN_SCHEMAS = "spark.cdap.kryo.known.schemas";
+
+  private SparkSerializationProperties() {
+    // no-op
+  }
+}
@@ -23,6 +23,8 @@ import co.cask.cdap.proto.security.Action;
 import co.cask.cdap.proto.security.AuthorizationPrivilege;
 import co.cask.cdap.proto.security.Principal;
 import co.cask.cdap.proto.security.Privilege;
+import co.cask.cdap.proto.security.VisibilityRequest;
+import co.cask.cdap.security.authorization.AuthorizationUtil;
 import co.cask.cdap.security.spi.authorization.AuthorizationEnforcer;
 import co.cask.cdap.security.spi.authorization.PrivilegesManager;
 import co.cask.http.HttpResponder;
@@ -50,6 +52,7 @@ import javax.ws.rs.Path;
 public class RemotePrivilegesHandler extends AbstractRemoteSystemOpsHandler {
   private static final Logger LOG = LoggerFactory.getLogger(RemotePrivilegesHandler.class);
   private static final Type SET_OF_ACTIONS = new TypeLiteral<Set<Action>>() { }.getType();
+  private static final Type SET_OF_ENTITIES = new TypeLiteral<Set<EntityId>>() { }.getType();
   private static final Gson GSON = new GsonBuilder()
     .registerTypeAdapter(EntityId.class, new EntityIdTypeAdapter())
     .create();
@@ -74,6 +77,19 @@ public class RemotePrivilegesHandler extends AbstractRemoteSystemOpsHandler {
     responder.sendStatus(HttpResponseStatus.OK);
   }
 
+  @POST
+  @Path("/isVisible")
+  public void isVisible(HttpRequest request, HttpResponder responder) throws Exception {
+    VisibilityRequest visibilityRequest = GSON.fromJson(request.getContent().toString(Charsets.UTF_8),
+                                                        VisibilityRequest.class);
+    Principal principal = visibilityRequest.getPrincipal();
+    Set<EntityId> entityIds = visibilityRequest.getEntityIds();
+    LOG.trace("Checking visibility of {} entities for principal {}", entityIds.size(), principal);
+    Set<? extends EntityId> visible = AuthorizationUtil.isVisible(entityIds, authorizationEnforcer, principal);
+    LOG.debug("{} of {} entities are visible to principal {}", visible.size(), entityIds.size(), principal);
+    responder.sendJson(HttpResponseStatus.OK, visible, SET_OF_ENTITIES, GSON);
+  }
+
   @POST
   @Path("/listPrivileges")
   public void listPrivileges(HttpRequest request, HttpResponder responder) throws Exception {
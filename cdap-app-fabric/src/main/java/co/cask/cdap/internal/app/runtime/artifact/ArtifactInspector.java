@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015-2016 Cask Data, Inc.
+ * Copyright © 2015-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -42,15 +42,11 @@ import co.cask.cdap.common.utils.DirUtils;
 import co.cask.cdap.internal.app.runtime.plugin.PluginInstantiator;
 import co.cask.cdap.internal.io.ReflectionSchemaGenerator;
 import co.cask.cdap.proto.Id;
-import com.google.common.base.Function;
-import com.google.common.base.Predicate;
 import com.google.common.base.Throwables;
-import com.google.common.collect.AbstractIterator;
-import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Iterators;
 import com.google.common.collect.Maps;
 import com.google.common.primitives.Primitives;
 import com.google.common.reflect.TypeToken;
+import org.apache.twill.common.Threads;
 import org.apache.twill.filesystem.Location;
 import org.objectweb.asm.AnnotationVisitor;
 import org.objectweb.asm.ClassReader;
@@ -62,6 +58,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.EOFException;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.annotation.Annotation;
@@ -75,10 +72,14 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.jar.Attributes;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
@@ -93,11 +94,14 @@ final class ArtifactInspector {
 
   private final CConfiguration cConf;
   private final ArtifactClassLoaderFactory artifactClassLoaderFactory;
+  private final UnpackedArtifactCache artifactCache;
   private final ReflectionSchemaGenerator schemaGenerator;
 
-  ArtifactInspector(CConfiguration cConf, ArtifactClassLoaderFactory artifactClassLoaderFactory) {
+  ArtifactInspector(CConfiguration cConf, ArtifactClassLoaderFactory artifactClassLoaderFactory,
+                    UnpackedArtifactCache artifactCache) {
     this.cConf = cConf;
     this.artifactClassLoaderFactory = artifactClassLoaderFactory;
+    this.artifactCache = artifactCache;
     this.schemaGenerator = new ReflectionSchemaGenerator(false);
   }
 
@@ -122,17 +126,16 @@ final class ArtifactInspector {
     Location artifactLocation = Locations.toLocation(artifactFile);
 
     Path stageDir = Files.createTempDirectory(tmpDir, artifactFile.getName());
-    try {
-      File unpackedDir = BundleJarUtil.unJar(artifactLocation,
-                                             Files.createTempDirectory(stageDir, "unpacked-").toFile());
-
-      try (CloseableClassLoader artifactClassLoader = artifactClassLoaderFactory.createClassLoader(unpackedDir)) {
+    // The unpacked artifact stays in the cache, so that the deployment that usually follows can reuse it
+    try (UnpackedArtifactCache.Reference unpacked = artifactCache.acquire(artifactLocation)) {
+      try (CloseableClassLoader artifactClassLoader =
+             artifactClassLoaderFactory.createClassLoader(unpacked.getDirectory())) {
         ArtifactClasses.Builder builder = inspectApplications(artifactId, ArtifactClasses.builder(),
                                                               artifactLocation, artifactClassLoader);
 
         try (PluginInstantiator pluginInstantiator =
                new PluginInstantiator(cConf, parentClassLoader == null ? artifactClassLoader : parentClassLoader,
-                                      Files.createTempDirectory(stageDir, "plugins-").toFile())) {
+                                      Files.createTempDirectory(stageDir, "plugins-").toFile(), artifactCache)) {
           pluginInstantiator.addArtifact(artifactLocation, artifactId.toArtifactId());
           inspectPlugins(builder, artifactFile, artifactId.toArtifactId(), pluginInstantiator);
         }
@@ -269,77 +272,75 @@ final class ArtifactInspector {
   }
 
   /**
-   * Returns an {@link Iterable} of class name that are under the given list of package names that are loadable
-   * through the plugin ClassLoader.
+   * Returns the classes annotated with {@link Plugin} that are under the given list of package names and loadable
+   * through the plugin ClassLoader. The class files are inspected with ASM, in parallel across the package
+   * directories, so that only the plugin classes are loaded.
    */
-  private Iterable<Class<?>> getPluginClasses(final Iterable<String> packages, final ClassLoader pluginClassLoader) {
-    return new Iterable<Class<?>>() {
-      @Override
-      public Iterator<Class<?>> iterator() {
-        final Iterator<String> packageIterator = packages.iterator();
-
-        return new AbstractIterator<Class<?>>() {
-          Iterator<String> classIterator = ImmutableList.<String>of().iterator();
-          String currentPackage;
-
-          @Override
-          protected Class<?> computeNext() {
-            while (!classIterator.hasNext()) {
-              if (!packageIterator.hasNext()) {
-                return endOfData();
-              }
-              currentPackage = packageIterator.next();
-
-              try {
-                // Gets all package resource URL for the given package
-                String resourceName = currentPackage.replace('.', File.separatorChar);
-                Enumeration<URL> resources = pluginClassLoader.getResources(resourceName);
-                List<Iterator<String>> iterators = new ArrayList<>();
-                // Go though all available resources and collect all class names that are plugin classes.
-                while (resources.hasMoreElements()) {
-                  URL packageResource = resources.nextElement();
-
-                  // Only inspect classes in the top level jar file for Plugins.
-                  // The jar manifest may have packages in Export-Package that are loadable from the bundled jar files,
-                  // which is for classloading purpose. Those classes won't be inspected for plugin classes.
-                  // There should be exactly one of resource that match, because it maps to a directory on the FS.
-                  if (packageResource.getProtocol().equals("file")) {
-                    Iterator<String> classFiles = DirUtils.list(new File(packageResource.toURI()), "class").iterator();
-
-                    // Transform class file into class name and filter by @Plugin class only
-                    iterators.add(Iterators.filter(
-                      Iterators.transform(classFiles, new Function<String, String>() {
-                        @Override
-                        public String apply(String input) {
-                          return getClassName(currentPackage, input);
-                        }
-                      }), new Predicate<String>() {
-                        @Override
-                        public boolean apply(String className) {
-                          return isPlugin(className, pluginClassLoader);
-                        }
-                      }));
-                  }
-                }
-                if (!iterators.isEmpty()) {
-                  classIterator = Iterators.concat(iterators.iterator());
-                }
-              } catch (Exception e) {
-                // Cannot happen
-                throw Throwables.propagate(e);
-              }
+  private List<Class<?>> getPluginClasses(Iterable<String> packages,
+                                          ClassLoader pluginClassLoader) throws Exception {
+    List<Callable<List<String>>> tasks = new ArrayList<>();
+    for (final String packageName : packages) {
+      // Gets all package resource URL for the given package
+      String resourceName = packageName.replace('.', File.separatorChar);
+      Enumeration<URL> resources = pluginClassLoader.getResources(resourceName);
+      while (resources.hasMoreElements()) {
+        URL packageResource = resources.nextElement();
+
+        // Only inspect classes in the top level jar file for Plugins.
+        // The jar manifest may have packages in Export-Package that are loadable from the bundled jar files,
+        // which is for classloading purpose. Those classes won't be inspected for plugin classes.
+        // There should be exactly one of resource that match, because it maps to a directory on the FS.
+        if (packageResource.getProtocol().equals("file")) {
+          final File packageDir = new File(packageResource.toURI());
+          tasks.add(new Callable<List<String>>() {
+            @Override
+            public List<String> call() {
+              return getPluginClassNames(packageName, packageDir);
             }
+          });
+        }
+      }
+    }
 
-            try {
-              return pluginClassLoader.loadClass(classIterator.next());
-            } catch (ClassNotFoundException | NoClassDefFoundError e) {
-              // Cannot happen, since the class name is from the list of the class files under the classloader.
-              throw Throwables.propagate(e);
-            }
-          }
-        };
+    List<String> classNames = new ArrayList<>();
+    int threads = Math.min(tasks.size(), Runtime.getRuntime().availableProcessors());
+    if (threads <= 1) {
+      for (Callable<List<String>> task : tasks) {
+        classNames.addAll(task.call());
       }
-    };
+    } else {
+      ExecutorService executor = Executors.newFixedThreadPool(
+        threads, Threads.createDaemonThreadFactory("artifact-inspector-%d"));
+      try {
+        for (Future<List<String>> future : executor.invokeAll(tasks)) {
+          classNames.addAll(future.get());
+        }
+      } catch (ExecutionException e) {
+        throw Throwables.propagate(e.getCause());
+      } finally {
+        executor.shutdownNow();
+      }
+    }
+
+    // Load the plugin classes sequentially, since the plugin ClassLoader may not be parallel capable
+    List<Class<?>> classes = new ArrayList<>(classNames.size());
+    for (String className : classNames) {
+      classes.add(pluginClassLoader.loadClass(className));
+    }
+    return classes;
+  }
+
+  /**
+   * Returns the names of the classes in the given package directory that are annotated with {@link Plugin}.
+   */
+  private List<String> getPluginClassNames(String packageName, File packageDir) {
+    List<String> classNames = new ArrayList<>();
+    for (String classFile : DirUtils.list(packageDir, "class")) {
+      if (isPlugin(new File(packageDir, classFile))) {
+        classNames.add(getClassName(packageName, classFile));
+      }
+    }
+    return classNames;
   }
 
   /**
@@ -493,16 +494,11 @@ final class ArtifactInspector {
   /**
    * Detects if a class is annotated with {@link Plugin} without loading the class.
    *
-   * @param className name of the class
-   * @param classLoader ClassLoader for loading the class file of the given class
+   * @param classFile the class file of the class
    * @return true if the given class is annotated with {@link Plugin}
    */
-  private boolean isPlugin(String className, ClassLoader classLoader) {
-    try (InputStream is = classLoader.getResourceAsStream(className.replace('.', '/') + ".class")) {
-      if (is == null) {
-        return false;
-      }
-
+  private boolean isPlugin(File classFile) {
+    try (InputStream is = new FileInputStream(classFile)) {
       // Use ASM to inspect the class bytecode to see if it is annotated with @Plugin
       final boolean[] isPlugin = new boolean[1];
       ClassReader cr = new ClassReader(is);
@@ -519,7 +515,7 @@ final class ArtifactInspector {
       return isPlugin[0];
     } catch (IOException e) {
       // If failed to open the class file, then it cannot be a plugin
-      LOG.warn("Failed to open class file for {}", className, e);
+      LOG.warn("Failed to open class file {}", classFile, e);
       return false;
     }
   }
@@ -106,10 +106,10 @@ public class ArtifactRepository {
   public ArtifactRepository(CConfiguration cConf, ArtifactStore artifactStore, MetadataStore metadataStore,
                             PrivilegesManager privilegesManager, ProgramRunnerFactory programRunnerFactory,
                             Impersonator impersonator, AuthorizationEnforcer authorizationEnforcer,
-                            AuthenticationContext authenticationContext) {
+                            AuthenticationContext authenticationContext, UnpackedArtifactCache artifactCache) {
     this.artifactStore = artifactStore;
-    this.artifactClassLoaderFactory = new ArtifactClassLoaderFactory(cConf, programRunnerFactory);
-    this.artifactInspector = new ArtifactInspector(cConf, artifactClassLoaderFactory);
+    this.artifactClassLoaderFactory = new ArtifactClassLoaderFactory(cConf, programRunnerFactory, artifactCache);
+    this.artifactInspector = new ArtifactInspector(cConf, artifactClassLoaderFactory, artifactCache);
     this.systemArtifactDirs = new ArrayList<>();
     String systemArtifactsDir = cConf.get(Constants.AppFabric.SYSTEM_ARTIFACTS_DIR);
     if (!Strings.isNullOrEmpty(systemArtifactsDir)) {
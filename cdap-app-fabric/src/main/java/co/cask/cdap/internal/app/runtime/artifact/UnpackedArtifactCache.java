@@ -0,0 +1,282 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.app.runtime.artifact;
+
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.io.Locations;
+import co.cask.cdap.common.lang.jar.BundleJarUtil;
+import co.cask.cdap.common.utils.DirUtils;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.apache.twill.filesystem.Location;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A cache of expanded artifact jars, shared by everything in the process that needs the classes of an artifact, such
+ * as artifact inspection, application deployment and plugin instantiation. A jar is expanded only once, into a
+ * directory named by the checksum of its content, hence the same jar stored at different locations is expanded
+ * only once as well. Directories are reference counted. Once the total size of the directories exceeds the
+ * configured budget, the least recently used ones that are not referenced are deleted. Since the cache does not
+ * survive the process, whatever a previous process left in the cache directory is deleted when the cache is created.
+ */
+@Singleton
+@ThreadSafe
+public final class UnpackedArtifactCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(UnpackedArtifactCache.class);
+  private static final HashFunction CHECKSUM_FUNCTION = Hashing.sha256();
+
+  private final File cacheDir;
+  private final long maxSizeBytes;
+  // Checksums of the artifacts seen so far, keyed by location, size and modification time,
+  // so that an unchanged artifact is not read again
+  private final Cache<String, HashCode> checksums;
+  // In access order, so that the least recently used entry comes first. Guarded by this.
+  private final LinkedHashMap<HashCode, Entry> entries;
+  // Total size of the expanded directories. Guarded by this.
+  private long sizeBytes;
+
+  @Inject
+  public UnpackedArtifactCache(CConfiguration cConf) {
+    this(new File(new File(cConf.get(Constants.CFG_LOCAL_DATA_DIR), cConf.get(Constants.AppFabric.TEMP_DIR)),
+                  "artifacts").getAbsoluteFile(),
+         cConf.getLong(Constants.AppFabric.ARTIFACT_CACHE_MAX_SIZE_MB) * 1024 * 1024);
+  }
+
+  @VisibleForTesting
+  UnpackedArtifactCache(File cacheDir, long maxSizeBytes) {
+    this.cacheDir = cacheDir;
+    this.maxSizeBytes = maxSizeBytes;
+    this.checksums = CacheBuilder.newBuilder().maximumSize(10000).build();
+    this.entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    if (cacheDir.isDirectory()) {
+      try {
+        DirUtils.deleteDirectoryContents(cacheDir, true);
+      } catch (IOException e) {
+        LOG.warn("Failed to delete artifacts left in directory {}", cacheDir, e);
+      }
+    } else if (!DirUtils.mkdirs(cacheDir)) {
+      throw new IllegalStateException("Failed to create directory " + cacheDir);
+    }
+  }
+
+  /**
+   * Returns a reference to the directory where the artifact at the given location is expanded, expanding it if it
+   * is not in the cache yet. The directory is not deleted until the returned {@link Reference} is closed, and it
+   * must not be modified.
+   *
+   * @param artifactLocation location of the artifact jar
+   * @return a {@link Reference} to the expanded directory
+   * @throws IOException if failed to read or expand the artifact
+   */
+  public Reference acquire(Location artifactLocation) throws IOException {
+    HashCode checksum = getChecksum(artifactLocation);
+    Entry entry;
+    synchronized (this) {
+      entry = entries.get(checksum);
+      if (entry == null) {
+        entry = new Entry(new File(cacheDir, checksum.toString()));
+        entries.put(checksum, entry);
+      }
+      entry.references++;
+    }
+
+    Reference reference = new Reference(entry);
+    try {
+      long addedBytes = entry.unpack(artifactLocation);
+      if (addedBytes > 0) {
+        List<File> evicted;
+        synchronized (this) {
+          sizeBytes += addedBytes;
+          evicted = evict();
+        }
+        delete(evicted);
+      }
+      return reference;
+    } catch (IOException | RuntimeException e) {
+      reference.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Returns the total size in bytes of the expanded directories.
+   */
+  public synchronized long getSizeBytes() {
+    return sizeBytes;
+  }
+
+  private HashCode getChecksum(Location artifactLocation) throws IOException {
+    String key = artifactLocation.toURI() + ":" + artifactLocation.length() + ":" + artifactLocation.lastModified();
+    HashCode checksum = checksums.getIfPresent(key);
+    if (checksum == null) {
+      checksum = ByteStreams.hash(Locations.newInputSupplier(artifactLocation), CHECKSUM_FUNCTION);
+      checksums.put(key, checksum);
+    }
+    return checksum;
+  }
+
+  private void release(Entry entry) {
+    List<File> evicted;
+    synchronized (this) {
+      entry.references--;
+      evicted = evict();
+    }
+    delete(evicted);
+  }
+
+  /**
+   * Removes the least recently used entries that are not referenced until the total size is within the budget.
+   * Entries that failed to expand are always removed once they are not referenced. It must be called while holding
+   * the lock of this cache.
+   *
+   * @return the directories of the removed entries, to be deleted without holding the lock
+   */
+  private List<File> evict() {
+    List<File> toDelete = new ArrayList<>();
+    Iterator<Map.Entry<HashCode, Entry>> iterator = entries.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Entry entry = iterator.next().getValue();
+      if (entry.references > 0 || (entry.unpacked && sizeBytes <= maxSizeBytes)) {
+        continue;
+      }
+      iterator.remove();
+      sizeBytes -= entry.sizeBytes;
+      // Move the directory away, so that the artifact can be expanded again while the old directory is deleted
+      File trash = new File(cacheDir, entry.dir.getName() + ".deleted." + System.nanoTime());
+      if (entry.dir.renameTo(trash)) {
+        toDelete.add(trash);
+      } else if (entry.dir.exists()) {
+        LOG.warn("Failed to rename directory {} to {} for deletion", entry.dir, trash);
+      }
+    }
+    return toDelete;
+  }
+
+  private void delete(List<File> dirs) {
+    for (File dir : dirs) {
+      try {
+        DirUtils.deleteDirectoryContents(dir);
+      } catch (IOException e) {
+        LOG.warn("Failed to delete directory {}", dir, e);
+      }
+    }
+  }
+
+  private static long getDirectorySize(File dir) throws IOException {
+    final long[] size = new long[1];
+    Files.walkFileTree(dir.toPath(), new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+        size[0] += attrs.size();
+        return FileVisitResult.CONTINUE;
+      }
+    });
+    return size[0];
+  }
+
+  /**
+   * A reference to an expanded artifact directory. Closing it allows the directory to be deleted.
+   */
+  public final class Reference implements Closeable {
+
+    private final Entry entry;
+    private final AtomicBoolean closed;
+
+    private Reference(Entry entry) {
+      this.entry = entry;
+      this.closed = new AtomicBoolean();
+    }
+
+    /**
+     * Returns the directory where the artifact is expanded.
+     */
+    public File getDirectory() {
+      return entry.dir;
+    }
+
+    @Override
+    public void close() {
+      if (closed.compareAndSet(false, true)) {
+        release(entry);
+      }
+    }
+  }
+
+  /**
+   * An expanded artifact directory. The reference count is guarded by the cache, while the expansion is guarded by
+   * the entry itself, so that artifacts can be expanded concurrently.
+   */
+  private static final class Entry {
+
+    private final File dir;
+    // Guarded by the cache
+    private int references;
+    private volatile boolean unpacked;
+    private volatile long sizeBytes;
+
+    private Entry(File dir) {
+      this.dir = dir;
+    }
+
+    /**
+     * Expands the artifact into the directory of this entry if it is not expanded yet.
+     *
+     * @return the size of the expanded directory if it is expanded by this call, or {@code 0} otherwise
+     */
+    synchronized long unpack(Location artifactLocation) throws IOException {
+      if (unpacked) {
+        return 0L;
+      }
+      // Remove what a previous failed attempt may have left
+      if (dir.exists()) {
+        DirUtils.deleteDirectoryContents(dir);
+      }
+      BundleJarUtil.unJar(artifactLocation, dir);
+      sizeBytes = getDirectorySize(dir);
+      unpacked = true;
+      LOG.debug("Expanded artifact {} to {} with {} bytes", artifactLocation, dir, sizeBytes);
+      return sizeBytes;
+    }
+  }
+}
@@ -63,6 +63,7 @@ import co.cask.cdap.internal.app.runtime.batch.distributed.MapReduceContainerHel
 import co.cask.cdap.internal.app.runtime.batch.distributed.MapReduceContainerLauncher;
 import co.cask.cdap.internal.app.runtime.batch.stream.MapReduceStreamInputFormat;
 import co.cask.cdap.internal.app.runtime.batch.stream.StreamInputFormatProvider;
+import co.cask.cdap.internal.app.runtime.distributed.GeneratedJarCache;
 import co.cask.cdap.internal.app.runtime.distributed.LocalizeResource;
 import co.cask.cdap.messaging.client.StoreRequestBuilder;
 import co.cask.cdap.proto.Id;
@@ -76,12 +77,15 @@ import co.cask.cdap.security.spi.authorization.AuthorizationEnforcer;
 import co.cask.cdap.security.store.SecureStoreUtils;
 import co.cask.cdap.spi.hbase.HBaseDDLExecutor;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
 import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Sets;
+import com.google.common.hash.HashCode;
 import com.google.common.io.ByteStreams;
+import com.google.common.io.CharStreams;
 import com.google.common.io.Files;
 import com.google.common.reflect.TypeToken;
 import com.google.common.util.concurrent.AbstractExecutionThreadService;
@@ -132,6 +136,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
@@ -154,6 +159,11 @@ final class MapReduceRuntimeService extends AbstractExecutionThreadService {
 
   private static final Logger LOG = LoggerFactory.getLogger(MapReduceRuntimeService.class);
   private static final String HADOOP_UMASK_PROPERTY = FsPermission.UMASK_LABEL; // fs.permissions.umask-mode
+  private static final String PROGRAM_JAR = "program.jar";
+  private static final String JOB_JAR = "job.jar";
+  // File listing the jars inside the job jar, stored next to the job jar
+  private static final String JOB_JAR_CLASSPATH = "job.jar.classpath";
+  private static final String LAUNCHER_JAR = "launcher.jar";
 
   /**
    * Do not remove: we need this variable for loading MRClientSecurityInfo class required for communicating with
@@ -272,19 +282,31 @@ final class MapReduceRuntimeService extends AbstractExecutionThreadService {
       RawComparatorWrapper.GroupComparatorWrapper.wrap(job);
       RawComparatorWrapper.KeyComparatorWrapper.wrap(job);
 
-      // packaging job jar which includes cdap classes with dependencies
-      File jobJar = buildJobJar(job, tempDir);
-      job.setJar(jobJar.toURI().toString());
-
       Location programJar = programJarLocation;
       String hbaseDDLExecutorDirectory = null;
-      if (!MapReduceTaskContextProvider.isLocal(mapredConf)) {
+      if (MapReduceTaskContextProvider.isLocal(mapredConf)) {
+        // For local mode, nothing is needed in the job jar since we use the classloader in the configuration object.
+        job.setJar(createEmptyJobJar(tempDir).toURI().toString());
+      } else {
+        // The generated jars are reused across runs, so that they are not uploaded for every run and stay in the
+        // localization cache of the NodeManagers
+        NamespaceId namespaceId = context.getProgram().getId().getNamespaceId();
+        GeneratedJarCache jarCache = GeneratedJarCache.create(cConf, locationFactory.get(namespaceId));
+        // The cached jars must not expire while the job runs
+        cleanupTask = createCleanupTask(cleanupTask, jarCache);
+
         // Copy and localize the program jar in distributed mode
-        programJar = copyProgramJar(tempLocation);
+        programJar = getProgramJar(jarCache, tempLocation);
         job.addCacheFile(programJar.toURI());
 
+        // Localize the job jar which includes cdap classes with dependencies. It is localized as an archive instead
+        // of being set as the job jar, which is uploaded to the job staging directory for every run.
+        Location jobJarDir = getJobJarDir(job, jarCache, tempDir, tempLocation);
+        mapredConf.unset(MRJobConfig.JAR);
+        job.addCacheArchive(jobJarDir.append(JOB_JAR).toURI());
+
         // Generate and localize the launcher jar to control the classloader of MapReduce containers processes
-        Location launcherJar = createLauncherJar(tempLocation);
+        Location launcherJar = getLauncherJar(jarCache, tempLocation);
         job.addCacheFile(launcherJar.toURI());
 
         // Launcher.jar should be the first one in the classpath
@@ -302,21 +324,11 @@ final class MapReduceRuntimeService extends AbstractExecutionThreadService {
           mapredConf.set("mapreduce.reduce.env", "CDAP_LOG_DIR=" + ApplicationConstants.LOG_DIR_EXPANSION_VAR);
         }
 
-        // Get all the jars in jobJar and sort them lexically before adding to the classpath
+        // Add all the jars in the job jar, which are listed in lexical order when the job jar was built.
         // This allows CDAP classes to be picked up first before the Twill classes
-        List<String> jarFiles = new ArrayList<>();
-        try (JarFile jobJarFile = new JarFile(jobJar)) {
-          Enumeration<JarEntry> entries = jobJarFile.entries();
-          while (entries.hasMoreElements()) {
-            JarEntry entry = entries.nextElement();
-            if (entry.getName().startsWith("lib/") && entry.getName().endsWith(".jar")) {
-              jarFiles.add("job.jar/" + entry.getName());
-            }
-          }
-        }
-        Collections.sort(jarFiles);
-        classpath.addAll(jarFiles);
-        classpath.add("job.jar/classes");
+        classpath.addAll(CharStreams.readLines(CharStreams.newReaderSupplier(
+          Locations.newInputSupplier(jobJarDir.append(JOB_JAR_CLASSPATH)), Charsets.UTF_8)));
+        classpath.add(JOB_JAR + "/classes");
 
         // Add extra jars set in cConf
         for (URI jarURI : CConfigurationUtil.getExtraJars(cConf)) {
@@ -1003,34 +1015,39 @@ final class MapReduceRuntimeService extends AbstractExecutionThreadService {
   }
 
   /**
-   * Creates a jar that contains everything that are needed for running the MapReduce program by Hadoop.
+   * Creates an empty job jar. It is for local mode, in which nothing is needed in the job jar since we use the
+   * classloader in the configuration object.
    *
    * @return a new {@link File} containing the job jar
    */
-  private File buildJobJar(Job job, File tempDir) throws IOException, URISyntaxException {
-    File jobJar = new File(tempDir, "job.jar");
+  private File createEmptyJobJar(File tempDir) throws IOException {
+    File jobJar = new File(tempDir, JOB_JAR);
     LOG.debug("Creating Job jar: {}", jobJar);
+    JarOutputStream output = new JarOutputStream(new FileOutputStream(jobJar));
+    output.close();
+    return jobJar;
+  }
 
-    // For local mode, nothing is needed in the job jar since we use the classloader in the configuration object.
-    if (MapReduceTaskContextProvider.isLocal(job.getConfiguration())) {
-      JarOutputStream output = new JarOutputStream(new FileOutputStream(jobJar));
-      output.close();
-      return jobJar;
-    }
-
-    // Excludes libraries that are for sure not needed.
-    // Hadoop - Available from the cluster
-    // Spark - MR never uses Spark
-    final HadoopClassExcluder hadoopClassExcluder = new HadoopClassExcluder();
-    ApplicationBundler appBundler = new ApplicationBundler(new ClassAcceptor() {
+  /**
+   * Returns the directory containing the job jar, which contains everything that are needed for running the
+   * MapReduce program by Hadoop, and the list of jars inside it. The directory is shared by all runs that need the
+   * same job jar, unless the job jar contains plugin classes.
+   */
+  private Location getJobJarDir(Job job, GeneratedJarCache jarCache,
+                                final File tempDir, Location tempLocation) throws IOException {
+    final Set<Class<?>> classes = getJobJarClasses(job);
+    return jarCache.get(getJobJarKey(classes), tempLocation, new GeneratedJarCache.Generator() {
       @Override
-      public boolean accept(String className, URL classUrl, URL classPathUrl) {
-        if (className.startsWith("org.apache.spark") || classPathUrl.toString().contains("spark-assembly")) {
-          return false;
-        }
-        return hadoopClassExcluder.accept(className, classUrl, classPathUrl);
+      public void generate(Location targetDir) throws IOException {
+        buildJobJar(classes, tempDir, targetDir);
       }
     });
+  }
+
+  /**
+   * Returns the classes whose dependencies are included in the job jar.
+   */
+  private Set<Class<?>> getJobJarClasses(Job job) {
     Set<Class<?>> classes = Sets.newHashSet();
     classes.add(MapReduce.class);
     classes.add(MapperWrapper.class);
@@ -1079,6 +1096,80 @@ final class MapReduceRuntimeService extends AbstractExecutionThreadService {
       LOG.warn("Not including HBaseTableUtil classes in submitted Job Jar since they are not available");
     }
 
+    return classes;
+  }
+
+  /**
+   * Returns the key of the job jar in the {@link GeneratedJarCache}, or {@code null} if the job jar cannot be cached.
+   */
+  @Nullable
+  private HashCode getJobJarKey(Set<Class<?>> classes) throws IOException {
+    ClassLoader cdapClassLoader = getClass().getClassLoader();
+    ClassLoader programClassLoader = context.getProgram().getClassLoader();
+    Set<String> classNames = new TreeSet<>();
+    boolean hasProgramClasses = false;
+    for (Class<?> cls : classes) {
+      if (cls.getClassLoader() == programClassLoader) {
+        hasProgramClasses = true;
+      } else if (!isSelfOrParent(cls.getClassLoader(), cdapClassLoader)) {
+        // The classes from plugins, whose artifacts are not known here
+        LOG.debug("Not caching the job jar since it includes class {} from {}", cls, cls.getClassLoader());
+        return null;
+      }
+      classNames.add(cls.getName());
+    }
+
+    GeneratedJarCache.KeyBuilder keyBuilder = new GeneratedJarCache.KeyBuilder()
+      .add(JOB_JAR)
+      .addClassPath(cdapClassLoader);
+    for (String className : classNames) {
+      keyBuilder.add(className);
+    }
+    if (hasProgramClasses) {
+      keyBuilder.addContent(programJarLocation);
+    }
+    return keyBuilder.build();
+  }
+
+  /**
+   * Returns whether the given {@link ClassLoader} is the given child {@link ClassLoader} or one of its parents.
+   */
+  private boolean isSelfOrParent(@Nullable ClassLoader classLoader, ClassLoader child) {
+    for (ClassLoader cl = child; cl != null; cl = cl.getParent()) {
+      if (cl == classLoader) {
+        return true;
+      }
+    }
+    // Classes loaded by the bootstrap ClassLoader
+    return classLoader == null;
+  }
+
+  /**
+   * Creates a jar that contains everything that are needed for running the MapReduce program by Hadoop, together
+   * with a file that lists the jars inside it in lexical order.
+   *
+   * @param classes the classes whose dependencies are included in the job jar
+   * @param tempDir a local directory for building the job jar
+   * @param targetDir the directory to store the job jar and the list of jars
+   */
+  private void buildJobJar(Set<Class<?>> classes, File tempDir, Location targetDir) throws IOException {
+    File jobJar = new File(tempDir, JOB_JAR);
+    LOG.debug("Creating Job jar: {}", jobJar);
+
+    // Excludes libraries that are for sure not needed.
+    // Hadoop - Available from the cluster
+    // Spark - MR never uses Spark
+    final HadoopClassExcluder hadoopClassExcluder = new HadoopClassExcluder();
+    ApplicationBundler appBundler = new ApplicationBundler(new ClassAcceptor() {
+      @Override
+      public boolean accept(String className, URL classUrl, URL classPathUrl) {
+        if (className.startsWith("org.apache.spark") || classPathUrl.toString().contains("spark-assembly")) {
+          return false;
+        }
+        return hadoopClassExcluder.accept(className, classUrl, classPathUrl);
+      }
+    });
+
     ClassLoader oldCLassLoader = ClassLoaders.setContextClassLoader(getClass().getClassLoader());
 
     try {
@@ -1087,8 +1178,25 @@ final class MapReduceRuntimeService extends AbstractExecutionThreadService {
       ClassLoaders.setContextClassLoader(oldCLassLoader);
     }
 
-    LOG.debug("Built MapReduce Job Jar at {}", jobJar.toURI());
-    return jobJar;
+    // Get all the jars in jobJar and sort them lexically, in the way they are localized as an archive
+    List<String> jarFiles = new ArrayList<>();
+    try (JarFile jobJarFile = new JarFile(jobJar)) {
+      Enumeration<JarEntry> entries = jobJarFile.entries();
+      while (entries.hasMoreElements()) {
+        JarEntry entry = entries.nextElement();
+        if (entry.getName().startsWith("lib/") && entry.getName().endsWith(".jar")) {
+          jarFiles.add(JOB_JAR + "/" + entry.getName());
+        }
+      }
+    }
+    Collections.sort(jarFiles);
+
+    Location jobJarLocation = targetDir.append(JOB_JAR);
+    Files.copy(jobJar, Locations.newOutputSupplier(jobJarLocation));
+    CharStreams.write(Joiner.on('\n').join(jarFiles),
+                      CharStreams.newWriterSupplier(Locations.newOutputSupplier(targetDir.append(JOB_JAR_CLASSPATH)),
+                                                    Charsets.UTF_8));
+    LOG.debug("Built MapReduce Job Jar at {}", jobJarLocation);
   }
 
   /**
@@ -1256,19 +1364,50 @@ final class MapReduceRuntimeService extends AbstractExecutionThreadService {
     return targetLocation;
   }
 
+  /**
+   * Returns a copy of the program jar, which is shared by all runs with the same program jar.
+   */
+  private Location getProgramJar(GeneratedJarCache jarCache, Location tempLocation) throws IOException {
+    HashCode key = new GeneratedJarCache.KeyBuilder().add(PROGRAM_JAR).addContent(programJarLocation).build();
+    return jarCache.get(key, tempLocation, new GeneratedJarCache.Generator() {
+      @Override
+      public void generate(Location targetDir) throws IOException {
+        copyProgramJar(targetDir);
+      }
+    }).append(PROGRAM_JAR);
+  }
+
   /**
    * Creates a temp copy of the program jar.
    *
    * @return a new {@link Location} which contains the same content as the program jar
    */
   private Location copyProgramJar(Location targetDir) throws IOException {
-    Location programJarCopy = targetDir.append("program.jar");
+    Location programJarCopy = targetDir.append(PROGRAM_JAR);
 
     ByteStreams.copy(Locations.newInputSupplier(programJarLocation), Locations.newOutputSupplier(programJarCopy));
     LOG.debug("Copied Program Jar to {}, source: {}", programJarCopy, programJarLocation);
     return programJarCopy;
   }
 
+  /**
+   * Returns the launcher jar, which is shared by all runs with the same CDAP classes.
+   *
+   * @see #createLauncherJar(Location)
+   */
+  private Location getLauncherJar(GeneratedJarCache jarCache, Location tempLocation) throws IOException {
+    HashCode key = new GeneratedJarCache.KeyBuilder()
+      .add(LAUNCHER_JAR)
+      .addClassPath(MapReduceContainerLauncher.class.getClassLoader())
+      .build();
+    return jarCache.get(key, tempLocation, new GeneratedJarCache.Generator() {
+      @Override
+      public void generate(Location targetDir) throws IOException {
+        createLauncherJar(targetDir);
+      }
+    }).append(LAUNCHER_JAR);
+  }
+
   /**
    * Creates a launcher jar that contains the MR AM main class and the MR task main class. It is for ClassLoader
    * construction before delegating the actual execution to the actual MR main classes.
@@ -1277,7 +1416,7 @@ final class MapReduceRuntimeService extends AbstractExecutionThreadService {
    * @see ContainerLauncherGenerator
    */
   private Location createLauncherJar(Location targetDir) throws IOException {
-    Location launcherJar = targetDir.append("launcher.jar");
+    Location launcherJar = targetDir.append(LAUNCHER_JAR);
 
     ContainerLauncherGenerator.generateLauncherJar(
       Arrays.asList(
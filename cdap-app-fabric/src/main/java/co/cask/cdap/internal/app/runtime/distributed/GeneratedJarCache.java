@@ -0,0 +1,444 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.app.runtime.distributed;
+
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.io.Locations;
+import co.cask.cdap.common.lang.ClassLoaders;
+import co.cask.cdap.common.utils.ProjectInfo;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import org.apache.twill.common.Threads;
+import org.apache.twill.filesystem.Location;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import javax.annotation.Nullable;
+
+/**
+ * A cache of the files generated for launching programs on YARN, such as job jars and launcher jars. Each entry is a
+ * directory named by the hash of everything that determines the content of the generated files, hence the files are
+ * only generated and uploaded again when any of those changes. Since an entry keeps the same location and
+ * modification time across runs, it also stays in the localization cache of the YARN NodeManagers. Entries that have
+ * not been used for the configured time are deleted whenever a new entry is added. The entries returned by an
+ * instance are kept in use until the instance is closed, which must be done once the program run completes.
+ */
+public final class GeneratedJarCache implements Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(GeneratedJarCache.class);
+
+  // File in each entry whose modification time is the last time the entry was used
+  private static final String LAST_USED = "last.used";
+  private static final String TEMP_SUFFIX = ".tmp";
+  private static final long MAX_TOUCH_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+  private final Location cacheDir;
+  private final long maxAgeMillis;
+  private final long touchIntervalMillis;
+  // Entries returned by this instance. Guarded by this.
+  private final Set<Location> usedEntries;
+  // Periodically updates the last used time of the used entries. Guarded by this.
+  private ScheduledExecutorService touchExecutor;
+  private boolean closed;
+
+  /**
+   * Creates an instance that keeps the entries in the temporary directory of the given namespace location.
+   */
+  public static GeneratedJarCache create(CConfiguration cConf, Location namespaceLocation) throws IOException {
+    Location cacheDir = namespaceLocation.append(cConf.get(Constants.AppFabric.TEMP_DIR)).append("jar.cache");
+    return new GeneratedJarCache(cacheDir,
+                                 TimeUnit.HOURS.toMillis(cConf.getLong(
+                                   Constants.AppFabric.RUNTIME_JAR_CACHE_MAX_AGE_HOURS)));
+  }
+
+  /**
+   * Creates an instance.
+   *
+   * @param cacheDir the directory of the entries
+   * @param maxAgeMillis time in milliseconds after the last use of an entry before it is deleted. If it is not
+   *                     positive, the cache is disabled.
+   */
+  public GeneratedJarCache(Location cacheDir, long maxAgeMillis) {
+    this.cacheDir = cacheDir;
+    this.maxAgeMillis = maxAgeMillis;
+    this.touchIntervalMillis = Math.min(maxAgeMillis / 2, MAX_TOUCH_INTERVAL_MILLIS);
+    this.usedEntries = new HashSet<>();
+  }
+
+  /**
+   * Returns whether the cache is enabled.
+   */
+  public boolean isEnabled() {
+    return maxAgeMillis > 0;
+  }
+
+  /**
+   * Returns the directory of the entry for the given key. If there is no such entry, the given {@link Generator} is
+   * called to generate the files of the entry. If the cache is disabled, there is no key, or the entry cannot be added
+   * to the cache, the files are generated in the given fallback directory instead, to be used by one run only. A cached
+   * entry is not deleted until this instance is closed.
+   *
+   * @param key the key of the entry created with a {@link KeyBuilder}, or {@code null} if the files cannot be cached
+   * @param fallbackDir the directory to generate the files in if they cannot be cached
+   * @param generator the {@link Generator} for generating the files
+   * @return the {@link Location} of the directory containing the generated files, which must not be modified
+   * @throws IOException if failed to generate the files
+   */
+  public Location get(@Nullable HashCode key, Location fallbackDir, Generator generator) throws IOException {
+    if (isEnabled() && key != null) {
+      try {
+        return getEntry(key, generator);
+      } catch (IOException e) {
+        LOG.warn("Failed to get entry {} from the cache of generated jars in {}. Generating in {} instead.",
+                 key, cacheDir, fallbackDir, e);
+      }
+    }
+    generator.generate(fallbackDir);
+    return fallbackDir;
+  }
+
+  /**
+   * Stops updating the last used time of the entries returned by this instance, so that they can expire.
+   */
+  @Override
+  public synchronized void close() {
+    closed = true;
+    usedEntries.clear();
+    if (touchExecutor != null) {
+      touchExecutor.shutdownNow();
+      touchExecutor = null;
+    }
+  }
+
+  private Location getEntry(HashCode key, Generator generator) throws IOException {
+    Location entryDir = cacheDir.append(key.toString());
+    if (entryDir.exists()) {
+      touch(entryDir);
+      use(entryDir);
+      return entryDir;
+    }
+
+    // Generates to a temporary directory and renames it, so that an entry is only visible once it is complete
+    Location tempDir = cacheDir.append(key + "." + UUID.randomUUID() + TEMP_SUFFIX);
+    try {
+      if (!tempDir.mkdirs()) {
+        throw new IOException("Failed to create directory " + tempDir);
+      }
+      generator.generate(tempDir);
+      tempDir.append(LAST_USED).createNew();
+      try {
+        if (tempDir.renameTo(entryDir) == null) {
+          throw new IOException("Failed to rename " + tempDir + " to " + entryDir);
+        }
+        LOG.debug("Added entry {} to the cache of generated jars", entryDir);
+      } catch (IOException e) {
+        // Another run may have added the same entry concurrently, whose files are the same
+        if (!entryDir.exists()) {
+          throw e;
+        }
+      }
+    } finally {
+      deleteQuietly(tempDir);
+    }
+
+    use(entryDir);
+    deleteExpired();
+    return entryDir;
+  }
+
+  /**
+   * Remembers the given entry as used by this instance, and starts updating the last used time of the used entries
+   * periodically if it is not started yet. Entries are used for as long as the program runs, which can be longer than
+   * the maximum age.
+   */
+  private synchronized void use(Location entryDir) {
+    if (closed || !usedEntries.add(entryDir) || touchExecutor != null) {
+      return;
+    }
+    touchExecutor = Executors.newSingleThreadScheduledExecutor(Threads.createDaemonThreadFactory("jar-cache-touch"));
+    // Checks twice per interval, so that the last used time of an entry never gets close to the maximum age
+    long delay = Math.max(touchIntervalMillis / 2, 1L);
+    touchExecutor.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        touchUsedEntries();
+      }
+    }, delay, delay, TimeUnit.MILLISECONDS);
+  }
+
+  @VisibleForTesting
+  void touchUsedEntries() {
+    List<Location> entries;
+    synchronized (this) {
+      entries = new ArrayList<>(usedEntries);
+    }
+    for (Location entryDir : entries) {
+      touch(entryDir);
+    }
+  }
+
+  /**
+   * Updates the last used time of the given entry, so that it is not deleted. To avoid writing on every use, it
+   * is only updated if it is older than a fraction of the maximum age.
+   */
+  private void touch(Location entryDir) {
+    try {
+      if (System.currentTimeMillis() - getLastUsed(entryDir) > touchIntervalMillis) {
+        // Rewrites the file instead of setting the time, which is not supported by the Location interface
+        entryDir.append(LAST_USED).getOutputStream().close();
+      }
+    } catch (IOException e) {
+      // The entry still can be used. At worst, it is deleted and generated again sooner
+      LOG.debug("Failed to update the last used time of cache entry {}", entryDir, e);
+    }
+  }
+
+  /**
+   * Deletes the entries and the temporary directories that have not been used for longer than the maximum age.
+   */
+  private void deleteExpired() {
+    try {
+      long now = System.currentTimeMillis();
+      for (Location location : cacheDir.list()) {
+        try {
+          if (isUsed(location)) {
+            continue;
+          }
+          if (now - getLastUsed(location) > maxAgeMillis) {
+            LOG.debug("Deleting expired entry {} from the cache of generated jars", location);
+            location.delete(true);
+          }
+        } catch (IOException e) {
+          // It can happen if the entry is deleted concurrently, or owned by a different user.
+          LOG.debug("Failed to delete expired entry {} from the cache of generated jars", location, e);
+        }
+      }
+    } catch (IOException e) {
+      LOG.warn("Failed to delete expired entries from the cache of generated jars in {}", cacheDir, e);
+    }
+  }
+
+  private synchronized boolean isUsed(Location entryDir) {
+    return usedEntries.contains(entryDir);
+  }
+
+  private long getLastUsed(Location location) throws IOException {
+    Location lastUsed = location.append(LAST_USED);
+    return lastUsed.exists() ? lastUsed.lastModified() : location.lastModified();
+  }
+
+  private void deleteQuietly(Location location) {
+    try {
+      if (location.exists()) {
+        location.delete(true);
+      }
+    } catch (IOException e) {
+      LOG.warn("Failed to delete {}", location, e);
+    }
+  }
+
+  /**
+   * Generates the files of a cache entry.
+   */
+  public interface Generator {
+
+    /**
+     * Generates the files into the given directory.
+     */
+    void generate(Location targetDir) throws IOException;
+  }
+
+  /**
+   * Builder for the key of a cache entry from the inputs of the generated files. The CDAP version, which includes the
+   * build time, is always part of the key.
+   */
+  public static final class KeyBuilder {
+
+    // Checksums of the files added by all builders, to only compute them again once a file changes
+    private static final ConcurrentMap<File, FileChecksum> CHECKSUMS = new ConcurrentHashMap<>();
+
+    private final Hasher hasher;
+
+    public KeyBuilder() {
+      this.hasher = Hashing.sha256().newHasher();
+      add(ProjectInfo.getVersion().toString());
+    }
+
+    /**
+     * Adds the given string to the key.
+     */
+    public KeyBuilder add(String value) {
+      hasher.putString(value, Charsets.UTF_8).putByte((byte) 0);
+      return this;
+    }
+
+    /**
+     * Adds the given local file to the key. A file is represented by its name and the checksum of its content, since
+     * the path and the modification time of a file localized to a YARN container change in every container. For a
+     * directory, the relative paths, sizes and modification times of all files under it are added instead, as classes
+     * compiled in place can change without changing their size.
+     */
+    public KeyBuilder addFile(File file) {
+      add(file.getName());
+      if (file.isDirectory()) {
+        addDirectory(file, "");
+      } else {
+        hasher.putBytes(getChecksum(file).asBytes());
+      }
+      return this;
+    }
+
+    /**
+     * Adds the checksum of the content of the given {@link Location} to the key.
+     */
+    public KeyBuilder addContent(Location location) throws IOException {
+      hasher.putBytes(ByteStreams.hash(Locations.newInputSupplier(location), Hashing.sha256()).asBytes());
+      return this;
+    }
+
+    /**
+     * Adds the class path of the given {@link ClassLoader}, including the class path of its parents, to the key.
+     */
+    public KeyBuilder addClassPath(ClassLoader classLoader) {
+      for (URL url : ClassLoaders.getClassLoaderURLs(classLoader, new LinkedHashSet<URL>())) {
+        if (!"file".equals(url.getProtocol())) {
+          add(url.toString());
+          continue;
+        }
+        try {
+          addFile(new File(url.toURI()));
+        } catch (URISyntaxException e) {
+          add(url.toString());
+        }
+      }
+      return this;
+    }
+
+    /**
+     * Returns the key.
+     */
+    public HashCode build() {
+      return hasher.hash();
+    }
+
+    private static HashCode getChecksum(File file) {
+      long lastModified = file.lastModified();
+      long size = file.length();
+      FileChecksum checksum = CHECKSUMS.get(file);
+      if (checksum != null && checksum.lastModified == lastModified && checksum.size == size) {
+        return checksum.checksum;
+      }
+      try {
+        checksum = new FileChecksum(lastModified, size, computeChecksum(file));
+      } catch (IOException e) {
+        // The modification time changes in every container, so such a file is never reused across runs
+        LOG.debug("Failed to compute the checksum of {}, using its modification time instead", file, e);
+        return Hashing.sha256().newHasher().putLong(size).putLong(lastModified).hash();
+      }
+      CHECKSUMS.put(file, checksum);
+      return checksum.checksum;
+    }
+
+    /**
+     * Computes the checksum of the given file. For a jar, the checksum of the names, CRCs and sizes of its entries is
+     * computed, which only reads the central directory, instead of the checksum of the whole content.
+     */
+    private static HashCode computeChecksum(File file) throws IOException {
+      if (!file.exists()) {
+        return Hashing.sha256().newHasher().putLong(-1L).hash();
+      }
+      ZipFile zipFile;
+      try {
+        zipFile = new ZipFile(file);
+      } catch (ZipException e) {
+        return Files.hash(file, Hashing.sha256());
+      }
+      try {
+        Hasher hasher = Hashing.sha256().newHasher();
+        Enumeration<? extends ZipEntry> entries = zipFile.entries();
+        while (entries.hasMoreElements()) {
+          ZipEntry entry = entries.nextElement();
+          hasher.putString(entry.getName(), Charsets.UTF_8).putByte((byte) 0)
+            .putLong(entry.getCrc()).putLong(entry.getSize());
+        }
+        return hasher.hash();
+      } finally {
+        zipFile.close();
+      }
+    }
+
+    private void addDirectory(File dir, String prefix) {
+      File[] files = dir.listFiles();
+      if (files == null) {
+        return;
+      }
+      Arrays.sort(files);
+      for (File file : files) {
+        String path = prefix + "/" + file.getName();
+        if (file.isDirectory()) {
+          addDirectory(file, path);
+        } else {
+          add(path);
+          hasher.putLong(file.length()).putLong(file.lastModified());
+        }
+      }
+    }
+  }
+
+  /**
+   * The checksum of a file, along with the modification time and size of the file it was computed for.
+   */
+  private static final class FileChecksum {
+
+    private final long lastModified;
+    private final long size;
+    private final HashCode checksum;
+
+    FileChecksum(long lastModified, long size, HashCode checksum) {
+      this.lastModified = lastModified;
+      this.size = size;
+      this.checksum = checksum;
+    }
+  }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015 Cask Data, Inc.
+ * Copyright © 2015-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -33,6 +33,7 @@ import co.cask.cdap.common.lang.InstantiatorFactory;
 import co.cask.cdap.common.lang.jar.BundleJarUtil;
 import co.cask.cdap.common.utils.DirUtils;
 import co.cask.cdap.internal.app.runtime.artifact.Artifacts;
+import co.cask.cdap.internal.app.runtime.artifact.UnpackedArtifactCache;
 import co.cask.cdap.internal.lang.FieldVisitor;
 import co.cask.cdap.internal.lang.Fields;
 import co.cask.cdap.internal.lang.Reflections;
@@ -66,6 +67,8 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import javax.annotation.Nullable;
 
@@ -95,8 +98,24 @@ public class PluginInstantiator implements Closeable {
   private final File tmpDir;
   private final File pluginDir;
   private final ClassLoader parentClassLoader;
+  @Nullable
+  private final UnpackedArtifactCache artifactCache;
+  // References to the unpacked artifacts in the artifact cache, held until the ClassLoader is removed
+  private final ConcurrentMap<ArtifactId, Closeable> artifactReferences;
 
   public PluginInstantiator(CConfiguration cConf, ClassLoader parentClassLoader, File pluginDir) {
+    this(cConf, parentClassLoader, pluginDir, null);
+  }
+
+  /**
+   * Creates an instance that expands the plugin jars through the given {@link UnpackedArtifactCache}, so that
+   * they are expanded only once in the process.
+   *
+   * @param artifactCache the cache of unpacked artifacts, or {@code null} to expand plugin jars to a temporary
+   *                      directory owned by this instance
+   */
+  public PluginInstantiator(CConfiguration cConf, ClassLoader parentClassLoader, File pluginDir,
+                            @Nullable UnpackedArtifactCache artifactCache) {
     this.instantiatorFactory = new InstantiatorFactory(false);
     File tmpDir = new File(cConf.get(Constants.CFG_LOCAL_DATA_DIR),
                            cConf.get(Constants.AppFabric.TEMP_DIR)).getAbsoluteFile();
@@ -107,6 +126,8 @@ public class PluginInstantiator implements Closeable {
       .removalListener(new ClassLoaderRemovalListener())
       .build(new ClassLoaderCacheLoader());
     this.parentClassLoader = PluginClassLoader.createParent(parentClassLoader);
+    this.artifactCache = artifactCache;
+    this.artifactReferences = new ConcurrentHashMap<>();
   }
 
   /**
@@ -354,17 +375,29 @@ public class PluginInstantiator implements Closeable {
 
     @Override
     public ClassLoader load(ArtifactId artifactId) throws Exception {
-      File unpackedDir = DirUtils.createTempDir(tmpDir);
       File artifact = new File(pluginDir, Artifacts.getFileName(artifactId));
-      BundleJarUtil.unJar(Locations.toLocation(artifact), unpackedDir);
-      return new PluginClassLoader(unpackedDir, parentClassLoader);
+      if (artifactCache == null) {
+        File unpackedDir = DirUtils.createTempDir(tmpDir);
+        BundleJarUtil.unJar(Locations.toLocation(artifact), unpackedDir);
+        return new PluginClassLoader(unpackedDir, parentClassLoader);
+      }
+
+      UnpackedArtifactCache.Reference unpacked = artifactCache.acquire(Locations.toLocation(artifact));
+      try {
+        PluginClassLoader classLoader = new PluginClassLoader(unpacked.getDirectory(), parentClassLoader);
+        artifactReferences.put(artifactId, unpacked);
+        return classLoader;
+      } catch (Exception e) {
+        unpacked.close();
+        throw e;
+      }
     }
   }
 
   /**
-   * A RemovalListener for closing plugin ClassLoader.
+   * A RemovalListener for closing plugin ClassLoader and releasing the unpacked artifact.
    */
-  private static final class ClassLoaderRemovalListener implements RemovalListener<ArtifactId, ClassLoader> {
+  private final class ClassLoaderRemovalListener implements RemovalListener<ArtifactId, ClassLoader> {
 
     @Override
     public void onRemoval(RemovalNotification<ArtifactId, ClassLoader> notification) {
@@ -372,6 +405,10 @@ public class PluginInstantiator implements Closeable {
       if (cl instanceof Closeable) {
         Closeables.closeQuietly((Closeable) cl);
       }
+      Closeable unpacked = artifactReferences.remove(notification.getKey());
+      if (unpacked != null) {
+        Closeables.closeQuietly(unpacked);
+      }
     }
   }
 
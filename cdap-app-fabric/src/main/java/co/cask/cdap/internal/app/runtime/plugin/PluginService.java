@@ -30,6 +30,7 @@ import co.cask.cdap.internal.app.runtime.DefaultEndpointPluginContext;
 import co.cask.cdap.internal.app.runtime.artifact.ArtifactDescriptor;
 import co.cask.cdap.internal.app.runtime.artifact.ArtifactDetail;
 import co.cask.cdap.internal.app.runtime.artifact.ArtifactRepository;
+import co.cask.cdap.internal.app.runtime.artifact.UnpackedArtifactCache;
 import co.cask.cdap.proto.Id;
 import co.cask.cdap.proto.artifact.ArtifactSortOrder;
 import co.cask.cdap.proto.id.NamespaceId;
@@ -73,11 +74,13 @@ public class PluginService extends AbstractIdleService {
   private final CConfiguration cConf;
   private final LoadingCache<ArtifactDescriptor, Instantiators> instantiators;
   private final Impersonator impersonator;
+  private final UnpackedArtifactCache artifactCache;
 
   private File stageDir;
 
   @Inject
-  public PluginService(ArtifactRepository artifactRepository, CConfiguration cConf, Impersonator impersonator) {
+  public PluginService(ArtifactRepository artifactRepository, CConfiguration cConf, Impersonator impersonator,
+                       UnpackedArtifactCache artifactCache) {
     this.artifactRepository = artifactRepository;
     this.tmpDir = new File(cConf.get(Constants.CFG_LOCAL_DATA_DIR),
                            cConf.get(Constants.AppFabric.TEMP_DIR)).getAbsoluteFile();
@@ -94,6 +97,7 @@ public class PluginService extends AbstractIdleService {
       .expireAfterAccess(1, TimeUnit.HOURS)
       .build(new InstantiatorsCacheLoader());
     this.impersonator = impersonator;
+    this.artifactCache = artifactCache;
   }
 
   /**
@@ -190,7 +194,7 @@ public class PluginService extends AbstractIdleService {
 
     private void addInstantiatorAndAddArtifact(ArtifactDetail artifactDetail,
                                                ArtifactId artifactId) throws IOException {
-      PluginInstantiator instantiator = new PluginInstantiator(cConf, parentClassLoader, pluginDir);
+      PluginInstantiator instantiator = new PluginInstantiator(cConf, parentClassLoader, pluginDir, artifactCache);
       instantiatorInfoMap.put(artifactDetail.getDescriptor(),
                               new InstantiatorInfo(artifactDetail.getDescriptor().getLocation(), instantiator));
       instantiator.addArtifact(artifactDetail.getDescriptor().getLocation(), artifactId);
@@ -201,7 +205,8 @@ public class PluginService extends AbstractIdleService {
       if (!instantiatorInfoMap.containsKey(artifactDetail.getDescriptor())) {
         addInstantiatorAndAddArtifact(artifactDetail, artifactId);
       } else if (hasArtifactChanged(artifactDetail.getDescriptor())) {
-        instantiatorInfoMap.remove(artifactDetail.getDescriptor());
+        // Close the old instantiator to release its unpacked artifact
+        Closeables.closeQuietly(instantiatorInfoMap.remove(artifactDetail.getDescriptor()).getPluginInstantiator());
         addInstantiatorAndAddArtifact(artifactDetail, artifactId);
       }
       return instantiatorInfoMap.get(artifactDetail.getDescriptor()).getPluginInstantiator();
@@ -76,6 +76,7 @@ import co.cask.cdap.proto.security.Action;
 import co.cask.cdap.proto.security.Principal;
 import co.cask.cdap.route.store.RouteStore;
 import co.cask.cdap.scheduler.Scheduler;
+import co.cask.cdap.security.authorization.AuthorizationUtil;
 import co.cask.cdap.security.impersonation.Impersonator;
 import co.cask.cdap.security.impersonation.OwnerAdmin;
 import co.cask.cdap.security.impersonation.SecurityUtil;
@@ -236,11 +237,15 @@ public class ApplicationLifecycleService extends AbstractIdleService {
     }
 
     Principal principal = authenticationContext.getPrincipal();
-    final Predicate<EntityId> filter = authorizationEnforcer.createFilter(principal);
+    Set<ApplicationId> recordIds = new HashSet<>();
+    for (ApplicationRecord appRecord : appRecords) {
+      recordIds.add(namespace.app(appRecord.getName()));
+    }
+    final Set<? extends EntityId> visible = AuthorizationUtil.isVisible(recordIds, authorizationEnforcer, principal);
     return Lists.newArrayList(Iterables.filter(appRecords, new com.google.common.base.Predicate<ApplicationRecord>() {
       @Override
       public boolean apply(ApplicationRecord appRecord) {
-        return filter.apply(namespace.app(appRecord.getName()));
+        return visible.contains(namespace.app(appRecord.getName()));
       }
     }));
   }
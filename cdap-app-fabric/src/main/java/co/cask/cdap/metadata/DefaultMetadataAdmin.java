@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015-2016 Cask Data, Inc.
+ * Copyright © 2015-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -16,7 +16,6 @@
 
 package co.cask.cdap.metadata;
 
-import co.cask.cdap.api.Predicate;
 import co.cask.cdap.common.InvalidMetadataException;
 import co.cask.cdap.common.NotFoundException;
 import co.cask.cdap.common.conf.CConfiguration;
@@ -34,6 +33,7 @@ import co.cask.cdap.proto.metadata.MetadataScope;
 import co.cask.cdap.proto.metadata.MetadataSearchResponse;
 import co.cask.cdap.proto.metadata.MetadataSearchResultRecord;
 import co.cask.cdap.proto.security.Principal;
+import co.cask.cdap.security.authorization.AuthorizationUtil;
 import co.cask.cdap.security.spi.authentication.AuthenticationContext;
 import co.cask.cdap.security.spi.authorization.AuthorizationEnforcer;
 import com.google.common.base.CharMatcher;
@@ -41,6 +41,7 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.inject.Inject;
 
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
@@ -184,14 +185,18 @@ public class DefaultMetadataAdmin implements MetadataAdmin {
   private MetadataSearchResponse filterAuthorizedSearchResult(MetadataSearchResponse results)
     throws Exception {
     Principal principal = authenticationContext.getPrincipal();
-    final Predicate<EntityId> filter = authorizationEnforcer.createFilter(principal);
+    Set<NamespacedEntityId> entityIds = new HashSet<>();
+    for (MetadataSearchResultRecord record : results.getResults()) {
+      entityIds.add(record.getEntityId());
+    }
+    final Set<? extends EntityId> visible = AuthorizationUtil.isVisible(entityIds, authorizationEnforcer, principal);
     return new MetadataSearchResponse(
       results.getSort(), results.getOffset(), results.getLimit(), results.getNumCursors(), results.getTotal(),
       ImmutableSet.copyOf(
         Iterables.filter(results.getResults(), new com.google.common.base.Predicate<MetadataSearchResultRecord>() {
           @Override
           public boolean apply(MetadataSearchResultRecord metadataSearchResultRecord) {
-            return filter.apply(metadataSearchResultRecord.getEntityId());
+            return visible.contains(metadataSearchResultRecord.getEntityId());
           }
         })
       ),
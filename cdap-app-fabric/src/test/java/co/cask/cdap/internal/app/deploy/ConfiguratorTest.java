@@ -29,6 +29,7 @@ import co.cask.cdap.common.guice.ConfigModule;
 import co.cask.cdap.common.test.AppJarHelper;
 import co.cask.cdap.internal.app.ApplicationSpecificationAdapter;
 import co.cask.cdap.internal.app.runtime.artifact.ArtifactRepository;
+import co.cask.cdap.internal.app.runtime.artifact.UnpackedArtifactCache;
 import co.cask.cdap.internal.io.ReflectionSchemaGenerator;
 import co.cask.cdap.proto.Id;
 import co.cask.cdap.security.auth.context.AuthenticationContextModules;
@@ -95,7 +96,8 @@ public class ConfiguratorTest {
     ArtifactRepository artifactRepo = new ArtifactRepository(conf, null, null, authorizer,
                                                              new DummyProgramRunnerFactory(),
                                                              new DefaultImpersonator(cConf, null),
-                                                             authEnforcer, authenticationContext);
+                                                             authEnforcer, authenticationContext,
+                                                             new UnpackedArtifactCache(conf));
 
     // Create a configurator that is testable. Provide it a application.
     try (CloseableClassLoader artifactClassLoader =
@@ -128,7 +130,8 @@ public class ConfiguratorTest {
     ArtifactRepository artifactRepo = new ArtifactRepository(conf, null, null, authorizer,
                                                              new DummyProgramRunnerFactory(),
                                                              new DefaultImpersonator(cConf, null),
-                                                             authEnforcer, authenticationContext);
+                                                             authEnforcer, authenticationContext,
+                                                             new UnpackedArtifactCache(conf));
 
     ConfigTestApp.ConfigClass config = new ConfigTestApp.ConfigClass("myStream", "myTable");
     // Create a configurator that is testable. Provide it an application.
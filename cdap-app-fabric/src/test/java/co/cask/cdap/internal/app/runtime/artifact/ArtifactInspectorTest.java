@@ -65,8 +65,9 @@ public class ArtifactInspectorTest {
     CConfiguration cConf = CConfiguration.create();
     cConf.set(Constants.CFG_LOCAL_DATA_DIR, TMP_FOLDER.newFolder().getAbsolutePath());
 
-    classLoaderFactory = new ArtifactClassLoaderFactory(cConf, new DummyProgramRunnerFactory());
-    artifactInspector = new ArtifactInspector(cConf, classLoaderFactory);
+    UnpackedArtifactCache artifactCache = new UnpackedArtifactCache(cConf);
+    classLoaderFactory = new ArtifactClassLoaderFactory(cConf, new DummyProgramRunnerFactory(), artifactCache);
+    artifactInspector = new ArtifactInspector(cConf, classLoaderFactory, artifactCache);
   }
 
   @Test(expected = InvalidArtifactException.class)
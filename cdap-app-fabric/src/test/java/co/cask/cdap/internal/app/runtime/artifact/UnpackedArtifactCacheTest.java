@@ -0,0 +1,146 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.app.runtime.artifact;
+
+import co.cask.cdap.common.io.Locations;
+import com.google.common.io.Files;
+import org.apache.twill.filesystem.Location;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * Tests for {@link UnpackedArtifactCache}.
+ */
+public class UnpackedArtifactCacheTest {
+
+  @ClassRule
+  public static final TemporaryFolder TMP_FOLDER = new TemporaryFolder();
+
+  @Test
+  public void testSharedByContent() throws IOException {
+    UnpackedArtifactCache cache = new UnpackedArtifactCache(TMP_FOLDER.newFolder(), 1024 * 1024);
+    Location jar1 = createJar("a.jar", 'a', 100);
+    Location jar2 = Locations.toLocation(new File(TMP_FOLDER.newFolder(), "copy.jar"));
+    Files.copy(Locations.newInputSupplier(jar1), new File(jar2.toURI()));
+
+    try (
+      UnpackedArtifactCache.Reference ref1 = cache.acquire(jar1);
+      UnpackedArtifactCache.Reference ref2 = cache.acquire(jar2)
+    ) {
+      // Same content at different locations are expanded to the same directory
+      Assert.assertEquals(ref1.getDirectory(), ref2.getDirectory());
+      Assert.assertEquals(100, new File(ref1.getDirectory(), "content").length());
+      Assert.assertEquals(100, cache.getSizeBytes());
+    }
+
+    // Within the budget, the directory is kept after all references are released
+    try (UnpackedArtifactCache.Reference ref = cache.acquire(jar1)) {
+      Assert.assertTrue(new File(ref.getDirectory(), "content").isFile());
+      Assert.assertEquals(100, cache.getSizeBytes());
+    }
+  }
+
+  @Test
+  public void testEviction() throws IOException {
+    UnpackedArtifactCache cache = new UnpackedArtifactCache(TMP_FOLDER.newFolder(), 250);
+    Location jar1 = createJar("1.jar", '1', 100);
+    Location jar2 = createJar("2.jar", '2', 100);
+    Location jar3 = createJar("3.jar", '3', 100);
+
+    File dir1;
+    File dir2;
+    try (UnpackedArtifactCache.Reference ref1 = cache.acquire(jar1)) {
+      dir1 = ref1.getDirectory();
+      try (UnpackedArtifactCache.Reference ref2 = cache.acquire(jar2)) {
+        dir2 = ref2.getDirectory();
+        // Directories in use are never deleted, even above the budget
+        try (UnpackedArtifactCache.Reference ref3 = cache.acquire(jar3)) {
+          Assert.assertEquals(300, cache.getSizeBytes());
+          Assert.assertTrue(dir1.isDirectory());
+          Assert.assertTrue(dir2.isDirectory());
+        }
+        // Releasing the most recently used one brings the size back within the budget
+        Assert.assertEquals(200, cache.getSizeBytes());
+      }
+      // Use the first one again, so that the second one is the least recently used
+      try (UnpackedArtifactCache.Reference ref = cache.acquire(jar1)) {
+        Assert.assertEquals(dir1, ref.getDirectory());
+      }
+    }
+
+    try (UnpackedArtifactCache.Reference ref3 = cache.acquire(jar3)) {
+      Assert.assertEquals(200, cache.getSizeBytes());
+      Assert.assertTrue(dir1.isDirectory());
+      Assert.assertFalse(dir2.exists());
+      Assert.assertTrue(new File(ref3.getDirectory(), "content").isFile());
+    }
+  }
+
+  @Test
+  public void testInvalidArtifact() throws IOException {
+    UnpackedArtifactCache cache = new UnpackedArtifactCache(TMP_FOLDER.newFolder(), 1024);
+    // A jar truncated in the middle of the entry content
+    byte[] bytes = Files.toByteArray(new File(createJar("valid.jar", 'v', 100).toURI()));
+    File file = TMP_FOLDER.newFile("invalid.jar");
+    Files.write(Arrays.copyOf(bytes, 43), file);
+    try {
+      cache.acquire(Locations.toLocation(file)).close();
+      Assert.fail("Expected failure to expand an invalid jar");
+    } catch (IOException e) {
+      // expected
+    }
+    Assert.assertEquals(0, cache.getSizeBytes());
+  }
+
+  @Test
+  public void testCleanupOnCreate() throws IOException {
+    File cacheDir = TMP_FOLDER.newFolder();
+    UnpackedArtifactCache cache = new UnpackedArtifactCache(cacheDir, 1024);
+    File dir;
+    try (UnpackedArtifactCache.Reference ref = cache.acquire(createJar("a.jar", 'a', 100))) {
+      dir = ref.getDirectory();
+    }
+    Assert.assertTrue(dir.isDirectory());
+
+    // A new cache, as created by the next process, deletes what the previous one left
+    cache = new UnpackedArtifactCache(cacheDir, 1024);
+    Assert.assertFalse(dir.exists());
+    Assert.assertTrue(cacheDir.isDirectory());
+    Assert.assertEquals(0, cache.getSizeBytes());
+  }
+
+  private Location createJar(String name, char content, int size) throws IOException {
+    File file = new File(TMP_FOLDER.newFolder(), name);
+    try (JarOutputStream output = new JarOutputStream(new FileOutputStream(file))) {
+      output.putNextEntry(new JarEntry("content"));
+      for (int i = 0; i < size; i++) {
+        output.write(content);
+      }
+      output.closeEntry();
+    }
+    return Locations.toLocation(file);
+  }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.app.runtime.distributed;
+
+import co.cask.cdap.common.io.Locations;
+import com.google.common.base.Charsets;
+import com.google.common.hash.HashCode;
+import com.google.common.io.Files;
+import org.apache.twill.filesystem.Location;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * Tests for {@link GeneratedJarCache}.
+ */
+public class GeneratedJarCacheTest {
+
+  @ClassRule
+  public static final TemporaryFolder TMP_FOLDER = new TemporaryFolder();
+
+  @Test
+  public void testReuse() throws IOException {
+    GeneratedJarCache cache = new GeneratedJarCache(Locations.toLocation(TMP_FOLDER.newFolder()),
+                                                    TimeUnit.HOURS.toMillis(1));
+    Location fallbackDir = Locations.toLocation(TMP_FOLDER.newFolder());
+    CountingGenerator generator = new CountingGenerator("content");
+
+    HashCode key = new GeneratedJarCache.KeyBuilder().add("test").build();
+    Location dir1 = cache.get(key, fallbackDir, generator);
+    Location dir2 = cache.get(key, fallbackDir, generator);
+    Assert.assertEquals(dir1, dir2);
+    Assert.assertEquals(1, generator.count.get());
+    Assert.assertEquals("content", read(dir1.append("file")));
+
+    // A different key has its own entry
+    Location dir3 = cache.get(new GeneratedJarCache.KeyBuilder().add("test2").build(), fallbackDir, generator);
+    Assert.assertNotEquals(dir1, dir3);
+    Assert.assertEquals(2, generator.count.get());
+
+    // Nothing is generated in the fallback directory
+    Assert.assertTrue(fallbackDir.list().isEmpty());
+  }
+
+  @Test
+  public void testFallback() throws IOException {
+    Location fallbackDir = Locations.toLocation(TMP_FOLDER.newFolder());
+    CountingGenerator generator = new CountingGenerator("content");
+    HashCode key = new GeneratedJarCache.KeyBuilder().add("test").build();
+
+    // Disabled cache always generates in the fallback directory
+    Location cacheDir = Locations.toLocation(TMP_FOLDER.newFolder());
+    GeneratedJarCache cache = new GeneratedJarCache(cacheDir, 0L);
+    Assert.assertFalse(cache.isEnabled());
+    Assert.assertEquals(fallbackDir, cache.get(key, fallbackDir, generator));
+    Assert.assertEquals(fallbackDir, cache.get(key, fallbackDir, generator));
+    Assert.assertEquals(2, generator.count.get());
+    Assert.assertTrue(cacheDir.list().isEmpty());
+
+    // Without a key, the files are not cached either
+    cache = new GeneratedJarCache(cacheDir, TimeUnit.HOURS.toMillis(1));
+    Assert.assertEquals(fallbackDir, cache.get(null, fallbackDir, generator));
+    Assert.assertEquals(3, generator.count.get());
+
+    // If the cache cannot be used, the files are generated in the fallback directory
+    File file = TMP_FOLDER.newFile();
+    cache = new GeneratedJarCache(Locations.toLocation(file).append("cache"), TimeUnit.HOURS.toMillis(1));
+    Assert.assertEquals(fallbackDir, cache.get(key, fallbackDir, generator));
+    Assert.assertEquals("content", read(fallbackDir.append("file")));
+  }
+
+  @Test
+  public void testExpiry() throws IOException {
+    File cacheDir = TMP_FOLDER.newFolder();
+    long maxAgeMillis = TimeUnit.HOURS.toMillis(1);
+    GeneratedJarCache cache = new GeneratedJarCache(Locations.toLocation(cacheDir), maxAgeMillis);
+    Location fallbackDir = Locations.toLocation(TMP_FOLDER.newFolder());
+
+    Location dir1 = cache.get(new GeneratedJarCache.KeyBuilder().add("1").build(), fallbackDir,
+                              new CountingGenerator("1"));
+    Location dir2 = cache.get(new GeneratedJarCache.KeyBuilder().add("2").build(), fallbackDir,
+                              new CountingGenerator("2"));
+
+    // A use of an entry that was last used a while ago updates the last used time
+    File lastUsed1 = new File(dir1.append("last.used").toURI());
+    long lastUsedTime = System.currentTimeMillis() - maxAgeMillis + TimeUnit.MINUTES.toMillis(1);
+    Assert.assertTrue(lastUsed1.setLastModified(lastUsedTime));
+    Assert.assertEquals(dir1, cache.get(new GeneratedJarCache.KeyBuilder().add("1").build(), fallbackDir,
+                                        new CountingGenerator("1")));
+    Assert.assertTrue(lastUsed1.lastModified() > lastUsedTime);
+
+    // Entries not used for longer than the max age are deleted when a new entry is added, once no run uses them
+    cache.close();
+    cache = new GeneratedJarCache(Locations.toLocation(cacheDir), maxAgeMillis);
+    File lastUsed2 = new File(dir2.append("last.used").toURI());
+    Assert.assertTrue(lastUsed2.setLastModified(System.currentTimeMillis() - maxAgeMillis - 1000));
+    File staleTemp = new File(cacheDir, "abc.tmp");
+    Assert.assertTrue(staleTemp.mkdirs());
+    Assert.assertTrue(staleTemp.setLastModified(System.currentTimeMillis() - maxAgeMillis - 1000));
+
+    Location dir3 = cache.get(new GeneratedJarCache.KeyBuilder().add("3").build(), fallbackDir,
+                              new CountingGenerator("3"));
+    Assert.assertTrue(dir1.exists());
+    Assert.assertFalse(dir2.exists());
+    Assert.assertFalse(staleTemp.exists());
+    Assert.assertEquals("3", read(dir3.append("file")));
+    cache.close();
+  }
+
+  @Test
+  public void testUsedEntriesNotExpired() throws IOException {
+    File cacheDir = TMP_FOLDER.newFolder();
+    long maxAgeMillis = TimeUnit.HOURS.toMillis(1);
+    Location fallbackDir = Locations.toLocation(TMP_FOLDER.newFolder());
+    GeneratedJarCache runningCache = new GeneratedJarCache(Locations.toLocation(cacheDir), maxAgeMillis);
+    GeneratedJarCache otherCache = new GeneratedJarCache(Locations.toLocation(cacheDir), maxAgeMillis);
+
+    Location dir1 = runningCache.get(new GeneratedJarCache.KeyBuilder().add("1").build(), fallbackDir,
+                                     new CountingGenerator("1"));
+    File lastUsed1 = new File(dir1.append("last.used").toURI());
+
+    // The last used time of an entry is updated while the program that uses it runs
+    long lastUsedTime = System.currentTimeMillis() - maxAgeMillis + TimeUnit.MINUTES.toMillis(1);
+    Assert.assertTrue(lastUsed1.setLastModified(lastUsedTime));
+    runningCache.touchUsedEntries();
+    Assert.assertTrue(lastUsed1.lastModified() > lastUsedTime);
+
+    // An entry in use is not deleted by its own cache even if it looks expired
+    Assert.assertTrue(lastUsed1.setLastModified(System.currentTimeMillis() - maxAgeMillis - 1000));
+    runningCache.get(new GeneratedJarCache.KeyBuilder().add("2").build(), fallbackDir, new CountingGenerator("2"));
+    Assert.assertTrue(dir1.exists());
+
+    // Once the program completes, the entry is no longer updated and expires
+    runningCache.close();
+    runningCache.touchUsedEntries();
+    Assert.assertTrue(lastUsed1.lastModified() < System.currentTimeMillis() - maxAgeMillis);
+    otherCache.get(new GeneratedJarCache.KeyBuilder().add("3").build(), fallbackDir, new CountingGenerator("3"));
+    Assert.assertFalse(dir1.exists());
+    otherCache.close();
+  }
+
+  @Test
+  public void testKey() throws IOException {
+    File file = TMP_FOLDER.newFile("dependency.jar");
+    Files.write("abc", file, Charsets.UTF_8);
+    HashCode key = new GeneratedJarCache.KeyBuilder().add("test").addFile(file).build();
+
+    Assert.assertEquals(key, new GeneratedJarCache.KeyBuilder().add("test").addFile(file).build());
+    Assert.assertNotEquals(key, new GeneratedJarCache.KeyBuilder().add("test2").addFile(file).build());
+
+    // The same file at a different path gives the same key
+    File copy = new File(TMP_FOLDER.newFolder(), "dependency.jar");
+    Files.copy(file, copy);
+    Assert.assertEquals(key, new GeneratedJarCache.KeyBuilder().add("test").addFile(copy).build());
+
+    Files.write("abcd", file, Charsets.UTF_8);
+    Assert.assertNotEquals(key, new GeneratedJarCache.KeyBuilder().add("test").addFile(file).build());
+
+    // A file changed in place without changing its size gives a different key
+    key = new GeneratedJarCache.KeyBuilder().add("test").addFile(file).build();
+    Files.write("abcf", file, Charsets.UTF_8);
+    Assert.assertTrue(file.setLastModified(file.lastModified() + 1000));
+    Assert.assertNotEquals(key, new GeneratedJarCache.KeyBuilder().add("test").addFile(file).build());
+
+    // Content of a location is part of the key
+    Location location = Locations.toLocation(file);
+    HashCode contentKey = new GeneratedJarCache.KeyBuilder().addContent(location).build();
+    Assert.assertEquals(contentKey, new GeneratedJarCache.KeyBuilder().addContent(location).build());
+    Files.write("abce", file, Charsets.UTF_8);
+    Assert.assertNotEquals(contentKey, new GeneratedJarCache.KeyBuilder().addContent(location).build());
+  }
+
+  @Test
+  public void testJarKey() throws IOException {
+    File jar = TMP_FOLDER.newFile("patched.jar");
+    writeJar(jar, "abc", 1000L);
+    HashCode key = new GeneratedJarCache.KeyBuilder().addFile(jar).build();
+
+    // A jar rebuilt with the same content gives the same key, even though the entry times differ
+    File rebuilt = new File(TMP_FOLDER.newFolder(), "patched.jar");
+    writeJar(rebuilt, "abc", 2000L);
+    Assert.assertEquals(key, new GeneratedJarCache.KeyBuilder().addFile(rebuilt).build());
+
+    // A jar patched in place with the same name and size gives a different key
+    long length = jar.length();
+    writeJar(jar, "abd", 1000L);
+    Assert.assertEquals(length, jar.length());
+    Assert.assertTrue(jar.setLastModified(jar.lastModified() + 1000));
+    Assert.assertNotEquals(key, new GeneratedJarCache.KeyBuilder().addFile(jar).build());
+  }
+
+  private void writeJar(File file, String content, long time) throws IOException {
+    try (JarOutputStream output = new JarOutputStream(new FileOutputStream(file))) {
+      JarEntry entry = new JarEntry("Patched.class");
+      entry.setTime(time);
+      output.putNextEntry(entry);
+      output.write(content.getBytes(Charsets.UTF_8));
+      output.closeEntry();
+    }
+  }
+
+  private String read(Location location) throws IOException {
+    return new String(Files.toByteArray(new File(location.toURI())), Charsets.UTF_8);
+  }
+
+  /**
+   * A {@link GeneratedJarCache.Generator} that writes a file and counts the number of calls.
+   */
+  private static final class CountingGenerator implements GeneratedJarCache.Generator {
+
+    private final String content;
+    private final AtomicInteger count = new AtomicInteger();
+
+    private CountingGenerator(String content) {
+      this.content = content;
+    }
+
+    @Override
+    public void generate(Location targetDir) throws IOException {
+      count.incrementAndGet();
+      Files.write(content, new File(targetDir.append("file").toURI()), Charsets.UTF_8);
+    }
+  }
+}
@@ -25,6 +25,7 @@ import co.cask.cdap.internal.AppFabricTestHelper;
 import co.cask.cdap.internal.app.services.AppFabricServer;
 import co.cask.cdap.proto.ProgramType;
 import co.cask.cdap.proto.id.ApplicationId;
+import co.cask.cdap.proto.id.EntityId;
 import co.cask.cdap.proto.id.NamespaceId;
 import co.cask.cdap.proto.id.ProgramId;
 import co.cask.cdap.proto.security.Action;
@@ -35,7 +36,9 @@ import co.cask.cdap.security.authorization.InMemoryAuthorizer;
 import co.cask.cdap.security.authorization.RemoteAuthorizationEnforcer;
 import co.cask.cdap.security.spi.authorization.AuthorizationEnforcer;
 import co.cask.cdap.security.spi.authorization.PrivilegesManager;
+import co.cask.cdap.security.spi.authorization.UnauthorizedException;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSet;
 import com.google.inject.Injector;
 import org.apache.hadoop.security.UserGroupInformation;
 import org.apache.twill.discovery.DiscoveryServiceClient;
@@ -77,6 +80,7 @@ public class RemotePrivilegesTest {
   private static PrivilegesManager privilegesManager;
   private static DiscoveryServiceClient discoveryService;
   private static AppFabricServer appFabricServer;
+  private static Injector injector;
 
   @BeforeClass
   public static void setup() throws IOException, InterruptedException {
@@ -94,7 +98,7 @@ public class RemotePrivilegesTest {
     LocationFactory locationFactory = new LocalLocationFactory(TEMPORARY_FOLDER.newFolder());
     Location externalAuthJar = AppJarHelper.createDeploymentJar(locationFactory, InMemoryAuthorizer.class, manifest);
     cConf.set(Constants.Security.Authorization.EXTENSION_JAR_PATH, externalAuthJar.toString());
-    Injector injector = AppFabricTestHelper.getInjector(cConf);
+    injector = AppFabricTestHelper.getInjector(cConf);
     discoveryService = injector.getInstance(DiscoveryServiceClient.class);
     appFabricServer = injector.getInstance(AppFabricServer.class);
     appFabricServer.startAndWait();
@@ -171,6 +175,39 @@ public class RemotePrivilegesTest {
       new AuthorizationPrivilege(ALICE, NS, Action.WRITE)));
   }
 
+  @Test
+  public void testVisibility() throws Exception {
+    // Use a separate enforcer, so that its cache does not affect the other tests
+    RemoteAuthorizationEnforcer enforcer = injector.getInstance(RemoteAuthorizationEnforcer.class);
+    Principal carol = new Principal("carol", Principal.PrincipalType.USER);
+    NamespaceId namespace = new NamespaceId("visibility");
+    ApplicationId app1 = namespace.app("app1");
+    ApplicationId app2 = namespace.app("app2");
+    ProgramId program = app2.program(ProgramType.FLOW, "flo");
+    privilegesManager.grant(app1, carol, Collections.singleton(Action.READ));
+    Set<EntityId> entities = ImmutableSet.<EntityId>of(namespace, app1, app2, program);
+    Assert.assertEquals(ImmutableSet.of(app1), enforcer.isVisible(entities, carol));
+    // Entities found to be invisible are cached as unauthorized for every action
+    Map<AuthorizationPrivilege, Boolean> cache = enforcer.cacheAsMap();
+    for (Action action : Action.values()) {
+      Assert.assertEquals(false, cache.get(new AuthorizationPrivilege(carol, app2, action)));
+    }
+    for (EntityId entityId : entities) {
+      try {
+        enforcer.enforce(entityId, carol, Action.WRITE);
+        Assert.fail(String.format("Expected %s to be unauthorized to write %s", carol, entityId));
+      } catch (UnauthorizedException expected) {
+        // expected
+      }
+    }
+    // Privileges on the parent make the children visible
+    privilegesManager.grant(app2, carol, Collections.singleton(Action.ADMIN));
+    enforcer = injector.getInstance(RemoteAuthorizationEnforcer.class);
+    Assert.assertEquals(ImmutableSet.of(app1, app2, program), enforcer.isVisible(entities, carol));
+    privilegesManager.revoke(app1);
+    privilegesManager.revoke(app2);
+  }
+
   @AfterClass
   public static void tearDown() {
     appFabricServer.stopAndWait();
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2016 Cask Data, Inc.
+ * Copyright © 2016-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -18,7 +18,13 @@ package co.cask.cdap.datapipeline;
 
 import co.cask.cdap.api.data.format.StructuredRecord;
 import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.etl.batch.SchemaDictionary;
 import co.cask.cdap.etl.batch.StructuredRecordWritable;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.WritableComparator;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -52,4 +58,105 @@ public class StructuredRecordWritableTest {
 
     Assert.assertEquals(writableIn.get(), record);
   }
+
+  @Test
+  public void testAllTypes() throws IOException {
+    Schema innerSchema = Schema.recordOf("inner", Schema.Field.of("d", Schema.of(Schema.Type.DOUBLE)));
+    Schema schema = Schema.recordOf(
+      "rec",
+      Schema.Field.of("b", Schema.of(Schema.Type.BOOLEAN)),
+      Schema.Field.of("i", Schema.of(Schema.Type.INT)),
+      Schema.Field.of("l", Schema.of(Schema.Type.LONG)),
+      Schema.Field.of("f", Schema.of(Schema.Type.FLOAT)),
+      Schema.Field.of("s", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+      Schema.Field.of("n", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+      Schema.Field.of("a", Schema.arrayOf(Schema.of(Schema.Type.LONG))),
+      Schema.Field.of("m", Schema.mapOf(Schema.of(Schema.Type.STRING), Schema.of(Schema.Type.INT))),
+      Schema.Field.of("r", innerSchema));
+    StructuredRecord record = StructuredRecord.builder(schema)
+      .set("b", true)
+      .set("i", -5)
+      .set("l", Long.MAX_VALUE)
+      .set("f", 1.5f)
+      .set("s", "abc")
+      .set("a", ImmutableList.of(1L, -2L, 3L))
+      .set("m", ImmutableMap.of("x", 1, "y", 2))
+      .set("r", StructuredRecord.builder(innerSchema).set("d", 2.5d).build())
+      .build();
+
+    Assert.assertEquals(record, deserialize(serialize(record)).get());
+  }
+
+  @Test
+  public void testSchemaDictionary() throws IOException {
+    Schema schema = Schema.recordOf("dictrec", Schema.Field.of("x", Schema.of(Schema.Type.INT)));
+    StructuredRecord record = StructuredRecord.builder(schema).set("x", 1).build();
+    DataOutputBuffer inlineBytes = serialize(record);
+
+    Configuration hConf = new Configuration();
+    SchemaDictionary.save(hConf, ImmutableList.of(schema));
+    SchemaDictionary.load(hConf);
+
+    DataOutputBuffer sharedBytes = serialize(record);
+    // the schema is no longer written with the record
+    Assert.assertTrue(sharedBytes.getLength() < inlineBytes.getLength());
+    Assert.assertEquals(record, deserialize(sharedBytes).get());
+    // records written with and without the dictionary are equal
+    Assert.assertEquals(0, compare(inlineBytes, sharedBytes));
+
+    // schemas are kept until every task that loaded them unloads them
+    SchemaDictionary.load(hConf);
+    SchemaDictionary.unload(hConf);
+    Assert.assertEquals(sharedBytes.getLength(), serialize(record).getLength());
+    SchemaDictionary.unload(hConf);
+    Assert.assertEquals(inlineBytes.getLength(), serialize(record).getLength());
+    // records written without the dictionary can still be read, since they carry the schema
+    Assert.assertEquals(record, deserialize(inlineBytes).get());
+  }
+
+  @Test
+  public void testRawComparator() throws IOException {
+    Schema schema = Schema.recordOf("rec", Schema.Field.of("x", Schema.of(Schema.Type.STRING)),
+                                    Schema.Field.of("y", Schema.of(Schema.Type.INT)));
+    StructuredRecord record1 = StructuredRecord.builder(schema).set("x", "a").set("y", 1).build();
+    StructuredRecord record2 = StructuredRecord.builder(schema).set("x", "a").set("y", 1).build();
+    StructuredRecord record3 = StructuredRecord.builder(schema).set("x", "b").set("y", 1).build();
+
+    Assert.assertEquals(0, compare(serialize(record1), serialize(record2)));
+    int cmp = compare(serialize(record1), serialize(record3));
+    Assert.assertNotEquals(0, cmp);
+    Assert.assertEquals(-cmp, compare(serialize(record3), serialize(record1)));
+    Assert.assertEquals(Integer.signum(cmp),
+                        Integer.signum(new StructuredRecordWritable(record1).compareTo(
+                          new StructuredRecordWritable(record3))));
+
+    // comparison reflects the current record after it is replaced
+    StructuredRecordWritable writable = new StructuredRecordWritable(record1);
+    Assert.assertEquals(0, writable.compareTo(new StructuredRecordWritable(record2)));
+    writable.set(record3);
+    Assert.assertEquals(Integer.signum(-cmp),
+                        Integer.signum(writable.compareTo(new StructuredRecordWritable(record1))));
+
+    Schema otherSchema = Schema.recordOf("rec", Schema.Field.of("x", Schema.of(Schema.Type.STRING)));
+    StructuredRecord other = StructuredRecord.builder(otherSchema).set("x", "a").build();
+    Assert.assertNotEquals(0, compare(serialize(record1), serialize(other)));
+  }
+
+  private int compare(DataOutputBuffer bytes1, DataOutputBuffer bytes2) {
+    WritableComparator comparator = WritableComparator.get(StructuredRecordWritable.class);
+    Assert.assertTrue(comparator instanceof StructuredRecordWritable.Comparator);
+    return comparator.compare(bytes1.getData(), 0, bytes1.getLength(), bytes2.getData(), 0, bytes2.getLength());
+  }
+
+  private DataOutputBuffer serialize(StructuredRecord record) throws IOException {
+    DataOutputBuffer output = new DataOutputBuffer();
+    new StructuredRecordWritable(record).write(output);
+    return output;
+  }
+
+  private StructuredRecordWritable deserialize(DataOutputBuffer bytes) throws IOException {
+    StructuredRecordWritable writable = new StructuredRecordWritable();
+    writable.readFields(new DataInputStream(new ByteArrayInputStream(bytes.getData(), 0, bytes.getLength())));
+    return writable;
+  }
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015 Cask Data, Inc.
+ * Copyright © 2015-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -33,14 +33,14 @@ public final class CacheConfig {
   }
 
   /**
-   * @return expiry after write in seconds
+   * @return expiry after write in seconds. Zero means that entries do not expire.
    */
   public long getExpirySeconds() {
     return expirySeconds;
   }
 
   /**
-   * @return maximum number of elements in the cache
+   * @return maximum number of elements in the cache, which must be positive if caching is enabled
    */
   public int getMaxSize() {
     return maxSize;
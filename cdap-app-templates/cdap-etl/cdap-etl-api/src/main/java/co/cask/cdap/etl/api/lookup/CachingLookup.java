@@ -0,0 +1,193 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.etl.api.lookup;
+
+import co.cask.cdap.etl.api.CacheConfig;
+import co.cask.cdap.etl.api.Lookup;
+import co.cask.cdap.etl.api.LookupProvider;
+import co.cask.cdap.etl.api.LookupTableConfig;
+import co.cask.cdap.etl.api.StageMetrics;
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Lookup} that caches the results of another {@link Lookup}, as configured by a {@link CacheConfig}.
+ * Keys that are not found are cached as well. Batch lookups only go to the underlying {@link Lookup}
+ * for the keys that are not in the cache.
+ *
+ * Cache hits, misses, and the time spent loading values are emitted as metrics of the stage.
+ *
+ * Stages enable caching through the arguments of {@link LookupProvider#provide(String, Map)}, by setting
+ * {@link #CACHE_MAX_SIZE} and optionally {@link #CACHE_EXPIRY_SECONDS}. The arguments for a {@link LookupTableConfig}
+ * are given by {@link #getArguments(LookupTableConfig)}.
+ *
+ * @param <T> the type of object that will be returned for a lookup
+ */
+public class CachingLookup<T> implements Lookup<T> {
+
+  public static final String HITS = "lookup.cache.hits";
+  public static final String MISSES = "lookup.cache.misses";
+  public static final String LOAD_TIME = "lookup.cache.load.time.total";
+
+  /**
+   * Lookup argument that enables caching, with the maximum number of keys in the cache. It must be positive.
+   */
+  public static final String CACHE_MAX_SIZE = "lookup.cache.max.size";
+
+  /**
+   * Lookup argument for the number of seconds after which a cached key expires. If it is not set or is zero,
+   * cached keys only expire when they are evicted because the cache is full.
+   */
+  public static final String CACHE_EXPIRY_SECONDS = "lookup.cache.expiry.seconds";
+
+  private final Lookup<T> delegate;
+  private final StageMetrics metrics;
+  private final Cache<String, Optional<T>> cache;
+
+  /**
+   * Creates a caching lookup.
+   *
+   * @param delegate the {@link Lookup} to cache
+   * @param cacheConfig the config of the cache. The max size must be positive, and the expiry must not be negative.
+   *                    An expiry of zero means that keys do not expire.
+   * @param metrics the metrics of the stage
+   * @throws IllegalArgumentException if the config is invalid
+   */
+  public CachingLookup(Lookup<T> delegate, CacheConfig cacheConfig, StageMetrics metrics) {
+    Preconditions.checkArgument(cacheConfig.getMaxSize() > 0,
+                                "Lookup cache max size must be positive, but is %s.", cacheConfig.getMaxSize());
+    Preconditions.checkArgument(cacheConfig.getExpirySeconds() >= 0,
+                                "Lookup cache expiry must not be negative, but is %s.", cacheConfig.getExpirySeconds());
+    this.delegate = delegate;
+    this.metrics = metrics;
+
+    CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().maximumSize(cacheConfig.getMaxSize());
+    if (cacheConfig.getExpirySeconds() > 0) {
+      builder.expireAfterWrite(cacheConfig.getExpirySeconds(), TimeUnit.SECONDS);
+    }
+    this.cache = builder.build();
+  }
+
+  /**
+   * Returns the arguments for {@link LookupProvider#provide(String, Map)} that provide a lookup of the given table,
+   * cached as described by the table config.
+   */
+  public static Map<String, String> getArguments(LookupTableConfig tableConfig) {
+    Map<String, String> arguments = new HashMap<>(tableConfig.getDatasetProperties());
+    if (tableConfig.isCacheEnabled()) {
+      arguments.put(CACHE_MAX_SIZE, String.valueOf(tableConfig.getCacheConfig().getMaxSize()));
+      arguments.put(CACHE_EXPIRY_SECONDS, String.valueOf(tableConfig.getCacheConfig().getExpirySeconds()));
+    }
+    return arguments;
+  }
+
+  /**
+   * Provides a {@link Lookup} from the given {@link LookupProvider}. If the arguments enable caching, the lookup is
+   * wrapped in a {@link CachingLookup}, and the cache arguments are removed from the arguments of the table.
+   *
+   * @throws IllegalArgumentException if the cache arguments are invalid
+   */
+  public static <T> Lookup<T> provide(LookupProvider provider, String table, Map<String, String> arguments,
+                                      StageMetrics metrics) {
+    String maxSize = arguments.get(CACHE_MAX_SIZE);
+    String expirySeconds = arguments.get(CACHE_EXPIRY_SECONDS);
+    if (maxSize == null && expirySeconds == null) {
+      return provider.provide(table, arguments);
+    }
+    Preconditions.checkArgument(maxSize != null, "Lookup argument '%s' must be set when '%s' is set.",
+                                CACHE_MAX_SIZE, CACHE_EXPIRY_SECONDS);
+
+    CacheConfig cacheConfig;
+    try {
+      cacheConfig = new CacheConfig(expirySeconds == null ? 0L : Long.parseLong(expirySeconds),
+                                    Integer.parseInt(maxSize));
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid lookup cache arguments for table " + table, e);
+    }
+
+    Map<String, String> tableArguments = new HashMap<>(arguments);
+    tableArguments.remove(CACHE_MAX_SIZE);
+    tableArguments.remove(CACHE_EXPIRY_SECONDS);
+    Lookup<T> tableLookup = provider.provide(table, tableArguments);
+    return new CachingLookup<>(tableLookup, cacheConfig, metrics);
+  }
+
+  @Override
+  public T lookup(String key) {
+    Optional<T> cached = cache.getIfPresent(key);
+    if (cached != null) {
+      metrics.count(HITS, 1);
+      return cached.orNull();
+    }
+
+    metrics.count(MISSES, 1);
+    long startTime = System.nanoTime();
+    T value = delegate.lookup(key);
+    emitLoadTime(startTime);
+    cache.put(key, Optional.fromNullable(value));
+    return value;
+  }
+
+  @Override
+  public Map<String, T> lookup(String... keys) {
+    return lookup(ImmutableSet.copyOf(keys));
+  }
+
+  @Override
+  public Map<String, T> lookup(Set<String> keys) {
+    Map<String, Optional<T>> cached = cache.getAllPresent(keys);
+    Map<String, T> results = new HashMap<>();
+    for (Map.Entry<String, Optional<T>> entry : cached.entrySet()) {
+      if (entry.getValue().isPresent()) {
+        results.put(entry.getKey(), entry.getValue().get());
+      }
+    }
+
+    Set<String> missingKeys = ImmutableSet.copyOf(Sets.difference(keys, cached.keySet()));
+    metrics.count(HITS, cached.size());
+    metrics.count(MISSES, missingKeys.size());
+    if (missingKeys.isEmpty()) {
+      return results;
+    }
+
+    long startTime = System.nanoTime();
+    Map<String, T> loaded = delegate.lookup(missingKeys);
+    emitLoadTime(startTime);
+    for (String key : missingKeys) {
+      T value = loaded.get(key);
+      cache.put(key, Optional.fromNullable(value));
+      if (value != null) {
+        results.put(key, value);
+      }
+    }
+    return results;
+  }
+
+  private void emitLoadTime(long startTime) {
+    long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startTime);
+    metrics.count(LOAD_TIME, (int) Math.min(micros, Integer.MAX_VALUE));
+  }
+}
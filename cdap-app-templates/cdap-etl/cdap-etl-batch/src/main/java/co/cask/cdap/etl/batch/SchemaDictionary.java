@@ -0,0 +1,169 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.etl.batch;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.api.data.schema.SchemaHash;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.reflect.TypeToken;
+import com.google.gson.Gson;
+import org.apache.hadoop.conf.Configuration;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * A per-task registry of record {@link Schema}s, keyed by {@link SchemaHash}. Schemas that are known when the
+ * job is configured are stored in the job {@link Configuration}, so that {@link StructuredRecordWritable} only needs
+ * to write their fingerprint. Any other schema is written inline once per record and parsed only the first time
+ * it is seen, after which the parsed {@link Schema} is shared by all records that carry it.
+ *
+ * Since tasks of different jobs can run in the same JVM, the schemas of a job are only kept between
+ * {@link #load(Configuration)} and {@link #unload(Configuration)}, and at most {@link #MAX_SEEN_SCHEMAS} of the
+ * other schemas are kept. The latter only saves parsing, hence a record cannot be read by looking up its schema
+ * among them.
+ */
+public final class SchemaDictionary {
+
+  static final String SCHEMAS_KEY = "cdap.etl.schema.dictionary";
+  static final int MAX_SEEN_SCHEMAS = 1000;
+  private static final Type LIST_TYPE = new TypeToken<List<String>>() { }.getType();
+  private static final Gson GSON = new Gson();
+
+  // schemas registered in the configuration of the jobs whose tasks are running, which can be referenced by hash
+  // alone, with the number of tasks that loaded them. Guarded by the class.
+  private static final Map<SchemaHash, SharedSchema> SHARED = new HashMap<>();
+  // schemas that were read inline with records
+  private static final Cache<SchemaHash, Schema> SEEN = CacheBuilder.newBuilder()
+    .maximumSize(MAX_SEEN_SCHEMAS)
+    .build();
+
+  private SchemaDictionary() {
+  }
+
+  /**
+   * Stores the given schemas in the job configuration so that tasks can load them with {@link #load(Configuration)}.
+   */
+  public static void save(Configuration hConf, Collection<Schema> schemas) {
+    List<String> schemaStrings = new ArrayList<>(schemas.size());
+    for (Schema schema : schemas) {
+      schemaStrings.add(schema.toString());
+    }
+    hConf.set(SCHEMAS_KEY, GSON.toJson(schemaStrings));
+  }
+
+  /**
+   * Loads the schemas stored by {@link #save(Configuration, Collection)} into the dictionary of the current task.
+   * Every call must be followed by a call to {@link #unload(Configuration)} with the same configuration once the
+   * task is done.
+   */
+  public static void load(Configuration hConf) throws IOException {
+    for (Schema schema : getSchemas(hConf)) {
+      synchronized (SchemaDictionary.class) {
+        SharedSchema shared = SHARED.get(schema.getSchemaHash());
+        if (shared == null) {
+          shared = new SharedSchema(schema);
+          SHARED.put(schema.getSchemaHash(), shared);
+        }
+        shared.references++;
+      }
+    }
+  }
+
+  /**
+   * Releases the schemas loaded by {@link #load(Configuration)}. Schemas that are not loaded by any other task are
+   * removed from the dictionary.
+   */
+  public static void unload(Configuration hConf) throws IOException {
+    for (Schema schema : getSchemas(hConf)) {
+      synchronized (SchemaDictionary.class) {
+        SharedSchema shared = SHARED.get(schema.getSchemaHash());
+        if (shared != null && --shared.references <= 0) {
+          SHARED.remove(schema.getSchemaHash());
+        }
+      }
+    }
+  }
+
+  /**
+   * @return whether the schema with the given hash is available to every task of the job
+   */
+  static synchronized boolean isShared(SchemaHash hash) {
+    return SHARED.containsKey(hash);
+  }
+
+  /**
+   * @return the schema with the given hash if it is available to every task of the job, or {@code null} otherwise
+   */
+  @Nullable
+  static synchronized Schema get(SchemaHash hash) {
+    SharedSchema shared = SHARED.get(hash);
+    return shared == null ? null : shared.schema;
+  }
+
+  /**
+   * Parses the given schema json, unless a schema with the same hash is already known.
+   *
+   * @return the parsed schema, or the previously known one with the same hash
+   */
+  static Schema intern(SchemaHash hash, byte[] schemaBytes) throws IOException {
+    Schema schema = get(hash);
+    if (schema == null) {
+      schema = SEEN.getIfPresent(hash);
+    }
+    if (schema != null) {
+      return schema;
+    }
+    schema = Schema.parseJson(Bytes.toString(schemaBytes));
+    Schema existing = SEEN.asMap().putIfAbsent(hash, schema);
+    return existing == null ? schema : existing;
+  }
+
+  private static List<Schema> getSchemas(Configuration hConf) throws IOException {
+    String schemasStr = hConf.get(SCHEMAS_KEY);
+    if (schemasStr == null) {
+      return Collections.emptyList();
+    }
+    List<String> schemaStrings = GSON.fromJson(schemasStr, LIST_TYPE);
+    List<Schema> schemas = new ArrayList<>(schemaStrings.size());
+    for (String schemaStr : schemaStrings) {
+      schemas.add(Schema.parseJson(schemaStr));
+    }
+    return schemas;
+  }
+
+  /**
+   * A schema loaded from a job configuration, with the number of tasks that loaded it.
+   */
+  private static final class SharedSchema {
+    private final Schema schema;
+    private int references;
+
+    private SharedSchema(Schema schema) {
+      this.schema = schema;
+    }
+  }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2016 Cask Data, Inc.
+ * Copyright © 2016-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -19,20 +19,44 @@ package co.cask.cdap.etl.batch;
 import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.data.format.StructuredRecord;
 import co.cask.cdap.api.data.schema.Schema;
-import co.cask.cdap.format.StructuredRecordStringConverter;
+import co.cask.cdap.api.data.schema.SchemaHash;
+import co.cask.cdap.format.io.StructuredRecordDatumReader;
+import co.cask.cdap.format.io.StructuredRecordDatumWriter;
+import org.apache.hadoop.io.DataOutputBuffer;
 import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
 
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
 import java.util.Objects;
+import javax.annotation.Nullable;
 
 /**
  * Wrapper around a {@link StructuredRecord} so that it can be used as the output key and/or value of a mapper.
- * This is not very performant and must be improved soon (CDAP-5347).
+ *
+ * The record is serialized as the 16 byte {@link SchemaHash} of its schema, followed by the schema itself if it
+ * is not registered in the {@link SchemaDictionary}, followed by the binary encoding of the record. Keys are sorted
+ * and grouped with {@link Comparator}, which compares the serialized bytes without deserializing the records.
  */
 public class StructuredRecordWritable implements WritableComparable<StructuredRecordWritable> {
+
+  private static final int HASH_LENGTH = 16;
+  private static final StructuredRecordDatumWriter DATUM_WRITER = new StructuredRecordDatumWriter();
+  private static final StructuredRecordDatumReader DATUM_READER = new StructuredRecordDatumReader();
+
+  static {
+    WritableComparator.define(StructuredRecordWritable.class, new Comparator());
+  }
+
+  private static final Comparator COMPARATOR = new Comparator();
+
   private StructuredRecord record;
+  // serialized form of the record without the schema, used by compareTo. Created lazily.
+  private DataOutputBuffer serialized;
 
   // required by Hadoop
   @SuppressWarnings("unused")
@@ -45,42 +69,121 @@ public class StructuredRecordWritable implements WritableComparable<StructuredRe
 
   public void set(StructuredRecord record) {
     this.record = record;
+    this.serialized = null;
   }
 
   public StructuredRecord get() {
     return record;
   }
 
-  @SuppressWarnings("ConstantConditions")
   @Override
   public void write(DataOutput out) throws IOException {
-    byte[] schemaBytes = Bytes.toBytes(record.getSchema().toString());
-    out.writeInt(schemaBytes.length);
-    out.write(schemaBytes);
-
-    byte[] recordBytes = Bytes.toBytes(StructuredRecordStringConverter.toJsonString(record));
-    out.writeInt(recordBytes.length);
-    out.write(recordBytes);
+    writeRecord(out, record, !SchemaDictionary.isShared(record.getSchema().getSchemaHash()));
   }
 
   @Override
   public void readFields(DataInput in) throws IOException {
-    int schemaLen = in.readInt();
-    byte[] schemaBytes = new byte[schemaLen];
-    in.readFully(schemaBytes, 0, schemaLen);
-    String schemaStr = Bytes.toString(schemaBytes);
-    Schema schema = Schema.parseJson(schemaStr);
-
-    int recordLen = in.readInt();
-    byte[] recordBytes = new byte[recordLen];
-    in.readFully(recordBytes, 0, recordLen);
-    String recordStr = Bytes.toString(recordBytes);
-    this.record = StructuredRecordStringConverter.fromJsonString(recordStr, schema);
+    this.record = readRecord(in);
+    this.serialized = null;
+  }
+
+  /**
+   * Writes a record in the same format as {@link #write(DataOutput)}.
+   *
+   * @param out the output to write to
+   * @param record the record to write
+   * @param writeSchema whether to write the schema with the record. If {@code false}, only the schema hash is
+   *                    written, and the schema must be known by the reader when the record is read
+   * @throws IOException if there was an error writing the record
+   */
+  public static void writeRecord(DataOutput out, StructuredRecord record, boolean writeSchema) throws IOException {
+    Schema schema = record.getSchema();
+    out.write(schema.getSchemaHash().toByteArray());
+
+    out.writeBoolean(writeSchema);
+    if (writeSchema) {
+      byte[] schemaBytes = Bytes.toBytes(schema.toString());
+      WritableUtils.writeVInt(out, schemaBytes.length);
+      out.write(schemaBytes);
+    }
+
+    DATUM_WRITER.encode(record, new DataOutputEncoder(out));
+  }
+
+  /**
+   * Reads a record written by {@link #writeRecord(DataOutput, StructuredRecord, boolean)}. A schema written with the
+   * record is only parsed if no schema with the same hash is known by the {@link SchemaDictionary} yet, so that records
+   * carrying the same schema share one parsed {@link Schema}. This does not allow a schema to be omitted by the writer.
+   *
+   * @param in the input to read from
+   * @return the record read
+   * @throws IOException if there was an error reading the record, or if its schema is unknown
+   */
+  public static StructuredRecord readRecord(DataInput in) throws IOException {
+    return readRecord(in, null);
+  }
+
+  /**
+   * Reads a record written by {@link #writeRecord(DataOutput, StructuredRecord, boolean)}, where the writer may omit
+   * the schema of a record if it was written with an earlier record. Schemas written with a record are added to the
+   * given map, and the schema of a record written with the schema hash only is looked up in it.
+   *
+   * @param in the input to read from
+   * @param readSchemas the schemas read with earlier records, to which the schema read with this record is added
+   * @return the record read
+   * @throws IOException if there was an error reading the record, or if its schema is unknown
+   */
+  public static StructuredRecord readRecord(DataInput in,
+                                            @Nullable Map<SchemaHash, Schema> readSchemas) throws IOException {
+    byte[] hashBytes = new byte[HASH_LENGTH];
+    in.readFully(hashBytes);
+    SchemaHash hash = new SchemaHash(ByteBuffer.wrap(hashBytes));
+
+    Schema schema;
+    if (in.readBoolean()) {
+      byte[] schemaBytes = new byte[WritableUtils.readVInt(in)];
+      in.readFully(schemaBytes);
+      schema = SchemaDictionary.intern(hash, schemaBytes);
+      if (readSchemas != null) {
+        readSchemas.put(hash, schema);
+      }
+    } else {
+      schema = readSchemas == null ? null : readSchemas.get(hash);
+      if (schema == null) {
+        schema = SchemaDictionary.get(hash);
+      }
+      if (schema == null) {
+        throw new IOException("Schema with hash " + hash + " is neither read with an earlier record nor " +
+                                "registered in the schema dictionary.");
+      }
+    }
+
+    return DATUM_READER.read(new DataInputDecoder(in), schema);
   }
 
   @Override
   public int compareTo(StructuredRecordWritable o) {
-    return Integer.compare(hashCode(), o.hashCode());
+    DataOutputBuffer thisBytes = getSerialized();
+    DataOutputBuffer thatBytes = o.getSerialized();
+    return COMPARATOR.compare(thisBytes.getData(), 0, thisBytes.getLength(),
+                              thatBytes.getData(), 0, thatBytes.getLength());
+  }
+
+  /**
+   * Returns the serialized form of the record, which is created only once since records are immutable. The schema is
+   * not included, as it is ignored by the {@link Comparator}.
+   */
+  private DataOutputBuffer getSerialized() {
+    if (serialized == null) {
+      DataOutputBuffer buffer = new DataOutputBuffer();
+      try {
+        writeRecord(buffer, record, false);
+      } catch (IOException e) {
+        throw new IllegalStateException("Failed to serialize record for comparison", e);
+      }
+      serialized = buffer;
+    }
+    return serialized;
   }
 
   @Override
@@ -101,4 +204,44 @@ public class StructuredRecordWritable implements WritableComparable<StructuredRe
   public int hashCode() {
     return record != null ? record.hashCode() : 0;
   }
+
+  /**
+   * A {@link WritableComparator} that orders serialized {@link StructuredRecordWritable}s by schema hash and then
+   * by the bytes of the encoded record, ignoring whether the schema was written inline or not. Records with the same
+   * schema and the same field values always compare as equal. Note that map fields are encoded in iteration order,
+   * so two maps with the same entries but a different iteration order are not considered equal.
+   */
+  public static class Comparator extends WritableComparator {
+
+    public Comparator() {
+      super(StructuredRecordWritable.class);
+    }
+
+    @Override
+    public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+      int cmp = compareBytes(b1, s1, HASH_LENGTH, b2, s2, HASH_LENGTH);
+      if (cmp != 0) {
+        return cmp;
+      }
+      try {
+        int recordStart1 = getRecordStart(b1, s1);
+        int recordStart2 = getRecordStart(b2, s2);
+        return compareBytes(b1, recordStart1, l1 - (recordStart1 - s1), b2, recordStart2, l2 - (recordStart2 - s2));
+      } catch (IOException e) {
+        throw new IllegalArgumentException(e);
+      }
+    }
+
+    /**
+     * Returns the offset where the encoded record starts, skipping the schema hash and the optional inline schema.
+     */
+    private int getRecordStart(byte[] bytes, int start) throws IOException {
+      int pos = start + HASH_LENGTH;
+      if (bytes[pos++] == 0) {
+        return pos;
+      }
+      int schemaLength = readVInt(bytes, pos);
+      return pos + WritableUtils.decodeVIntSize(bytes[pos]) + schemaLength;
+    }
+  }
 }
@@ -0,0 +1,118 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.etl.batch.connector;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.SchemaHash;
+import co.cask.cdap.etl.batch.StructuredRecordWritable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.DefaultCodec;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.util.ReflectionUtils;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Output format for connector data. Records are written to block compressed {@link SequenceFile}s, with the stage
+ * name as a {@link Text} key and the binary encoded record as a {@link BytesWritable} value, so that they can be read
+ * back with a regular {@link org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat}.
+ *
+ * Schemas are written once per compressed block, with the first record of that schema in the block. Since readers of
+ * a split always start at a block boundary, every record can be decoded by reading only the block it is in.
+ * The compression codec can be set with {@link FileOutputFormat#COMPRESS_CODEC}, and defaults to deflate.
+ */
+public class ConnectorOutputFormat extends FileOutputFormat<String, StructuredRecord> {
+
+  static final String BLOCK_SIZE = "io.seqfile.compress.blocksize";
+  private static final int DEFAULT_BLOCK_SIZE = 1000000;
+
+  @Override
+  public RecordWriter<String, StructuredRecord> getRecordWriter(TaskAttemptContext context) throws IOException {
+    Configuration conf = context.getConfiguration();
+    Class<? extends CompressionCodec> codecClass = getOutputCompressorClass(context, DefaultCodec.class);
+    CompressionCodec codec = ReflectionUtils.newInstance(codecClass, conf);
+    int blockSize = conf.getInt(BLOCK_SIZE, DEFAULT_BLOCK_SIZE);
+
+    // block boundaries are controlled by the record writer, so that it knows when schemas need to be rewritten
+    Configuration writerConf = new Configuration(conf);
+    writerConf.setInt(BLOCK_SIZE, Integer.MAX_VALUE);
+
+    Path file = getDefaultWorkFile(context, "");
+    SequenceFile.Writer writer = SequenceFile.createWriter(
+      writerConf, SequenceFile.Writer.file(file),
+      SequenceFile.Writer.keyClass(Text.class), SequenceFile.Writer.valueClass(BytesWritable.class),
+      SequenceFile.Writer.compression(SequenceFile.CompressionType.BLOCK, codec));
+    return new ConnectorRecordWriter(writer, blockSize);
+  }
+
+  /**
+   * Writes records to a block compressed {@link SequenceFile}, including the schema with a record only if
+   * it has not already been written in the current block.
+   */
+  private static final class ConnectorRecordWriter extends RecordWriter<String, StructuredRecord> {
+    private final SequenceFile.Writer writer;
+    private final int blockSize;
+    private final Set<SchemaHash> blockSchemas;
+    private final Text key;
+    private final BytesWritable value;
+    private final DataOutputBuffer valueBuffer;
+    private long blockBytes;
+
+    ConnectorRecordWriter(SequenceFile.Writer writer, int blockSize) {
+      this.writer = writer;
+      this.blockSize = blockSize;
+      this.blockSchemas = new HashSet<>();
+      this.key = new Text();
+      this.value = new BytesWritable();
+      this.valueBuffer = new DataOutputBuffer();
+    }
+
+    @Override
+    public void write(String stageName, StructuredRecord record) throws IOException {
+      boolean writeSchema = blockSchemas.add(record.getSchema().getSchemaHash());
+      valueBuffer.reset();
+      StructuredRecordWritable.writeRecord(valueBuffer, record, writeSchema);
+
+      key.set(stageName);
+      value.set(valueBuffer.getData(), 0, valueBuffer.getLength());
+      writer.append(key, value);
+
+      blockBytes += key.getLength() + valueBuffer.getLength();
+      if (blockBytes >= blockSize) {
+        // compresses the current block and starts a new one after a sync marker
+        writer.sync();
+        blockSchemas.clear();
+        blockBytes = 0;
+      }
+    }
+
+    @Override
+    public void close(TaskAttemptContext context) throws IOException {
+      writer.close();
+    }
+  }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015-2016 Cask Data, Inc.
+ * Copyright © 2015-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -38,7 +38,9 @@ import co.cask.cdap.etl.batch.BatchPhaseSpec;
 import co.cask.cdap.etl.batch.DefaultAggregatorContext;
 import co.cask.cdap.etl.batch.DefaultJoinerContext;
 import co.cask.cdap.etl.batch.PipelinePluginInstantiator;
+import co.cask.cdap.etl.batch.SchemaDictionary;
 import co.cask.cdap.etl.batch.StageFailureException;
+import co.cask.cdap.etl.batch.StructuredRecordWritable;
 import co.cask.cdap.etl.batch.conversion.WritableConversion;
 import co.cask.cdap.etl.batch.conversion.WritableConversions;
 import co.cask.cdap.etl.common.CompositeFinisher;
@@ -64,6 +66,7 @@ import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.io.WritableComparable;
 import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.JobContext;
 import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.hadoop.mapreduce.Reducer;
 import org.slf4j.Logger;
@@ -72,9 +75,11 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import javax.annotation.Nullable;
 
 /**
  * MapReduce Driver for ETL Batch Applications.
@@ -253,6 +258,15 @@ public class ETLMapReduce extends AbstractMapReduce {
       job.setReducerClass(ETLReducer.class);
       String reducerName = reducers.iterator().next().getName();
       StageSpec stageInfo = phase.getStage(reducerName);
+      // records sent to the reducer stage are known to have one of its input schemas,
+      // so they only need to carry the schema fingerprint through the shuffle
+      Set<Schema> shuffleSchemas = new HashSet<>();
+      for (Schema inputSchema : stageInfo.getInputSchemas().values()) {
+        if (inputSchema != null) {
+          shuffleSchemas.add(inputSchema);
+        }
+      }
+      SchemaDictionary.save(hConf, shuffleSchemas);
       Class<?> outputKeyClass;
       Class<?> outputValClass;
       try {
@@ -310,6 +324,10 @@ public class ETLMapReduce extends AbstractMapReduce {
                           Throwables.getRootCause(e).getMessage(), Throwables.getRootCause(e));
         throw e;
       }
+      if (job.getMapOutputKeyClass() == StructuredRecordWritable.class) {
+        // sort and group on the serialized bytes instead of deserializing every key
+        job.setSortComparatorClass(StructuredRecordWritable.Comparator.class);
+      }
     } else {
       job.setNumReduceTasks(0);
     }
@@ -361,6 +379,7 @@ public class ETLMapReduce extends AbstractMapReduce {
   public static class ETLMapper extends Mapper implements ProgramLifecycle<MapReduceTaskContext<Object, Object>> {
 
     private TransformRunner<Object, Object> transformRunner;
+    private Configuration hConf;
     // injected by CDAP
     @SuppressWarnings("unused")
     private Metrics mapperMetrics;
@@ -372,6 +391,9 @@ public class ETLMapReduce extends AbstractMapReduce {
       if (Boolean.valueOf(properties.get(Constants.STAGE_LOGGING_ENABLED))) {
         LogStageInjector.start();
       }
+      JobContext jobContext = context.getHadoopContext();
+      hConf = jobContext.getConfiguration();
+      SchemaDictionary.load(hConf);
       transformRunner = new TransformRunner<>(context, mapperMetrics);
     }
 
@@ -389,7 +411,11 @@ public class ETLMapReduce extends AbstractMapReduce {
 
     @Override
     public void destroy() {
-      transformRunner.destroy();
+      try {
+        transformRunner.destroy();
+      } finally {
+        unloadSchemas(hConf);
+      }
     }
   }
 
@@ -402,6 +428,7 @@ public class ETLMapReduce extends AbstractMapReduce {
     @SuppressWarnings("unused")
     private Metrics reducerMetrics;
     private TransformRunner<Object, Iterator> transformRunner;
+    private Configuration hConf;
 
     @Override
     public void initialize(MapReduceTaskContext<Object, Object> context) throws Exception {
@@ -410,6 +437,9 @@ public class ETLMapReduce extends AbstractMapReduce {
       if (Boolean.valueOf(properties.get(Constants.STAGE_LOGGING_ENABLED))) {
         LogStageInjector.start();
       }
+      JobContext jobContext = context.getHadoopContext();
+      hConf = jobContext.getConfiguration();
+      SchemaDictionary.load(hConf);
       transformRunner = new TransformRunner<>(context, reducerMetrics);
     }
 
@@ -427,7 +457,23 @@ public class ETLMapReduce extends AbstractMapReduce {
 
     @Override
     public void destroy() {
-      transformRunner.destroy();
+      try {
+        transformRunner.destroy();
+      } finally {
+        unloadSchemas(hConf);
+      }
+    }
+  }
+
+  private static void unloadSchemas(@Nullable Configuration hConf) {
+    if (hConf == null) {
+      // initialize failed before the schemas were loaded
+      return;
+    }
+    try {
+      SchemaDictionary.unload(hConf);
+    } catch (IOException e) {
+      LOG.warn("Failed to unload the schemas of the pipeline from the schema dictionary.", e);
     }
   }
 }
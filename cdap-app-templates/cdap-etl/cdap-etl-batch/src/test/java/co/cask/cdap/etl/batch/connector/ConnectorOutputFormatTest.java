@@ -0,0 +1,128 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.etl.batch.connector;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.api.data.schema.SchemaHash;
+import co.cask.cdap.etl.batch.StructuredRecordWritable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.TaskType;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for {@link ConnectorOutputFormat}.
+ */
+public class ConnectorOutputFormatTest {
+
+  @ClassRule
+  public static final TemporaryFolder TMP_FOLDER = new TemporaryFolder();
+
+  @Test
+  public void testReadFromSync() throws Exception {
+    Schema schema1 = Schema.recordOf("syncrec1", Schema.Field.of("x", Schema.of(Schema.Type.INT)));
+    Schema schema2 = Schema.recordOf("syncrec2", Schema.Field.of("y", Schema.of(Schema.Type.STRING)));
+    List<StructuredRecord> records = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      records.add(i % 2 == 0 ?
+                    StructuredRecord.builder(schema1).set("x", i).build() :
+                    StructuredRecord.builder(schema2).set("y", "value" + i).build());
+    }
+
+    Configuration conf = new Configuration();
+    // use small blocks so that the file has many sync markers
+    conf.setInt(ConnectorOutputFormat.BLOCK_SIZE, 500);
+    Path file = write(conf, records);
+
+    FileSystem fs = file.getFileSystem(conf);
+    long length = fs.getFileStatus(file).getLen();
+    try (SequenceFile.Reader reader = new SequenceFile.Reader(conf, SequenceFile.Reader.file(file))) {
+      Assert.assertEquals(SequenceFile.CompressionType.BLOCK, reader.getCompressionType());
+      // a reader that starts in the middle of the file must be able to decode records without prior schemas
+      reader.sync(length / 2);
+      List<StructuredRecord> tail = read(reader);
+      Assert.assertFalse(tail.isEmpty());
+      Assert.assertTrue(tail.size() < records.size());
+      Assert.assertEquals(records.subList(records.size() - tail.size(), records.size()), tail);
+    }
+  }
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    Schema schema = Schema.recordOf("rec", Schema.Field.of("x", Schema.nullableOf(Schema.of(Schema.Type.LONG))),
+                                    Schema.Field.of("y", Schema.of(Schema.Type.STRING)));
+    List<StructuredRecord> records = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      records.add(StructuredRecord.builder(schema).set("x", i % 3 == 0 ? null : (long) i).set("y", "y" + i).build());
+    }
+
+    Configuration conf = new Configuration();
+    Path file = write(conf, records);
+    try (SequenceFile.Reader reader = new SequenceFile.Reader(conf, SequenceFile.Reader.file(file))) {
+      Assert.assertEquals(records, read(reader));
+    }
+  }
+
+  private Path write(Configuration conf, List<StructuredRecord> records) throws Exception {
+    Job job = Job.getInstance(conf);
+    FileOutputFormat.setOutputPath(job, new Path(TMP_FOLDER.newFolder().toURI()));
+    TaskAttemptID taskAttemptId = new TaskAttemptID("test", 0, TaskType.MAP, 0, 0);
+    TaskAttemptContext context = new TaskAttemptContextImpl(job.getConfiguration(), taskAttemptId);
+
+    ConnectorOutputFormat outputFormat = new ConnectorOutputFormat();
+    RecordWriter<String, StructuredRecord> writer = outputFormat.getRecordWriter(context);
+    for (StructuredRecord record : records) {
+      writer.write("stage", record);
+    }
+    writer.close(context);
+    return outputFormat.getDefaultWorkFile(context, "");
+  }
+
+  private List<StructuredRecord> read(SequenceFile.Reader reader) throws Exception {
+    List<StructuredRecord> records = new ArrayList<>();
+    Text key = new Text();
+    BytesWritable value = new BytesWritable();
+    DataInputBuffer inputBuffer = new DataInputBuffer();
+    Map<SchemaHash, Schema> readSchemas = new HashMap<>();
+    while (reader.next(key, value)) {
+      Assert.assertEquals("stage", key.toString());
+      inputBuffer.reset(value.getBytes(), value.getLength());
+      records.add(StructuredRecordWritable.readRecord(inputBuffer, readSchemas));
+    }
+    return records;
+  }
+}
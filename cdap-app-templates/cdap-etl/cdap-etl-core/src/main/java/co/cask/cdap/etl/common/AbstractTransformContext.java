@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015 Cask Data, Inc.
+ * Copyright © 2015-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -22,6 +22,7 @@ import co.cask.cdap.api.plugin.PluginContext;
 import co.cask.cdap.etl.api.Lookup;
 import co.cask.cdap.etl.api.LookupProvider;
 import co.cask.cdap.etl.api.TransformContext;
+import co.cask.cdap.etl.api.lookup.CachingLookup;
 import co.cask.cdap.etl.spec.StageSpec;
 
 import java.util.Map;
@@ -43,6 +44,6 @@ public abstract class AbstractTransformContext extends AbstractStageContext impl
 
   @Override
   public <T> Lookup<T> provide(String table, Map<String, String> arguments) {
-    return lookup.provide(table, arguments);
+    return CachingLookup.provide(lookup, table, arguments, getMetrics());
   }
 }
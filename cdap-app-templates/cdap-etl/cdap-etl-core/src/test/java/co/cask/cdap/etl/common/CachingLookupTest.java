@@ -0,0 +1,177 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.etl.common;
+
+import co.cask.cdap.etl.api.CacheConfig;
+import co.cask.cdap.etl.api.Lookup;
+import co.cask.cdap.etl.api.LookupProvider;
+import co.cask.cdap.etl.api.LookupTableConfig;
+import co.cask.cdap.etl.api.StageMetrics;
+import co.cask.cdap.etl.api.lookup.CachingLookup;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tests for {@link CachingLookup}.
+ */
+public class CachingLookupTest {
+
+  @Test
+  public void testSingleLookup() {
+    CountingLookup delegate = new CountingLookup(ImmutableMap.of("k1", "v1", "k2", "v2"));
+    MockMetrics metrics = new MockMetrics();
+    Lookup<String> lookup = new CachingLookup<>(delegate, new CacheConfig(0, 10),
+                                                new DefaultStageMetrics(metrics, "stage"));
+
+    Assert.assertEquals("v1", lookup.lookup("k1"));
+    Assert.assertEquals("v1", lookup.lookup("k1"));
+    Assert.assertNull(lookup.lookup("k3"));
+    Assert.assertNull(lookup.lookup("k3"));
+    Assert.assertEquals(2, delegate.lookedUpKeys);
+    Assert.assertEquals(2, metrics.getCount("stage." + CachingLookup.HITS));
+    Assert.assertEquals(2, metrics.getCount("stage." + CachingLookup.MISSES));
+  }
+
+  @Test
+  public void testBatchLookup() {
+    CountingLookup delegate = new CountingLookup(ImmutableMap.of("k1", "v1", "k2", "v2", "k3", "v3"));
+    MockMetrics metrics = new MockMetrics();
+    Lookup<String> lookup = new CachingLookup<>(delegate, new CacheConfig(0, 10),
+                                                new DefaultStageMetrics(metrics, "stage"));
+
+    Assert.assertEquals("v1", lookup.lookup("k1"));
+    Assert.assertEquals(ImmutableMap.of("k1", "v1", "k2", "v2"), lookup.lookup("k1", "k2", "k4"));
+    // only k2 and k4 should have been loaded by the batch lookup
+    Assert.assertEquals(3, delegate.lookedUpKeys);
+    Assert.assertEquals(1, delegate.batchLookups);
+
+    Assert.assertEquals(ImmutableMap.of("k1", "v1", "k2", "v2"), lookup.lookup(ImmutableSet.of("k1", "k2", "k4")));
+    Assert.assertEquals(3, delegate.lookedUpKeys);
+    Assert.assertEquals(1, delegate.batchLookups);
+    Assert.assertEquals(3, metrics.getCount("stage." + CachingLookup.MISSES));
+    Assert.assertEquals(4, metrics.getCount("stage." + CachingLookup.HITS));
+  }
+
+  @Test
+  public void testMaxSize() {
+    CountingLookup delegate = new CountingLookup(ImmutableMap.of("k1", "v1", "k2", "v2"));
+    Lookup<String> lookup = new CachingLookup<>(delegate, new CacheConfig(0, 1),
+                                                new DefaultStageMetrics(new MockMetrics(), "stage"));
+
+    lookup.lookup("k1");
+    lookup.lookup("k2");
+    // k1 should have been evicted
+    lookup.lookup("k1");
+    Assert.assertEquals(3, delegate.lookedUpKeys);
+  }
+
+  @Test
+  public void testProvideWithArguments() {
+    final CountingLookup delegate = new CountingLookup(ImmutableMap.of("k1", "v1"));
+    final List<Map<String, String>> tableArguments = new ArrayList<>();
+    LookupProvider provider = new LookupProvider() {
+      @SuppressWarnings("unchecked")
+      @Override
+      public <T> Lookup<T> provide(String table, Map<String, String> arguments) {
+        tableArguments.add(arguments);
+        return (Lookup<T>) delegate;
+      }
+    };
+    StageMetrics metrics = new DefaultStageMetrics(new MockMetrics(), "stage");
+
+    // without cache arguments, the table lookup is used directly
+    Map<String, String> datasetProperties = ImmutableMap.of("p", "v");
+    Assert.assertSame(delegate, CachingLookup.provide(provider, "t", datasetProperties, metrics));
+    Assert.assertEquals(datasetProperties, tableArguments.get(0));
+
+    LookupTableConfig tableConfig = new LookupTableConfig(LookupTableConfig.TableType.DATASET,
+                                                          new CacheConfig(60, 10), datasetProperties, true);
+    Lookup<String> lookup = CachingLookup.provide(provider, "t", CachingLookup.getArguments(tableConfig), metrics);
+    Assert.assertTrue(lookup instanceof CachingLookup);
+    // cache arguments are not passed to the table
+    Assert.assertEquals(datasetProperties, tableArguments.get(1));
+    Assert.assertEquals("v1", lookup.lookup("k1"));
+    Assert.assertEquals("v1", lookup.lookup("k1"));
+    Assert.assertEquals(1, delegate.lookedUpKeys);
+
+    // caching disabled in the table config
+    tableConfig = new LookupTableConfig(LookupTableConfig.TableType.DATASET,
+                                        new CacheConfig(60, 10), datasetProperties, false);
+    Assert.assertSame(delegate, CachingLookup.provide(provider, "t", CachingLookup.getArguments(tableConfig), metrics));
+  }
+
+  @Test
+  public void testInvalidConfig() {
+    StageMetrics metrics = new DefaultStageMetrics(new MockMetrics(), "stage");
+    CountingLookup delegate = new CountingLookup(ImmutableMap.<String, String>of());
+    for (CacheConfig cacheConfig : ImmutableList.of(new CacheConfig(), new CacheConfig(0, -1),
+                                                    new CacheConfig(-1, 10))) {
+      try {
+        new CachingLookup<>(delegate, cacheConfig, metrics);
+        Assert.fail("Expected cache config to be rejected");
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+  }
+
+  /**
+   * Lookup backed by a map that counts how many keys were looked up.
+   */
+  private static final class CountingLookup implements Lookup<String> {
+    private final Map<String, String> data;
+    private int lookedUpKeys;
+    private int batchLookups;
+
+    private CountingLookup(Map<String, String> data) {
+      this.data = data;
+    }
+
+    @Override
+    public String lookup(String key) {
+      lookedUpKeys++;
+      return data.get(key);
+    }
+
+    @Override
+    public Map<String, String> lookup(String... keys) {
+      return lookup(ImmutableSet.copyOf(keys));
+    }
+
+    @Override
+    public Map<String, String> lookup(Set<String> keys) {
+      batchLookups++;
+      lookedUpKeys += keys.size();
+      Map<String, String> result = new HashMap<>();
+      for (String key : keys) {
+        if (data.containsKey(key)) {
+          result.put(key, data.get(key));
+        }
+      }
+      return result;
+    }
+  }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015-2016 Cask Data, Inc.
+ * Copyright © 2015-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -24,6 +24,7 @@ import co.cask.cdap.api.macro.MacroEvaluator;
 import co.cask.cdap.api.plugin.PluginContext;
 import co.cask.cdap.api.spark.AbstractSpark;
 import co.cask.cdap.api.spark.SparkClientContext;
+import co.cask.cdap.api.spark.SparkSerializationProperties;
 import co.cask.cdap.etl.api.batch.BatchAggregator;
 import co.cask.cdap.etl.api.batch.BatchConfigurable;
 import co.cask.cdap.etl.api.batch.BatchJoiner;
@@ -57,8 +58,10 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Configures and sets up runs of {@link BatchSparkPipelineDriver}.
@@ -116,6 +119,7 @@ public class ETLSpark extends AbstractSpark {
     for (Map.Entry<String, String> pipelineProperty : phaseSpec.getPipelineProperties().entrySet()) {
       sparkConf.set(pipelineProperty.getKey(), pipelineProperty.getValue());
     }
+    sparkConf.set(SparkSerializationProperties.KNOWN_SCHEMAS, GSON.toJson(getStageSchemas(phaseSpec)));
 
     MacroEvaluator evaluator = new DefaultMacroEvaluator(context.getWorkflowToken(), context.getRuntimeArguments(),
                                                          context.getLogicalStartTime(), context,
@@ -174,6 +178,24 @@ public class ETLSpark extends AbstractSpark {
     context.localize("HydratorSpark.config", configFile.toURI());
   }
 
+  /**
+   * Returns all distinct input and output schemas of the stages in the given phase.
+   */
+  private List<Schema> getStageSchemas(BatchPhaseSpec phaseSpec) {
+    Set<Schema> schemas = new LinkedHashSet<>();
+    for (StageSpec stageSpec : phaseSpec.getPhase()) {
+      for (Schema inputSchema : stageSpec.getInputSchemas().values()) {
+        if (inputSchema != null) {
+          schemas.add(inputSchema);
+        }
+      }
+      if (stageSpec.getOutputSchema() != null) {
+        schemas.add(stageSpec.getOutputSchema());
+      }
+    }
+    return new ArrayList<>(schemas);
+  }
+
   @Override
   public void destroy() {
     finisher.onFinish(getContext().getState().getStatus() == ProgramStatus.COMPLETED);
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2016 Cask Data, Inc.
+ * Copyright © 2016-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -23,6 +23,7 @@ import co.cask.cdap.etl.api.Lookup;
 import co.cask.cdap.etl.api.LookupProvider;
 import co.cask.cdap.etl.api.StageMetrics;
 import co.cask.cdap.etl.api.TransformContext;
+import co.cask.cdap.etl.api.lookup.CachingLookup;
 import co.cask.cdap.etl.mock.common.MockArguments;
 import co.cask.cdap.etl.mock.common.MockLookupProvider;
 import co.cask.cdap.etl.mock.common.MockStageMetrics;
@@ -121,7 +122,7 @@ public class MockTransformContext implements TransformContext {
 
   @Override
   public <T> Lookup<T> provide(String table, Map<String, String> arguments) {
-    return lookup.provide(table, arguments);
+    return CachingLookup.provide(lookup, table, arguments, getMetrics());
   }
 
   @Nullable
@@ -177,6 +177,8 @@ public final class Constants {
     public static final String MAPREDUCE_STATUS_REPORT_INTERVAL_SECONDS = "mapreduce.status.report.interval.seconds";
     public static final String PROGRAM_RUNID_CORRECTOR_INTERVAL_SECONDS = "app.program.runid.corrector.interval";
     public static final String SYSTEM_ARTIFACTS_DIR = "app.artifact.dir";
+    public static final String ARTIFACT_CACHE_MAX_SIZE_MB = "app.artifact.cache.max.size.mb";
+    public static final String RUNTIME_JAR_CACHE_MAX_AGE_HOURS = "app.program.runtime.jar.cache.max.age.hours";
     public static final String PROGRAM_EXTRA_CLASSPATH = "app.program.extra.classpath";
     public static final String SPARK_YARN_CLIENT_REWRITE = "app.program.spark.yarn.client.rewrite.enabled";
     public static final String SPARK_COMPAT = "app.program.spark.compat";
@@ -344,6 +346,16 @@ public final class Constants {
 
     public static final String DATA_EVENT_TOPIC = "data.event.topic";
 
+    /**
+     * Caching of dataset instance and type metadata in the client of the dataset service.
+     */
+    public static final class ClientCache {
+      public static final String EXPIRATION_SECS = "dataset.client.meta.cache.expiration.secs";
+      public static final String MAX_SIZE = "dataset.client.meta.cache.max.size";
+      public static final String INVALIDATION_POLL_INTERVAL_MS =
+        "dataset.client.meta.cache.invalidation.poll.interval.ms";
+    }
+
     /**
      * Constants for PartitionedFileSet's DynamicPartitioner
      */
@@ -438,6 +450,7 @@ public final class Constants {
     public static final String FILE_CLEANUP_PERIOD = "stream.file.cleanup.period";
     public static final String BATCH_BUFFER_THRESHOLD = "stream.batch.buffer.threshold";
     public static final String NOTIFICATION_THRESHOLD = "stream.notification.threshold";
+    public static final String COMPRESSION_CODEC = "stream.compression.codec";
 
     // Stream http service configurations.
     public static final String STREAM_HANDLER = "stream.handler";
@@ -446,6 +459,7 @@ public final class Constants {
     public static final String WORKER_THREADS = "stream.worker.threads";
     public static final String ASYNC_WORKER_THREADS = "stream.async.worker.threads";
     public static final String ASYNC_QUEUE_SIZE = "stream.async.queue.size";
+    public static final String ASYNC_BUFFER_SIZE = "stream.async.buffer.size";
 
     // YARN container configurations.
     public static final String CONTAINER_VIRTUAL_CORES = "stream.container.num.cores";
@@ -524,6 +538,10 @@ public final class Constants {
     public static final String CONNECTION_TIMEOUT_SECS = "router.connection.idle.timeout.secs";
     public static final String ROUTER_USERSERVICE_FALLBACK_STRAGEY = "router.userservice.fallback.strategy";
     public static final String ROUTER_AUDIT_PATH_CHECK_ENABLED = "router.audit.path.check.enabled";
+    public static final String CLIENT_CONNECTION_POOL_SIZE = "router.client.connection.pool.size";
+    public static final String LOAD_BALANCING_STRATEGY = "router.load.balancing.strategy";
+    public static final String ENDPOINT_EJECTION_FAILURES = "router.endpoint.ejection.failures";
+    public static final String ENDPOINT_EJECTION_SECS = "router.endpoint.ejection.secs";
 
     /**
      * Defaults.
@@ -597,6 +615,10 @@ public final class Constants {
       ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, NamespaceId.SYSTEM.getNamespace(),
                       Constants.Metrics.Tag.COMPONENT, Constants.Service.TRANSACTION);
 
+    public static final Map<String, String> ROUTER_CONTEXT =
+      ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, NamespaceId.SYSTEM.getNamespace(),
+                      Constants.Metrics.Tag.COMPONENT, Constants.Service.GATEWAY);
+
     /**
      * Metric's dataset related constants.
      */
@@ -1245,6 +1267,7 @@ public final class Constants {
     public static final String SYSTEM_TOPICS = "messaging.system.topics";
     public static final String TABLE_CACHE_EXPIRATION_SECONDS = "messaging.table.expiration.seconds";
     public static final String TOPIC_DEFAULT_TTL_SECONDS = "messaging.topic.default.ttl.seconds";
+    public static final String POLL_RECHECK_INTERVAL_MS = "messaging.poll.recheck.interval.ms";
     public static final String COPROCESSOR_METADATA_CACHE_UPDATE_FREQUENCY_SECONDS =
       "messaging.coprocessor.metadata.cache.update.frequency.seconds";
 
@@ -1252,6 +1275,7 @@ public final class Constants {
     public static final String HTTP_SERVER_EXECUTOR_THREADS = "messaging.http.server.executor.threads";
     public static final String HTTP_SERVER_MAX_REQUEST_SIZE_MB = "messaging.http.server.max.request.size.mb";
     public static final String HTTP_SERVER_CONSUME_CHUNK_SIZE = "messaging.http.server.consume.chunk.size";
+    public static final String HTTP_SERVER_MAX_POLL_WAIT_MS = "messaging.http.server.max.poll.wait.ms";
 
 
     public static final String CONTAINER_VIRTUAL_CORES = "messaging.container.num.cores";
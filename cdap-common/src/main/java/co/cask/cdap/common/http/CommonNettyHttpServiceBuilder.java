@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -20,6 +20,7 @@ import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.http.NettyHttpService;
 import com.google.common.base.Function;
+import com.google.common.base.Functions;
 import org.jboss.netty.channel.ChannelPipeline;
 
 /**
@@ -27,17 +28,29 @@ import org.jboss.netty.channel.ChannelPipeline;
  */
 public class CommonNettyHttpServiceBuilder extends NettyHttpService.Builder {
 
+  private final boolean securityEnabled;
+
   public CommonNettyHttpServiceBuilder(CConfiguration cConf, String serviceName) {
     super(serviceName);
-    if (cConf.getBoolean(Constants.Security.ENABLED)) {
-      this.modifyChannelPipeline(new Function<ChannelPipeline, ChannelPipeline>() {
-        @Override
-        public ChannelPipeline apply(ChannelPipeline input) {
+    this.securityEnabled = cConf.getBoolean(Constants.Security.ENABLED);
+    this.modifyChannelPipeline(Functions.<ChannelPipeline>identity());
+    this.setExceptionHandler(new HttpExceptionHandler());
+  }
+
+  /**
+   * Sets the function to modify the channel pipeline, which is applied after the common modifications.
+   */
+  @Override
+  public NettyHttpService.Builder modifyChannelPipeline(final Function<ChannelPipeline, ChannelPipeline> function) {
+    return super.modifyChannelPipeline(new Function<ChannelPipeline, ChannelPipeline>() {
+      @Override
+      public ChannelPipeline apply(ChannelPipeline input) {
+        if (securityEnabled) {
           input.addBefore("dispatcher", "authenticator", new AuthenticationChannelHandler());
-          return input;
         }
-      });
-    }
-    this.setExceptionHandler(new HttpExceptionHandler());
+        input.addBefore("dispatcher", "request-channel", new RequestChannelHandler());
+        return function.apply(RoutingFailureHandler.wrapRouter(input));
+      }
+    });
   }
 }
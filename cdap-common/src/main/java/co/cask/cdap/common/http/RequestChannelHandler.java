@@ -0,0 +1,53 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package co.cask.cdap.common.http;
+
+import co.cask.http.HttpResponder;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelEvent;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelUpstreamHandler;
+
+import javax.annotation.Nullable;
+
+/**
+ * An UpstreamHandler that makes the {@link Channel} of the event being handled available in a ThreadLocal, for the
+ * handler methods that need to control the connection, which the {@link HttpResponder} does not expose. It has to be
+ * added right before the dispatcher, so that it runs in the thread that calls the handler methods.
+ */
+public final class RequestChannelHandler implements ChannelUpstreamHandler {
+
+  private static final ThreadLocal<Channel> channel = new ThreadLocal<>();
+
+  /**
+   * @return the {@link Channel} of the event handled by the current thread or null if the current thread is not
+   *         handling an event of a pipeline with this handler
+   */
+  @Nullable
+  public static Channel getChannel() {
+    return channel.get();
+  }
+
+  @Override
+  public void handleUpstream(ChannelHandlerContext ctx, ChannelEvent e) throws Exception {
+    channel.set(ctx.getChannel());
+    try {
+      ctx.sendUpstream(e);
+    } finally {
+      channel.remove();
+    }
+  }
+}
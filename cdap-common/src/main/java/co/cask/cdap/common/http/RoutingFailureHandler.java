@@ -0,0 +1,213 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package co.cask.cdap.common.http;
+
+import co.cask.http.NettyHttpService;
+import co.cask.http.RequestRouter;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelEvent;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.channel.ChannelHandler;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.ChannelUpstreamHandler;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.DefaultExceptionEvent;
+import org.jboss.netty.channel.ExceptionEvent;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.handler.codec.http.HttpChunk;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.jboss.netty.handler.codec.http.HttpResponse;
+
+import javax.annotation.Nullable;
+
+/**
+ * Wraps the {@link RequestRouter} of a {@link NettyHttpService} pipeline, so that a keep-alive connection stays
+ * usable after a request that cannot be routed, and gets closed after any other failed request.
+ * <p/>
+ * The {@link RequestRouter} keeps the handler method of the previous request on the connection. If a later request
+ * cannot be routed, for example because of an unknown path (404) or method (405), it sends the error response through
+ * that stale handler method, which already responded, so the client never gets a response. The chunks of such a
+ * request also reach the stale handler method. Moreover, it ignores every request on the connection after it handled
+ * an exception. This handler responds to requests that cannot be routed itself, drops their chunks, and closes the
+ * connection after any other exception.
+ */
+public final class RoutingFailureHandler implements ChannelUpstreamHandler {
+
+  private static final String ROUTER_NAME = "router";
+
+  private final ChannelUpstreamHandler router;
+  // Whether the remaining chunks of a request that cannot be routed should be dropped
+  private boolean discardChunks;
+
+  /**
+   * Replaces the {@link RequestRouter} in the given {@link NettyHttpService} pipeline with a
+   * {@link RoutingFailureHandler} that wraps it.
+   *
+   * @return the given pipeline
+   */
+  public static ChannelPipeline wrapRouter(ChannelPipeline pipeline) {
+    ChannelUpstreamHandler router = (ChannelUpstreamHandler) pipeline.get(ROUTER_NAME);
+    if (router != null && !(router instanceof RoutingFailureHandler)) {
+      // The dispatcher and the router itself look up the router by name, hence the wrapper keeps the name
+      pipeline.replace(ROUTER_NAME, ROUTER_NAME, new RoutingFailureHandler(router));
+    }
+    return pipeline;
+  }
+
+  private RoutingFailureHandler(ChannelUpstreamHandler router) {
+    this.router = router;
+  }
+
+  @Override
+  public void handleUpstream(ChannelHandlerContext ctx, ChannelEvent e) throws Exception {
+    if (e instanceof MessageEvent) {
+      Object message = ((MessageEvent) e).getMessage();
+      if (message instanceof HttpRequest) {
+        HttpRequest request = (HttpRequest) message;
+        discardChunks = false;
+        try {
+          router.handleUpstream(ctx, e);
+        } catch (Exception ex) {
+          // Exceptions raised by handlers after the routing do not reach here, but are sent as exception events
+          discardChunks = request.isChunked();
+          respondRoutingFailure(ctx, request, ex);
+        }
+        return;
+      }
+      if (message instanceof HttpChunk && discardChunks) {
+        discardChunks = !((HttpChunk) message).isLast();
+        return;
+      }
+    }
+
+    router.handleUpstream(ctx, e);
+
+    if (e instanceof ExceptionEvent) {
+      // The router does not handle any further request on the connection, so close it once the response is sent
+      closeOnFlush(ctx.getChannel());
+    }
+  }
+
+  /**
+   * Responds to a request that cannot be routed with the error response for the given exception. The response is
+   * created by a new {@link RequestRouter}, which does not have the state of earlier requests and does not need a
+   * resource handler for that. Unlike that router, which closes the connection after the response, the connection is
+   * kept open if the request asked for it, since closing it while the client still sends the request body may make
+   * the client miss the response.
+   */
+  private void respondRoutingFailure(ChannelHandlerContext ctx, HttpRequest request, Exception cause) {
+    ResponseCaptureContext captureContext = new ResponseCaptureContext(ctx);
+    new RequestRouter(null, 0, false).exceptionCaught(captureContext,
+                                                      new DefaultExceptionEvent(ctx.getChannel(), cause));
+    HttpResponse response = captureContext.getResponse();
+    if (response == null) {
+      closeOnFlush(ctx.getChannel());
+      return;
+    }
+
+    boolean keepAlive = HttpHeaders.isKeepAlive(request);
+    HttpHeaders.setContentLength(response, response.getContent().readableBytes());
+    HttpHeaders.setKeepAlive(response, keepAlive);
+    ChannelFuture future = Channels.future(ctx.getChannel());
+    if (!keepAlive) {
+      future.addListener(ChannelFutureListener.CLOSE);
+    }
+    Channels.write(ctx, future, response);
+  }
+
+  private void closeOnFlush(Channel channel) {
+    if (channel.isConnected()) {
+      Channels.write(channel, ChannelBuffers.EMPTY_BUFFER).addListener(ChannelFutureListener.CLOSE);
+    }
+  }
+
+  /**
+   * A {@link ChannelHandlerContext} that keeps the {@link HttpResponse} written through it instead of sending it,
+   * and delegates everything else.
+   */
+  private static final class ResponseCaptureContext implements ChannelHandlerContext {
+
+    private final ChannelHandlerContext delegate;
+    private HttpResponse response;
+
+    ResponseCaptureContext(ChannelHandlerContext delegate) {
+      this.delegate = delegate;
+    }
+
+    @Nullable
+    HttpResponse getResponse() {
+      return response;
+    }
+
+    @Override
+    public void sendDownstream(ChannelEvent e) {
+      if (e instanceof MessageEvent && ((MessageEvent) e).getMessage() instanceof HttpResponse) {
+        response = (HttpResponse) ((MessageEvent) e).getMessage();
+        return;
+      }
+      delegate.sendDownstream(e);
+    }
+
+    @Override
+    public Channel getChannel() {
+      return delegate.getChannel();
+    }
+
+    @Override
+    public ChannelPipeline getPipeline() {
+      return delegate.getPipeline();
+    }
+
+    @Override
+    public String getName() {
+      return delegate.getName();
+    }
+
+    @Override
+    public ChannelHandler getHandler() {
+      return delegate.getHandler();
+    }
+
+    @Override
+    public boolean canHandleUpstream() {
+      return delegate.canHandleUpstream();
+    }
+
+    @Override
+    public boolean canHandleDownstream() {
+      return delegate.canHandleDownstream();
+    }
+
+    @Override
+    public void sendUpstream(ChannelEvent e) {
+      delegate.sendUpstream(e);
+    }
+
+    @Override
+    public Object getAttachment() {
+      return delegate.getAttachment();
+    }
+
+    @Override
+    public void setAttachment(Object attachment) {
+      delegate.setAttachment(attachment);
+    }
+  }
+}
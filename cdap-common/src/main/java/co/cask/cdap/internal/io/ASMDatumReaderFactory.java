@@ -0,0 +1,239 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.io;
+
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.common.io.DatumReader;
+import co.cask.cdap.common.io.Decoder;
+import co.cask.cdap.common.lang.InstantiatorFactory;
+import co.cask.cdap.internal.asm.ByteCodeClassLoader;
+import co.cask.cdap.internal.asm.ClassDefinition;
+import co.cask.cdap.internal.lang.Fields;
+import com.google.common.base.Objects;
+import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.reflect.TypeToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.WeakHashMap;
+import javax.inject.Inject;
+
+/**
+ * A factory class for creating {@link DatumReader} instance for different data type and schema.
+ * It serves as an in memory cache for generated {@link DatumReader} {@link Class} using ASM. A class is generated
+ * for each combination of source schema, target schema and data type. If a class cannot be generated,
+ * {@link ReflectionDatumReader} will be used for the combination.
+ */
+public final class ASMDatumReaderFactory implements DatumReaderFactory {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ASMDatumReaderFactory.class);
+
+  private final LoadingCache<CacheKey, Optional<Class<DatumReader<?>>>> datumReaderClasses;
+  private final InstantiatorFactory instantiatorFactory;
+  private final FieldAccessorFactory fieldAccessorFactory;
+
+  @Inject
+  public ASMDatumReaderFactory(FieldAccessorFactory fieldAccessorFactory) {
+    this.instantiatorFactory = new InstantiatorFactory(true);
+    this.fieldAccessorFactory = new FinalFieldAccessorFactory(fieldAccessorFactory);
+    this.datumReaderClasses = CacheBuilder.newBuilder().build(new ASMCacheLoader());
+  }
+
+  /**
+   * Creates a {@link DatumReader} that is able to decode data into the given data type with the given
+   * target {@link Schema}. A {@link DatumReader} class is generated for each source schema the
+   * returned instance is used with. The instance created is thread safe and reusable.
+   *
+   * @param type Type information of the data type to decode to.
+   * @param schema Schema of the data type.
+   * @param <T> Type of the data type.
+   * @return A {@link DatumReader} instance.
+   */
+  @Override
+  public <T> DatumReader<T> create(TypeToken<T> type, Schema schema) {
+    return new SchemaResolvingDatumReader<>(type, schema);
+  }
+
+  /**
+   * Returns a {@link DatumReader} for decoding data of the given source schema into the given data type.
+   */
+  @SuppressWarnings("unchecked")
+  private <T> DatumReader<T> getReader(TypeToken<T> type, Schema sourceSchema, Schema targetSchema) {
+    Optional<Class<DatumReader<?>>> readerClass =
+      datumReaderClasses.getUnchecked(new CacheKey(sourceSchema, targetSchema, type));
+    if (!readerClass.isPresent()) {
+      return new ReflectionDatumReader<>(targetSchema, type);
+    }
+    try {
+      return (DatumReader<T>) readerClass.get().getConstructor(InstantiatorFactory.class, FieldAccessorFactory.class)
+                                               .newInstance(instantiatorFactory, fieldAccessorFactory);
+    } catch (Exception e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+  /**
+   * A {@link DatumReader} that delegates to the {@link DatumReader} generated for the source schema
+   * given to the {@link #read(Decoder, Schema)} call. The last used reader is kept since the source
+   * schema rarely changes between calls.
+   */
+  private final class SchemaResolvingDatumReader<T> implements DatumReader<T> {
+
+    private final TypeToken<T> type;
+    private final Schema targetSchema;
+    private volatile ResolvedReader<T> resolvedReader;
+
+    private SchemaResolvingDatumReader(TypeToken<T> type, Schema targetSchema) {
+      this.type = type;
+      this.targetSchema = targetSchema;
+    }
+
+    @Override
+    public T read(Decoder decoder, Schema sourceSchema) throws IOException {
+      ResolvedReader<T> resolved = resolvedReader;
+      if (resolved == null || !resolved.sourceSchema.equals(sourceSchema)) {
+        resolved = new ResolvedReader<>(sourceSchema, getReader(type, sourceSchema, targetSchema));
+        resolvedReader = resolved;
+      }
+      return resolved.reader.read(decoder, sourceSchema);
+    }
+  }
+
+  /**
+   * Pair of source schema and the {@link DatumReader} for it.
+   */
+  private static final class ResolvedReader<T> {
+    private final Schema sourceSchema;
+    private final DatumReader<T> reader;
+
+    private ResolvedReader(Schema sourceSchema, DatumReader<T> reader) {
+      this.sourceSchema = sourceSchema;
+      this.reader = reader;
+    }
+  }
+
+  /**
+   * A {@link FieldAccessorFactory} that uses reflection for final fields, since the bytecode generated
+   * {@link FieldAccessor} is not allowed to set them, and delegates to another factory for other fields.
+   */
+  private static final class FinalFieldAccessorFactory implements FieldAccessorFactory {
+
+    private final FieldAccessorFactory delegate;
+    private final FieldAccessorFactory reflectionFactory;
+
+    private FinalFieldAccessorFactory(FieldAccessorFactory delegate) {
+      this.delegate = delegate;
+      this.reflectionFactory = new ReflectionFieldAccessorFactory();
+    }
+
+    @Override
+    public FieldAccessor getFieldAccessor(TypeToken<?> type, String fieldName) {
+      try {
+        if (Modifier.isFinal(Fields.findField(type.getType(), fieldName).getModifiers())) {
+          return reflectionFactory.getFieldAccessor(type, fieldName);
+        }
+      } catch (NoSuchFieldException e) {
+        throw Throwables.propagate(e);
+      }
+      return delegate.getFieldAccessor(type, fieldName);
+    }
+  }
+
+  /**
+   * A private {@link CacheLoader} for generating different {@link DatumReader} {@link Class}.
+   */
+  private static final class ASMCacheLoader extends CacheLoader<CacheKey, Optional<Class<DatumReader<?>>>> {
+
+    private final Map<ClassLoader, ByteCodeClassLoader> classloaders = new WeakHashMap<>();
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Optional<Class<DatumReader<?>>> load(CacheKey key) throws Exception {
+      ClassDefinition classDef;
+      try {
+        classDef = new DatumReaderGenerator().generate(key.getType(), key.getSourceSchema(), key.getTargetSchema());
+      } catch (Exception e) {
+        LOG.debug("Failed to generate DatumReader for type {} from schema {}. Reflection will be used.",
+                  key.getType(), key.getSourceSchema(), e);
+        return Optional.absent();
+      }
+
+      ClassLoader typeClassLoader = Objects.firstNonNull(key.getType().getRawType().getClassLoader(),
+                                                         ASMDatumReaderFactory.class.getClassLoader());
+      synchronized (classloaders) {
+        ByteCodeClassLoader classloader = classloaders.get(typeClassLoader);
+        if (classloader == null) {
+          // The ClassLoader of the generated DatumReader has CDAP system ClassLoader as parent.
+          // The ClassDefinition contains list of classes that should not be loaded by the generated class ClassLoader
+          classloader = new ByteCodeClassLoader(ASMDatumReaderFactory.class.getClassLoader());
+          classloaders.put(typeClassLoader, classloader);
+        }
+        return Optional.of((Class<DatumReader<?>>) classloader.addClass(classDef).loadClass(classDef.getClassName()));
+      }
+    }
+  }
+
+  private static final class CacheKey {
+    private final Schema sourceSchema;
+    private final Schema targetSchema;
+    private final TypeToken<?> type;
+
+    private CacheKey(Schema sourceSchema, Schema targetSchema, TypeToken<?> type) {
+      this.sourceSchema = sourceSchema;
+      this.targetSchema = targetSchema;
+      this.type = type;
+    }
+
+    public Schema getSourceSchema() {
+      return sourceSchema;
+    }
+
+    public Schema getTargetSchema() {
+      return targetSchema;
+    }
+
+    public TypeToken<?> getType() {
+      return type;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+
+      CacheKey cacheKey = (CacheKey) o;
+      return sourceSchema.equals(cacheKey.sourceSchema)
+        && targetSchema.equals(cacheKey.targetSchema) && type.equals(cacheKey.type);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(sourceSchema, targetSchema, type);
+    }
+  }
+}
@@ -0,0 +1,1017 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.io;
+
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.common.io.DatumReader;
+import co.cask.cdap.common.io.Decoder;
+import co.cask.cdap.common.lang.Instantiator;
+import co.cask.cdap.common.lang.InstantiatorFactory;
+import co.cask.cdap.internal.asm.ClassDefinition;
+import co.cask.cdap.internal.asm.Methods;
+import co.cask.cdap.internal.lang.Fields;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
+import com.google.common.primitives.Primitives;
+import com.google.common.reflect.TypeToken;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.GeneratorAdapter;
+import org.objectweb.asm.commons.Method;
+
+import java.io.IOException;
+import java.lang.reflect.ParameterizedType;
+import java.net.URI;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Class for generating {@link DatumReader} bytecodes using ASM. A generated class decodes data written with
+ * one source schema into objects of one type with one target schema. Schema resolution, such as skipping
+ * fields that are not in the target schema, type promotion and union branch selection, is done when
+ * the class is generated instead of for every read. The class generated will have a skeleton looks like
+ * the following:
+ * <pre>
+ * {@code
+ *
+ *  public final class generatedClassName extends GeneratedDatumReader<InputType> {
+ *
+ *    public generatedClassName(InstantiatorFactory instantiatorFactory, FieldAccessorFactory accessorFactory) {
+ *      super(instantiatorFactory, accessorFactory);
+ *      // Initialize fields for Instantiator, FieldAccessor and Class used by the decode methods
+ *    }
+ *
+ *    @Override
+ *    public Object read(Decoder decoder, Schema sourceSchema) throws IOException {
+ *      return generatedDecodeMethod(decoder, sourceSchema);
+ *    }
+ *
+ *    private Object generatedDecodeMethod(Decoder decoder, Schema sourceSchema) throws IOException {
+ *      // Do actual decoding by calling methods on decoder based on the source schema and the type.
+ *    }
+ *
+ *    // Could have more generatedDecodeMethods...
+ *  }
+ * }
+ * </pre>
+ */
+@NotThreadSafe
+final class DatumReaderGenerator {
+
+  private static final Type DECODER_TYPE = Type.getType(Decoder.class);
+  private static final Type SCHEMA_TYPE = Type.getType(Schema.class);
+  private static final Type BASE_TYPE = Type.getType(GeneratedDatumReader.class);
+
+  private static final Map<Schema.Type, Set<Schema.Type>> PROMOTIONS = createPromotions();
+
+  private final Map<String, Method> decodeMethods = Maps.newHashMap();
+  private final Multimap<Class<?>, String> fieldAccessorRequests = LinkedHashMultimap.create();
+  private final Set<Class<?>> instantiatorRequests = Sets.newLinkedHashSet();
+  private final Set<Class<?>> classRequests = Sets.newLinkedHashSet();
+  private ClassWriter classWriter;
+  private Type classType;
+  private Set<Class<?>> preservedClasses;
+
+  /**
+   * Generates a {@link DatumReader} class for decoding data of the given source schema into the given type.
+   *
+   * @param inputType Type information of the data type to decode to.
+   * @param sourceSchema Schema of the encoded data.
+   * @param targetSchema Schema of the data type to decode to.
+   * @return A {@link ClassDefinition} that contains generated class information.
+   * @throws IllegalArgumentException if the source schema cannot be resolved to the target schema and type
+   */
+  ClassDefinition generate(TypeToken<?> inputType, Schema sourceSchema, Schema targetSchema) {
+    if (!isResolvable(sourceSchema, targetSchema, inputType, Sets.<String>newHashSet())) {
+      throw new IllegalArgumentException(String.format("Cannot resolve schema %s to %s for type %s",
+                                                       sourceSchema, targetSchema, inputType));
+    }
+
+    classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+    preservedClasses = Sets.newLinkedHashSet();
+
+    // Generate the class
+    String className = getClassName(inputType, sourceSchema, targetSchema);
+    classType = Type.getObjectType(className);
+    classWriter.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC + Opcodes.ACC_FINAL,
+                      className, null, BASE_TYPE.getInternalName(), null);
+
+    // Read method
+    generateRead(inputType, sourceSchema, targetSchema);
+
+    // Constructor
+    generateConstructor();
+
+    ClassDefinition classDefinition = new ClassDefinition(classWriter.toByteArray(), className, preservedClasses);
+    // DEBUG block. Uncomment for debug
+//    co.cask.cdap.internal.asm.Debugs.debugByteCode(classDefinition, new java.io.PrintWriter(System.out));
+    // End DEBUG block
+    return classDefinition;
+  }
+
+  /**
+   * Generates the constructor. The constructor generated has signature
+   * {@code (InstantiatorFactory, FieldAccessorFactory)}.
+   */
+  private void generateConstructor() {
+    Method constructor = getMethod(void.class, "<init>", InstantiatorFactory.class, FieldAccessorFactory.class);
+
+    GeneratorAdapter mg = new GeneratorAdapter(Opcodes.ACC_PUBLIC, constructor, null, null, classWriter);
+
+    // super(instantiatorFactory, accessorFactory);
+    mg.loadThis();
+    mg.loadArg(0);
+    mg.loadArg(1);
+    mg.invokeConstructor(BASE_TYPE, constructor);
+
+    // this.className = Class.forName("className");
+    for (Class<?> cls : classRequests) {
+      String fieldName = getClassFieldName(cls);
+      classWriter.visitField(Opcodes.ACC_PRIVATE + Opcodes.ACC_FINAL, fieldName,
+                             Type.getDescriptor(Class.class), null, null).visitEnd();
+      mg.loadThis();
+      loadClass(mg, cls);
+      mg.putField(classType, fieldName, Type.getType(Class.class));
+    }
+
+    // this.instantiatorName = getInstantiator(Class.forName("className"));
+    for (Class<?> cls : instantiatorRequests) {
+      String fieldName = getInstantiatorName(cls);
+      classWriter.visitField(Opcodes.ACC_PRIVATE + Opcodes.ACC_FINAL, fieldName,
+                             Type.getDescriptor(Instantiator.class), null, null).visitEnd();
+      mg.loadThis();
+      mg.dup();
+      loadClass(mg, cls);
+      mg.invokeVirtual(classType, getMethod(Instantiator.class, "getInstantiator", Class.class));
+      mg.putField(classType, fieldName, Type.getType(Instantiator.class));
+    }
+
+    // this.fieldAccessorName = getFieldAccessor(Class.forName("className"), "fieldName");
+    for (Map.Entry<Class<?>, String> entry : fieldAccessorRequests.entries()) {
+      String fieldName = getFieldAccessorName(entry.getKey(), entry.getValue());
+      classWriter.visitField(Opcodes.ACC_PRIVATE + Opcodes.ACC_FINAL, fieldName,
+                             Type.getDescriptor(FieldAccessor.class), null, null).visitEnd();
+      mg.loadThis();
+      mg.dup();
+      loadClass(mg, entry.getKey());
+      mg.push(entry.getValue());
+      mg.invokeVirtual(classType, getMethod(FieldAccessor.class, "getFieldAccessor", Class.class, String.class));
+      mg.putField(classType, fieldName, Type.getType(FieldAccessor.class));
+    }
+
+    mg.returnValue();
+    mg.endMethod();
+  }
+
+  /**
+   * Generates the {@link DatumReader#read(Decoder, Schema)} method.
+   */
+  private void generateRead(TypeToken<?> inputType, Schema sourceSchema, Schema targetSchema) {
+    Method readMethod = getMethod(Object.class, "read", Decoder.class, Schema.class);
+    GeneratorAdapter mg = new GeneratorAdapter(Opcodes.ACC_PUBLIC, readMethod, null,
+                                               new Type[] {Type.getType(IOException.class)}, classWriter);
+
+    // Delegate to the actual decode method(decoder, sourceSchema)
+    mg.loadThis();
+    mg.loadArg(0);
+    mg.loadArg(1);
+    mg.invokeVirtual(classType, getDecodeMethod(inputType, sourceSchema, targetSchema));
+    Class<?> rawType = inputType.getRawType();
+    if (rawType.isPrimitive()) {
+      mg.valueOf(Type.getType(rawType));
+    }
+    mg.returnValue();
+    mg.endMethod();
+  }
+
+  /**
+   * Returns the decode method for the given type and schemas. The same method will be returned if the same
+   * type and schemas has been passed to the method before. The method generated has signature
+   * {@code (Decoder, Schema)}, with the {@link Schema} being the source schema.
+   */
+  private Method getDecodeMethod(TypeToken<?> inputType, Schema sourceSchema, Schema targetSchema) {
+    String key = String.format("%s%s%s", normalizeTypeName(inputType),
+                               sourceSchema.getSchemaHash(), targetSchema.getSchemaHash());
+
+    Method method = decodeMethods.get(key);
+    if (method != null) {
+      return method;
+    }
+
+    method = getMethod(getCallType(inputType), String.format("decode%s", key), Decoder.class, Schema.class);
+
+    // Put the method into map first before generating the body in order to support recursive data type.
+    decodeMethods.put(key, method);
+
+    GeneratorAdapter mg = new GeneratorAdapter(Opcodes.ACC_PRIVATE, method, null,
+                                               new Type[] {Type.getType(IOException.class)}, classWriter);
+    generateDecodeBody(mg, inputType, sourceSchema, targetSchema);
+    mg.endMethod();
+
+    return method;
+  }
+
+  /**
+   * Generates the decode method body. The generated body always ends with a return or throw statement.
+   */
+  private void generateDecodeBody(GeneratorAdapter mg, TypeToken<?> inputType,
+                                  Schema sourceSchema, Schema targetSchema) {
+    Schema.Type sourceType = sourceSchema.getType();
+
+    if (sourceType == Schema.Type.UNION) {
+      decodeUnion(mg, inputType, sourceSchema, targetSchema);
+      return;
+    }
+
+    if (targetSchema.getType() == Schema.Type.UNION) {
+      // Delegates to the decode method for the first resolvable schema in the target union.
+      Schema targetValueSchema = findResolvable(sourceSchema, targetSchema.getUnionSchemas(),
+                                                inputType, Sets.<String>newHashSet());
+      mg.loadThis();
+      mg.loadArg(0);
+      mg.loadArg(1);
+      mg.invokeVirtual(classType, getDecodeMethod(inputType, sourceSchema, targetValueSchema));
+      mg.returnValue();
+      return;
+    }
+
+    switch (sourceType) {
+      case NULL:
+        mg.loadArg(0);
+        mg.invokeInterface(DECODER_TYPE, getMethod(Object.class, "readNull"));
+        mg.returnValue();
+        break;
+      case BOOLEAN:
+      case INT:
+      case LONG:
+      case FLOAT:
+      case DOUBLE:
+      case STRING:
+        decodeSimple(mg, inputType, sourceType, targetSchema.getType());
+        break;
+      case BYTES:
+        decodeBytes(mg, inputType);
+        break;
+      case ENUM:
+        decodeEnum(mg, inputType);
+        break;
+      case ARRAY:
+        decodeArray(mg, inputType, sourceSchema, targetSchema);
+        break;
+      case MAP:
+        decodeMap(mg, inputType, sourceSchema, targetSchema);
+        break;
+      case RECORD:
+        decodeRecord(mg, inputType, sourceSchema, targetSchema);
+        break;
+      default:
+        mg.throwException(Type.getType(IOException.class), "Unsupported schema type " + sourceType);
+    }
+  }
+
+  /**
+   * Generates method body for decoding simple schema type by calling corresponding read method in Decoder,
+   * followed by type promotion and conversion to the input type.
+   */
+  private void decodeSimple(GeneratorAdapter mg, TypeToken<?> inputType,
+                            Schema.Type sourceType, Schema.Type targetType) {
+    Class<?> rawType = inputType.getRawType();
+
+    // value = decoder.readXXX();
+    Class<?> sourceClass = getSchemaClass(sourceType);
+    mg.loadArg(0);
+    mg.invokeInterface(DECODER_TYPE, getMethod(sourceClass, getReadMethodName(sourceType)));
+
+    if (targetType == Schema.Type.STRING) {
+      if (sourceType != Schema.Type.STRING) {
+        mg.invokeStatic(Type.getType(String.class), getMethod(String.class, "valueOf", sourceClass));
+      }
+      if (URI.class.equals(rawType)) {
+        mg.invokeStatic(Type.getType(URI.class), getMethod(URI.class, "create", String.class));
+      } else if (URL.class.equals(rawType)) {
+        int str = mg.newLocal(Type.getType(String.class));
+        mg.storeLocal(str);
+        mg.newInstance(Type.getType(URL.class));
+        mg.dup();
+        mg.loadLocal(str);
+        mg.invokeConstructor(Type.getType(URL.class), getMethod(void.class, "<init>", String.class));
+      }
+      mg.returnValue();
+      return;
+    }
+
+    // Promote to the target schema type, then convert it to the input type
+    Type targetPrimitive = Type.getType(getSchemaClass(targetType));
+    mg.cast(Type.getType(sourceClass), targetPrimitive);
+
+    Class<?> unwrapped = Primitives.unwrap(rawType);
+    if (unwrapped.isPrimitive()) {
+      Type primitiveType = Type.getType(unwrapped);
+      mg.cast(targetPrimitive, primitiveType);
+      if (!rawType.isPrimitive()) {
+        mg.valueOf(primitiveType);
+      }
+    } else {
+      mg.valueOf(targetPrimitive);
+    }
+    mg.returnValue();
+  }
+
+  /**
+   * Generates method body for decoding bytes into {@link ByteBuffer}, byte array or {@link UUID}.
+   */
+  private void decodeBytes(GeneratorAdapter mg, TypeToken<?> inputType) {
+    Class<?> rawType = inputType.getRawType();
+
+    mg.loadArg(0);
+    mg.invokeInterface(DECODER_TYPE, getMethod(ByteBuffer.class, "readBytes"));
+    if (byte[].class.equals(rawType)) {
+      mg.invokeStatic(BASE_TYPE, getMethod(byte[].class, "toBytes", ByteBuffer.class));
+    } else if (UUID.class.equals(rawType)) {
+      mg.invokeStatic(BASE_TYPE, getMethod(Object.class, "toUUID", ByteBuffer.class));
+    }
+    mg.returnValue();
+  }
+
+  /**
+   * Generates method body for decoding enum value. The logic is like this:
+   *
+   * <pre>
+   * {@code
+   *
+   * return toEnum(this.enumClass, sourceSchema.getEnumValue(decoder.readInt()));
+   * }
+   * </pre>
+   */
+  private void decodeEnum(GeneratorAdapter mg, TypeToken<?> inputType) {
+    Class<?> rawType = inputType.getRawType();
+    classRequests.add(rawType);
+    preserve(rawType);
+
+    mg.loadThis();
+    mg.getField(classType, getClassFieldName(rawType), Type.getType(Class.class));
+    mg.loadArg(1);
+    mg.loadArg(0);
+    mg.invokeInterface(DECODER_TYPE, getMethod(int.class, "readInt"));
+    mg.invokeVirtual(SCHEMA_TYPE, getMethod(String.class, "getEnumValue", int.class));
+    mg.invokeStatic(BASE_TYPE, getMethod(Object.class, "toEnum", Class.class, String.class));
+    mg.returnValue();
+  }
+
+  /**
+   * Generates method body for decoding array into array or {@link Collection}. The logic is like this:
+   *
+   * <pre>
+   * {@code
+   *
+   * Collection collection = this.collectionInstantiator.create();   // new ArrayList() for array type
+   * Schema componentSchema = sourceSchema.getComponentSchema();
+   * int len = decoder.readInt();
+   * while (len != 0) {
+   *   for (int i = 0; i < len; i++) {
+   *     collection.add(decodeComponent(decoder, componentSchema));
+   *   }
+   *   len = decoder.readInt();
+   * }
+   * return collection;   // toArray(collection, componentClass) for array type
+   * }
+   * </pre>
+   */
+  private void decodeArray(GeneratorAdapter mg, TypeToken<?> inputType, Schema sourceSchema, Schema targetSchema) {
+    Class<?> rawType = inputType.getRawType();
+    final TypeToken<?> componentType = getComponentType(inputType);
+    final Type collectionType = Type.getType(Collection.class);
+
+    final int collection = mg.newLocal(collectionType);
+    if (rawType.isArray()) {
+      mg.newInstance(Type.getType(ArrayList.class));
+      mg.dup();
+      mg.invokeConstructor(Type.getType(ArrayList.class), getMethod(void.class, "<init>"));
+    } else {
+      createInstance(mg, rawType);
+      mg.checkCast(collectionType);
+    }
+    mg.storeLocal(collection);
+
+    mg.loadArg(1);
+    mg.invokeVirtual(SCHEMA_TYPE, getMethod(Schema.class, "getComponentSchema"));
+    final int componentSchema = mg.newLocal(SCHEMA_TYPE);
+    mg.storeLocal(componentSchema);
+
+    final Method decodeComponent = getDecodeMethod(componentType, sourceSchema.getComponentSchema(),
+                                             targetSchema.getComponentSchema());
+    decodeBlocks(mg, new BlockElementDecoder() {
+      @Override
+      public void decode(GeneratorAdapter mg) {
+        mg.loadLocal(collection);
+        invokeDecode(mg, decodeComponent, componentType, componentSchema);
+        mg.invokeInterface(collectionType, getMethod(boolean.class, "add", Object.class));
+        mg.pop();
+      }
+    });
+
+    mg.loadLocal(collection);
+    if (rawType.isArray()) {
+      Class<?> componentClass = componentType.getRawType();
+      if (componentClass.isPrimitive()) {
+        mg.push(Type.getType(componentClass));
+      } else {
+        classRequests.add(componentClass);
+        preserve(componentClass);
+        mg.loadThis();
+        mg.getField(classType, getClassFieldName(componentClass), Type.getType(Class.class));
+      }
+      mg.invokeStatic(BASE_TYPE, getMethod(Object.class, "toArray", Collection.class, Class.class));
+    }
+    mg.returnValue();
+  }
+
+  /**
+   * Generates method body for decoding map. The logic is like this:
+   *
+   * <pre>
+   * {@code
+   *
+   * Map map = this.mapInstantiator.create();
+   * Map.Entry<Schema, Schema> mapSchema = sourceSchema.getMapSchema();
+   * Schema keySchema = mapSchema.getKey();
+   * Schema valueSchema = mapSchema.getValue();
+   * int len = decoder.readInt();
+   * while (len != 0) {
+   *   for (int i = 0; i < len; i++) {
+   *     map.put(decodeKey(decoder, keySchema), decodeValue(decoder, valueSchema));
+   *   }
+   *   len = decoder.readInt();
+   * }
+   * return map;
+   * }
+   * </pre>
+   */
+  private void decodeMap(GeneratorAdapter mg, TypeToken<?> inputType, Schema sourceSchema, Schema targetSchema) {
+    java.lang.reflect.Type[] typeArgs = getMapTypeArgs(inputType);
+    final TypeToken<?> keyType = TypeToken.of(typeArgs[0]);
+    final TypeToken<?> valueType = TypeToken.of(typeArgs[1]);
+    final Type mapType = Type.getType(Map.class);
+
+    final int map = mg.newLocal(mapType);
+    createInstance(mg, inputType.getRawType());
+    mg.checkCast(mapType);
+    mg.storeLocal(map);
+
+    mg.loadArg(1);
+    mg.invokeVirtual(SCHEMA_TYPE, getMethod(Map.Entry.class, "getMapSchema"));
+    mg.dup();
+
+    final int keySchema = mg.newLocal(SCHEMA_TYPE);
+    mg.invokeInterface(Type.getType(Map.Entry.class), getMethod(Object.class, "getKey"));
+    mg.checkCast(SCHEMA_TYPE);
+    mg.storeLocal(keySchema);
+
+    final int valueSchema = mg.newLocal(SCHEMA_TYPE);
+    mg.invokeInterface(Type.getType(Map.Entry.class), getMethod(Object.class, "getValue"));
+    mg.checkCast(SCHEMA_TYPE);
+    mg.storeLocal(valueSchema);
+
+    Map.Entry<Schema, Schema> sourceMapSchema = sourceSchema.getMapSchema();
+    Map.Entry<Schema, Schema> targetMapSchema = targetSchema.getMapSchema();
+    final Method decodeKey = getDecodeMethod(keyType, sourceMapSchema.getKey(), targetMapSchema.getKey());
+    final Method decodeValue = getDecodeMethod(valueType, sourceMapSchema.getValue(), targetMapSchema.getValue());
+
+    decodeBlocks(mg, new BlockElementDecoder() {
+      @Override
+      public void decode(GeneratorAdapter mg) {
+        mg.loadLocal(map);
+        invokeDecode(mg, decodeKey, keyType, keySchema);
+        invokeDecode(mg, decodeValue, valueType, valueSchema);
+        mg.invokeInterface(mapType, getMethod(Object.class, "put", Object.class, Object.class));
+        mg.pop();
+      }
+    });
+
+    mg.loadLocal(map);
+    mg.returnValue();
+  }
+
+  /**
+   * Generates the loop for decoding blocks of array or map elements.
+   */
+  private void decodeBlocks(GeneratorAdapter mg, BlockElementDecoder elementDecoder) {
+    // int len = decoder.readInt();
+    int len = mg.newLocal(Type.INT_TYPE);
+    mg.loadArg(0);
+    mg.invokeInterface(DECODER_TYPE, getMethod(int.class, "readInt"));
+    mg.storeLocal(len);
+
+    // while (len != 0)
+    Label beginWhile = mg.mark();
+    Label endWhile = mg.newLabel();
+    mg.loadLocal(len);
+    mg.ifZCmp(GeneratorAdapter.EQ, endWhile);
+
+    // for (int idx = 0; idx < len; idx++)
+    int idx = mg.newLocal(Type.INT_TYPE);
+    mg.push(0);
+    mg.storeLocal(idx);
+    Label beginFor = mg.mark();
+    Label endFor = mg.newLabel();
+    mg.loadLocal(idx);
+    mg.loadLocal(len);
+    mg.ifICmp(GeneratorAdapter.GE, endFor);
+
+    elementDecoder.decode(mg);
+
+    mg.iinc(idx, 1);
+    mg.goTo(beginFor);
+    mg.mark(endFor);
+
+    // len = decoder.readInt();
+    mg.loadArg(0);
+    mg.invokeInterface(DECODER_TYPE, getMethod(int.class, "readInt"));
+    mg.storeLocal(len);
+    mg.goTo(beginWhile);
+
+    mg.mark(endWhile);
+  }
+
+  /**
+   * Generates method body for decoding record. Fields that are not in the target schema are skipped.
+   * The logic is like this:
+   *
+   * <pre>
+   * {@code
+   *
+   * Object record = this.recordInstantiator.create();
+   * List<Schema.Field> fields = sourceSchema.getFields();
+   * this.fieldAccessor.set(record, decodeField(decoder, fields.get(0).getSchema()));
+   * skip(decoder, fields.get(1).getSchema());    // For field that is not in the target schema
+   * ...
+   * return record;
+   * }
+   * </pre>
+   */
+  private void decodeRecord(GeneratorAdapter mg, TypeToken<?> inputType, Schema sourceSchema, Schema targetSchema) {
+    try {
+      Class<?> rawType = inputType.getRawType();
+
+      int record = mg.newLocal(Type.getType(Object.class));
+      createInstance(mg, rawType);
+      mg.storeLocal(record);
+
+      // Store the list of schema fields.
+      mg.loadArg(1);
+      mg.invokeVirtual(SCHEMA_TYPE, getMethod(List.class, "getFields"));
+      int fieldSchemas = mg.newLocal(Type.getType(List.class));
+      mg.storeLocal(fieldSchemas);
+
+      List<Schema.Field> fields = sourceSchema.getFields();
+      for (int i = 0; i < fields.size(); i++) {
+        Schema.Field field = fields.get(i);
+        Schema.Field targetField = targetSchema.getField(field.getName());
+
+        if (targetField == null) {
+          // skip(decoder, fieldSchemas.get(i).getSchema());
+          mg.loadArg(0);
+          loadFieldSchema(mg, fieldSchemas, i);
+          mg.invokeStatic(BASE_TYPE, getMethod(void.class, "skip", Decoder.class, Schema.class));
+          continue;
+        }
+
+        TypeToken<?> fieldType = inputType.resolveType(Fields.findField(inputType.getType(),
+                                                                        field.getName()).getGenericType());
+        fieldAccessorRequests.put(rawType, field.getName());
+
+        // this.fieldAccessor.setXXX(record, decodeField(decoder, fieldSchemas.get(i).getSchema()));
+        mg.loadThis();
+        mg.getField(classType, getFieldAccessorName(rawType, field.getName()), Type.getType(FieldAccessor.class));
+        mg.loadLocal(record);
+        mg.loadThis();
+        mg.loadArg(0);
+        loadFieldSchema(mg, fieldSchemas, i);
+        mg.invokeVirtual(classType, getDecodeMethod(fieldType, field.getSchema(), targetField.getSchema()));
+        mg.invokeInterface(Type.getType(FieldAccessor.class), getAccessorMethod(fieldType));
+      }
+
+      mg.loadLocal(record);
+      mg.returnValue();
+    } catch (Exception e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+  /**
+   * Generates method body for decoding union. The branch of the target schema for each branch of the
+   * source schema is resolved during generation. The logic is like this:
+   *
+   * <pre>
+   * {@code
+   *
+   * int idx = decoder.readInt();
+   * if (idx == 0) {
+   *   return decodeBranch0(decoder, sourceSchema.getUnionSchema(0));
+   * }
+   * if (idx == 1) {
+   *   return decodeBranch1(decoder, sourceSchema.getUnionSchema(1));
+   * }
+   * ...
+   * throw new IOException(...);
+   * }
+   * </pre>
+   */
+  private void decodeUnion(GeneratorAdapter mg, TypeToken<?> inputType, Schema sourceSchema, Schema targetSchema) {
+    int idx = mg.newLocal(Type.INT_TYPE);
+    mg.loadArg(0);
+    mg.invokeInterface(DECODER_TYPE, getMethod(int.class, "readInt"));
+    mg.storeLocal(idx);
+
+    List<Schema> unionSchemas = sourceSchema.getUnionSchemas();
+    for (int i = 0; i < unionSchemas.size(); i++) {
+      Label nextBranch = mg.newLabel();
+      mg.loadLocal(idx);
+      mg.push(i);
+      mg.ifICmp(GeneratorAdapter.NE, nextBranch);
+
+      Schema sourceValueSchema = unionSchemas.get(i);
+      Schema targetValueSchema = resolveUnionBranch(sourceValueSchema, i, targetSchema, inputType);
+      if (targetValueSchema == null) {
+        mg.throwException(Type.getType(IOException.class),
+                          String.format("Fail to resolve %s in union to target schema", sourceValueSchema.getType()));
+      } else {
+        mg.loadThis();
+        mg.loadArg(0);
+        mg.loadArg(1);
+        mg.push(i);
+        mg.invokeVirtual(SCHEMA_TYPE, getMethod(Schema.class, "getUnionSchema", int.class));
+        mg.invokeVirtual(classType, getDecodeMethod(inputType, sourceValueSchema, targetValueSchema));
+        mg.returnValue();
+      }
+      mg.mark(nextBranch);
+    }
+    mg.throwException(Type.getType(IOException.class), "Invalid union index");
+  }
+
+  /**
+   * Invokes the given decode method and boxes the result if the given type is primitive.
+   */
+  private void invokeDecode(GeneratorAdapter mg, Method decodeMethod, TypeToken<?> type, int schemaLocal) {
+    mg.loadThis();
+    mg.loadArg(0);
+    mg.loadLocal(schemaLocal);
+    mg.invokeVirtual(classType, decodeMethod);
+    if (type.getRawType().isPrimitive()) {
+      mg.valueOf(Type.getType(type.getRawType()));
+    }
+  }
+
+  /**
+   * Generates code to create a new instance of the given class with the {@link Instantiator}.
+   */
+  private void createInstance(GeneratorAdapter mg, Class<?> cls) {
+    instantiatorRequests.add(cls);
+    preserve(cls);
+    mg.loadThis();
+    mg.getField(classType, getInstantiatorName(cls), Type.getType(Instantiator.class));
+    mg.invokeInterface(Type.getType(Instantiator.class), getMethod(Object.class, "create"));
+  }
+
+  /**
+   * Generates code to load the schema of the field at the given index from the local list of fields.
+   */
+  private void loadFieldSchema(GeneratorAdapter mg, int fieldSchemas, int index) {
+    mg.loadLocal(fieldSchemas);
+    mg.push(index);
+    mg.invokeInterface(Type.getType(List.class), getMethod(Object.class, "get", int.class));
+    mg.checkCast(Type.getType(Schema.Field.class));
+    mg.invokeVirtual(Type.getType(Schema.Field.class), getMethod(Schema.class, "getSchema"));
+  }
+
+  /**
+   * Generates code to load the given class with {@link Class#forName(String)} so that classes that are not
+   * accessible from the generated class can be used.
+   */
+  private void loadClass(GeneratorAdapter mg, Class<?> cls) {
+    mg.push(cls.getName());
+    mg.invokeStatic(Type.getType(Class.class), getMethod(Class.class, "forName", String.class));
+  }
+
+  /**
+   * Adds the given class to the list of classes that the generated class should use as is.
+   */
+  private void preserve(Class<?> cls) {
+    while (cls.isArray()) {
+      cls = cls.getComponentType();
+    }
+    if (!cls.isPrimitive()) {
+      preservedClasses.add(cls);
+    }
+  }
+
+  /**
+   * Returns whether data of the given source schema can be decoded to the given type with the target schema.
+   *
+   * @param resolving set of record resolutions being checked, for supporting recursive types
+   */
+  private boolean isResolvable(Schema sourceSchema, Schema targetSchema, TypeToken<?> type, Set<String> resolving) {
+    Schema.Type sourceType = sourceSchema.getType();
+    Schema.Type targetType = targetSchema.getType();
+    Class<?> rawType = type.getRawType();
+
+    if (sourceType == Schema.Type.UNION) {
+      // Each branch is resolved separately. Branches that cannot be resolved fail at read time.
+      return true;
+    }
+    if (targetType == Schema.Type.UNION) {
+      return findResolvable(sourceSchema, targetSchema.getUnionSchemas(), type, resolving) != null;
+    }
+    if (PROMOTIONS.containsKey(sourceType)) {
+      return isSimpleResolvable(sourceType, targetType, rawType);
+    }
+    if (sourceType != targetType) {
+      return false;
+    }
+
+    switch (sourceType) {
+      case NULL:
+        return !rawType.isPrimitive();
+      case BYTES:
+        return byte[].class.equals(rawType) || UUID.class.equals(rawType) || rawType.isAssignableFrom(ByteBuffer.class);
+      case ENUM:
+        return rawType.isEnum();
+      case ARRAY: {
+        TypeToken<?> componentType = getComponentType(type);
+        return componentType != null && isResolvable(sourceSchema.getComponentSchema(),
+                                                     targetSchema.getComponentSchema(), componentType, resolving);
+      }
+      case MAP: {
+        java.lang.reflect.Type[] typeArgs = getMapTypeArgs(type);
+        if (typeArgs == null) {
+          return false;
+        }
+        Map.Entry<Schema, Schema> sourceMapSchema = sourceSchema.getMapSchema();
+        Map.Entry<Schema, Schema> targetMapSchema = targetSchema.getMapSchema();
+        return isResolvable(sourceMapSchema.getKey(), targetMapSchema.getKey(), TypeToken.of(typeArgs[0]), resolving)
+          && isResolvable(sourceMapSchema.getValue(), targetMapSchema.getValue(),
+                          TypeToken.of(typeArgs[1]), resolving);
+      }
+      case RECORD:
+        return isRecordResolvable(sourceSchema, targetSchema, type, resolving);
+    }
+    return false;
+  }
+
+  private boolean isRecordResolvable(Schema sourceSchema, Schema targetSchema,
+                                     TypeToken<?> type, Set<String> resolving) {
+    Class<?> rawType = type.getRawType();
+    if (rawType.isPrimitive() || rawType.isArray() || rawType.isInterface()) {
+      return false;
+    }
+    if (!resolving.add(type + ":" + sourceSchema.getSchemaHash() + ":" + targetSchema.getSchemaHash())) {
+      // It is a recursive type that is being resolved
+      return true;
+    }
+    for (Schema.Field field : sourceSchema.getFields()) {
+      Schema.Field targetField = targetSchema.getField(field.getName());
+      if (targetField == null) {
+        continue;
+      }
+      TypeToken<?> fieldType;
+      try {
+        fieldType = type.resolveType(Fields.findField(type.getType(), field.getName()).getGenericType());
+      } catch (NoSuchFieldException e) {
+        return false;
+      }
+      if (!isResolvable(field.getSchema(), targetField.getSchema(), fieldType, resolving)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns whether the given simple source schema type can be promoted to the target schema type and
+   * be converted to the given type.
+   */
+  private boolean isSimpleResolvable(Schema.Type sourceType, Schema.Type targetType, Class<?> rawType) {
+    if (!PROMOTIONS.get(sourceType).contains(targetType)) {
+      return false;
+    }
+    if (targetType == Schema.Type.STRING) {
+      return URI.class.equals(rawType) || URL.class.equals(rawType) || rawType.isAssignableFrom(String.class);
+    }
+    Class<?> unwrapped = Primitives.unwrap(rawType);
+    if (unwrapped.isPrimitive()) {
+      return (targetType == Schema.Type.BOOLEAN) == boolean.class.equals(unwrapped);
+    }
+    return rawType.isAssignableFrom(Primitives.wrap(getSchemaClass(targetType)));
+  }
+
+  /**
+   * Returns the first schema in the given list that the source schema can be resolved to, or {@code null} if
+   * none of them can be resolved.
+   */
+  @Nullable
+  private Schema findResolvable(Schema sourceSchema, List<Schema> targetSchemas,
+                                TypeToken<?> type, Set<String> resolving) {
+    for (Schema targetSchema : targetSchemas) {
+      if (isResolvable(sourceSchema, targetSchema, type, resolving)) {
+        return targetSchema;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the target schema that a branch in the source union schema resolves to, or {@code null} if the
+   * branch cannot be resolved. If the target is also a union, the branch at the same index is tried first.
+   */
+  @Nullable
+  private Schema resolveUnionBranch(Schema sourceValueSchema, int index, Schema targetSchema, TypeToken<?> type) {
+    if (targetSchema.getType() != Schema.Type.UNION) {
+      return isResolvable(sourceValueSchema, targetSchema, type, Sets.<String>newHashSet()) ? targetSchema : null;
+    }
+
+    List<Schema> targetSchemas = targetSchema.getUnionSchemas();
+    if (index < targetSchemas.size()) {
+      Schema targetValueSchema = targetSchemas.get(index);
+      if (targetValueSchema.getType() == sourceValueSchema.getType()
+        && isResolvable(sourceValueSchema, targetValueSchema, type, Sets.<String>newHashSet())) {
+        return targetValueSchema;
+      }
+    }
+    return findResolvable(sourceValueSchema, targetSchemas, type, Sets.<String>newHashSet());
+  }
+
+  /**
+   * Returns the component type of the given array or {@link Collection} type, or {@code null} if it is not
+   * a supported array type.
+   */
+  @Nullable
+  private TypeToken<?> getComponentType(TypeToken<?> type) {
+    if (type.isArray()) {
+      return type.getComponentType();
+    }
+    if (Collection.class.isAssignableFrom(type.getRawType()) && type.getType() instanceof ParameterizedType) {
+      return TypeToken.of(((ParameterizedType) type.getType()).getActualTypeArguments()[0]);
+    }
+    return null;
+  }
+
+  /**
+   * Returns the key and value types of the given {@link Map} type, or {@code null} if it is not a
+   * supported map type.
+   */
+  @Nullable
+  private java.lang.reflect.Type[] getMapTypeArgs(TypeToken<?> type) {
+    if (Map.class.isAssignableFrom(type.getRawType()) && type.getType() instanceof ParameterizedType) {
+      return ((ParameterizedType) type.getType()).getActualTypeArguments();
+    }
+    return null;
+  }
+
+  /**
+   * Returns the Java class that the given simple schema type is decoded to by the {@link Decoder}.
+   */
+  private Class<?> getSchemaClass(Schema.Type schemaType) {
+    switch (schemaType) {
+      case BOOLEAN:
+        return boolean.class;
+      case INT:
+        return int.class;
+      case LONG:
+        return long.class;
+      case FLOAT:
+        return float.class;
+      case DOUBLE:
+        return double.class;
+      case STRING:
+        return String.class;
+    }
+    throw new IllegalArgumentException("Not a simple schema type " + schemaType);
+  }
+
+  private String getReadMethodName(Schema.Type schemaType) {
+    if (schemaType == Schema.Type.BOOLEAN) {
+      return "readBool";
+    }
+    return "read" + schemaType.name().charAt(0) + schemaType.name().substring(1).toLowerCase();
+  }
+
+  /**
+   * Returns the return type of the decode method. It is needed to work with private classes that the generated
+   * DatumReader doesn't have access to.
+   */
+  private Class<?> getCallType(TypeToken<?> type) {
+    Class<?> rawType = type.getRawType();
+    return rawType.isPrimitive() ? rawType : Object.class;
+  }
+
+  private String getClassName(TypeToken<?> inputType, Schema sourceSchema, Schema targetSchema) {
+    return String.format("%s/%s%s%s%s",
+                         DatumReader.class.getPackage().getName().replace('.', '/'),
+                         normalizeTypeName(inputType), DatumReader.class.getSimpleName(),
+                         sourceSchema.getSchemaHash(), targetSchema.getSchemaHash());
+  }
+
+  private String normalizeTypeName(TypeToken<?> type) {
+    String typeName = type.toString();
+    int dimension = 0;
+    while (type.isArray()) {
+      type = type.getComponentType();
+      typeName = type.toString();
+      dimension++;
+    }
+
+    typeName = typeName.replace(".", "")
+                        .replace("<", "Of")
+                        .replace(">", "")
+                        .replace(",", "To")
+                        .replace(" ", "")
+                        .replace("$", "");
+    if (dimension > 0) {
+      typeName = "Array" + dimension + typeName;
+    }
+    return typeName;
+  }
+
+  private Method getMethod(Class<?> returnType, String name, Class<?>...args) {
+    return Methods.getMethod(returnType, name, args);
+  }
+
+  /**
+   * Returns the method for calling {@link FieldAccessor} setter based on the data type.
+   * @param type Data type.
+   * @return A {@link Method} for calling {@link FieldAccessor}.
+   */
+  private Method getAccessorMethod(TypeToken<?> type) {
+    Class<?> rawType = type.getRawType();
+    if (rawType.isPrimitive()) {
+      return getMethod(void.class,
+                       String.format("set%c%s",
+                                     Character.toUpperCase(rawType.getName().charAt(0)),
+                                     rawType.getName().substring(1)),
+                       Object.class, rawType);
+    } else {
+      return getMethod(void.class, "set", Object.class, Object.class);
+    }
+  }
+
+  private String getClassFieldName(Class<?> cls) {
+    return String.format("class$%s", normalizeTypeName(TypeToken.of(cls)));
+  }
+
+  private String getInstantiatorName(Class<?> cls) {
+    return String.format("instantiator$%s", normalizeTypeName(TypeToken.of(cls)));
+  }
+
+  private String getFieldAccessorName(Class<?> recordType, String fieldName) {
+    return String.format("%s$%s", normalizeTypeName(TypeToken.of(recordType)), fieldName);
+  }
+
+  private static Map<Schema.Type, Set<Schema.Type>> createPromotions() {
+    Map<Schema.Type, Set<Schema.Type>> promotions = new EnumMap<>(Schema.Type.class);
+    promotions.put(Schema.Type.BOOLEAN, ImmutableSet.of(Schema.Type.BOOLEAN, Schema.Type.STRING));
+    promotions.put(Schema.Type.INT, ImmutableSet.of(Schema.Type.INT, Schema.Type.LONG, Schema.Type.FLOAT,
+                                                    Schema.Type.DOUBLE, Schema.Type.STRING));
+    promotions.put(Schema.Type.LONG, ImmutableSet.of(Schema.Type.LONG, Schema.Type.FLOAT,
+                                                     Schema.Type.DOUBLE, Schema.Type.STRING));
+    promotions.put(Schema.Type.FLOAT, ImmutableSet.of(Schema.Type.FLOAT, Schema.Type.DOUBLE, Schema.Type.STRING));
+    promotions.put(Schema.Type.DOUBLE, ImmutableSet.of(Schema.Type.DOUBLE, Schema.Type.STRING));
+    promotions.put(Schema.Type.STRING, ImmutableSet.of(Schema.Type.STRING));
+    return promotions;
+  }
+
+  /**
+   * Generates code for decoding one element in a block of array or map elements.
+   */
+  private interface BlockElementDecoder {
+    void decode(GeneratorAdapter mg);
+  }
+}
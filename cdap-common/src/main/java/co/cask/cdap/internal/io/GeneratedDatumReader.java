@@ -0,0 +1,176 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.io;
+
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.common.io.DatumReader;
+import co.cask.cdap.common.io.Decoder;
+import co.cask.cdap.common.lang.Instantiator;
+import co.cask.cdap.common.lang.InstantiatorFactory;
+import com.google.common.primitives.Longs;
+import com.google.common.reflect.TypeToken;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Base class for the {@link DatumReader} classes generated by {@link DatumReaderGenerator}. It provides
+ * helper methods that are called by the generated bytecode.
+ *
+ * @param <T> type of the object to decode
+ */
+public abstract class GeneratedDatumReader<T> implements DatumReader<T> {
+
+  private final InstantiatorFactory instantiatorFactory;
+  private final FieldAccessorFactory fieldAccessorFactory;
+
+  protected GeneratedDatumReader(InstantiatorFactory instantiatorFactory, FieldAccessorFactory fieldAccessorFactory) {
+    this.instantiatorFactory = instantiatorFactory;
+    this.fieldAccessorFactory = fieldAccessorFactory;
+  }
+
+  /**
+   * Returns an {@link Instantiator} for creating instances of the given class.
+   */
+  protected final Instantiator<?> getInstantiator(Class<?> cls) {
+    return instantiatorFactory.get(TypeToken.of(cls));
+  }
+
+  /**
+   * Returns a {@link FieldAccessor} for accessing the given field of the given class.
+   */
+  protected final FieldAccessor getFieldAccessor(Class<?> cls, String fieldName) {
+    return fieldAccessorFactory.getFieldAccessor(TypeToken.of(cls), fieldName);
+  }
+
+  /**
+   * Returns the content of the given {@link ByteBuffer} as a byte array.
+   */
+  protected static byte[] toBytes(ByteBuffer buffer) {
+    if (buffer.hasArray()) {
+      byte[] array = buffer.array();
+      if (buffer.remaining() == array.length) {
+        return array;
+      }
+      byte[] bytes = new byte[buffer.remaining()];
+      System.arraycopy(array, buffer.arrayOffset() + buffer.position(), bytes, 0, buffer.remaining());
+      return bytes;
+    }
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.get(bytes);
+    return bytes;
+  }
+
+  /**
+   * Returns a {@link UUID} decoded from the given {@link ByteBuffer} or the buffer itself if it doesn't
+   * contain a {@link UUID}.
+   */
+  protected static Object toUUID(ByteBuffer buffer) {
+    if (buffer.remaining() == Longs.BYTES * 2) {
+      return new UUID(buffer.getLong(), buffer.getLong());
+    }
+    return buffer;
+  }
+
+  /**
+   * Returns an array of the given component type that contains all elements of the given collection.
+   */
+  protected static Object toArray(Collection<?> collection, Class<?> componentType) {
+    Object array = Array.newInstance(componentType, collection.size());
+    int idx = 0;
+    for (Object obj : collection) {
+      Array.set(array, idx++, obj);
+    }
+    return array;
+  }
+
+  /**
+   * Returns the enum constant of the given enum class with the given name.
+   *
+   * @throws IOException if the enum class doesn't have a constant with the given name
+   */
+  @SuppressWarnings("unchecked")
+  protected static Object toEnum(Class<?> enumClass, String value) throws IOException {
+    try {
+      return Enum.valueOf(enumClass.asSubclass(Enum.class), value);
+    } catch (IllegalArgumentException e) {
+      throw new IOException(String.format("Enum value '%s' missing in target.", value), e);
+    }
+  }
+
+  /**
+   * Skips a value of the given schema from the decoder.
+   */
+  protected static void skip(Decoder decoder, Schema schema) throws IOException {
+    switch (schema.getType()) {
+      case NULL:
+        break;
+      case BOOLEAN:
+        decoder.readBool();
+        break;
+      case INT:
+        decoder.readInt();
+        break;
+      case LONG:
+        decoder.readLong();
+        break;
+      case FLOAT:
+        decoder.skipFloat();
+        break;
+      case DOUBLE:
+        decoder.skipDouble();
+        break;
+      case BYTES:
+        decoder.skipBytes();
+        break;
+      case STRING:
+        decoder.skipString();
+        break;
+      case ENUM:
+        decoder.readInt();
+        break;
+      case ARRAY:
+        for (int len = decoder.readInt(); len != 0; len = decoder.readInt()) {
+          for (int i = 0; i < len; i++) {
+            skip(decoder, schema.getComponentSchema());
+          }
+        }
+        break;
+      case MAP:
+        Map.Entry<Schema, Schema> mapSchema = schema.getMapSchema();
+        for (int len = decoder.readInt(); len != 0; len = decoder.readInt()) {
+          for (int i = 0; i < len; i++) {
+            skip(decoder, mapSchema.getKey());
+            skip(decoder, mapSchema.getValue());
+          }
+        }
+        break;
+      case RECORD:
+        for (Schema.Field field : schema.getFields()) {
+          skip(decoder, field.getSchema());
+        }
+        break;
+      case UNION:
+        skip(decoder, schema.getUnionSchema(decoder.readInt()));
+        break;
+    }
+  }
+}
@@ -0,0 +1,332 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.io;
+
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.api.data.schema.UnsupportedTypeException;
+import co.cask.cdap.common.io.BinaryDecoder;
+import co.cask.cdap.common.io.BinaryEncoder;
+import co.cask.cdap.common.io.DatumReader;
+import co.cask.cdap.internal.io.ASMDatumReaderFactory;
+import co.cask.cdap.internal.io.ASMFieldAccessorFactory;
+import co.cask.cdap.internal.io.ReflectionDatumWriter;
+import co.cask.cdap.internal.io.ReflectionSchemaGenerator;
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.reflect.TypeToken;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Tests for the {@link DatumReader} created by {@link ASMDatumReaderFactory}.
+ */
+public class ASMDatumReaderTest {
+
+  private static final ASMDatumReaderFactory DATUM_READER_FACTORY
+    = new ASMDatumReaderFactory(new ASMFieldAccessorFactory());
+
+  /**
+   *
+   */
+  public static class Value {
+    private final int id;
+    private final String name;
+
+    public Value(int id, String name) {
+      this.id = id;
+      this.name = name;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+
+      Value value = (Value) o;
+      return id == value.id && name.equals(value.name);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(id, name);
+    }
+  }
+
+  /**
+   *
+   */
+  public static class Record1 {
+    private final int i;
+    private final Map<Integer, Value> properties;
+    private final int[] numbers;
+    private final URL url;
+    private final UUID uuid;
+    private final String nullStr;
+
+    public Record1(int i, Map<Integer, Value> properties, URL url) {
+      this.i = i;
+      this.properties = properties;
+      this.numbers = new int[] {1, 2};
+      this.url = url;
+      this.uuid = UUID.randomUUID();
+      this.nullStr = null;
+    }
+  }
+
+  /**
+   *
+   */
+  public static class Record2 {
+    private final Long i;
+    private final Map<String, Value> properties;
+    private final String name;
+    private final long[] numbers;
+    private final URI url;
+    private final UUID uuid;
+    private final String nullStr;
+
+    public Record2(long i, Map<String, Value> properties, String name) {
+      this.i = i;
+      this.properties = properties;
+      this.name = name;
+      this.numbers = new long[0];
+      this.url = null;
+      this.uuid = null;
+      this.nullStr = "notNull";
+    }
+  }
+
+  @Test
+  public void testTypeProject() throws IOException, UnsupportedTypeException {
+    Record1 r1 = new Record1(10, Maps.<Integer, Value>newHashMap(), new URL("http://www.yahoo.com"));
+    r1.properties.put(1, new Value(1, "Name1"));
+    r1.properties.put(2, new Value(2, "Name2"));
+    r1.properties.put(3, null);
+
+    Schema sourceSchema = new ReflectionSchemaGenerator().generate(Record1.class);
+    Schema targetSchema = new ReflectionSchemaGenerator().generate(Record2.class);
+
+    byte[] bytes = encode(r1, sourceSchema);
+    Record2 r2 = DATUM_READER_FACTORY.create(TypeToken.of(Record2.class), targetSchema)
+                                     .read(decoder(bytes), sourceSchema);
+
+    Assert.assertEquals(10L, r2.i.longValue());
+
+    Map<String, Value> expected = Maps.newHashMap();
+    for (Map.Entry<Integer, Value> entry : r1.properties.entrySet()) {
+      expected.put(entry.getKey().toString(), entry.getValue());
+    }
+    Assert.assertEquals(expected, r2.properties);
+
+    Assert.assertNull(r2.name);
+    Assert.assertNull(r2.nullStr);
+    Assert.assertArrayEquals(new long[] {1L, 2L}, r2.numbers);
+    Assert.assertEquals(URI.create("http://www.yahoo.com"), r2.url);
+    Assert.assertEquals(r1.uuid, r2.uuid);
+  }
+
+  @Test
+  public void testCollection() throws UnsupportedTypeException, IOException {
+    List<String> list = Lists.newArrayList("1", "2", "3");
+    Schema sourceSchema = new ReflectionSchemaGenerator().generate(new TypeToken<List<String>>() { }.getType());
+    Schema targetSchema = new ReflectionSchemaGenerator().generate(new TypeToken<Set<String>>() { }.getType());
+
+    byte[] bytes = encode(list, sourceSchema);
+    Set<String> set = DATUM_READER_FACTORY.create(new TypeToken<Set<String>>() { }, targetSchema)
+                                          .read(decoder(bytes), sourceSchema);
+    Assert.assertEquals(Sets.newHashSet("1", "2", "3"), set);
+
+    targetSchema = new ReflectionSchemaGenerator().generate(String[].class);
+    String[] array = DATUM_READER_FACTORY.create(new TypeToken<String[]>() { }, targetSchema)
+                                         .read(decoder(bytes), sourceSchema);
+    Assert.assertArrayEquals(new String[] {"1", "2", "3"}, array);
+  }
+
+  /**
+   *
+   */
+  public static final class MoreFields {
+
+    static final class Inner {
+      final Map<String, String> map;
+      final String b;
+
+      Inner(String b) {
+        this.b = b;
+        map = ImmutableMap.of("b", b);
+      }
+    }
+
+    final int i;
+    final double d;
+    final String k;
+    final List<String> list;
+    final Inner inner;
+
+    public MoreFields(int i, double d, String k, List<String> list) {
+      this.i = i;
+      this.d = d;
+      this.k = k;
+      this.list = list;
+      inner = new Inner("inner");
+    }
+  }
+
+  /**
+   *
+   */
+  public static final class LessFields {
+    static final class Inner {
+      String b;
+    }
+
+    String k;
+    Inner inner;
+  }
+
+  @Test
+  public void testReduceProjection() throws IOException, UnsupportedTypeException {
+    Schema sourceSchema = new ReflectionSchemaGenerator().generate(MoreFields.class);
+    Schema targetSchema = new ReflectionSchemaGenerator().generate(LessFields.class);
+
+    MoreFields moreFields = new MoreFields(10, 20.2, "30", ImmutableList.of("1", "2"));
+    LessFields lessFields = DATUM_READER_FACTORY.create(TypeToken.of(LessFields.class), targetSchema)
+                                                .read(decoder(encode(moreFields, sourceSchema)), sourceSchema);
+
+    Assert.assertEquals("30", lessFields.k);
+    Assert.assertEquals(moreFields.inner.b, lessFields.inner.b);
+  }
+
+  /**
+   *
+   */
+  public enum TestEnum {
+    VALUE1, VALUE2, VALUE3
+  }
+
+  @Test
+  public void testEnum() throws IOException, UnsupportedTypeException {
+    Schema schema = new ReflectionSchemaGenerator().generate(TestEnum.class);
+    ReflectionDatumWriter<TestEnum> writer = new ReflectionDatumWriter<>(schema);
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    BinaryEncoder encoder = new BinaryEncoder(output);
+    writer.encode(TestEnum.VALUE1, encoder);
+    writer.encode(TestEnum.VALUE3, encoder);
+    writer.encode(TestEnum.VALUE2, encoder);
+
+    BinaryDecoder decoder = decoder(output.toByteArray());
+    Schema readSchema = Schema.parseJson(schema.toString());
+    DatumReader<TestEnum> reader = DATUM_READER_FACTORY.create(TypeToken.of(TestEnum.class), readSchema);
+
+    Assert.assertEquals(TestEnum.VALUE1, reader.read(decoder, readSchema));
+    Assert.assertEquals(TestEnum.VALUE3, reader.read(decoder, readSchema));
+    Assert.assertEquals(TestEnum.VALUE2, reader.read(decoder, readSchema));
+  }
+
+  /**
+   *
+   */
+  public static final class Node {
+    short data;
+    Node left;
+    Node right;
+
+    Node(short data, Node left, Node right) {
+      this.data = data;
+      this.left = left;
+      this.right = right;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+
+      Node node = (Node) o;
+      return data == node.data && Objects.equal(left, node.left) && Objects.equal(right, node.right);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(data, left, right);
+    }
+  }
+
+  @Test
+  public void testTree() throws IOException, UnsupportedTypeException {
+    Schema schema = new ReflectionSchemaGenerator().generate(Node.class);
+    Node root = new Node((short) 1,
+                         new Node((short) 2, null, new Node((short) 3, null, null)),
+                         new Node((short) 4, new Node((short) 5, null, null), null));
+
+    DatumReader<Node> reader = DATUM_READER_FACTORY.create(TypeToken.of(Node.class), schema);
+    Assert.assertEquals(root, reader.read(decoder(encode(root, schema)), schema));
+  }
+
+  @Test
+  public void testSchemaChange() throws IOException, UnsupportedTypeException {
+    // The same reader should be able to read data written with different schemas
+    Schema intSchema = Schema.of(Schema.Type.INT);
+    Schema stringSchema = Schema.of(Schema.Type.STRING);
+    Schema nullableSchema = Schema.nullableOf(intSchema);
+
+    DatumReader<String> reader = DATUM_READER_FACTORY.create(TypeToken.of(String.class), stringSchema);
+    Assert.assertEquals("10", reader.read(decoder(encode(10, intSchema)), intSchema));
+    Assert.assertEquals("str", reader.read(decoder(encode("str", stringSchema)), stringSchema));
+    Assert.assertEquals("20", reader.read(decoder(encode(20, nullableSchema)), nullableSchema));
+
+    // Data of the null branch cannot be resolved to the target schema
+    try {
+      reader.read(decoder(encode(null, nullableSchema)), nullableSchema);
+      Assert.fail("Expected IOException");
+    } catch (IOException e) {
+      // Expected
+    }
+  }
+
+  private <T> byte[] encode(T value, Schema schema) throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    new ReflectionDatumWriter<T>(schema).encode(value, new BinaryEncoder(output));
+    return output.toByteArray();
+  }
+
+  private BinaryDecoder decoder(byte[] bytes) {
+    return new BinaryDecoder(new ByteArrayInputStream(bytes));
+  }
+}
@@ -994,6 +994,63 @@ public abstract class StreamDataFileTestBase {
     reader.close();
   }
 
+  @Test
+  public void testCompressedDataBlock() throws Exception {
+    for (StreamDataBlockCodec codec : StreamDataBlockCodec.values()) {
+      Location dir = StreamFileTestUtils.createTempDir(getLocationFactory());
+      Location eventFile = dir.getTempFile(".dat");
+      Location indexFile = dir.getTempFile(".idx");
+
+      StreamDataFileWriter writer = new StreamDataFileWriter(
+        Locations.newOutputSupplier(eventFile), Locations.newOutputSupplier(indexFile), 10L,
+        ImmutableMap.of(StreamDataFileConstants.Property.Key.CODEC, codec.getName()));
+
+      // Write 1000 events, with 10 events per timestamp, so that each data block contains multiple events
+      for (int i = 0; i < 100; i++) {
+        for (int j = 0; j < 10; j++) {
+          writer.append(StreamFileTestUtils.createEvent(i, "Compressed " + codec.getName() + " " + (i * 10 + j)));
+        }
+      }
+      writer.close();
+
+      // Read all events and verify the positions are strictly increasing
+      StreamDataFileReader reader = StreamDataFileReader.create(Locations.newInputSupplier(eventFile));
+      List<PositionStreamEvent> events = Lists.newArrayList();
+      Assert.assertEquals(1000, reader.read(events, 1000, 0, TimeUnit.SECONDS));
+      Assert.assertEquals(-1, reader.read(events, 1, 0, TimeUnit.SECONDS));
+      reader.close();
+
+      long lastPosition = -1L;
+      for (int i = 0; i < 1000; i++) {
+        PositionStreamEvent event = events.get(i);
+        Assert.assertEquals(i / 10, event.getTimestamp());
+        Assert.assertEquals("Compressed " + codec.getName() + " " + i,
+                            Charsets.UTF_8.decode(event.getBody().duplicate()).toString());
+        Assert.assertTrue(event.getStart() > lastPosition);
+        lastPosition = event.getStart();
+      }
+
+      // Read the events again by seeking to the event offset
+      for (PositionStreamEvent event : ImmutableList.copyOf(events)) {
+        reader = StreamDataFileReader.createWithOffset(Locations.newInputSupplier(eventFile),
+                                                       Locations.newInputSupplier(indexFile), event.getStart());
+        List<PositionStreamEvent> result = Lists.newArrayList();
+        Assert.assertEquals(1, reader.read(result, 1, 0, TimeUnit.SECONDS));
+        reader.close();
+        Assert.assertEquals(event.getStart(), result.get(0).getStart());
+        Assert.assertEquals(event.getBody(), result.get(0).getBody());
+      }
+
+      // Read the events by start time
+      reader = StreamDataFileReader.createByStartTime(Locations.newInputSupplier(eventFile),
+                                                      Locations.newInputSupplier(indexFile), 50L);
+      events.clear();
+      Assert.assertEquals(500, reader.read(events, 1000, 0, TimeUnit.SECONDS));
+      reader.close();
+      Assert.assertEquals(50L, events.get(0).getTimestamp());
+    }
+  }
+
   private FileWriter<StreamEvent> createWriter(StreamConfig config, String prefix) {
     return new TimePartitionedStreamFileWriter(config.getLocation(), config.getPartitionDuration(),
                                                prefix, config.getIndexInterval(), config.getStreamId(),
@@ -41,9 +41,12 @@ import co.cask.cdap.security.impersonation.Impersonator;
 import co.cask.cdap.security.impersonation.UnsupportedUGIProvider;
 import com.google.common.base.Charsets;
 import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import org.apache.twill.filesystem.Location;
 import org.junit.AfterClass;
 import org.junit.Assert;
@@ -60,8 +63,11 @@ import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -209,11 +215,105 @@ public abstract class ConcurrentStreamWriterTestBase {
   private ConcurrentStreamWriter createStreamWriter(StreamId streamId, StreamAdmin streamAdmin,
                                                     int threads, StreamFileWriterFactory writerFactory)
     throws Exception {
+    return createStreamWriter(streamId, streamAdmin, threads, writerFactory, Integer.MAX_VALUE);
+  }
+
+  private ConcurrentStreamWriter createStreamWriter(StreamId streamId, StreamAdmin streamAdmin,
+                                                    int threads, StreamFileWriterFactory writerFactory,
+                                                    int asyncBufferSize) throws Exception {
     StreamConfig streamConfig = streamAdmin.getConfig(streamId);
     streamConfig.getLocation().mkdirs();
 
-    return new ConcurrentStreamWriter(COORDINATOR_CLIENT, streamAdmin,
-                                      writerFactory, threads, new TestMetricsCollectorFactory(), impersonator);
+    return new ConcurrentStreamWriter(COORDINATOR_CLIENT, streamAdmin, writerFactory, threads,
+                                      new TestMetricsCollectorFactory(), impersonator, asyncBufferSize);
+  }
+
+  @Test
+  public void testAsyncBatchWrite() throws Exception {
+    NamespaceId namespace = new NamespaceId("namespace");
+    StreamId streamId = namespace.stream("testAsyncBatchWrite");
+    StreamAdmin streamAdmin = new TestStreamAdmin(getNamespacedLocationFactory(), Long.MAX_VALUE, 1000);
+
+    StreamFileWriterFactory fileWriterFactory = createStreamFileWriterFactory();
+    // Use a small async buffer so that submitting batches has to wait for earlier ones to be persisted
+    ConcurrentStreamWriter streamWriter = createStreamWriter(streamId, streamAdmin, 4, fileWriterFactory, 200);
+
+    int batches = 100;
+    int batchSize = 10;
+    int refused = 0;
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<ListenableFuture<Void>> futures = Lists.newArrayList();
+      for (int i = 0; i < batches; i++) {
+        List<StreamEventData> events = Lists.newArrayList();
+        for (int j = 0; j < batchSize; j++) {
+          events.add(new StreamEventData(ImmutableMap.<String, String>of(),
+                                         Charsets.UTF_8.encode("Message " + j + " from " + i)));
+        }
+        ListenableFuture<Void> future = streamWriter.tryAsyncEnqueue(streamId, events, executor);
+        while (future == null) {
+          refused++;
+          // Wait for space to be released, retrying once after adding the listener as required
+          final Semaphore released = new Semaphore(0);
+          streamWriter.addAsyncBufferListener(new Runnable() {
+            @Override
+            public void run() {
+              released.release();
+            }
+          });
+          future = streamWriter.tryAsyncEnqueue(streamId, events, executor);
+          if (future == null) {
+            Assert.assertTrue(released.tryAcquire(10, TimeUnit.SECONDS));
+            future = streamWriter.tryAsyncEnqueue(streamId, events, executor);
+          }
+        }
+        futures.add(future);
+      }
+      Futures.allAsList(futures).get(60, TimeUnit.SECONDS);
+    } finally {
+      executor.shutdownNow();
+    }
+
+    Location partitionLocation = streamAdmin.getConfig(streamId).getLocation().list().get(0);
+    Location streamLocation = StreamUtils.createStreamLocation(partitionLocation,
+                                                               fileWriterFactory.getFileNamePrefix(),
+                                                               0, StreamFileType.EVENT);
+    StreamDataFileReader reader = StreamDataFileReader.create(Locations.newInputSupplier(streamLocation));
+    List<StreamEvent> events = Lists.newArrayListWithCapacity(batches * batchSize);
+    Assert.assertEquals(batches * batchSize, reader.read(events, Integer.MAX_VALUE, 0, TimeUnit.SECONDS));
+    Assert.assertTrue(verifyEvents(batches, batchSize, events));
+
+    reader.close();
+    // The buffer only holds a few batches, hence some submissions must have been refused
+    Assert.assertTrue(refused > 0);
+    streamWriter.close();
+  }
+
+  @Test(timeout = 60000)
+  public void testAsyncBatchWriteRejected() throws Exception {
+    NamespaceId namespace = new NamespaceId("namespace");
+    StreamId streamId = namespace.stream("testAsyncBatchWriteRejected");
+    StreamAdmin streamAdmin = new TestStreamAdmin(getNamespacedLocationFactory(), Long.MAX_VALUE, 1000);
+    ConcurrentStreamWriter streamWriter = createStreamWriter(streamId, streamAdmin, 4,
+                                                             createStreamFileWriterFactory(), 200);
+
+    ExecutorService executor = Executors.newFixedThreadPool(1);
+    executor.shutdown();
+
+    // Each batch takes half of the async buffer, so it would be refused if rejected batches kept their share
+    List<StreamEventData> events = ImmutableList.of(
+      new StreamEventData(ImmutableMap.<String, String>of(), ByteBuffer.wrap(new byte[100])));
+    for (int i = 0; i < 3; i++) {
+      ListenableFuture<Void> future = streamWriter.tryAsyncEnqueue(streamId, events, executor);
+      Assert.assertNotNull(future);
+      try {
+        future.get();
+        Assert.fail("Expected the batch to fail");
+      } catch (ExecutionException e) {
+        Assert.assertTrue(e.getCause() instanceof RejectedExecutionException);
+      }
+    }
+    streamWriter.close();
   }
 
   private Runnable createWriterTask(final StreamId streamId,
@@ -0,0 +1,149 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data.stream;
+
+import org.xerial.snappy.Snappy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import javax.annotation.Nullable;
+
+/**
+ * Compression codecs for data blocks in stream event files.
+ *
+ * @see StreamDataFileWriter
+ */
+public enum StreamDataBlockCodec {
+
+  NONE {
+    @Override
+    byte[] compress(byte[] input, int offset, int length) {
+      return Arrays.copyOfRange(input, offset, offset + length);
+    }
+
+    @Override
+    void decompress(byte[] input, int offset, int length, byte[] output, int outputLength) throws IOException {
+      if (length != outputLength) {
+        throw new IOException("Expected data block of size " + outputLength + ", but got " + length);
+      }
+      System.arraycopy(input, offset, output, 0, length);
+    }
+  },
+
+  DEFLATE {
+    @Override
+    byte[] compress(byte[] input, int offset, int length) {
+      Deflater deflater = new Deflater();
+      try {
+        deflater.setInput(input, offset, length);
+        deflater.finish();
+        ByteArrayOutputStream output = new ByteArrayOutputStream(length / 2 + 16);
+        byte[] buffer = new byte[Math.min(Math.max(length, 64), 64 * 1024)];
+        while (!deflater.finished()) {
+          int len = deflater.deflate(buffer);
+          output.write(buffer, 0, len);
+        }
+        return output.toByteArray();
+      } finally {
+        deflater.end();
+      }
+    }
+
+    @Override
+    void decompress(byte[] input, int offset, int length, byte[] output, int outputLength) throws IOException {
+      Inflater inflater = new Inflater();
+      try {
+        inflater.setInput(input, offset, length);
+        int bytesInflated = 0;
+        while (bytesInflated < outputLength) {
+          int len = inflater.inflate(output, bytesInflated, outputLength - bytesInflated);
+          if (len == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+            throw new IOException("Expected data block of size " + outputLength
+                                    + ", but only " + bytesInflated + " bytes were decompressed");
+          }
+          bytesInflated += len;
+        }
+      } catch (DataFormatException e) {
+        throw new IOException("Corrupted data block", e);
+      } finally {
+        inflater.end();
+      }
+    }
+  },
+
+  SNAPPY {
+    @Override
+    byte[] compress(byte[] input, int offset, int length) throws IOException {
+      byte[] output = new byte[Snappy.maxCompressedLength(length)];
+      int len = Snappy.compress(input, offset, length, output, 0);
+      return Arrays.copyOf(output, len);
+    }
+
+    @Override
+    void decompress(byte[] input, int offset, int length, byte[] output, int outputLength) throws IOException {
+      if (Snappy.uncompressedLength(input, offset, length) != outputLength) {
+        throw new IOException("Expected data block of size " + outputLength);
+      }
+      Snappy.uncompress(input, offset, length, output, 0);
+    }
+  };
+
+  /**
+   * Returns the name of the codec as being stored in the stream file header and the stream configuration.
+   */
+  public String getName() {
+    return name().toLowerCase();
+  }
+
+  /**
+   * Compresses the given data.
+   *
+   * @return a new byte array containing the compressed data
+   */
+  abstract byte[] compress(byte[] input, int offset, int length) throws IOException;
+
+  /**
+   * Decompresses the given data into the output buffer.
+   *
+   * @param outputLength the expected size of the decompressed data
+   * @throws IOException if failed to decompress or if the decompressed data is not of the expected size
+   */
+  abstract void decompress(byte[] input, int offset, int length, byte[] output, int outputLength) throws IOException;
+
+  /**
+   * Returns the {@link StreamDataBlockCodec} of the given name.
+   *
+   * @param name name of the codec; {@code null} or empty means {@link #NONE}
+   * @throws IllegalArgumentException if the codec name is not supported
+   */
+  public static StreamDataBlockCodec fromName(@Nullable String name) {
+    if (name == null || name.isEmpty()) {
+      return NONE;
+    }
+    for (StreamDataBlockCodec codec : values()) {
+      if (codec.getName().equalsIgnoreCase(name)) {
+        return codec;
+      }
+    }
+    throw new IllegalArgumentException("Unsupported stream compression codec '" + name + "'. Supported codecs are "
+                                         + Arrays.toString(values()).toLowerCase());
+  }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014-2015 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -67,6 +67,7 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
   private boolean eof;
   private Decoder decoder;
   private StreamEvent eventTemplate;
+  private StreamDataBlockCodec codec;
 
   /**
    * Opens a new {@link StreamDataFileReader} with the given inputs.
@@ -289,7 +290,7 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
 
   private void readHeader() throws IOException {
     // Read the header of the event file
-    // First 2 bytes should be 'E' '1'
+    // First 2 bytes should be 'E' '1', 'E' '2' or 'E' '3'
     byte[] magic = new byte[StreamDataFileConstants.MAGIC_HEADER_SIZE];
     ByteStreams.readFully(eventInput, magic);
 
@@ -299,6 +300,7 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
     Map<String, String> properties = StreamUtils.decodeMap(new BinaryDecoder(eventInput));
 
     verifySchema(properties);
+    codec = getCodec(fileVersion, properties);
 
     // Create event template
     if (fileVersion >= 2) {
@@ -323,13 +325,36 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
     if (Arrays.equals(magic, StreamDataFileConstants.MAGIC_HEADER_V2)) {
       return 2;
     }
+    if (Arrays.equals(magic, StreamDataFileConstants.MAGIC_HEADER_V3)) {
+      return 3;
+    }
     throw new IOException(
-      String.format("Unsupported stream file format. First two bytes must be %s or %s",
+      String.format("Unsupported stream file format. First two bytes must be %s, %s or %s",
                     Bytes.toStringBinary(StreamDataFileConstants.MAGIC_HEADER_V1),
-                    Bytes.toStringBinary(StreamDataFileConstants.MAGIC_HEADER_V2))
+                    Bytes.toStringBinary(StreamDataFileConstants.MAGIC_HEADER_V2),
+                    Bytes.toStringBinary(StreamDataFileConstants.MAGIC_HEADER_V3))
     );
   }
 
+  /**
+   * Returns the {@link StreamDataBlockCodec} used for the data blocks in the file.
+   */
+  private StreamDataBlockCodec getCodec(int fileVersion, Map<String, String> properties) throws IOException {
+    if (fileVersion < 3) {
+      return StreamDataBlockCodec.NONE;
+    }
+    String codecKey = StreamDataFileConstants.Property.Key.CODEC;
+    String codecName = properties.get(codecKey);
+    if (codecName == null) {
+      throw new IOException("Missing '" + codecKey + "' property.");
+    }
+    try {
+      return StreamDataBlockCodec.fromName(codecName);
+    } catch (IllegalArgumentException e) {
+      throw new IOException("Unsupported codec " + codecName, e);
+    }
+  }
+
   /**
    * Creates a {@link StreamEvent} that will be used as a template for all events consumable from this reader.
    */
@@ -485,7 +510,7 @@ public final class StreamDataFileReader implements FileReader<PositionStreamEven
     // Use the template timestamp if available
     timestamp = eventTemplate.getTimestamp() >= 0 ? eventTemplate.getTimestamp() : timestamp;
     if (acceptTimestamp(filter, timestamp)) {
-      streamEventBuffer.fillBuffer(eventInput, readLength());
+      streamEventBuffer.fillBuffer(eventInput, readLength(), codec);
       this.timestamp = timestamp;
       return;
     }
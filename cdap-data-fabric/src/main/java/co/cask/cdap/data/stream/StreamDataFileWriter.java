@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014-2015 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -32,6 +32,7 @@ import com.google.common.io.OutputSupplier;
 import com.google.common.primitives.Longs;
 import org.apache.hadoop.fs.Syncable;
 
+import java.io.ByteArrayOutputStream;
 import java.io.Flushable;
 import java.io.IOException;
 import java.io.OutputStream;
@@ -48,17 +49,27 @@ import javax.annotation.concurrent.NotThreadSafe;
  * {@code
  *
  * event_file = <header> <data>* <end_marker>
- * header = "E" "1" <properties>
+ * header = "E" "2" <properties> | "E" "3" <properties>
  * properties = Avro encoded with the properties schema
- * data = <timestamp> <length> <stream_event>+
+ * data = <timestamp> <length> <stream_event>+ | <timestamp> <length> <compressed_block>
  * timestamp = 8 bytes int64 for timestamp in milliseconds
- * length = Avro encoded int32 for size in bytes for all <stream_event>s
+ * length = Avro encoded int32 for size in bytes for all <stream_event>s or of the <compressed_block>
  * stream_event = Avro encoded bytes according to the StreamData schema
+ * compressed_block = <uncompressed_length> <compressed_length> <compressed_stream_events> <padding>
+ * uncompressed_length = Avro encoded int32 for size in bytes for all <stream_event>s before compression
+ * compressed_length = Avro encoded int32 for size in bytes of the <compressed_stream_events>
+ * compressed_stream_events = <stream_event>+ compressed with the codec specified in the "stream.codec" property
+ * padding = zero bytes to make the <compressed_block> size at least the number of <stream_event>s in it
  * end_marker = 8 bytes int64 with value == -(close_timestamp)
  *
  * }
  * </pre>
  *
+ * Files with data blocks compressed are of version 3, with the codec name stored in the "stream.codec"
+ * property. Uncompressed files are of version 2. Each event in a compressed data block has position
+ * equals to the block starting position plus the event index within the block, hence the padding to make
+ * sure that event positions are unique and always within the block.
+ *
  * Stream index file:
  *
  * <pre>
@@ -84,6 +95,8 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
   private final long indexInterval;
   private final BufferedEncoder encoder;
   private final BufferedEncoder lengthEncoder;
+  private final StreamDataBlockCodec codec;
+  private final BlockOutputStream blockOutput;
 
   // Timestamp for the current block
   private long currentTimestamp;
@@ -92,6 +105,8 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
   private boolean synced;
   private boolean closed;
   private long closeTimestamp;
+  // Number of events in the current data block
+  private int blockEventCount;
 
   /**
    * Constructs a new instance that writes to given outputs. Same as calling
@@ -110,12 +125,16 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
    * @param eventOutputSupplier the provider of the {@link OutputStream} for writing events
    * @param indexOutputSupplier the provider of the {@link OutputStream} for writing the index
    * @param indexInterval the time interval in milliseconds for emitting a new index entry
-   * @param properties the property set that will be stored as file properties
+   * @param properties the property set that will be stored as file properties. Data blocks will be compressed
+   *                   with the codec specified by the {@link StreamDataFileConstants.Property.Key#CODEC} property
    * @throws IOException if there is an error in preparing the output streams
+   * @throws IllegalArgumentException if the codec property is not supported
    */
   public StreamDataFileWriter(OutputSupplier<? extends OutputStream> eventOutputSupplier,
                               OutputSupplier<? extends OutputStream> indexOutputSupplier,
                               long indexInterval, Map<String, String> properties) throws IOException {
+    this.codec = StreamDataBlockCodec.fromName(properties.get(StreamDataFileConstants.Property.Key.CODEC));
+    this.blockOutput = codec == StreamDataBlockCodec.NONE ? null : new BlockOutputStream();
     this.eventOutput = eventOutputSupplier.getOutput();
     try {
       this.indexOutput = indexOutputSupplier.getOutput();
@@ -222,6 +241,7 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
 
       // Encodes the event data into buffer.
       StreamEventDataCodec.encode(event, encoder);
+      blockEventCount++;
 
       // Optionally flush if already filled up the buffer.
       if (encoder.size() >= flushLimit) {
@@ -234,11 +254,17 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
   }
 
   private void init(Map<String, String> properties) throws IOException {
-    // Writes the header for event file
-    encoder.writeRaw(StreamDataFileConstants.MAGIC_HEADER_V2);
-
+    // Writes the header for event file. Only use the new version if compression is used so that
+    // uncompressed files can still be read by older readers.
     Map<String, String> headers = Maps.newHashMap(properties);
     headers.put(StreamDataFileConstants.Property.Key.SCHEMA, StreamEventDataCodec.STREAM_DATA_SCHEMA.toString());
+    if (codec == StreamDataBlockCodec.NONE) {
+      encoder.writeRaw(StreamDataFileConstants.MAGIC_HEADER_V2);
+      headers.remove(StreamDataFileConstants.Property.Key.CODEC);
+    } else {
+      encoder.writeRaw(StreamDataFileConstants.MAGIC_HEADER_V3);
+      headers.put(StreamDataFileConstants.Property.Key.CODEC, codec.getName());
+    }
     StreamUtils.encodeMap(headers, encoder);
 
     long headerSize = encoder.size();
@@ -278,16 +304,22 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
       indexOffset = position - Bytes.SIZEOF_LONG;
     }
 
-    // Writes the size of the encoded event
-    lengthEncoder.writeInt(encoder.size());
-    int size = lengthEncoder.size();
-    lengthEncoder.writeTo(eventOutput);
-    position += size;
+    if (codec == StreamDataBlockCodec.NONE) {
+      // Writes the size of the encoded event
+      lengthEncoder.writeInt(encoder.size());
+      int size = lengthEncoder.size();
+      lengthEncoder.writeTo(eventOutput);
+      position += size;
+
+      // Writes all encoded data from the buffer to the output.
+      size = encoder.size();
+      encoder.writeTo(eventOutput);
+      position += size;
+    } else {
+      writeCompressedBlock();
+    }
+    blockEventCount = 0;
 
-    // Writes all encoded data from the buffer to the output.
-    size = encoder.size();
-    encoder.writeTo(eventOutput);
-    position += size;
     if (sync) {
       sync(eventOutput);
     }
@@ -310,6 +342,36 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
     synced = sync;
   }
 
+  /**
+   * Compresses all encoded data in the buffer and writes it to the output as a compressed block.
+   */
+  private void writeCompressedBlock() throws IOException {
+    int uncompressedSize = encoder.size();
+    blockOutput.reset();
+    encoder.writeTo(blockOutput);
+    byte[] compressed = codec.compress(blockOutput.getBuffer(), 0, uncompressedSize);
+
+    // Block header is the uncompressed length and the compressed length
+    lengthEncoder.writeInt(uncompressedSize);
+    lengthEncoder.writeInt(compressed.length);
+    int blockHeaderSize = lengthEncoder.size();
+
+    // Pad the block so that every event in the block can have a unique position within the block
+    int padding = Math.max(0, blockEventCount - blockHeaderSize - compressed.length);
+    int blockSize = blockHeaderSize + compressed.length + padding;
+
+    // Writes the size of the block, followed by the block
+    encoder.writeInt(blockSize);
+    int size = encoder.size();
+    encoder.writeTo(eventOutput);
+    lengthEncoder.writeTo(eventOutput);
+    eventOutput.write(compressed);
+    if (padding > 0) {
+      eventOutput.write(new byte[padding]);
+    }
+    position += size + blockSize;
+  }
+
   private void sync(OutputStream output) throws IOException {
     if (output instanceof Syncable) {
       ((Syncable) output).hsync();
@@ -337,4 +399,18 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
       }
     };
   }
+
+  /**
+   * A {@link ByteArrayOutputStream} that exposes the internal buffer to avoid copying.
+   */
+  private static final class BlockOutputStream extends ByteArrayOutputStream {
+
+    BlockOutputStream() {
+      super(BUFFER_SIZE);
+    }
+
+    byte[] getBuffer() {
+      return buf;
+    }
+  }
 }
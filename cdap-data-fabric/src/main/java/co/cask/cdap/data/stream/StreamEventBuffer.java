@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015 Cask Data, Inc.
+ * Copyright © 2015-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -24,6 +24,7 @@ import co.cask.cdap.common.stream.StreamEventDataCodec;
 import co.cask.cdap.data.file.ReadFilter;
 import co.cask.common.io.ByteBufferInputStream;
 
+import java.io.ByteArrayInputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
@@ -33,6 +34,10 @@ import javax.annotation.concurrent.NotThreadSafe;
 /**
  * A buffer for holding encoded stream events. It is used by {@link StreamDataFileReader} for holding
  * encoded stream events in each data block.
+ *
+ * For uncompressed data block, the position of an event is the position of the event in the stream file.
+ * For compressed data block, the position of an event is the starting position of the block plus the index
+ * of the event in the block.
  */
 @NotThreadSafe
 final class StreamEventBuffer {
@@ -41,13 +46,18 @@ final class StreamEventBuffer {
   private final Decoder decoder;
 
   private ByteBuffer buffer;
+  private byte[] compressedBuffer;
   private long basePosition;
+  private boolean compressed;
+  private long compressedEndPosition;
+  private int eventIndex;
 
   StreamEventBuffer() {
     this.buffer = ByteBuffers.EMPTY_BUFFER;
     this.bufferInput = new ByteBufferInputStream(buffer);
     this.decoder = new BinaryDecoder(bufferInput);
     this.basePosition = -1L;
+    this.compressedBuffer = new byte[0];
   }
 
   /**
@@ -59,20 +69,50 @@ final class StreamEventBuffer {
    * @throws EOFException if failed to read the given number of bytes from the input
    */
   void fillBuffer(SeekableInputStream input, int size) throws IOException {
+    fillBuffer(input, size, StreamDataBlockCodec.NONE);
+  }
+
+  /**
+   * Fills the internal buffer by reading a data block from the given input stream.
+   *
+   * @param input input stream to read from
+   * @param size number of bytes to read
+   * @param codec the codec used for compressing the data block
+   * @throws IOException if failed to read from the stream
+   * @throws EOFException if failed to read the given number of bytes from the input
+   */
+  void fillBuffer(SeekableInputStream input, int size, StreamDataBlockCodec codec) throws IOException {
     buffer.clear();
-    buffer = ensureCapacity(buffer, size);
+    compressed = codec != StreamDataBlockCodec.NONE;
+    eventIndex = 0;
 
     try {
       basePosition = input.getPos();
-      int bytesRead = 0;
-      while (bytesRead != size) {
-        int len = input.read(buffer.array(), bytesRead, size - bytesRead);
-        if (len < 0) {
-          throw new EOFException("Expected to read " + size + ", but only " + bytesRead + " was read");
+      if (!compressed) {
+        buffer = ensureCapacity(buffer, size);
+        readFully(input, buffer.array(), size);
+        buffer.limit(size);
+      } else {
+        if (compressedBuffer.length < size) {
+          compressedBuffer = new byte[size];
+        }
+        readFully(input, compressedBuffer, size);
+        compressedEndPosition = basePosition + size;
+
+        // Decode the block header, which contains the uncompressed and compressed lengths
+        ByteArrayInputStream blockInput = new ByteArrayInputStream(compressedBuffer, 0, size);
+        Decoder blockDecoder = new BinaryDecoder(blockInput);
+        int uncompressedSize = blockDecoder.readInt();
+        int compressedSize = blockDecoder.readInt();
+        int offset = size - blockInput.available();
+        if (uncompressedSize < 0 || compressedSize < 0 || offset + compressedSize > size) {
+          throw new IOException("Corrupted compressed data block at position " + basePosition);
         }
-        bytesRead += len;
+
+        buffer = ensureCapacity(buffer, uncompressedSize);
+        codec.decompress(compressedBuffer, offset, compressedSize, buffer.array(), uncompressedSize);
+        buffer.limit(uncompressedSize);
       }
-      buffer.limit(size);
       bufferInput.reset(buffer);
     } catch (IOException e) {
       // Make the buffer has nothing to read
@@ -94,7 +134,13 @@ final class StreamEventBuffer {
    * read from the stream.
    */
   long getPosition() {
-    return basePosition >= 0 ? basePosition + buffer.position() : -1L;
+    if (basePosition < 0) {
+      return -1L;
+    }
+    if (compressed) {
+      return hasEvent() ? basePosition + eventIndex : compressedEndPosition;
+    }
+    return basePosition + buffer.position();
   }
 
   /**
@@ -102,7 +148,10 @@ final class StreamEventBuffer {
    * been read from the stream.
    */
   long getEndPosition() {
-    return basePosition >= 0 ? basePosition + buffer.limit() : -1L;
+    if (basePosition < 0) {
+      return -1L;
+    }
+    return compressed ? compressedEndPosition : basePosition + buffer.limit();
   }
 
   /**
@@ -120,7 +169,8 @@ final class StreamEventBuffer {
       throw new IOException("No more event in the buffer");
     }
 
-    long eventPos = basePosition + buffer.position();
+    long eventPos = getPosition();
+    eventIndex++;
     if (filter.acceptOffset(eventPos)) {
       return new PositionStreamEvent(StreamEventDataCodec.decode(decoder, defaultHeaders), timestamp, eventPos);
     }
@@ -128,6 +178,22 @@ final class StreamEventBuffer {
     return null;
   }
 
+  /**
+   * Reads the given number of bytes from the input into the given array.
+   *
+   * @throws EOFException if failed to read the given number of bytes from the input
+   */
+  private void readFully(SeekableInputStream input, byte[] bytes, int size) throws IOException {
+    int bytesRead = 0;
+    while (bytesRead != size) {
+      int len = input.read(bytes, bytesRead, size - bytesRead);
+      if (len < 0) {
+        throw new EOFException("Expected to read " + size + ", but only " + bytesRead + " was read");
+      }
+      bytesRead += len;
+    }
+  }
+
   /**
    * Ensures that the given {@link ByteBuffer} is of sufficient size.
    *
@@ -39,7 +39,10 @@ import com.google.common.collect.MapMaker;
 import com.google.common.collect.Sets;
 import com.google.common.io.Closeables;
 import com.google.common.util.concurrent.AbstractScheduledService;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.Service;
+import com.google.common.util.concurrent.SettableFuture;
 import org.apache.twill.common.Cancellable;
 import org.apache.twill.common.Threads;
 import org.apache.twill.filesystem.Location;
@@ -49,6 +52,7 @@ import org.slf4j.LoggerFactory;
 import java.io.Closeable;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -59,11 +63,14 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 
 /**
@@ -90,6 +97,9 @@ import javax.annotation.concurrent.ThreadSafe;
  * The spin lock between step 2 to step 8 is necessary as it guarantees events enqueued by all threads would eventually
  * get written and flushed.
  *
+ * Batches of events can also be written asynchronously, with a {@link ListenableFuture} that completes once the batch
+ * is flushed. The total size of such batches that are not yet flushed is bounded by the async buffer size. Submitting
+ * more is refused without blocking the caller, which can ask to get notified once some of them are flushed.
  */
 @ThreadSafe
 public final class ConcurrentStreamWriter implements Closeable {
@@ -106,10 +116,14 @@ public final class ConcurrentStreamWriter implements Closeable {
   private final List<Cancellable> cancellables;
   private final Lock createLock;
   private final Service eventQueueRefreshService;
+  private final int asyncBufferSize;
+  private final Semaphore asyncBufferPermits;
+  private final Queue<Runnable> asyncBufferListeners;
 
   ConcurrentStreamWriter(StreamCoordinatorClient streamCoordinatorClient, StreamAdmin streamAdmin,
                          StreamFileWriterFactory writerFactory, int workerThreads,
-                         StreamMetricsCollectorFactory metricsCollectorFactory, Impersonator impersonator) {
+                         StreamMetricsCollectorFactory metricsCollectorFactory, Impersonator impersonator,
+                         int asyncBufferSize) {
     this.streamCoordinatorClient = streamCoordinatorClient;
     this.streamAdmin = streamAdmin;
     this.workerThreads = workerThreads;
@@ -120,6 +134,9 @@ public final class ConcurrentStreamWriter implements Closeable {
     this.cancellables = Lists.newArrayList();
     this.createLock = new ReentrantLock();
     this.eventQueueRefreshService = scheduleWriterRefresh();
+    this.asyncBufferSize = asyncBufferSize;
+    this.asyncBufferPermits = new Semaphore(asyncBufferSize);
+    this.asyncBufferListeners = new ConcurrentLinkedQueue<>();
   }
 
   private Service scheduleWriterRefresh() {
@@ -221,6 +238,92 @@ public final class ConcurrentStreamWriter implements Closeable {
     });
   }
 
+  /**
+   * Writes a list of events to the given stream asynchronously, if the async buffer has space for them. The events
+   * are written together with other events pending for the stream, with a single flush. This method never blocks.
+   *
+   * @param streamId identifier of the stream
+   * @param events list of events to write
+   * @param executor The executor for performing the async write flush operation
+   * @return a {@link ListenableFuture} that completes when the events are flushed, or fails if they cannot be written;
+   *         or {@code null} if the size of the batches submitted through this method that are not yet flushed leaves
+   *         no space for the events, in which case they are not written
+   * @throws IOException if fails to get stream information
+   * @throws NotFoundException If the stream doesn't exists
+   * @see #addAsyncBufferListener(Runnable)
+   */
+  @Nullable
+  public ListenableFuture<Void> tryAsyncEnqueue(final StreamId streamId, List<? extends StreamEventData> events,
+                                                Executor executor) throws IOException, NotFoundException {
+    final EventQueue eventQueue = getEventQueue(streamId);
+
+    long size = 0;
+    for (StreamEventData event : events) {
+      size += event.getBody().remaining();
+    }
+    // A batch larger than the buffer takes the whole buffer, so that it can still be written
+    final int permits = (int) Math.min(size, asyncBufferSize);
+    if (!asyncBufferPermits.tryAcquire(permits)) {
+      return null;
+    }
+
+    SettableFuture<Void> completion = SettableFuture.create();
+    completion.addListener(new Runnable() {
+      @Override
+      public void run() {
+        asyncBufferPermits.release(permits);
+        notifyAsyncBufferListeners();
+      }
+    }, MoreExecutors.sameThreadExecutor());
+
+    final WriteRequest writeRequest = eventQueue.append(events.iterator(), completion);
+    try {
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            persistUntilCompleted(streamId, eventQueue, writeRequest);
+          } catch (IOException e) {
+            // The failure is reported through the future
+            LOG.debug("Async batch write to stream {} failed", streamId, e);
+          }
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      // Nothing may ever persist the batch, e.g. when the executor is shutdown, hence fail it to release the permits.
+      // If it still gets persisted by a concurrent write, it is reported as failed, which is safe for the caller.
+      completion.setException(e);
+    }
+    return completion;
+  }
+
+  /**
+   * Adds a listener that is called once, the next time a batch submitted through
+   * {@link #tryAsyncEnqueue(StreamId, List, Executor)} releases its space in the async buffer. Since space may be
+   * released between a refused submission and the call to this method, the caller should retry the submission once
+   * after adding the listener. The listener is called by the thread that completes the batch, hence must not block.
+   */
+  public void addAsyncBufferListener(Runnable listener) {
+    asyncBufferListeners.add(listener);
+  }
+
+  private void notifyAsyncBufferListeners() {
+    // Take the listeners out before calling them, since they may add themselves again
+    List<Runnable> listeners = new ArrayList<>();
+    Runnable listener = asyncBufferListeners.poll();
+    while (listener != null) {
+      listeners.add(listener);
+      listener = asyncBufferListeners.poll();
+    }
+    for (Runnable runnable : listeners) {
+      try {
+        runnable.run();
+      } catch (Throwable t) {
+        LOG.warn("Exception raised by async buffer listener {}", runnable, t);
+      }
+    }
+  }
+
   /**
    * Appends a new stream file to the given stream.
    *
@@ -486,7 +589,15 @@ public final class ConcurrentStreamWriter implements Closeable {
      * @return A {@link WriteRequest} that contains the status of the request
      */
     WriteRequest append(Iterator<? extends StreamEventData> events) {
-      WriteRequest request = new BatchWriteRequest(events);
+      return append(events, null);
+    }
+
+    /**
+     * Adds a list of events to the event queue, same as {@link #append(Iterator)}, with a future to complete once
+     * the events are written.
+     */
+    WriteRequest append(Iterator<? extends StreamEventData> events, @Nullable SettableFuture<Void> completion) {
+      WriteRequest request = new BatchWriteRequest(events, completion);
       queue.add(request);
       return request;
     }
@@ -784,10 +895,25 @@ public final class ConcurrentStreamWriter implements Closeable {
   private static final class BatchWriteRequest extends WriteRequest implements Iterator<StreamEventData> {
 
     private final Iterator<? extends StreamEventData> events;
+    private final SettableFuture<Void> completion;
     private Metrics metrics;
 
-    private BatchWriteRequest(Iterator<? extends StreamEventData> events) {
+    private BatchWriteRequest(Iterator<? extends StreamEventData> events, @Nullable SettableFuture<Void> completion) {
       this.events = events;
+      this.completion = completion;
+    }
+
+    @Override
+    void completed(Throwable failure) {
+      super.completed(failure);
+      if (completion == null) {
+        return;
+      }
+      if (failure == null) {
+        completion.set(null);
+      } else {
+        completion.setException(failure);
+      }
     }
 
     @Override
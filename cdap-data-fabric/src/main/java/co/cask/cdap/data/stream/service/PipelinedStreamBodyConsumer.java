@@ -0,0 +1,355 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data.stream.service;
+
+import co.cask.cdap.api.stream.StreamEventData;
+import co.cask.cdap.common.NotFoundException;
+import co.cask.cdap.common.io.BinaryDecoder;
+import co.cask.cdap.common.io.Decoder;
+import co.cask.cdap.common.stream.StreamEventDataCodec;
+import co.cask.cdap.proto.id.StreamId;
+import co.cask.http.BodyConsumer;
+import co.cask.http.HttpResponder;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBufferInputStream;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A {@link BodyConsumer} for the pipelined stream ingestion endpoint. The request body is a sequence of frames,
+ * each holding one batch of events:
+ *
+ * <pre>
+ *   frame := length (4 bytes, big endian) batch
+ *   batch := count (int) event*
+ * </pre>
+ *
+ * where each event is encoded with {@link StreamEventDataCodec} and the ints use the same binary encoding.
+ *
+ * Each batch is submitted to the {@link ConcurrentStreamWriter} as soon as its frame is received, without waiting
+ * for the previous batches to be persisted, so that many batches of a request are group committed together.
+ * While the async buffer of the writer is full, reading from the connection is suspended, and resumed once a
+ * batch is persisted. The response is sent when all batches are persisted, and contains the number of batches and
+ * events that are persisted. On failure, only the batches before the first failed one are known to be persisted.
+ *
+ * Since the stream service handles requests in the io threads, nothing here blocks. The notifications of the writer
+ * are passed to the io thread of the connection, while the body may be consumed by an executor thread, hence the
+ * state is guarded by this consumer.
+ */
+@ThreadSafe
+final class PipelinedStreamBodyConsumer extends BodyConsumer {
+
+  private static final Logger LOG = LoggerFactory.getLogger(PipelinedStreamBodyConsumer.class);
+
+  private final StreamId streamId;
+  private final ConcurrentStreamWriter streamWriter;
+  private final Map<String, String> headers;
+  private final Executor executor;
+  private final int maxFrameSize;
+  private final Channel channel;
+  private final Queue<Batch> pendingBatches;
+  private final Runnable bufferListener;
+  private HttpResponder responder;
+  private ChannelBuffer buffer = ChannelBuffers.EMPTY_BUFFER;
+  // Events of a received frame that the writer has no space for yet
+  private List<StreamEventData> blockedEvents;
+  private int persistedBatches;
+  private long persistedEvents;
+  private boolean submitting;
+  private boolean suspended;
+  private boolean listening;
+  private boolean finishing;
+  // Set once the response is sent or about to be sent, after which nothing more is submitted
+  private boolean completed;
+
+  PipelinedStreamBodyConsumer(StreamId streamId, ConcurrentStreamWriter streamWriter, Map<String, String> headers,
+                              Executor executor, int maxFrameSize, final Channel channel) {
+    this.streamId = streamId;
+    this.streamWriter = streamWriter;
+    this.headers = headers;
+    this.executor = executor;
+    this.maxFrameSize = maxFrameSize;
+    this.channel = channel;
+    this.pendingBatches = new ArrayDeque<>();
+    this.bufferListener = new Runnable() {
+      @Override
+      public void run() {
+        // Called by the thread that persisted a batch, hence resume in the io thread of the connection
+        channel.getPipeline().execute(new Runnable() {
+          @Override
+          public void run() {
+            resume();
+          }
+        });
+      }
+    };
+  }
+
+  @Override
+  public synchronized void chunk(ChannelBuffer chunk, HttpResponder responder) {
+    this.responder = responder;
+    if (completed) {
+      return;
+    }
+    buffer = buffer.readable() ? ChannelBuffers.wrappedBuffer(buffer, chunk) : chunk;
+    submitFrames();
+  }
+
+  @Override
+  public synchronized void finished(HttpResponder responder) {
+    this.responder = responder;
+    finishing = true;
+    if (!completed && blockedEvents == null) {
+      complete();
+    }
+  }
+
+  @Override
+  public synchronized void handleError(Throwable cause) {
+    completed = true;
+    LOG.warn("Failed to handle pipelined batches for stream {}", streamId, cause);
+  }
+
+  private synchronized void resume() {
+    listening = false;
+    if (channel.isConnected()) {
+      submitFrames();
+    }
+  }
+
+  /**
+   * Submits the received frames to the writer until it has no space for the next one, in which case reading from
+   * the connection is suspended until space is released.
+   */
+  private void submitFrames() {
+    // A resume can happen while submitting, since a batch rejected by the executor fails in the submitting thread
+    if (submitting || completed) {
+      return;
+    }
+    submitting = true;
+    try {
+      while (!completed) {
+        if (blockedEvents == null) {
+          blockedEvents = nextFrame();
+          if (blockedEvents == null) {
+            break;
+          }
+        }
+        if (!trySubmit()) {
+          if (!suspended) {
+            suspended = true;
+            channel.setReadable(false);
+          }
+          if (!listening) {
+            listening = true;
+            streamWriter.addAsyncBufferListener(bufferListener);
+          }
+          // Space may have been released before the listener is added
+          if (!trySubmit()) {
+            return;
+          }
+        }
+        collectPersisted();
+      }
+    } catch (Exception e) {
+      fail(e);
+    } finally {
+      submitting = false;
+    }
+
+    if (suspended) {
+      suspended = false;
+      channel.setReadable(true);
+    }
+    if (finishing && !completed) {
+      complete();
+    }
+  }
+
+  /**
+   * Decodes the next frame from the received content.
+   *
+   * @return the events of the next frame, or {@code null} if the next frame is not received completely or is invalid
+   */
+  @Nullable
+  private List<StreamEventData> nextFrame() throws IOException {
+    if (buffer.readableBytes() < 4) {
+      return null;
+    }
+    int length = buffer.getInt(buffer.readerIndex());
+    if (length < 0 || length > maxFrameSize) {
+      completed = true;
+      responder.sendString(HttpResponseStatus.BAD_REQUEST,
+                           String.format("Invalid frame length %d. It must be between 0 and %d",
+                                         length, maxFrameSize));
+      return null;
+    }
+    if (buffer.readableBytes() < length + 4) {
+      return null;
+    }
+    buffer.skipBytes(4);
+    ChannelBuffer frame = buffer.readSlice(length);
+    if (!buffer.readable()) {
+      buffer = ChannelBuffers.EMPTY_BUFFER;
+    }
+
+    Decoder decoder = new BinaryDecoder(new ChannelBufferInputStream(frame));
+    int count = decoder.readInt();
+    if (count < 0) {
+      throw new IOException("Invalid number of events " + count);
+    }
+    List<StreamEventData> events = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      events.add(StreamEventDataCodec.decode(decoder, headers));
+    }
+    return events;
+  }
+
+  /**
+   * Submits the blocked events to the writer.
+   *
+   * @return {@code true} if the events are submitted, {@code false} if the writer has no space for them
+   */
+  private boolean trySubmit() throws IOException, NotFoundException {
+    ListenableFuture<Void> future = streamWriter.tryAsyncEnqueue(streamId, blockedEvents, executor);
+    if (future == null) {
+      return false;
+    }
+    pendingBatches.add(new Batch(future, blockedEvents.size()));
+    blockedEvents = null;
+    return true;
+  }
+
+  /**
+   * Removes the persisted batches from the head of the pending batches, and fails the request if a batch failed.
+   */
+  private void collectPersisted() {
+    Batch batch = pendingBatches.peek();
+    while (batch != null && batch.future.isDone()) {
+      try {
+        Futures.getUnchecked(batch.future);
+      } catch (UncheckedExecutionException e) {
+        fail(e.getCause());
+        return;
+      }
+      pendingBatches.poll();
+      persistedBatches++;
+      persistedEvents += batch.events;
+      batch = pendingBatches.peek();
+    }
+  }
+
+  /**
+   * Completes the request once all frames are received and submitted.
+   */
+  private void complete() {
+    if (buffer.readable()) {
+      completed = true;
+      responder.sendString(HttpResponseStatus.BAD_REQUEST, "Request body ends with an incomplete frame");
+      return;
+    }
+    respondWhenPersisted(null);
+  }
+
+  private void fail(Throwable cause) {
+    LOG.error("Failed to write pipelined batches to stream {}", streamId, cause);
+    // The batches submitted before the failure are still written, hence respond once they complete to report them
+    respondWhenPersisted(cause);
+  }
+
+  /**
+   * Sends the response once all pending batches complete.
+   *
+   * @param failure the failure of the request, or {@code null} if all frames are submitted
+   */
+  private void respondWhenPersisted(@Nullable final Throwable failure) {
+    completed = true;
+    blockedEvents = null;
+
+    final List<Batch> batches = new ArrayList<>(pendingBatches);
+    final int batchesBefore = persistedBatches;
+    final long eventsBefore = persistedEvents;
+    final HttpResponder batchResponder = responder;
+    pendingBatches.clear();
+
+    List<ListenableFuture<Void>> futures = new ArrayList<>(batches.size());
+    for (Batch batch : batches) {
+      futures.add(batch.future);
+    }
+    Futures.successfulAsList(futures).addListener(new Runnable() {
+      @Override
+      public void run() {
+        int batchCount = batchesBefore;
+        long eventCount = eventsBefore;
+        Throwable cause = failure;
+        for (Batch batch : batches) {
+          try {
+            Futures.getUnchecked(batch.future);
+          } catch (UncheckedExecutionException e) {
+            cause = e.getCause();
+            break;
+          }
+          batchCount++;
+          eventCount += batch.events;
+        }
+
+        if (cause == null) {
+          batchResponder.sendJson(HttpResponseStatus.OK,
+                                  ImmutableMap.of("batches", batchCount, "events", eventCount));
+          return;
+        }
+        if (cause != failure) {
+          LOG.error("Failed to write pipelined batch to stream {}", streamId, cause);
+        }
+        batchResponder.sendJson(HttpResponseStatus.INTERNAL_SERVER_ERROR,
+                                ImmutableMap.of("batches", batchCount, "events", eventCount,
+                                                "error", String.valueOf(cause.getMessage())));
+      }
+    }, MoreExecutors.sameThreadExecutor());
+  }
+
+  /**
+   * A batch submitted to the stream writer that is not yet known to be persisted.
+   */
+  private static final class Batch {
+    private final ListenableFuture<Void> future;
+    private final int events;
+
+    Batch(ListenableFuture<Void> future, int events) {
+      this.future = future;
+      this.events = events;
+    }
+  }
+}
@@ -26,6 +26,7 @@ import co.cask.cdap.common.BadRequestException;
 import co.cask.cdap.common.NotFoundException;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.http.RequestChannelHandler;
 import co.cask.cdap.common.namespace.NamespaceQueryAdmin;
 import co.cask.cdap.common.security.AuditDetail;
 import co.cask.cdap.common.security.AuditPolicy;
@@ -52,6 +53,7 @@ import co.cask.http.BodyConsumer;
 import co.cask.http.HandlerContext;
 import co.cask.http.HttpHandler;
 import co.cask.http.HttpResponder;
+import com.google.common.base.Preconditions;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
@@ -70,6 +72,7 @@ import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import org.apache.twill.common.Threads;
 import org.jboss.netty.buffer.ChannelBufferInputStream;
+import org.jboss.netty.channel.Channel;
 import org.jboss.netty.handler.codec.http.HttpHeaders;
 import org.jboss.netty.handler.codec.http.HttpRequest;
 import org.jboss.netty.handler.codec.http.HttpResponseStatus;
@@ -113,6 +116,7 @@ public final class StreamHandler extends AbstractHttpHandler {
   private final LoadingCache<NamespaceId, MetricsContext> streamMetricsCollectors;
   private final ConcurrentStreamWriter streamWriter;
   private final long batchBufferThreshold;
+  private final int asyncBufferSize;
   private final StreamBodyConsumerFactory streamBodyConsumerFactory;
   private final NamespaceQueryAdmin namespaceQueryAdmin;
 
@@ -135,6 +139,7 @@ public final class StreamHandler extends AbstractHttpHandler {
     this.streamAdmin = streamAdmin;
     this.sizeCollector = sizeCollector;
     this.batchBufferThreshold = cConf.getLong(Constants.Stream.BATCH_BUFFER_THRESHOLD);
+    this.asyncBufferSize = cConf.getInt(Constants.Stream.ASYNC_BUFFER_SIZE);
     this.streamBodyConsumerFactory = new StreamBodyConsumerFactory();
     this.streamHandlerMetricsContext = metricsCollectionService.getContext(getStreamHandlerMetricsContext());
     streamMetricsCollectors = CacheBuilder.newBuilder()
@@ -147,7 +152,7 @@ public final class StreamHandler extends AbstractHttpHandler {
     StreamMetricsCollectorFactory metricsCollectorFactory = createStreamMetricsCollectorFactory();
     this.streamWriter = new ConcurrentStreamWriter(streamCoordinatorClient, streamAdmin, writerFactory,
                                                    cConf.getInt(Constants.Stream.WORKER_THREADS),
-                                                   metricsCollectorFactory, impersonator);
+                                                   metricsCollectorFactory, impersonator, asyncBufferSize);
     this.namespaceQueryAdmin = namespaceQueryAdmin;
     this.impersonator = impersonator;
     this.authorizationEnforcer = authorizationEnforcer;
@@ -289,6 +294,25 @@ public final class StreamHandler extends AbstractHttpHandler {
     }
   }
 
+  /**
+   * Writes framed batches of events, acknowledging them once all of them are persisted.
+   * See {@link PipelinedStreamBodyConsumer} for the format of the request body.
+   */
+  @POST
+  @Path("/{stream}/pipeline")
+  public BodyConsumer pipeline(HttpRequest request, HttpResponder responder,
+                               @PathParam("namespace-id") String namespaceId,
+                               @PathParam("stream") String stream) throws Exception {
+    StreamId streamId = validateAndGetStreamId(namespaceId, stream);
+    checkStreamExists(streamId);
+    authorizationEnforcer.enforce(streamId, authenticationContext.getPrincipal(), Action.WRITE);
+    Channel channel = RequestChannelHandler.getChannel();
+    Preconditions.checkState(channel != null, "Pipelined stream ingestion requires the %s in the service pipeline",
+                             RequestChannelHandler.class.getSimpleName());
+    return new PipelinedStreamBodyConsumer(streamId, streamWriter, getHeaders(request, stream),
+                                           asyncExecutor, asyncBufferSize, channel);
+  }
+
   @POST
   @Path("/{stream}/truncate")
   public void truncate(HttpRequest request, HttpResponder responder,
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015 Cask Data, Inc.
+ * Copyright © 2015-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -62,6 +62,9 @@ final class FileContentWriter implements ContentWriter {
     Map<String, String> properties = createStreamFileProperties(headers);
     properties.put(StreamDataFileConstants.Property.Key.UNI_TIMESTAMP,
                    StreamDataFileConstants.Property.Value.CLOSE_TIMESTAMP);
+    if (streamConfig.getCompressionCodec() != null) {
+      properties.put(StreamDataFileConstants.Property.Key.CODEC, streamConfig.getCompressionCodec());
+    }
     this.writer = new StreamDataFileWriter(Locations.newOutputSupplier(eventFile),
                                            Locations.newOutputSupplier(indexFile),
                                            streamConfig.getIndexInterval(),
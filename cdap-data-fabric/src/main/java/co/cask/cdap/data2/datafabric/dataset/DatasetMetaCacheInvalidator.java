@@ -0,0 +1,180 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.datafabric.dataset;
+
+import co.cask.cdap.api.dataset.lib.CloseableIterator;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.logging.LogSamplers;
+import co.cask.cdap.common.logging.Loggers;
+import co.cask.cdap.messaging.MessageFetcher;
+import co.cask.cdap.messaging.MessagingService;
+import co.cask.cdap.messaging.data.RawMessage;
+import co.cask.cdap.proto.audit.AuditMessage;
+import co.cask.cdap.proto.audit.AuditType;
+import co.cask.cdap.proto.codec.AuditMessageTypeAdapter;
+import co.cask.cdap.proto.codec.EntityIdTypeAdapter;
+import co.cask.cdap.proto.id.DatasetId;
+import co.cask.cdap.proto.id.DatasetModuleId;
+import co.cask.cdap.proto.id.EntityId;
+import co.cask.cdap.proto.id.NamespaceId;
+import co.cask.cdap.proto.id.TopicId;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import org.apache.twill.common.Threads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Polls the audit topic for changes of dataset instances and modules, and invalidates the metadata cached by the
+ * {@link RemoteDatasetFramework}s of the process. A single instance is shared by all frameworks, so that there is
+ * only one polling thread per process. Since the frameworks have no lifecycle, only weak references to them are held,
+ * and the polling thread stops once all registered frameworks are garbage collected.
+ */
+@Singleton
+public final class DatasetMetaCacheInvalidator {
+
+  private static final Logger LOG = LoggerFactory.getLogger(DatasetMetaCacheInvalidator.class);
+  private static final Logger FAILURE_LOG = Loggers.sampling(LOG, LogSamplers.limitRate(60000));
+
+  private static final Gson GSON = new GsonBuilder()
+    .registerTypeAdapter(AuditMessage.class, new AuditMessageTypeAdapter())
+    .registerTypeAdapter(EntityId.class, new EntityIdTypeAdapter())
+    .create();
+  private static final Set<AuditType> CHANGE_TYPES = EnumSet.of(AuditType.CREATE, AuditType.UPDATE, AuditType.DELETE);
+
+  private final MessagingService messagingService;
+  private final TopicId auditTopic;
+  private final long pollIntervalMillis;
+  // Guarded by this
+  private final Set<RemoteDatasetFramework> frameworks;
+  private ScheduledExecutorService executor;
+
+  @Inject
+  DatasetMetaCacheInvalidator(CConfiguration cConf, MessagingService messagingService) {
+    this.messagingService = messagingService;
+    this.auditTopic = NamespaceId.SYSTEM.topic(cConf.get(Constants.Audit.TOPIC));
+    this.pollIntervalMillis = cConf.getLong(Constants.Dataset.ClientCache.INVALIDATION_POLL_INTERVAL_MS);
+    this.frameworks = Collections.newSetFromMap(new WeakHashMap<RemoteDatasetFramework, Boolean>());
+  }
+
+  /**
+   * Registers the given {@link RemoteDatasetFramework} for invalidation, and starts polling if it is not started yet.
+   * Only changes made after the first framework is registered are picked up, hence it must be registered before the
+   * framework starts to cache.
+   */
+  synchronized void register(RemoteDatasetFramework framework) {
+    frameworks.add(framework);
+    if (executor != null) {
+      return;
+    }
+    executor = Executors.newSingleThreadScheduledExecutor(
+      Threads.createDaemonThreadFactory("dataset-meta-cache-invalidator"));
+    executor.scheduleWithFixedDelay(new Poller(System.currentTimeMillis()),
+                                    pollIntervalMillis, pollIntervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Returns the frameworks to invalidate, or {@code null} if there is none, in which case polling is stopped.
+   */
+  private synchronized List<RemoteDatasetFramework> getFrameworks() {
+    if (frameworks.isEmpty()) {
+      executor.shutdown();
+      executor = null;
+      return null;
+    }
+    return new ArrayList<>(frameworks);
+  }
+
+  /**
+   * Fetches the dataset changes published since polling started.
+   */
+  private final class Poller implements Runnable {
+
+    private final long startTime;
+    private byte[] messageId;
+
+    Poller(long startTime) {
+      this.startTime = startTime;
+    }
+
+    @Override
+    public void run() {
+      List<RemoteDatasetFramework> frameworks = getFrameworks();
+      if (frameworks == null) {
+        return;
+      }
+
+      try {
+        MessageFetcher fetcher = messagingService.prepareFetch(auditTopic);
+        if (messageId == null) {
+          fetcher.setStartTime(startTime);
+        } else {
+          fetcher.setStartMessage(messageId, false);
+        }
+
+        try (CloseableIterator<RawMessage> iterator = fetcher.fetch()) {
+          while (iterator.hasNext()) {
+            RawMessage rawMessage = iterator.next();
+            AuditMessage message = GSON.fromJson(new String(rawMessage.getPayload(), StandardCharsets.UTF_8),
+                                                 AuditMessage.class);
+            if (CHANGE_TYPES.contains(message.getType())) {
+              invalidate(frameworks, message);
+            }
+            messageId = rawMessage.getId();
+          }
+        }
+      } catch (Exception e) {
+        // Changes may have been missed, hence invalidate everything to not serve stale metadata
+        for (RemoteDatasetFramework framework : frameworks) {
+          framework.invalidateAll();
+        }
+        FAILURE_LOG.warn("Failed to fetch dataset changes from topic {}. Invalidated all cached dataset metadata.",
+                         auditTopic, e);
+      }
+    }
+
+    private void invalidate(List<RemoteDatasetFramework> frameworks, AuditMessage message) {
+      EntityId entityId = message.getEntityId();
+      if (entityId instanceof DatasetId) {
+        LOG.trace("Invalidating cached metadata of dataset {} on {}", entityId, message.getType());
+        for (RemoteDatasetFramework framework : frameworks) {
+          framework.invalidate((DatasetId) entityId);
+        }
+      } else if (entityId instanceof DatasetModuleId) {
+        // The metadata of any type and instance may refer to the module, hence everything is invalidated
+        LOG.trace("Invalidating all cached dataset metadata on {} of module {}", message.getType(), entityId);
+        for (RemoteDatasetFramework framework : frameworks) {
+          framework.invalidateAll();
+        }
+      }
+    }
+  }
+}
@@ -24,6 +24,8 @@ import co.cask.cdap.api.dataset.DatasetProperties;
 import co.cask.cdap.api.dataset.DatasetSpecification;
 import co.cask.cdap.api.dataset.module.DatasetDefinitionRegistry;
 import co.cask.cdap.api.dataset.module.DatasetModule;
+import co.cask.cdap.api.metrics.MetricsCollectionService;
+import co.cask.cdap.api.metrics.MetricsContext;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.io.Locations;
@@ -46,15 +48,20 @@ import co.cask.cdap.proto.id.EntityId;
 import co.cask.cdap.proto.id.KerberosPrincipalId;
 import co.cask.cdap.proto.id.NamespaceId;
 import co.cask.cdap.security.spi.authentication.AuthenticationContext;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Objects;
 import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
 import com.google.common.io.ByteStreams;
 import com.google.inject.Inject;
+import org.apache.hadoop.security.UserGroupInformation;
 import org.apache.twill.discovery.DiscoveryServiceClient;
 import org.apache.twill.filesystem.Location;
 import org.apache.twill.internal.ApplicationBundler;
@@ -66,23 +73,46 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.jar.JarEntry;
 import java.util.jar.JarInputStream;
 import java.util.jar.JarOutputStream;
 import javax.annotation.Nullable;
 
 /**
- * {@link co.cask.cdap.data2.dataset2.DatasetFramework} implementation that talks to DatasetFramework Service
+ * {@link co.cask.cdap.data2.dataset2.DatasetFramework} implementation that talks to DatasetFramework Service.
+ * The metadata of dataset instances and types used for instantiating datasets is cached for a configurable time.
+ * Lookups of specs, existence and admins always go to the service. Cached entries are invalidated by changes made
+ * through this framework and, if the messaging service is available, by the dataset changes published to the audit
+ * topic.
  */
 @SuppressWarnings("unchecked")
 public class RemoteDatasetFramework implements DatasetFramework {
   private static final Logger LOG = LoggerFactory.getLogger(RemoteDatasetFramework.class);
 
+  private static final Map<String, String> METRICS_CONTEXT =
+    ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, NamespaceId.SYSTEM.getNamespace(),
+                    Constants.Metrics.Tag.COMPONENT, "dataset.client");
+
   private final CConfiguration cConf;
   private final LoadingCache<NamespaceId, DatasetServiceClient> clientCache;
   private final DatasetDefinitionRegistryFactory registryFactory;
+  private final AuthenticationContext authenticationContext;
+  private final boolean metaCacheEnabled;
+  private final Cache<MetaCacheKey, DatasetMeta> instanceCache;
+  private final Cache<MetaCacheKey, DatasetTypeMeta> typeCache;
+  // Incremented on every invalidation, to avoid caching metadata fetched before an invalidation
+  private final AtomicLong invalidationCount;
+  private final AtomicBoolean invalidatorStarted;
+
+  private DatasetMetaCacheInvalidator metaCacheInvalidator;
+  private MetricsCollectionService metricsCollectionService;
+  private volatile MetricsContext metricsContext;
 
   @Inject
   public RemoteDatasetFramework(final CConfiguration cConf, final DiscoveryServiceClient discoveryClient,
@@ -96,6 +126,39 @@ public class RemoteDatasetFramework implements DatasetFramework {
       }
     });
     this.registryFactory = registryFactory;
+    this.authenticationContext = authenticationContext;
+
+    long expirationSecs = cConf.getLong(Constants.Dataset.ClientCache.EXPIRATION_SECS);
+    long maxSize = cConf.getLong(Constants.Dataset.ClientCache.MAX_SIZE);
+    this.metaCacheEnabled = expirationSecs > 0 && maxSize > 0;
+    this.instanceCache = CacheBuilder.newBuilder()
+      .expireAfterWrite(Math.max(expirationSecs, 1), TimeUnit.SECONDS)
+      .maximumSize(Math.max(maxSize, 0))
+      .build();
+    this.typeCache = CacheBuilder.newBuilder()
+      .expireAfterWrite(Math.max(expirationSecs, 1), TimeUnit.SECONDS)
+      .maximumSize(Math.max(maxSize, 0))
+      .build();
+    this.invalidationCount = new AtomicLong();
+    this.invalidatorStarted = new AtomicBoolean();
+  }
+
+  /**
+   * Sets the {@link DatasetMetaCacheInvalidator} for invalidating cached metadata on dataset changes made by other
+   * processes. Without it, those changes are only picked up after the cache entries expire.
+   */
+  @Inject(optional = true)
+  public void setMetaCacheInvalidator(DatasetMetaCacheInvalidator metaCacheInvalidator) {
+    this.metaCacheInvalidator = metaCacheInvalidator;
+  }
+
+  /**
+   * Sets the {@link MetricsCollectionService} for emitting the hit and miss counts of the metadata cache.
+   */
+  @Inject(optional = true)
+  public void setMetricsCollectionService(MetricsCollectionService metricsCollectionService) {
+    // The context is created on first use, since the service may still be under construction at injection time
+    this.metricsCollectionService = metricsCollectionService;
   }
 
   @Override
@@ -106,6 +169,7 @@ public class RemoteDatasetFramework implements DatasetFramework {
       try {
         clientCache.getUnchecked(moduleId.getParent())
           .addModule(moduleId.getEntityName(), moduleClass.getName(), deploymentJar);
+        invalidateAll();
       } finally {
         try {
           deploymentJar.delete();
@@ -127,16 +191,19 @@ public class RemoteDatasetFramework implements DatasetFramework {
                         Location jarLocation) throws DatasetManagementException {
     clientCache.getUnchecked(moduleId.getParent())
       .addModule(moduleId.getEntityName(), DatasetModules.getDatasetModuleClass(module).getName(), jarLocation);
+    invalidateAll();
   }
 
   @Override
   public void deleteModule(DatasetModuleId moduleId) throws DatasetManagementException {
     clientCache.getUnchecked(moduleId.getParent()).deleteModule(moduleId.getEntityName());
+    invalidateAll();
   }
 
   @Override
   public void deleteAllModules(NamespaceId namespaceId) throws DatasetManagementException {
     clientCache.getUnchecked(namespaceId).deleteModules();
+    invalidateAll();
   }
 
   @Override
@@ -151,6 +218,7 @@ public class RemoteDatasetFramework implements DatasetFramework {
     throws DatasetManagementException {
     clientCache.getUnchecked(datasetInstanceId.getParent())
       .addInstance(datasetInstanceId.getEntityName(), datasetType, props, ownerPrincipal);
+    invalidate(datasetInstanceId);
   }
 
   @Override
@@ -158,6 +226,7 @@ public class RemoteDatasetFramework implements DatasetFramework {
     throws DatasetManagementException {
     clientCache.getUnchecked(datasetInstanceId.getParent())
       .updateInstance(datasetInstanceId.getEntityName(), props);
+    invalidate(datasetInstanceId);
   }
 
   @Override
@@ -187,12 +256,12 @@ public class RemoteDatasetFramework implements DatasetFramework {
 
   @Override
   public boolean hasType(DatasetTypeId datasetTypeId) throws DatasetManagementException {
-    return clientCache.getUnchecked(datasetTypeId.getParent()).getType(datasetTypeId.getEntityName()) != null;
+    return getTypeMeta(datasetTypeId) != null;
   }
 
   @Override
   public DatasetTypeMeta getTypeInfo(DatasetTypeId datasetTypeId) throws DatasetManagementException {
-    return clientCache.getUnchecked(datasetTypeId.getParent()).getType(datasetTypeId.getEntityName());
+    return getTypeMeta(datasetTypeId);
   }
 
   @Override
@@ -203,11 +272,13 @@ public class RemoteDatasetFramework implements DatasetFramework {
   @Override
   public void deleteInstance(DatasetId datasetInstanceId) throws DatasetManagementException {
     clientCache.getUnchecked(datasetInstanceId.getParent()).deleteInstance(datasetInstanceId.getEntityName());
+    invalidate(datasetInstanceId);
   }
 
   @Override
   public void deleteAllInstances(NamespaceId namespaceId) throws DatasetManagementException, IOException {
     clientCache.getUnchecked(namespaceId).deleteInstances();
+    invalidateAll();
   }
 
   @Override
@@ -222,6 +293,7 @@ public class RemoteDatasetFramework implements DatasetFramework {
                                              @Nullable ClassLoader parentClassLoader,
                                              DatasetClassLoaderProvider classLoaderProvider)
     throws DatasetManagementException, IOException {
+    // Admin operations act on the current spec, hence the instance metadata is not taken from the cache
     DatasetMeta instanceInfo = clientCache.getUnchecked(datasetInstanceId.getParent())
       .getInstance(datasetInstanceId.getEntityName());
     if (instanceInfo == null) {
@@ -249,12 +321,29 @@ public class RemoteDatasetFramework implements DatasetFramework {
                                           @Nullable Iterable<? extends EntityId> owners, AccessType accessType)
     throws DatasetManagementException, IOException {
 
-    DatasetMeta datasetMeta = clientCache.getUnchecked(id.getParent()).getInstance(id.getEntityName(), owners);
+    DatasetMeta datasetMeta = getInstanceMeta(id, owners);
     if (datasetMeta == null) {
       return null;
     }
 
-    DatasetType type = getType(datasetMeta.getType(), classLoader, classLoaderProvider);
+    DatasetType type;
+    try {
+      type = getType(datasetMeta.getType(), classLoader, classLoaderProvider);
+    } catch (RuntimeException e) {
+      if (!metaCacheEnabled) {
+        throw e;
+      }
+      // The cached metadata may refer to a dataset module that has been deleted or redeployed since, if the change
+      // has not been picked up from the audit topic yet, hence the module classes cannot be loaded. Retry once with
+      // the current metadata.
+      LOG.debug("Failed to load the type of dataset {}, retrying with metadata from the dataset service", id, e);
+      invalidate(id);
+      datasetMeta = getInstanceMeta(id, owners);
+      if (datasetMeta == null) {
+        return null;
+      }
+      type = getType(datasetMeta.getType(), classLoader, classLoaderProvider);
+    }
     return (T) type.getDataset(DatasetContext.from(id.getNamespace()), datasetMeta.getSpec(), arguments);
   }
 
@@ -263,6 +352,122 @@ public class RemoteDatasetFramework implements DatasetFramework {
     // no-op. The RemoteDatasetFramework doesn't need to do anything. The lineage should be recorded before this point.
   }
 
+  /**
+   * Invalidates the cached metadata of the given dataset instance, so that the next lookup
+   * goes to the dataset service.
+   */
+  public void invalidate(DatasetId datasetInstanceId) {
+    invalidationCount.incrementAndGet();
+    Iterator<MetaCacheKey> iterator = instanceCache.asMap().keySet().iterator();
+    while (iterator.hasNext()) {
+      if (datasetInstanceId.equals(iterator.next().getEntityId())) {
+        iterator.remove();
+      }
+    }
+  }
+
+  /**
+   * Invalidates all cached metadata.
+   */
+  void invalidateAll() {
+    invalidationCount.incrementAndGet();
+    instanceCache.invalidateAll();
+    typeCache.invalidateAll();
+  }
+
+  @VisibleForTesting
+  long getMetaCacheSize() {
+    return instanceCache.size() + typeCache.size();
+  }
+
+  /**
+   * Returns the {@link DatasetMeta} of the given dataset instance, from the cache if present.
+   * The cache key includes the owners and the current principal, since the dataset service records the usage by
+   * the owners and performs authorization for the principal when the metadata is fetched.
+   */
+  @Nullable
+  private DatasetMeta getInstanceMeta(DatasetId datasetInstanceId,
+                                      @Nullable Iterable<? extends EntityId> owners)
+    throws DatasetManagementException {
+    DatasetServiceClient client = clientCache.getUnchecked(datasetInstanceId.getParent());
+    if (!metaCacheEnabled) {
+      return client.getInstance(datasetInstanceId.getEntityName(), owners);
+    }
+
+    MetaCacheKey key = createCacheKey(datasetInstanceId, owners);
+    DatasetMeta meta = instanceCache.getIfPresent(key);
+    if (meta != null) {
+      emitCacheMetric(true);
+      return meta;
+    }
+    emitCacheMetric(false);
+    startInvalidator();
+
+    long invalidations = invalidationCount.get();
+    meta = client.getInstance(datasetInstanceId.getEntityName(), owners);
+    // Absence is not cached, since the dataset may be created any time
+    if (meta != null && invalidations == invalidationCount.get()) {
+      instanceCache.put(key, meta);
+    }
+    return meta;
+  }
+
+  /**
+   * Returns the {@link DatasetTypeMeta} of the given dataset type, from the cache if present.
+   */
+  @Nullable
+  private DatasetTypeMeta getTypeMeta(DatasetTypeId datasetTypeId) throws DatasetManagementException {
+    DatasetServiceClient client = clientCache.getUnchecked(datasetTypeId.getParent());
+    if (!metaCacheEnabled) {
+      return client.getType(datasetTypeId.getEntityName());
+    }
+
+    MetaCacheKey key = createCacheKey(datasetTypeId, null);
+    DatasetTypeMeta meta = typeCache.getIfPresent(key);
+    if (meta != null) {
+      emitCacheMetric(true);
+      return meta;
+    }
+    emitCacheMetric(false);
+    startInvalidator();
+
+    long invalidations = invalidationCount.get();
+    meta = client.getType(datasetTypeId.getEntityName());
+    if (meta != null && invalidations == invalidationCount.get()) {
+      typeCache.put(key, meta);
+    }
+    return meta;
+  }
+
+  private MetaCacheKey createCacheKey(EntityId entityId,
+                                      @Nullable Iterable<? extends EntityId> owners) throws DatasetManagementException {
+    // The DatasetServiceClient determines the user of the request from the principal and the current user
+    try {
+      return new MetaCacheKey(entityId, owners, authenticationContext.getPrincipal().getName(),
+                              UserGroupInformation.getCurrentUser().getShortUserName());
+    } catch (IOException e) {
+      throw new DatasetManagementException("Unable to get the current user", e);
+    }
+  }
+
+  private void emitCacheMetric(boolean hit) {
+    if (metricsCollectionService == null) {
+      return;
+    }
+    MetricsContext metricsContext = this.metricsContext;
+    if (metricsContext == null) {
+      metricsContext = metricsCollectionService.getContext(METRICS_CONTEXT);
+      this.metricsContext = metricsContext;
+    }
+    metricsContext.increment(hit ? "dataset.meta.cache.hit" : "dataset.meta.cache.miss", 1);
+  }
+
+  private void startInvalidator() {
+    if (metaCacheInvalidator != null && invalidatorStarted.compareAndSet(false, true)) {
+      metaCacheInvalidator.register(this);
+    }
+  }
+
   private Location createDeploymentJar(Class<?> clz) throws IOException {
     File tempDir = new File(cConf.get(Constants.CFG_LOCAL_DATA_DIR),
                             cConf.get(Constants.AppFabric.TEMP_DIR)).getAbsoluteFile();
@@ -388,4 +593,46 @@ public class RemoteDatasetFramework implements DatasetFramework {
     // for that last module.
     return (T) new DatasetType(registry.get(datasetTypeMeta.getName()), classLoader);
   }
+
+  /**
+   * Key of the cached dataset instance and type metadata.
+   */
+  private static final class MetaCacheKey {
+    private final EntityId entityId;
+    private final Set<EntityId> owners;
+    private final String principal;
+    private final String currentUser;
+
+    MetaCacheKey(EntityId entityId, @Nullable Iterable<? extends EntityId> owners,
+                 String principal, String currentUser) {
+      this.entityId = entityId;
+      this.owners = owners == null ? null : ImmutableSet.<EntityId>copyOf(owners);
+      this.principal = principal;
+      this.currentUser = currentUser;
+    }
+
+    EntityId getEntityId() {
+      return entityId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      MetaCacheKey other = (MetaCacheKey) o;
+      return entityId.equals(other.entityId)
+        && Objects.equal(owners, other.owners)
+        && principal.equals(other.principal)
+        && currentUser.equals(other.currentUser);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(entityId, owners, principal, currentUser);
+    }
+  }
 }
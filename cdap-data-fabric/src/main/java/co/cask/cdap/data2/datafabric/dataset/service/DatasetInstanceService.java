@@ -46,6 +46,7 @@ import co.cask.cdap.proto.id.KerberosPrincipalId;
 import co.cask.cdap.proto.id.NamespaceId;
 import co.cask.cdap.proto.security.Action;
 import co.cask.cdap.proto.security.Principal;
+import co.cask.cdap.security.authorization.AuthorizationUtil;
 import co.cask.cdap.security.impersonation.OwnerAdmin;
 import co.cask.cdap.security.spi.authentication.AuthenticationContext;
 import co.cask.cdap.security.spi.authorization.AuthorizationEnforcer;
@@ -136,11 +137,15 @@ public class DatasetInstanceService {
     Principal principal = authenticationContext.getPrincipal();
     ensureNamespaceExists(namespace);
     Collection<DatasetSpecification> datasets = instanceManager.getAll(namespace);
-    final Predicate<EntityId> filter = authorizationEnforcer.createFilter(principal);
+    Set<DatasetId> datasetIds = new HashSet<>();
+    for (DatasetSpecification spec : datasets) {
+      datasetIds.add(namespace.dataset(spec.getName()));
+    }
+    final Set<? extends EntityId> visible = AuthorizationUtil.isVisible(datasetIds, authorizationEnforcer, principal);
     return Lists.newArrayList(Iterables.filter(datasets, new com.google.common.base.Predicate<DatasetSpecification>() {
       @Override
       public boolean apply(DatasetSpecification spec) {
-        return filter.apply(namespace.dataset(spec.getName()));
+        return visible.contains(namespace.dataset(spec.getName()));
       }
     }));
   }
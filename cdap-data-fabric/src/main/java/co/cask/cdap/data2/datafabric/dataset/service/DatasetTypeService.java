@@ -36,6 +36,8 @@ import co.cask.cdap.common.namespace.NamespaceQueryAdmin;
 import co.cask.cdap.common.namespace.NamespacedLocationFactory;
 import co.cask.cdap.common.utils.DirUtils;
 import co.cask.cdap.data.dataset.SystemDatasetInstantiator;
+import co.cask.cdap.data2.audit.AuditPublisher;
+import co.cask.cdap.data2.audit.AuditPublishers;
 import co.cask.cdap.data2.datafabric.dataset.DatasetMetaTableUtil;
 import co.cask.cdap.data2.datafabric.dataset.DatasetsUtil;
 import co.cask.cdap.data2.datafabric.dataset.service.mds.DatasetInstanceMDS;
@@ -50,6 +52,8 @@ import co.cask.cdap.data2.transaction.TransactionSystemClientService;
 import co.cask.cdap.data2.transaction.Transactions;
 import co.cask.cdap.proto.DatasetModuleMeta;
 import co.cask.cdap.proto.DatasetTypeMeta;
+import co.cask.cdap.proto.audit.AuditPayload;
+import co.cask.cdap.proto.audit.AuditType;
 import co.cask.cdap.proto.id.DatasetModuleId;
 import co.cask.cdap.proto.id.DatasetTypeId;
 import co.cask.cdap.proto.id.EntityId;
@@ -112,6 +116,8 @@ public class DatasetTypeService extends AbstractIdleService {
   private final Map<String, DatasetModule> defaultModules;
   private final Map<String, DatasetModule> extensionModules;
 
+  private AuditPublisher auditPublisher;
+
   @Inject
   @VisibleForTesting
   public DatasetTypeService(DatasetTypeManager typeManager, NamespaceQueryAdmin namespaceQueryAdmin,
@@ -145,6 +151,12 @@ public class DatasetTypeService extends AbstractIdleService {
     this.extensionModules = getExtensionModules(cConf);
   }
 
+  @VisibleForTesting
+  @Inject(optional = true)
+  public void setAuditPublisher(AuditPublisher auditPublisher) {
+    this.auditPublisher = auditPublisher;
+  }
+
   @Override
   protected void startUp() throws Exception {
     txClientService.startAndWait();
@@ -273,6 +285,7 @@ public class DatasetTypeService extends AbstractIdleService {
     } catch (DatasetModuleConflictException e) {
       throw new DatasetModuleCannotBeDeletedException(datasetModuleId, e.getMessage());
     }
+    publishAudit(datasetModuleId, AuditType.DELETE);
 
     // revoke all privileges on the module to be deleted
     revokeAllPrivilegesOnModule(datasetModuleId, moduleMeta);
@@ -291,7 +304,8 @@ public class DatasetTypeService extends AbstractIdleService {
     ensureNamespaceExists(namespaceId);
 
     // revoke all privileges on all modules
-    for (DatasetModuleMeta meta : typeManager.getModules(namespaceId)) {
+    Collection<DatasetModuleMeta> modules = typeManager.getModules(namespaceId);
+    for (DatasetModuleMeta meta : modules) {
       privilegesManager.revoke(namespaceId.datasetModule(meta.getName()));
     }
     try {
@@ -299,6 +313,9 @@ public class DatasetTypeService extends AbstractIdleService {
     } catch (DatasetModuleConflictException e) {
       throw new ConflictException(e.getMessage(), e);
     }
+    for (DatasetModuleMeta meta : modules) {
+      publishAudit(namespaceId.datasetModule(meta.getName()), AuditType.DELETE);
+    }
   }
 
   /**
@@ -425,7 +442,10 @@ public class DatasetTypeService extends AbstractIdleService {
                                                 tmpLocation, archive));
           }
 
+          boolean exists = typeManager.getModule(datasetModuleId) != null;
           typeManager.addModule(datasetModuleId, className, archive, forceUpdate);
+          // Processes that cached metadata referring to the previous module jar have to invalidate it
+          publishAudit(datasetModuleId, exists ? AuditType.UPDATE : AuditType.CREATE);
           // todo: response with DatasetModuleMeta of just added module (and log this info)
           // Ideally this should have been done before, but we cannot grant privileges on types until they've been
           // added to the type MDS. First revoke any orphaned privileges for types left behind by past failed revokes
@@ -561,6 +581,10 @@ public class DatasetTypeService extends AbstractIdleService {
     }
   }
 
+  private void publishAudit(DatasetModuleId datasetModuleId, AuditType auditType) {
+    AuditPublishers.publishAudit(auditPublisher, datasetModuleId, auditType, AuditPayload.EMPTY_PAYLOAD);
+  }
+
   /**
    * Throws an exception if the specified namespace is not the system namespace and does not exist
    */
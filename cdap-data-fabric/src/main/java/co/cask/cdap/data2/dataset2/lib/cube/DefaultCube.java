@@ -1,5 +1,5 @@
 /*
- * Copyright 2015-2016 Cask Data, Inc.
+ * Copyright 2015-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -61,7 +61,7 @@ public class DefaultCube implements Cube, MeteredDataset {
   private static final Logger LOG = LoggerFactory.getLogger(DefaultCube.class);
 
   private static final DimensionValueComparator DIMENSION_VALUE_COMPARATOR = new DimensionValueComparator();
-  // hard-limit on max records to scan
+  // hard-limit on max records to scan. The fact table applies it to the stored facts, before aggregating them
   private static final int MAX_RECORDS_TO_SCAN = 100 * 1000;
 
   private final Map<Integer, FactTable> resolutionToFactTable;
@@ -89,7 +89,14 @@ public class DefaultCube implements Cube, MeteredDataset {
 
   @Override
   public void add(Collection<? extends CubeFact> facts) {
-    List<Fact> toWrite = Lists.newArrayList();
+    // combine facts per resolution before writing, so that facts that fall into the same time bucket of
+    // a resolution with the same dimension values are written to the fact table once
+    Map<Integer, FactCombiner> combiners = Maps.newHashMap();
+    for (int resolution : resolutionToFactTable.keySet()) {
+      combiners.put(resolution, new FactCombiner(resolution));
+    }
+
+    int tsFactsCount = 0;
     int dimValuesCount = 0;
     for (CubeFact fact : facts) {
       for (Map.Entry<String, ? extends Aggregation> aggEntry : aggregations.entrySet()) {
@@ -108,20 +115,26 @@ public class DefaultCube implements Cube, MeteredDataset {
             dimensionValues.add(new DimensionValue(dimensionName, fact.getDimensionValues().get(dimensionValueKey)));
             dimValuesCount++;
           }
-          toWrite.add(new Fact(fact.getTimestamp(), dimensionValues, fact.getMeasurements()));
+          for (FactCombiner combiner : combiners.values()) {
+            combiner.add(fact.getTimestamp(), dimensionValues, fact.getMeasurements());
+          }
+          tsFactsCount++;
         }
       }
     }
 
-    for (FactTable table : resolutionToFactTable.values()) {
-      table.add(toWrite);
+    int tsFactsAdded = 0;
+    for (Map.Entry<Integer, FactTable> entry : resolutionToFactTable.entrySet()) {
+      List<Fact> toWrite = combiners.get(entry.getKey()).getFacts();
+      entry.getValue().add(toWrite);
+      tsFactsAdded += toWrite.size();
     }
 
     incrementMetric("cube.cubeFact.add.request.count", 1);
     incrementMetric("cube.cubeFact.added.count", facts.size());
-    incrementMetric("cube.tsFact.created.count", toWrite.size());
+    incrementMetric("cube.tsFact.created.count", tsFactsCount);
     incrementMetric("cube.tsFact.created.dimValues.count", dimValuesCount);
-    incrementMetric("cube.tsFact.added.count", toWrite.size() * resolutionToFactTable.size());
+    incrementMetric("cube.tsFact.added.count", tsFactsAdded);
   }
 
   @Override
@@ -159,7 +172,8 @@ public class DefaultCube implements Cube, MeteredDataset {
       'measureType'='COUNTER'
 
       3) While scanning build a table: dimension values -> time -> value. Use measureType as values aggregate
-         function if needed.
+         function if needed. The fact table already groups facts by the groupByDimensions while scanning, so this
+         only collects the aggregated results.
     */
 
     incrementMetric("cube.query.request.count", 1);
@@ -209,7 +223,8 @@ public class DefaultCube implements Cube, MeteredDataset {
 
     // 3) execute scan query
     FactTable table = resolutionToFactTable.get(query.getResolution());
-    FactScanner scanner = table.scan(scan);
+    FactScanner scanner = table.scan(scan, query.getGroupByDimensions(), query.getMeasurements(),
+                                     MAX_RECORDS_TO_SCAN);
     Table<Map<String, String>, String, Map<Long, Long>> resultMap = getTimeSeries(query, scanner);
 
     incrementMetric("cube.query.request.success.count", 1);
@@ -333,7 +348,6 @@ public class DefaultCube implements Cube, MeteredDataset {
     // {dimension values, measure} -> {time -> value}s
     Table<Map<String, String>, String, Map<Long, Long>> result = HashBasedTable.create();
 
-    int count = 0;
     while (scanner.hasNext()) {
       FactScanResult next = scanner.next();
       incrementMetric("cube.query.scan.records.count", 1);
@@ -393,9 +407,6 @@ public class DefaultCube implements Cube, MeteredDataset {
           throw new RuntimeException("Unknown MeasureType: " + function);
         }
       }
-      if (++count >= MAX_RECORDS_TO_SCAN) {
-        break;
-      }
     }
     return result;
   }
@@ -0,0 +1,115 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.cube;
+
+import co.cask.cdap.api.dataset.lib.cube.DimensionValue;
+import co.cask.cdap.api.dataset.lib.cube.MeasureType;
+import co.cask.cdap.api.dataset.lib.cube.Measurement;
+import co.cask.cdap.data2.dataset2.lib.timeseries.Fact;
+import com.google.common.base.Objects;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Combines {@link Fact}s that fall into the same time bucket of a resolution and have the same dimension values,
+ * so that every measure of such a combination is written to the
+ * {@link co.cask.cdap.data2.dataset2.lib.timeseries.FactTable} only once.
+ * Counters are summed up, while for gauges the latest value added wins.
+ * <p/>
+ * This class is not thread-safe.
+ */
+final class FactCombiner {
+
+  private final int resolution;
+  // LinkedHashMap to keep the order in which facts were added
+  private final Map<FactKey, Map<String, Measurement>> combined = Maps.newLinkedHashMap();
+
+  FactCombiner(int resolution) {
+    this.resolution = resolution;
+  }
+
+  /**
+   * Adds measurements that were taken at the given timestamp with the given dimension values.
+   *
+   * @param timestamp timestamp in seconds
+   * @param dimensionValues dimension values of the measurements
+   * @param measurements measurements to combine
+   */
+  void add(long timestamp, List<DimensionValue> dimensionValues, Collection<Measurement> measurements) {
+    FactKey key = new FactKey((timestamp / resolution) * resolution, dimensionValues);
+    Map<String, Measurement> measures = combined.get(key);
+    if (measures == null) {
+      measures = Maps.newLinkedHashMap();
+      combined.put(key, measures);
+    }
+    for (Measurement measurement : measurements) {
+      Measurement existing = measures.get(measurement.getName());
+      if (existing != null && existing.getType() == MeasureType.COUNTER
+        && measurement.getType() == MeasureType.COUNTER) {
+        measurement = new Measurement(measurement.getName(), MeasureType.COUNTER,
+                                      existing.getValue() + measurement.getValue());
+      }
+      measures.put(measurement.getName(), measurement);
+    }
+  }
+
+  /**
+   * @return the combined facts, with timestamps aligned to the start of the resolution time bucket
+   */
+  List<Fact> getFacts() {
+    List<Fact> facts = Lists.newArrayListWithCapacity(combined.size());
+    for (Map.Entry<FactKey, Map<String, Measurement>> entry : combined.entrySet()) {
+      facts.add(new Fact(entry.getKey().timestamp, entry.getKey().dimensionValues,
+                         Lists.newArrayList(entry.getValue().values())));
+    }
+    return facts;
+  }
+
+  /**
+   * Key of the facts to combine: the start of the time bucket and the dimension values.
+   */
+  private static final class FactKey {
+    private final long timestamp;
+    private final List<DimensionValue> dimensionValues;
+
+    private FactKey(long timestamp, List<DimensionValue> dimensionValues) {
+      this.timestamp = timestamp;
+      this.dimensionValues = dimensionValues;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      FactKey other = (FactKey) o;
+      return timestamp == other.timestamp && dimensionValues.equals(other.dimensionValues);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(timestamp, dimensionValues);
+    }
+  }
+}
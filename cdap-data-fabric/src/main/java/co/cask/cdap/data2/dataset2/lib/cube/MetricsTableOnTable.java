@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 Cask Data, Inc.
+ * Copyright 2015-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -23,6 +23,7 @@ import co.cask.cdap.api.dataset.table.Scanner;
 import co.cask.cdap.api.dataset.table.Table;
 import co.cask.cdap.data2.dataset2.lib.table.FuzzyRowFilter;
 import co.cask.cdap.data2.dataset2.lib.table.MetricsTable;
+import co.cask.cdap.data2.dataset2.lib.timeseries.FactGroupBy;
 
 import java.io.IOException;
 import java.util.Map;
@@ -69,7 +70,7 @@ class MetricsTableOnTable implements MetricsTable {
   }
 
   @Override
-  public boolean swap(byte[] row, byte[] column, byte[] oldValue, byte[] newValue) {
+  public synchronized boolean swap(byte[] row, byte[] column, byte[] oldValue, byte[] newValue) {
     return table.compareAndSwap(row, column, oldValue, newValue);
   }
 
@@ -109,6 +110,13 @@ class MetricsTableOnTable implements MetricsTable {
     return table.scan(new Scan(start, stop, filter));
   }
 
+  @Override
+  public Scanner scan(@Nullable byte[] start, @Nullable byte[] stop,
+                      @Nullable FuzzyRowFilter filter, FactGroupBy groupBy) {
+    // the caller aggregates the stored rows in-process
+    return scan(start, stop, filter);
+  }
+
   @Override
   public void close() throws IOException {
     table.close();
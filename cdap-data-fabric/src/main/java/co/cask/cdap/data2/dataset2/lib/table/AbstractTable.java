@@ -20,6 +20,7 @@ import co.cask.cdap.api.annotation.ReadOnly;
 import co.cask.cdap.api.annotation.ReadWrite;
 import co.cask.cdap.api.annotation.WriteOnly;
 import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.data.batch.ProjectableRecordScannable;
 import co.cask.cdap.api.data.batch.RecordScanner;
 import co.cask.cdap.api.data.batch.Split;
 import co.cask.cdap.api.data.batch.SplitReader;
@@ -32,6 +33,7 @@ import co.cask.cdap.api.dataset.table.Increment;
 import co.cask.cdap.api.dataset.table.Put;
 import co.cask.cdap.api.dataset.table.Result;
 import co.cask.cdap.api.dataset.table.Row;
+import co.cask.cdap.api.dataset.table.Scan;
 import co.cask.cdap.api.dataset.table.Scanner;
 import co.cask.cdap.api.dataset.table.Table;
 import co.cask.cdap.api.dataset.table.TableProperties;
@@ -48,14 +50,16 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.lang.reflect.Type;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
+import javax.annotation.Nullable;
 
 /**
  * Implements some of the methods in a generic way (not necessarily in most efficient way).
  */
-public abstract class AbstractTable implements Table, TransactionAware {
+public abstract class AbstractTable implements Table, TransactionAware, ProjectableRecordScannable<StructuredRecord> {
   private static final Logger LOG = LoggerFactory.getLogger(AbstractTable.class);
 
   // empty immutable row's column->value map constant
@@ -211,7 +215,21 @@ public abstract class AbstractTable implements Table, TransactionAware {
   @Override
   public RecordScanner<StructuredRecord> createSplitRecordScanner(Split split) {
     Preconditions.checkArgument(tableSchema != null, "Table has no schema and is not record scannable.");
-    return new StructuredRecordScanner(createSplitReader(split));
+    return new StructuredRecordScanner(createSplitReader(split), tableSchema, rowFieldName);
+  }
+
+  @ReadOnly
+  @Override
+  public RecordScanner<StructuredRecord> createSplitRecordScanner(Split split, Collection<String> fields) {
+    Preconditions.checkArgument(tableSchema != null, "Table has no schema and is not record scannable.");
+    Schema projection = RecordProjections.project(tableSchema, fields, true);
+    if (projection == null) {
+      return createSplitRecordScanner(split);
+    }
+    String projectedRowFieldName =
+      rowFieldName != null && projection.getField(rowFieldName) != null ? rowFieldName : null;
+    byte[][] columns = RecordProjections.getColumns(tableSchema, projection, rowFieldName);
+    return new StructuredRecordScanner(new TableScanner(columns), projection, projectedRowFieldName);
   }
 
   @WriteOnly
@@ -228,10 +246,13 @@ public abstract class AbstractTable implements Table, TransactionAware {
   private class StructuredRecordScanner extends RecordScanner<StructuredRecord> {
     private final ReflectionRowRecordReader rowReader;
     private final SplitReader<byte[], Row> tableSplitReader;
+    private final Schema schema;
 
-    private StructuredRecordScanner(SplitReader<byte[], Row> tableSplitReader) {
+    private StructuredRecordScanner(SplitReader<byte[], Row> tableSplitReader, Schema schema,
+                                    @Nullable String rowFieldName) {
       this.tableSplitReader = tableSplitReader;
-      this.rowReader = new ReflectionRowRecordReader(tableSchema, rowFieldName);
+      this.schema = schema;
+      this.rowReader = new ReflectionRowRecordReader(schema, rowFieldName);
     }
 
     @Override
@@ -248,7 +269,7 @@ public abstract class AbstractTable implements Table, TransactionAware {
     public StructuredRecord getCurrentRecord() throws InterruptedException {
       Row row = tableSplitReader.getCurrentValue();
       try {
-        return rowReader.read(row, tableSchema);
+        return rowReader.read(row, schema);
       } catch (IOException e) {
         LOG.error("Unable to read row.", e);
         throw Throwables.propagate(e);
@@ -267,6 +288,8 @@ public abstract class AbstractTable implements Table, TransactionAware {
    */
   public class TableScanner extends SplitReader<byte[], Row> {
 
+    // the columns to read, or null to read all columns
+    private final byte[][] columns;
     // the underlying scanner
     private Scanner scanner;
     // the current key
@@ -274,11 +297,23 @@ public abstract class AbstractTable implements Table, TransactionAware {
     // the current row, that is, a map from column key to value
     private Map<byte[], byte[]> row = null;
 
+    public TableScanner() {
+      this(null);
+    }
+
+    /**
+     * @param columns the columns to read, or {@code null} to read all columns
+     */
+    public TableScanner(@Nullable byte[][] columns) {
+      this.columns = columns;
+    }
+
     @Override
     public void initialize(Split split) throws InterruptedException {
       TableSplit tableSplit = (TableSplit) split;
       try {
-        this.scanner = scan(tableSplit.getStart(), tableSplit.getStop());
+        this.scanner = columns == null ? scan(tableSplit.getStart(), tableSplit.getStop())
+          : scan(new Scan(tableSplit.getStart(), tableSplit.getStop(), null, columns));
       } catch (Exception e) {
         LOG.debug("scan failed for table: " + getTransactionAwareName(), e);
         throw new DataSetException("scan failed", e);
@@ -53,6 +53,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
+import java.util.NavigableSet;
 import java.util.concurrent.ConcurrentSkipListMap;
 import javax.annotation.Nullable;
 
@@ -227,6 +228,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   /**
    * Scans range of rows from persistent store for a given {@link Scan}.
    * NOTE: persisted store can also be in-memory, it is called "persisted" to distinguish from in-memory buffer.
+   * NOTE: if the scan has columns, implementations should only read those columns.
    * @param scan scan configuration
    * @return instance of {@link Scanner}, never null
    * @throws Exception
@@ -695,9 +697,29 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   @Override
   public Scanner scan(Scan scan) {
     ensureTransactionIsStarted();
-    NavigableMap<byte[], NavigableMap<byte[], Update>> bufferMap = scanBuffer(scan);
+    Filter filter = scan.getFilter();
+    byte[][] columns = scan.getColumns();
     try {
-      return new BufferingScanner(bufferMap, scanPersisted(scan));
+      if (filter == null || TableFilters.isRowKeyFilter(filter)) {
+        return new BufferingScanner(scanBuffer(scan, filter), scanPersisted(scan), null, columns, columns);
+      }
+      // the filter depends on column values, which the buffered changes may modify. Hence the persisted rows are
+      // filtered by the persistent store, and the rows with buffered changes are filtered after merging.
+      // If only some columns are scanned, the columns that the filter depends on must be read as well.
+      byte[][] readColumns = columns;
+      Scan persistedScan = scan;
+      if (columns != null) {
+        NavigableSet<byte[]> filterColumns = TableFilters.getColumns(filter);
+        Collections.addAll(filterColumns, columns);
+        readColumns = filterColumns.toArray(new byte[filterColumns.size()][]);
+        persistedScan = new Scan(scan.getStartRow(), scan.getStopRow(), filter, readColumns);
+        for (Map.Entry<String, String> property : scan.getProperties().entrySet()) {
+          persistedScan.setProperty(property.getKey(), property.getValue());
+        }
+      }
+      return new BufferingScanner(scanBuffer(scan, null), scanPersisted(persistedScan), filter, readColumns, columns);
+    } catch (DataSetException e) {
+      throw e;
     } catch (Exception e) {
       LOG.debug("scan failed for table: " + getTransactionAwareName() +
           ", scan: " + scan.toString(), e);
@@ -705,7 +727,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     }
   }
 
-  private NavigableMap<byte[], NavigableMap<byte[], Update>> scanBuffer(Scan scan) {
+  private NavigableMap<byte[], NavigableMap<byte[], Update>> scanBuffer(Scan scan, @Nullable Filter rowKeyFilter) {
     NavigableMap<byte[], NavigableMap<byte[], Update>> bufferMap;
     byte[] startRow = scan.getStartRow();
     byte[] stopRow = scan.getStopRow();
@@ -718,7 +740,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     } else {
       bufferMap = buff.subMap(startRow, true, stopRow, false);
     }
-    bufferMap = applyFilter(bufferMap, scan.getFilter());
+    bufferMap = applyFilter(bufferMap, rowKeyFilter);
     return bufferMap;
   }
 
@@ -729,18 +751,13 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
       return bufferMap;
     }
 
-    // todo: currently we support only FuzzyRowFilter as an experimental feature
-    if (filter instanceof FuzzyRowFilter) {
-      NavigableMap<byte[], NavigableMap<byte[], Update>> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-      for (Map.Entry<byte[], NavigableMap<byte[], Update>> entry : bufferMap.entrySet()) {
-        if (FuzzyRowFilter.ReturnCode.INCLUDE == ((FuzzyRowFilter) filter).filterRow(entry.getKey())) {
-          result.put(entry.getKey(), entry.getValue());
-        }
+    NavigableMap<byte[], NavigableMap<byte[], Update>> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    for (Map.Entry<byte[], NavigableMap<byte[], Update>> entry : bufferMap.entrySet()) {
+      if (TableFilters.matches(filter, entry.getKey(), null)) {
+        result.put(entry.getKey(), entry.getValue());
       }
-      return result;
-    } else {
-      throw new DataSetException("Unknown filter type: " + filter);
     }
+    return result;
   }
 
   private Map<byte[], byte[]> getRowMap(byte[] row) throws Exception {
@@ -995,11 +1012,22 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     private final NavigableMap<byte[], NavigableMap<byte[], Update>> buffer;
     private final Scanner persistedScanner;
     private final Iterator<byte[]> keyIter;
+    // if not null, the filter that rows with buffered changes must match after merging
+    private final Filter bufferedRowFilter;
+    // if not null, the columns read from the persisted rows, sorted
+    private final byte[][] readColumns;
+    // if not null, the columns to return, sorted
+    private final byte[][] columns;
     private byte[] currentKey;
     private Row currentRow;
 
-    private BufferingScanner(NavigableMap<byte[], NavigableMap<byte[], Update>> buffer, Scanner persistedScanner) {
+    private BufferingScanner(NavigableMap<byte[], NavigableMap<byte[], Update>> buffer, Scanner persistedScanner,
+                             @Nullable Filter bufferedRowFilter, @Nullable byte[][] readColumns,
+                             @Nullable byte[][] columns) {
       this.buffer = buffer;
+      this.bufferedRowFilter = bufferedRowFilter;
+      this.readColumns = sortColumns(readColumns);
+      this.columns = sortColumns(columns);
       this.keyIter = getBufferKeyIterator(buffer);
       if (this.keyIter.hasNext()) {
         currentKey = keyIter.next();
@@ -1011,6 +1039,43 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     @Nullable
     @Override
     public Row next() {
+      Row result = nextMerged();
+      while (result != null) {
+        if (bufferedRowFilter == null
+          || TableFilters.matches(bufferedRowFilter, result.getRow(), result.getColumns())) {
+          if (columns == null) {
+            return result;
+          }
+          // the buffered changes and the filter may have added columns that were not asked for.
+          // A null value is a buffered delete.
+          Map<byte[], byte[]> projected = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+          for (Map.Entry<byte[], byte[]> column : result.getColumns().entrySet()) {
+            if (column.getValue() != null
+              && Arrays.binarySearch(columns, column.getKey(), Bytes.BYTES_COMPARATOR) >= 0) {
+              projected.put(column.getKey(), column.getValue());
+            }
+          }
+          if (!projected.isEmpty()) {
+            return new Result(result.getRow(), projected);
+          }
+        }
+        result = nextMerged();
+      }
+      return null;
+    }
+
+    @Nullable
+    private byte[][] sortColumns(@Nullable byte[][] columns) {
+      if (columns == null) {
+        return null;
+      }
+      byte[][] sorted = Arrays.copyOf(columns, columns.length);
+      Arrays.sort(sorted, Bytes.BYTES_COMPARATOR);
+      return sorted;
+    }
+
+    @Nullable
+    private Row nextMerged() {
       if (currentKey == null && currentRow == null) {
         // out of rows
         return null;
@@ -1035,14 +1100,18 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
       } else if (order < 0) {
         // buffer row comes first or persisted scanner is empty
         Map<byte[], byte[]> persistedRow = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-        mergeToPersisted(persistedRow, getFromBuffer(buffer, currentKey), null);
+        if (bufferedRowFilter != null) {
+          // the persisted row may exist but have been filtered out before applying the buffered changes
+          persistedRow.putAll(getPersistedRow(currentKey));
+        }
+        mergeToPersisted(persistedRow, getFromBuffer(buffer, currentKey), readColumns);
         result = new Result(copy(currentKey), persistedRow);
 
         currentKey = keyIter.hasNext() ? keyIter.next() : null;
       } else {
         // if currentKey and currentRow are equal, merge and advance both
         Map<byte[], byte[]> persisted = currentRow.getColumns();
-        mergeToPersisted(persisted, getFromBuffer(buffer, currentKey), null);
+        mergeToPersisted(persisted, getFromBuffer(buffer, currentKey), readColumns);
         result = new Result(currentRow.getRow(), persisted);
 
         currentRow = persistedScanner.next();
@@ -1051,6 +1120,15 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
       return result;
     }
 
+    private Map<byte[], byte[]> getPersistedRow(byte[] row) {
+      try {
+        return unwrapDeletes(getPersisted(row, readColumns));
+      } catch (Exception e) {
+        LOG.debug("get failed for table: " + getTransactionAwareName() + ", row: " + Bytes.toStringBinary(row), e);
+        throw new DataSetException("scan failed", e);
+      }
+    }
+
     @Override
     public void close() {
       this.persistedScanner.close();
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -18,6 +18,8 @@ package co.cask.cdap.data2.dataset2.lib.table;
 
 import co.cask.cdap.api.dataset.Dataset;
 import co.cask.cdap.api.dataset.table.Scanner;
+import co.cask.cdap.data2.dataset2.lib.timeseries.FactGroupBy;
+import co.cask.cdap.data2.dataset2.lib.timeseries.FactGroupByAggregator;
 
 import java.util.Map;
 import java.util.NavigableMap;
@@ -91,5 +93,18 @@ public interface MetricsTable extends Dataset {
    */
   Scanner scan(@Nullable byte[] start, @Nullable byte[] stop, @Nullable FuzzyRowFilter filter);
 
+  /**
+   * Get a scanner for a table that may return ranges of the scanned rows aggregated as defined by the given
+   * {@link FactGroupBy}, so that less data is returned. The aggregation happens where the data is stored (e.g. in
+   * HBase regions). The scanner returns each range as a single row in the packed form of
+   * {@link FactGroupByAggregator#toPackedColumns()}, and it can return stored rows as well. Callers combine both
+   * with {@link FactGroupByAggregator#merge}.
+   * @param start the row key of the first row to scan. If null, the scan begins at the first row of the table.
+   * @param stop the row key of the last row to scan. If null, the scan goes to the last row of the table.
+   * @param filter if non-null, a fuzzy row filter used to efficiently skip over entire rows.
+   * @param groupBy defines how the scanned rows are grouped and aggregated.
+   */
+  Scanner scan(@Nullable byte[] start, @Nullable byte[] stop, @Nullable FuzzyRowFilter filter, FactGroupBy groupBy);
+
 }
 
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015-2016 Cask Data, Inc.
+ * Copyright © 2015-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -20,6 +20,7 @@ import co.cask.cdap.api.annotation.Beta;
 import co.cask.cdap.api.annotation.ReadOnly;
 import co.cask.cdap.api.annotation.WriteOnly;
 import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.data.batch.ProjectableRecordScannable;
 import co.cask.cdap.api.data.batch.RecordScanner;
 import co.cask.cdap.api.data.batch.Split;
 import co.cask.cdap.api.data.batch.SplitReader;
@@ -31,6 +32,7 @@ import co.cask.cdap.api.dataset.lib.AbstractDataset;
 import co.cask.cdap.api.dataset.lib.CloseableIterator;
 import co.cask.cdap.api.dataset.lib.KeyValue;
 import co.cask.cdap.api.dataset.lib.ObjectMappedTable;
+import co.cask.cdap.api.dataset.lib.ProjectableObjectMappedTable;
 import co.cask.cdap.api.dataset.table.Put;
 import co.cask.cdap.api.dataset.table.Row;
 import co.cask.cdap.api.dataset.table.Scan;
@@ -46,16 +48,19 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import javax.annotation.Nullable;
 
 /**
- * Default implementation for {@link ObjectMappedTable}.
+ * Default implementation for {@link ObjectMappedTable}, which also supports {@link ProjectableObjectMappedTable}.
  *
  * @param <T> the type of objects in the table
  */
 @Beta
-public class ObjectMappedTableDataset<T> extends AbstractDataset implements ObjectMappedTable<T> {
+public class ObjectMappedTableDataset<T> extends AbstractDataset implements ProjectableObjectMappedTable<T> {
   private static final Logger LOG = LoggerFactory.getLogger(ObjectMappedTableDataset.class);
 
   private final Table table;
@@ -137,7 +142,15 @@ public class ObjectMappedTableDataset<T> extends AbstractDataset implements Obje
   @ReadOnly
   @Override
   public T read(byte[] key) {
-    return readRow(table.get(key));
+    return readRow(table.get(key), objectSchema);
+  }
+
+  @ReadOnly
+  @Override
+  public T read(byte[] key, Collection<String> fields) {
+    Schema projection = getProjection(fields);
+    byte[][] columns = RecordProjections.getColumns(objectSchema, projection, null);
+    return readRow(columns == null ? table.get(key) : table.get(key, columns), projection);
   }
 
   @ReadOnly
@@ -149,13 +162,33 @@ public class ObjectMappedTableDataset<T> extends AbstractDataset implements Obje
   @ReadOnly
   @Override
   public CloseableIterator<KeyValue<byte[], T>> scan(byte[] startRow, byte[] stopRow) {
-    return new ObjectIterator(table.scan(startRow, stopRow));
+    return new ObjectIterator(table.scan(startRow, stopRow), objectSchema);
   }
 
   @ReadOnly
   @Override
   public CloseableIterator<KeyValue<byte[], T>> scan(Scan scan) {
-    return new ObjectIterator(table.scan(scan));
+    return new ObjectIterator(table.scan(scan), objectSchema);
+  }
+
+  @ReadOnly
+  @Override
+  public CloseableIterator<KeyValue<byte[], T>> scan(Scan scan, Collection<String> fields) {
+    Schema projection = getProjection(fields);
+    Scan projectedScan = new Scan(scan.getStartRow(), scan.getStopRow(), scan.getFilter(),
+                                  RecordProjections.getColumns(objectSchema, projection, null));
+    for (Map.Entry<String, String> property : scan.getProperties().entrySet()) {
+      projectedScan.setProperty(property.getKey(), property.getValue());
+    }
+    return new ObjectIterator(table.scan(projectedScan), projection);
+  }
+
+  private Schema getProjection(Collection<String> fields) {
+    Schema projection = RecordProjections.project(objectSchema, fields, false);
+    if (projection == null || projection.getFields().size() != new HashSet<>(fields).size()) {
+      throw new IllegalArgumentException("Fields " + fields + " are not all in the schema " + objectSchema);
+    }
+    return projection;
   }
 
   @WriteOnly
@@ -191,6 +224,16 @@ public class ObjectMappedTableDataset<T> extends AbstractDataset implements Obje
     return table.createSplitRecordScanner(split);
   }
 
+  @ReadOnly
+  @Override
+  @SuppressWarnings("unchecked")
+  public RecordScanner<StructuredRecord> createSplitRecordScanner(Split split, Collection<String> fields) {
+    if (table instanceof ProjectableRecordScannable) {
+      return ((ProjectableRecordScannable<StructuredRecord>) table).createSplitRecordScanner(split, fields);
+    }
+    return table.createSplitRecordScanner(split);
+  }
+
   @ReadOnly
   @Override
   public SplitReader<byte[], T> createSplitReader(Split split) {
@@ -199,10 +242,12 @@ public class ObjectMappedTableDataset<T> extends AbstractDataset implements Obje
 
   private class ObjectIterator extends AbstractCloseableIterator<KeyValue<byte[], T>> {
     private final Scanner scanner;
+    private final Schema schema;
     private boolean closed = false;
 
-    private ObjectIterator(Scanner scanner) {
+    private ObjectIterator(Scanner scanner, Schema schema) {
       this.scanner = scanner;
+      this.schema = schema;
     }
 
     @Override
@@ -210,7 +255,7 @@ public class ObjectMappedTableDataset<T> extends AbstractDataset implements Obje
       Preconditions.checkState(!closed);
       Row row = scanner.next();
       if (row != null) {
-        return new KeyValue<>(row.getRow(), readRow(row));
+        return new KeyValue<>(row.getRow(), readRow(row, schema));
       }
       close();
       return endOfData();
@@ -253,7 +298,7 @@ public class ObjectMappedTableDataset<T> extends AbstractDataset implements Obje
 
     @Override
     public T getCurrentValue() throws InterruptedException {
-      return readRow(this.reader.getCurrentValue());
+      return readRow(this.reader.getCurrentValue(), objectSchema);
     }
 
     @Override
@@ -262,12 +307,12 @@ public class ObjectMappedTableDataset<T> extends AbstractDataset implements Obje
     }
   }
 
-  private T readRow(Row row) {
+  private T readRow(Row row, Schema schema) {
     try {
       if (row.isEmpty()) {
         return null;
       }
-      return getReflectionRowReader().read(row, objectSchema);
+      return getReflectionRowReader().read(row, schema);
     } catch (Exception e) {
       // should not happen. Can happen if somebody changes the type in an incompatible way?
       throw new DataSetException("Failed to decode object: " + e.getMessage(), e);
@@ -0,0 +1,99 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.table;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.api.dataset.table.Table;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * Helper methods for reading a subset of the fields of records that are stored in a {@link Table} with one
+ * column per field.
+ */
+final class RecordProjections {
+
+  private RecordProjections() {
+  }
+
+  /**
+   * Returns a record schema that only contains the given fields of a record schema.
+   *
+   * @param schema the record schema
+   * @param fields the names of the fields to keep
+   * @param ignoreCase whether the field names are matched ignoring case
+   * @return the projected schema, with the fields in the order of the given schema, or {@code null} if none of
+   *         the given fields is in the schema
+   */
+  @Nullable
+  static Schema project(Schema schema, Collection<String> fields, boolean ignoreCase) {
+    Set<String> names = new HashSet<>();
+    for (String field : fields) {
+      names.add(ignoreCase ? field.toLowerCase() : field);
+    }
+    List<Schema.Field> projected = new ArrayList<>();
+    for (Schema.Field field : schema.getFields()) {
+      if (names.contains(ignoreCase ? field.getName().toLowerCase() : field.getName())) {
+        projected.add(field);
+      }
+    }
+    return projected.isEmpty() ? null : Schema.recordOf(schema.getRecordName(), projected);
+  }
+
+  /**
+   * Returns the columns to read for a projection of a record schema. Besides the columns of the projected
+   * fields, this contains the column of a non-nullable field, so that a row is read even if all of its
+   * projected fields are null.
+   *
+   * @param schema the full record schema
+   * @param projection the projected record schema
+   * @param rowFieldName the name of the field that is stored as the row key, if any
+   * @return the columns to read, or {@code null} if all columns must be read, because the schema has no
+   *         non-nullable field other than the row key
+   */
+  @Nullable
+  static byte[][] getColumns(Schema schema, Schema projection, @Nullable String rowFieldName) {
+    List<byte[]> columns = new ArrayList<>();
+    boolean hasRequiredField = false;
+    for (Schema.Field field : projection.getFields()) {
+      if (!field.getName().equals(rowFieldName)) {
+        columns.add(Bytes.toBytes(field.getName()));
+        hasRequiredField = hasRequiredField || !field.getSchema().isNullable();
+      }
+    }
+    if (!hasRequiredField) {
+      Schema.Field requiredField = null;
+      for (Schema.Field field : schema.getFields()) {
+        if (!field.getName().equals(rowFieldName) && !field.getSchema().isNullable()) {
+          requiredField = field;
+          break;
+        }
+      }
+      if (requiredField == null) {
+        return null;
+      }
+      columns.add(Bytes.toBytes(requiredField.getName()));
+    }
+    return columns.toArray(new byte[columns.size()][]);
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.table;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.dataset.DataSetException;
+import co.cask.cdap.api.dataset.table.ColumnValueFilter;
+import co.cask.cdap.api.dataset.table.Filter;
+import co.cask.cdap.api.dataset.table.FilterList;
+import co.cask.cdap.api.dataset.table.RowPrefixFilter;
+
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import javax.annotation.Nullable;
+
+/**
+ * Evaluates the {@link Filter}s supported by tables against rows, for table implementations that cannot push them
+ * down to the storage.
+ */
+public final class TableFilters {
+
+  private TableFilters() {
+  }
+
+  /**
+   * Returns whether the given filter only depends on the row key, that is, whether it can be evaluated without the
+   * columns of the row.
+   *
+   * @throws DataSetException if the filter is not supported
+   */
+  public static boolean isRowKeyFilter(Filter filter) {
+    if (filter instanceof FuzzyRowFilter || filter instanceof RowPrefixFilter) {
+      return true;
+    }
+    if (filter instanceof ColumnValueFilter) {
+      return false;
+    }
+    if (filter instanceof FilterList) {
+      for (Filter subFilter : ((FilterList) filter).getFilters()) {
+        if (!isRowKeyFilter(subFilter)) {
+          return false;
+        }
+      }
+      return true;
+    }
+    throw new DataSetException("Unknown filter type: " + filter);
+  }
+
+  /**
+   * Returns the columns whose values the given filter depends on, sorted by {@link Bytes#BYTES_COMPARATOR}.
+   *
+   * @throws DataSetException if the filter is not supported
+   */
+  public static NavigableSet<byte[]> getColumns(Filter filter) {
+    NavigableSet<byte[]> columns = new TreeSet<>(Bytes.BYTES_COMPARATOR);
+    addColumns(filter, columns);
+    return columns;
+  }
+
+  private static void addColumns(Filter filter, NavigableSet<byte[]> columns) {
+    if (filter instanceof FuzzyRowFilter || filter instanceof RowPrefixFilter) {
+      return;
+    }
+    if (filter instanceof ColumnValueFilter) {
+      columns.add(((ColumnValueFilter) filter).getColumn());
+      return;
+    }
+    if (filter instanceof FilterList) {
+      for (Filter subFilter : ((FilterList) filter).getFilters()) {
+        addColumns(subFilter, columns);
+      }
+      return;
+    }
+    throw new DataSetException("Unknown filter type: " + filter);
+  }
+
+  /**
+   * Returns whether a row matches the given filter.
+   *
+   * @param filter the filter to evaluate
+   * @param row the row key
+   * @param columns the columns of the row, with deletes already removed. May only be {@code null} if the filter is
+   *                a {@link #isRowKeyFilter(Filter) row key filter}
+   * @throws DataSetException if the filter is not supported
+   */
+  public static boolean matches(Filter filter, byte[] row, @Nullable Map<byte[], byte[]> columns) {
+    if (filter instanceof FuzzyRowFilter) {
+      return ((FuzzyRowFilter) filter).filterRow(row) == FuzzyRowFilter.ReturnCode.INCLUDE;
+    }
+    if (filter instanceof RowPrefixFilter) {
+      for (byte[] prefix : ((RowPrefixFilter) filter).getPrefixes()) {
+        if (Bytes.startsWith(row, prefix)) {
+          return true;
+        }
+      }
+      return false;
+    }
+    if (filter instanceof ColumnValueFilter) {
+      if (columns == null) {
+        throw new IllegalArgumentException("Columns are required to evaluate filter " + filter);
+      }
+      return matches((ColumnValueFilter) filter, columns);
+    }
+    if (filter instanceof FilterList) {
+      FilterList filterList = (FilterList) filter;
+      boolean mustPassAll = filterList.getOperator() == FilterList.Operator.MUST_PASS_ALL;
+      for (Filter subFilter : filterList.getFilters()) {
+        if (matches(subFilter, row, columns) != mustPassAll) {
+          return !mustPassAll;
+        }
+      }
+      return mustPassAll;
+    }
+    throw new DataSetException("Unknown filter type: " + filter);
+  }
+
+  private static boolean matches(ColumnValueFilter filter, Map<byte[], byte[]> columns) {
+    byte[] value = columns.get(filter.getColumn());
+    // an empty value is a delete marker
+    if (value == null || value.length == 0) {
+      return false;
+    }
+    int cmp = Bytes.compareTo(value, filter.getValue());
+    switch (filter.getCompareOp()) {
+      case LESS:
+        return cmp < 0;
+      case LESS_OR_EQUAL:
+        return cmp <= 0;
+      case EQUAL:
+        return cmp == 0;
+      case NOT_EQUAL:
+        return cmp != 0;
+      case GREATER_OR_EQUAL:
+        return cmp >= 0;
+      case GREATER:
+        return cmp > 0;
+      default:
+        throw new IllegalArgumentException("Unknown compare operator " + filter.getCompareOp());
+    }
+  }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014-2016 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -25,6 +25,7 @@ import co.cask.cdap.api.dataset.table.TableProperties;
 import co.cask.cdap.common.utils.ImmutablePair;
 import co.cask.cdap.data2.dataset2.lib.table.FuzzyRowFilter;
 import co.cask.cdap.data2.dataset2.lib.table.MetricsTable;
+import co.cask.cdap.data2.dataset2.lib.timeseries.FactGroupBy;
 import co.cask.cdap.data2.util.TableId;
 import co.cask.cdap.data2.util.hbase.DeleteBuilder;
 import co.cask.cdap.data2.util.hbase.HBaseTableUtil;
@@ -245,6 +246,24 @@ public class HBaseMetricsTable implements MetricsTable {
     }
   }
 
+  @Override
+  public Scanner scan(@Nullable byte[] startRow, @Nullable byte[] stopRow,
+                      @Nullable FuzzyRowFilter filter, FactGroupBy groupBy) {
+    ScanBuilder scanBuilder = tableUtil.buildScan();
+    configureRangeScan(scanBuilder, startRow, stopRow, filter);
+    // the IncrementHandler coprocessor aggregates ranges of up to FactGroupBy.MAX_RANGE_ROWS rows of a region into a
+    // single result, so that every call to the region server aggregates a single range. Regions with an older
+    // coprocessor ignore the attribute and return the stored rows, which the caller aggregates the same way
+    scanBuilder.setCaching(1);
+    scanBuilder.setAttribute(FactGroupBy.SCAN_ATTRIBUTE, groupBy.toBytes());
+    try {
+      ResultScanner resultScanner = hTable.getScanner(scanBuilder.build());
+      return new HBaseScanner(resultScanner, columnFamily);
+    } catch (IOException e) {
+      throw new DataSetException("Scan failed on table " + tableId, e);
+    }
+  }
+
   private ScanBuilder configureRangeScan(ScanBuilder scan, @Nullable byte[] startRow, @Nullable byte[] stopRow,
                                          @Nullable FuzzyRowFilter filter) {
     // todo: should be configurable
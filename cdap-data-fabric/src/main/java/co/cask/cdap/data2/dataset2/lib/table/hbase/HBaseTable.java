@@ -22,7 +22,10 @@ import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.dataset.DataSetException;
 import co.cask.cdap.api.dataset.DatasetContext;
 import co.cask.cdap.api.dataset.DatasetSpecification;
+import co.cask.cdap.api.dataset.table.ColumnValueFilter;
 import co.cask.cdap.api.dataset.table.Filter;
+import co.cask.cdap.api.dataset.table.FilterList;
+import co.cask.cdap.api.dataset.table.RowPrefixFilter;
 import co.cask.cdap.api.dataset.table.Scanner;
 import co.cask.cdap.api.dataset.table.TableProperties;
 import co.cask.cdap.common.conf.CConfiguration;
@@ -56,6 +59,9 @@ import org.apache.hadoop.hbase.client.HTable;
 import org.apache.hadoop.hbase.client.Mutation;
 import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.filter.CompareFilter;
+import org.apache.hadoop.hbase.filter.PrefixFilter;
+import org.apache.hadoop.hbase.filter.SingleColumnValueFilter;
 import org.apache.hadoop.hbase.util.Pair;
 import org.apache.tephra.TransactionCodec;
 import org.apache.tephra.TxConstants;
@@ -354,7 +360,13 @@ public class HBaseTable extends BufferingTable {
   @Override
   protected Scanner scanPersisted(co.cask.cdap.api.dataset.table.Scan scan) throws Exception {
     ScanBuilder hScan = tableUtil.buildScan();
-    hScan.addFamily(columnFamily);
+    if (scan.getColumns() == null) {
+      hScan.addFamily(columnFamily);
+    } else {
+      for (byte[] column : scan.getColumns()) {
+        hScan.addColumn(columnFamily, column);
+      }
+    }
 
     // TODO (CDAP-11954): use common utility method to extract these configs
     if (scan.getProperties().containsKey(CONFIG_HBASE_CLIENT_CACHE_BLOCKS)) {
@@ -399,7 +411,10 @@ public class HBaseTable extends BufferingTable {
     if (filter == null) {
       return;
     }
+    scan.setFilter(toHBaseFilter(filter));
+  }
 
+  private org.apache.hadoop.hbase.filter.Filter toHBaseFilter(Filter filter) {
     if (filter instanceof FuzzyRowFilter) {
       FuzzyRowFilter fuzzyRowFilter = (FuzzyRowFilter) filter;
       List<Pair<byte[], byte[]>> fuzzyPairs =
@@ -407,9 +422,70 @@ public class HBaseTable extends BufferingTable {
       for (ImmutablePair<byte[], byte[]> pair : fuzzyRowFilter.getFuzzyKeysData()) {
         fuzzyPairs.add(Pair.newPair(pair.getFirst(), pair.getSecond()));
       }
-      scan.setFilter(new org.apache.hadoop.hbase.filter.FuzzyRowFilter(fuzzyPairs));
-    } else {
-      throw new IllegalArgumentException("Unsupported filter: " + filter);
+      return new org.apache.hadoop.hbase.filter.FuzzyRowFilter(fuzzyPairs);
+    }
+    if (filter instanceof RowPrefixFilter) {
+      List<byte[]> prefixes = ((RowPrefixFilter) filter).getPrefixes();
+      if (prefixes.size() == 1) {
+        return new PrefixFilter(prefixes.get(0));
+      }
+      List<org.apache.hadoop.hbase.filter.Filter> prefixFilters = Lists.newArrayListWithExpectedSize(prefixes.size());
+      for (byte[] prefix : prefixes) {
+        prefixFilters.add(new PrefixFilter(prefix));
+      }
+      return new org.apache.hadoop.hbase.filter.FilterList(
+        org.apache.hadoop.hbase.filter.FilterList.Operator.MUST_PASS_ONE, prefixFilters);
+    }
+    if (filter instanceof ColumnValueFilter) {
+      ColumnValueFilter columnValueFilter = (ColumnValueFilter) filter;
+      // deletes are written as empty values, hence the latest value must also be non-empty
+      return new org.apache.hadoop.hbase.filter.FilterList(
+        org.apache.hadoop.hbase.filter.FilterList.Operator.MUST_PASS_ALL,
+        createColumnValueFilter(columnValueFilter.getColumn(), toHBaseCompareOp(columnValueFilter.getCompareOp()),
+                                columnValueFilter.getValue()),
+        createColumnValueFilter(columnValueFilter.getColumn(), CompareFilter.CompareOp.NOT_EQUAL,
+                                HConstants.EMPTY_BYTE_ARRAY));
+    }
+    if (filter instanceof FilterList) {
+      FilterList filterList = (FilterList) filter;
+      List<org.apache.hadoop.hbase.filter.Filter> hFilters =
+        Lists.newArrayListWithExpectedSize(filterList.getFilters().size());
+      for (Filter subFilter : filterList.getFilters()) {
+        hFilters.add(toHBaseFilter(subFilter));
+      }
+      return new org.apache.hadoop.hbase.filter.FilterList(
+        filterList.getOperator() == FilterList.Operator.MUST_PASS_ALL
+          ? org.apache.hadoop.hbase.filter.FilterList.Operator.MUST_PASS_ALL
+          : org.apache.hadoop.hbase.filter.FilterList.Operator.MUST_PASS_ONE,
+        hFilters);
+    }
+    throw new IllegalArgumentException("Unsupported filter: " + filter);
+  }
+
+  private SingleColumnValueFilter createColumnValueFilter(byte[] column, CompareFilter.CompareOp compareOp,
+                                                          byte[] value) {
+    SingleColumnValueFilter filter = new SingleColumnValueFilter(columnFamily, column, compareOp, value);
+    filter.setFilterIfMissing(true);
+    filter.setLatestVersionOnly(true);
+    return filter;
+  }
+
+  private static CompareFilter.CompareOp toHBaseCompareOp(ColumnValueFilter.CompareOp compareOp) {
+    switch (compareOp) {
+      case LESS:
+        return CompareFilter.CompareOp.LESS;
+      case LESS_OR_EQUAL:
+        return CompareFilter.CompareOp.LESS_OR_EQUAL;
+      case EQUAL:
+        return CompareFilter.CompareOp.EQUAL;
+      case NOT_EQUAL:
+        return CompareFilter.CompareOp.NOT_EQUAL;
+      case GREATER_OR_EQUAL:
+        return CompareFilter.CompareOp.GREATER_OR_EQUAL;
+      case GREATER:
+        return CompareFilter.CompareOp.GREATER;
+      default:
+        throw new IllegalArgumentException("Unsupported compare operator: " + compareOp);
     }
   }
 
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014-2015 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -24,6 +24,7 @@ import co.cask.cdap.data2.dataset2.lib.table.FuzzyRowFilter;
 import co.cask.cdap.data2.dataset2.lib.table.MetricsTable;
 import co.cask.cdap.data2.dataset2.lib.table.Update;
 import co.cask.cdap.data2.dataset2.lib.table.Updates;
+import co.cask.cdap.data2.dataset2.lib.timeseries.FactGroupBy;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
@@ -86,7 +87,7 @@ public class InMemoryMetricsTable implements MetricsTable {
   }
 
   @Override
-  public boolean swap(byte[] row, byte[] column, byte[] oldValue, byte[] newValue) {
+  public synchronized boolean swap(byte[] row, byte[] column, byte[] oldValue, byte[] newValue) {
     return InMemoryTableService.swap(tableName, row, column, oldValue, newValue);
   }
 
@@ -126,6 +127,13 @@ public class InMemoryMetricsTable implements MetricsTable {
     return new InMemoryScanner(rows.entrySet().iterator(), filter, null);
   }
 
+  @Override
+  public Scanner scan(@Nullable byte[] start, @Nullable byte[] stop,
+                      @Nullable FuzzyRowFilter filter, FactGroupBy groupBy) {
+    // the caller aggregates the stored rows in-process
+    return scan(start, stop, filter);
+  }
+
   private NavigableMap<byte[], NavigableMap<byte[], byte[]>> getLatest(
     NavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, byte[]>>> versionedRows) {
     NavigableMap<byte[], NavigableMap<byte[], byte[]>> rows = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
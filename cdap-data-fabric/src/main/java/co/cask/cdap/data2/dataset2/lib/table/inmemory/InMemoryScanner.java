@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -17,10 +17,12 @@
 package co.cask.cdap.data2.dataset2.lib.table.inmemory;
 
 import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.dataset.table.Filter;
 import co.cask.cdap.api.dataset.table.Result;
 import co.cask.cdap.api.dataset.table.Row;
 import co.cask.cdap.api.dataset.table.Scanner;
 import co.cask.cdap.data2.dataset2.lib.table.FuzzyRowFilter;
+import co.cask.cdap.data2.dataset2.lib.table.TableFilters;
 import com.google.common.collect.Sets;
 
 import java.util.Collections;
@@ -37,13 +39,13 @@ public class InMemoryScanner implements Scanner {
 
   private final Iterator<Map.Entry<byte[], NavigableMap<byte[], byte[]>>> rows;
   private final Set<byte[]> columnsToInclude;
-  private final FuzzyRowFilter filter;
+  private final Filter filter;
 
   public InMemoryScanner(Iterator<Map.Entry<byte[], NavigableMap<byte[], byte[]>>> rows) {
     this(rows, null, null);
   }
 
-  public InMemoryScanner(Iterator<Map.Entry<byte[], NavigableMap<byte[], byte[]>>> rows, FuzzyRowFilter filter,
+  public InMemoryScanner(Iterator<Map.Entry<byte[], NavigableMap<byte[], byte[]>>> rows, Filter filter,
                          byte[][] columnsToInclude) {
     this.rows = rows;
     this.filter = filter;
@@ -62,13 +64,15 @@ public class InMemoryScanner implements Scanner {
 
     while (columns.isEmpty() && this.rows.hasNext()) {
       rowEntry = this.rows.next();
-      if (filter != null) {
-        FuzzyRowFilter.ReturnCode code = filter.filterRow(rowEntry.getKey());
+      if (filter instanceof FuzzyRowFilter) {
+        FuzzyRowFilter.ReturnCode code = ((FuzzyRowFilter) filter).filterRow(rowEntry.getKey());
         if (FuzzyRowFilter.ReturnCode.DONE.equals(code)) {
           break; // no more rows can match
         } else if (!FuzzyRowFilter.ReturnCode.INCLUDE.equals(code)) {
           continue; // this row does not match filter, move to next row
         }
+      } else if (filter != null && !TableFilters.matches(filter, rowEntry.getKey(), rowEntry.getValue())) {
+        continue; // this row does not match filter, move to next row
       }
       //Try to read all columns for this row
       for (Map.Entry<byte[], byte[]> colEntry : rowEntry.getValue().entrySet()) {
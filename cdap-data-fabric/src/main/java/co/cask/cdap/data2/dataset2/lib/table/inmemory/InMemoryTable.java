@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014-2016 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -19,7 +19,6 @@ package co.cask.cdap.data2.dataset2.lib.table.inmemory;
 import co.cask.cdap.api.annotation.ReadOnly;
 import co.cask.cdap.api.annotation.WriteOnly;
 import co.cask.cdap.api.common.Bytes;
-import co.cask.cdap.api.dataset.DataSetException;
 import co.cask.cdap.api.dataset.DatasetContext;
 import co.cask.cdap.api.dataset.DatasetSpecification;
 import co.cask.cdap.api.dataset.table.ConflictDetection;
@@ -28,7 +27,7 @@ import co.cask.cdap.api.dataset.table.Scan;
 import co.cask.cdap.api.dataset.table.Scanner;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.data2.dataset2.lib.table.BufferingTable;
-import co.cask.cdap.data2.dataset2.lib.table.FuzzyRowFilter;
+import co.cask.cdap.data2.dataset2.lib.table.TableFilters;
 import co.cask.cdap.data2.dataset2.lib.table.Update;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.AbstractIterator;
@@ -143,10 +142,34 @@ public class InMemoryTable extends BufferingTable {
     NavigableMap<byte[], NavigableMap<byte[], byte[]>> rows = unwrapDeletesForRows(visibleRowRange);
 
     rows = applyFilter(rows, scan.getFilter());
+    rows = applyColumns(rows, scan.getColumns());
 
     return new InMemoryScanner(wrapIterator(rows.entrySet().iterator()));
   }
 
+  private NavigableMap<byte[], NavigableMap<byte[], byte[]>> applyColumns(
+                                                    NavigableMap<byte[], NavigableMap<byte[], byte[]>> map,
+                                                    @Nullable byte[][] columns) {
+    if (columns == null) {
+      return map;
+    }
+
+    NavigableMap<byte[], NavigableMap<byte[], byte[]>> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    for (Map.Entry<byte[], NavigableMap<byte[], byte[]>> entry : map.entrySet()) {
+      NavigableMap<byte[], byte[]> row = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+      for (byte[] column : columns) {
+        byte[] value = entry.getValue().get(column);
+        if (value != null) {
+          row.put(column, value);
+        }
+      }
+      if (!row.isEmpty()) {
+        result.put(entry.getKey(), row);
+      }
+    }
+    return result;
+  }
+
   private NavigableMap<byte[], NavigableMap<byte[], byte[]>> applyFilter(
                                                     NavigableMap<byte[], NavigableMap<byte[], byte[]>> map,
                                                     @Nullable Filter filter) {
@@ -155,18 +178,13 @@ public class InMemoryTable extends BufferingTable {
       return map;
     }
 
-    // todo: currently we support only FuzzyRowFilter as an experimental feature
-    if (filter instanceof FuzzyRowFilter) {
-      NavigableMap<byte[], NavigableMap<byte[], byte[]>> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-      for (Map.Entry<byte[], NavigableMap<byte[], byte[]>> entry : map.entrySet()) {
-        if (FuzzyRowFilter.ReturnCode.INCLUDE == ((FuzzyRowFilter) filter).filterRow(entry.getKey())) {
-          result.put(entry.getKey(), entry.getValue());
-        }
+    NavigableMap<byte[], NavigableMap<byte[], byte[]>> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    for (Map.Entry<byte[], NavigableMap<byte[], byte[]>> entry : map.entrySet()) {
+      if (TableFilters.matches(filter, entry.getKey(), entry.getValue())) {
+        result.put(entry.getKey(), entry.getValue());
       }
-      return result;
-    } else {
-      throw new DataSetException("Unknown filter type: " + filter);
     }
+    return result;
   }
 
   @ReadOnly
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014-2015 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -24,6 +24,7 @@ import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.data2.dataset2.lib.table.FuzzyRowFilter;
 import co.cask.cdap.data2.dataset2.lib.table.MetricsTable;
 import co.cask.cdap.data2.dataset2.lib.table.inmemory.PrefixedNamespaces;
+import co.cask.cdap.data2.dataset2.lib.timeseries.FactGroupBy;
 import com.google.common.base.Function;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
@@ -153,6 +154,13 @@ public class LevelDBMetricsTable implements MetricsTable {
     }
   }
 
+  @Override
+  public Scanner scan(@Nullable byte[] start, @Nullable byte[] stop,
+                      @Nullable FuzzyRowFilter filter, FactGroupBy groupBy) {
+    // the caller aggregates the stored rows in-process
+    return scan(start, stop, filter);
+  }
+
   @Override
   public void close() throws IOException {
     // Do nothing
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -17,16 +17,19 @@
 package co.cask.cdap.data2.dataset2.lib.table.leveldb;
 
 import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.dataset.table.Filter;
 import co.cask.cdap.api.dataset.table.Result;
 import co.cask.cdap.api.dataset.table.Row;
 import co.cask.cdap.api.dataset.table.Scanner;
 import co.cask.cdap.common.utils.ImmutablePair;
 import co.cask.cdap.data2.dataset2.lib.table.FuzzyRowFilter;
+import co.cask.cdap.data2.dataset2.lib.table.TableFilters;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
-import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Striped;
 import org.apache.tephra.Transaction;
 import org.iq80.leveldb.DB;
 import org.iq80.leveldb.DBIterator;
@@ -40,8 +43,10 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
+import java.util.concurrent.locks.Lock;
 import javax.annotation.Nullable;
 
 /**
@@ -77,10 +82,12 @@ public class LevelDBTableCore {
 
   private final String tableName;
   private final LevelDBTableService service;
+  private final Striped<Lock> rowLocks;
 
   public LevelDBTableCore(String tableName, LevelDBTableService service) throws IOException {
     this.tableName = tableName;
     this.service = service;
+    this.rowLocks = service.getRowLocks(tableName);
   }
 
   private DB getDB() throws IOException {
@@ -92,54 +99,104 @@ public class LevelDBTableCore {
   }
 
 
-  public synchronized boolean swap(byte[] row, byte[] column, byte[] oldValue, byte[] newValue) throws IOException {
-    byte[] existing = getRow(row, new byte[][] { column }, null, null, -1, null).get(column);
-    // verify
-    if (oldValue == null && existing != null) {
-      return false;
-    }
-    if (oldValue != null && (existing == null || !Bytes.equals(oldValue, existing))) {
-      return false;
-    }
-    // write
-    if (newValue == null) {
-      // to-do
-      deleteColumn(row, column);
-    } else {
-      persist(Collections.singletonMap(row, Collections.singletonMap(column, newValue)), System.currentTimeMillis());
+  public boolean swap(byte[] row, byte[] column, byte[] oldValue, byte[] newValue) throws IOException {
+    Lock lock = getRowLock(row);
+    lock.lock();
+    try {
+      byte[] existing = getRow(row, new byte[][] { column }, null, null, -1, null).get(column);
+      // verify
+      if (oldValue == null && existing != null) {
+        return false;
+      }
+      if (oldValue != null && (existing == null || !Bytes.equals(oldValue, existing))) {
+        return false;
+      }
+      // write
+      if (newValue == null) {
+        // to-do
+        deleteColumn(row, column);
+      } else {
+        persist(Collections.singletonMap(row, Collections.singletonMap(column, newValue)),
+                System.currentTimeMillis());
+      }
+      return true;
+    } finally {
+      lock.unlock();
     }
-    return true;
   }
 
-  public synchronized Map<byte[], Long> increment(byte[] row, Map<byte[], Long> increments) throws IOException {
-    Map<byte[], Long> result = getResultMap(row, increments);
-    Map<byte[], byte[]> replacing = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-    for (Map.Entry<byte[], Long> entry : result.entrySet()) {
-      replacing.put(entry.getKey(), Bytes.toBytes(entry.getValue()));
+  public Map<byte[], Long> increment(byte[] row, Map<byte[], Long> increments) throws IOException {
+    Lock lock = getRowLock(row);
+    lock.lock();
+    try {
+      DB db = getDB();
+      Map<byte[], Long> result;
+      WriteBatch batch = db.createWriteBatch();
+      try (DBIterator iterator = db.iterator()) {
+        result = getResultMap(iterator, row, increments);
+      }
+      addToPutBatch(batch, row, result, System.currentTimeMillis());
+      db.write(batch, getWriteOptions());
+      return result;
+    } finally {
+      lock.unlock();
     }
-    persist(ImmutableMap.of(row, replacing), System.currentTimeMillis());
-    return result;
   }
 
-
-  public synchronized void increment(NavigableMap<byte[], NavigableMap<byte[], Long>> updates) throws IOException {
-    Map<byte[], Map<byte[], byte[]>> resultMap = Maps.newHashMap();
-    for (NavigableMap.Entry<byte[], NavigableMap<byte[], Long>> row : updates.entrySet()) {
-      NavigableMap<byte[], Long> increments = row.getValue();
-      Map<byte[], byte[]> replacing = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-      Map<byte[], Long> result = getResultMap(row.getKey(), increments);
-      for (Map.Entry<byte[], Long> entry : result.entrySet()) {
-        replacing.put(entry.getKey(), Bytes.toBytes(entry.getValue()));
+  /**
+   * Increments multiple rows. Existing values of all rows are read with one iterator and all new values are written
+   * with one {@link WriteBatch}, while holding the locks of all rows being incremented.
+   */
+  public void increment(NavigableMap<byte[], NavigableMap<byte[], Long>> updates) throws IOException {
+    if (updates.isEmpty()) {
+      return;
+    }
+    // Striped.bulkGet returns the locks in a consistent order, which avoids deadlock between concurrent calls
+    List<Integer> rowHashes = Lists.newArrayListWithCapacity(updates.size());
+    for (byte[] row : updates.keySet()) {
+      rowHashes.add(Bytes.hashCode(row));
+    }
+    List<Lock> locks = Lists.newArrayList(rowLocks.bulkGet(rowHashes));
+    for (Lock lock : locks) {
+      lock.lock();
+    }
+    try {
+      DB db = getDB();
+      long version = System.currentTimeMillis();
+      WriteBatch batch = db.createWriteBatch();
+      try (DBIterator iterator = db.iterator()) {
+        for (NavigableMap.Entry<byte[], NavigableMap<byte[], Long>> row : updates.entrySet()) {
+          addToPutBatch(batch, row.getKey(), getResultMap(iterator, row.getKey(), row.getValue()), version);
+        }
+      }
+      db.write(batch, getWriteOptions());
+    } finally {
+      for (Lock lock : Lists.reverse(locks)) {
+        lock.unlock();
       }
-      resultMap.put(row.getKey(), replacing);
     }
-    persist(resultMap, System.currentTimeMillis());
   }
 
-  private Map<byte[], Long> getResultMap(byte[] row, Map<byte[], Long> increments) throws IOException {
-    NavigableMap<byte[], byte[]> existing =
-      getRow(row, increments.keySet().toArray(new byte[increments.size()][]), null, null, -1, null);
+  private Lock getRowLock(byte[] row) {
+    return rowLocks.get(Bytes.hashCode(row));
+  }
+
+  /**
+   * Computes the incremented values of the given row, reading the existing values with the given iterator.
+   */
+  private Map<byte[], Long> getResultMap(DBIterator iterator, byte[] row,
+                                         Map<byte[], Long> increments) throws IOException {
     Map<byte[], Long> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    if (increments.isEmpty()) {
+      return result;
+    }
+    byte[][] columns = increments.keySet().toArray(new byte[increments.size()][]);
+    Arrays.sort(columns, Bytes.BYTES_COMPARATOR);
+    iterator.seek(createStartKey(row, columns[0]));
+    NavigableMap<byte[], byte[]> existing =
+      getRow(iterator, createEndKey(row, upperBound(columns[columns.length - 1])), null, false,
+             columns, columns.length).getSecond();
+
     for (Map.Entry<byte[], Long> increment : increments.entrySet()) {
       long existingValue = 0L;
       byte[] existingBytes = existing.get(increment.getKey());
@@ -157,6 +214,12 @@ public class LevelDBTableCore {
     return result;
   }
 
+  private void addToPutBatch(WriteBatch batch, byte[] row, Map<byte[], Long> values, long version) {
+    for (Map.Entry<byte[], Long> entry : values.entrySet()) {
+      batch.put(createPutKey(row, entry.getKey(), version), Bytes.toBytes(entry.getValue()));
+    }
+  }
+
   public void persist(Map<byte[], ? extends Map<byte[], byte[]>> changes, long version) throws IOException {
     DB db = getDB();
     // todo support writing null when no transaction
@@ -190,7 +253,7 @@ public class LevelDBTableCore {
   }
 
   public Scanner scan(byte[] startRow, byte[] stopRow,
-                      @Nullable FuzzyRowFilter filter, @Nullable byte[][] columns, @Nullable Transaction tx)
+                      @Nullable Filter filter, @Nullable byte[][] columns, @Nullable Transaction tx)
     throws IOException {
     if (columns != null) {
       if (columns.length == 0) {
@@ -387,7 +450,7 @@ public class LevelDBTableCore {
     db.write(batch, getWriteOptions());
   }
 
-  public void deleteRange(byte[] startRow, byte[] stopRow, @Nullable FuzzyRowFilter filter, @Nullable byte[][] columns)
+  public void deleteRange(byte[] startRow, byte[] stopRow, @Nullable Filter filter, @Nullable byte[][] columns)
     throws IOException {
     if (columns != null) {
       if (columns.length == 0) {
@@ -489,10 +552,10 @@ public class LevelDBTableCore {
     private byte[] endKey;
     private final DBIterator iterator;
     private final byte[][] columns;
-    private final FuzzyRowFilter filter;
+    private final Filter filter;
 
     LevelDBScanner(DBIterator iterator, byte[] endKey,
-                   @Nullable FuzzyRowFilter filter, @Nullable byte[][] columns, @Nullable Transaction tx) {
+                   @Nullable Filter filter, @Nullable byte[][] columns, @Nullable Transaction tx) {
       this.tx = tx;
       this.endKey = endKey;
       this.iterator = iterator;
@@ -509,15 +572,16 @@ public class LevelDBTableCore {
             return null;
           }
           // apply row filter if any
-          if (filter != null) {
-            FuzzyRowFilter.ReturnCode code = filter.filterRow(result.getFirst());
+          if (filter instanceof FuzzyRowFilter) {
+            FuzzyRowFilter fuzzyRowFilter = (FuzzyRowFilter) filter;
+            FuzzyRowFilter.ReturnCode code = fuzzyRowFilter.filterRow(result.getFirst());
             switch (code) {
               case DONE: {
                 return null;
               }
               case SEEK_NEXT_USING_HINT: {
                 // row does not match but another one could. seek to next possible matching row and iterate
-                byte[] seekToRow = filter.getNextRowHint(result.getFirst());
+                byte[] seekToRow = fuzzyRowFilter.getNextRowHint(result.getFirst());
                 iterator.seek(createStartKey(seekToRow));
                 continue;
               }
@@ -525,6 +589,8 @@ public class LevelDBTableCore {
                 break;
               }
             }
+          } else if (filter != null && !TableFilters.matches(filter, result.getFirst(), result.getSecond())) {
+            continue;
           }
           return new Result(result.getFirst(), result.getSecond());
         }
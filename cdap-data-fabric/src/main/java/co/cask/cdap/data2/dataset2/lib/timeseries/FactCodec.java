@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 Cask Data, Inc.
+ * Copyright 2015-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -17,15 +17,20 @@
 package co.cask.cdap.data2.dataset2.lib.timeseries;
 
 import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.dataset.lib.cube.AggregationFunction;
 import co.cask.cdap.api.dataset.lib.cube.DimensionValue;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.primitives.Ints;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import javax.annotation.Nullable;
 
 /**
@@ -219,6 +224,38 @@ public class FactCodec {
     return mask;
   }
 
+  /**
+   * Creates a {@link FactGroupBy} for aggregating the facts of an aggregation group while scanning them.
+   * @param dimensionNames names of all dimensions of the aggregation group, in the order of the row key
+   * @param groupByDimensions names of the dimensions to group by
+   * @param measureFunctions measures to include, with the functions to aggregate their values with
+   * @param startTs start of the time range, in seconds
+   * @param endTs end of the time range, in seconds
+   * @return {@link FactGroupBy}
+   */
+  public FactGroupBy createGroupBy(List<String> dimensionNames, Collection<String> groupByDimensions,
+                                   Map<String, AggregationFunction> measureFunctions, long startTs, long endTs) {
+    // See createRowKey for row format info
+    int idSize = entityTable.getIdSize();
+    List<Integer> groupByOffsets = Lists.newArrayList();
+    for (int i = 0; i < dimensionNames.size(); i++) {
+      if (groupByDimensions.contains(dimensionNames.get(i))) {
+        // dimension values go right after encoded agg group and timebase (encoded as int)
+        groupByOffsets.add(VERSION.length + idSize * (i + 1) + Bytes.SIZEOF_INT);
+      }
+    }
+
+    Map<byte[], AggregationFunction> encodedMeasureFunctions = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    for (Map.Entry<String, AggregationFunction> entry : measureFunctions.entrySet()) {
+      byte[] encodedMeasure = new byte[idSize];
+      writeEncoded(TYPE_MEASURE_NAME, entry.getKey(), encodedMeasure, 0);
+      encodedMeasureFunctions.put(encodedMeasure, entry.getValue());
+    }
+
+    return new FactGroupBy(idSize, VERSION.length + idSize, Ints.toArray(groupByOffsets),
+                           resolution, startTs, endTs, encodedMeasureFunctions);
+  }
+
   public byte[] createColumn(long ts) {
     long timestamp = roundToResolution(ts);
     int timeBase = getTimeBase(timestamp);
@@ -0,0 +1,196 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.timeseries;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.dataset.lib.cube.AggregationFunction;
+import com.google.common.base.Preconditions;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import javax.annotation.Nullable;
+
+/**
+ * Defines how rows of a {@link FactTable} are grouped and aggregated while they are scanned, so that only
+ * the aggregated series are returned instead of every stored row. A {@link FactGroupBy} only describes
+ * the encoded row key layout, which allows it to be evaluated where the {@link EntityTable} is not available,
+ * e.g. inside HBase region servers. See {@link FactGroupByAggregator} for how rows are combined.
+ * <p/>
+ * Instances are created with {@link FactCodec#createGroupBy}.
+ */
+public final class FactGroupBy {
+
+  /**
+   * Name of the scan attribute that carries the serialized {@link FactGroupBy}.
+   */
+  public static final String SCAN_ATTRIBUTE = "cdap.fact.groupby";
+
+  /**
+   * Maximum number of stored rows that are aggregated into a single result where the data is stored. This bounds
+   * the work done for each result, which is sized like the rows returned per call of a regular scan.
+   */
+  public static final int MAX_RANGE_ROWS = 1000;
+
+  private final int idSize;
+  private final int timeBaseOffset;
+  private final int[] groupByOffsets;
+  private final int resolution;
+  private final long startTs;
+  private final long endTs;
+  // encoded measure name -> function to aggregate the measure values with
+  private final NavigableMap<byte[], AggregationFunction> measureFunctions;
+
+  FactGroupBy(int idSize, int timeBaseOffset, int[] groupByOffsets, int resolution, long startTs, long endTs,
+              Map<byte[], AggregationFunction> measureFunctions) {
+    this.idSize = idSize;
+    this.timeBaseOffset = timeBaseOffset;
+    this.groupByOffsets = Arrays.copyOf(groupByOffsets, groupByOffsets.length);
+    this.resolution = resolution;
+    this.startTs = startTs;
+    this.endTs = endTs;
+    this.measureFunctions = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    this.measureFunctions.putAll(measureFunctions);
+  }
+
+  /**
+   * Size of every encoded entity in the row key.
+   */
+  public int getIdSize() {
+    return idSize;
+  }
+
+  /**
+   * Offset of the four bytes time base in the row key.
+   */
+  public int getTimeBaseOffset() {
+    return timeBaseOffset;
+  }
+
+  /**
+   * Offsets of the encoded values of the dimensions to group by in the row key.
+   */
+  public int[] getGroupByOffsets() {
+    return Arrays.copyOf(groupByOffsets, groupByOffsets.length);
+  }
+
+  public int getResolution() {
+    return resolution;
+  }
+
+  public long getStartTs() {
+    return startTs;
+  }
+
+  public long getEndTs() {
+    return endTs;
+  }
+
+  /**
+   * Returns the {@link AggregationFunction} for the given encoded measure name, or {@code null} if the measure
+   * should not be included in the results.
+   */
+  @Nullable
+  public AggregationFunction getFunction(byte[] encodedMeasureName) {
+    return measureFunctions.get(encodedMeasureName);
+  }
+
+  /**
+   * Serializes this {@link FactGroupBy} so that it can be passed as the {@link #SCAN_ATTRIBUTE}.
+   */
+  public byte[] toBytes() {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    try (DataOutputStream output = new DataOutputStream(bos)) {
+      output.writeInt(idSize);
+      output.writeInt(timeBaseOffset);
+      output.writeInt(groupByOffsets.length);
+      for (int offset : groupByOffsets) {
+        output.writeInt(offset);
+      }
+      output.writeInt(resolution);
+      output.writeLong(startTs);
+      output.writeLong(endTs);
+      output.writeInt(measureFunctions.size());
+      for (Map.Entry<byte[], AggregationFunction> entry : measureFunctions.entrySet()) {
+        output.write(entry.getKey());
+        output.writeUTF(entry.getValue().name());
+      }
+    } catch (IOException e) {
+      // should never happen when writing to memory
+      throw new IllegalStateException("Failed to serialize " + this, e);
+    }
+    return bos.toByteArray();
+  }
+
+  /**
+   * Deserializes a {@link FactGroupBy} that was serialized with {@link #toBytes()}.
+   *
+   * @throws IOException if the given bytes cannot be decoded
+   */
+  public static FactGroupBy fromBytes(byte[] bytes) throws IOException {
+    try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes))) {
+      int idSize = input.readInt();
+      int timeBaseOffset = input.readInt();
+      int[] groupByOffsets = new int[input.readInt()];
+      for (int i = 0; i < groupByOffsets.length; i++) {
+        groupByOffsets[i] = input.readInt();
+      }
+      int resolution = input.readInt();
+      long startTs = input.readLong();
+      long endTs = input.readLong();
+      int measures = input.readInt();
+      Map<byte[], AggregationFunction> measureFunctions = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+      for (int i = 0; i < measures; i++) {
+        byte[] measure = new byte[idSize];
+        input.readFully(measure);
+        measureFunctions.put(measure, AggregationFunction.valueOf(input.readUTF()));
+      }
+      Preconditions.checkArgument(resolution > 0, "Resolution must be positive: %s", resolution);
+      return new FactGroupBy(idSize, timeBaseOffset, groupByOffsets, resolution, startTs, endTs, measureFunctions);
+    } catch (IllegalArgumentException e) {
+      throw new IOException("Failed to decode " + FactGroupBy.class.getSimpleName(), e);
+    }
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder measures = new StringBuilder("{");
+    for (Map.Entry<byte[], AggregationFunction> entry : measureFunctions.entrySet()) {
+      if (measures.length() > 1) {
+        measures.append(", ");
+      }
+      measures.append(Bytes.toStringBinary(entry.getKey())).append('=').append(entry.getValue());
+    }
+    measures.append('}');
+
+    return "FactGroupBy{" +
+      "idSize=" + idSize +
+      ", timeBaseOffset=" + timeBaseOffset +
+      ", groupByOffsets=" + Arrays.toString(groupByOffsets) +
+      ", resolution=" + resolution +
+      ", startTs=" + startTs +
+      ", endTs=" + endTs +
+      ", measureFunctions=" + measures +
+      '}';
+  }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.timeseries;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.dataset.lib.cube.AggregationFunction;
+import co.cask.cdap.api.dataset.table.Result;
+import co.cask.cdap.api.dataset.table.Row;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+
+/**
+ * Aggregates rows of a {@link FactTable} as defined by a {@link FactGroupBy}.
+ * <p/>
+ * Rows are grouped by time base, measure name and the encoded values of the dimensions to group by. Values that
+ * fall into the same group and timestamp are combined with the {@link AggregationFunction} of the measure. Rows
+ * that have no value in a dimension to group by are skipped, the same way as the Cube does for non-aggregated
+ * scans. Each aggregated row uses the key of the first row of its group, so it can be decoded like any other
+ * fact row. Since all aggregation functions can be applied to partial results, ranges of rows aggregated separately
+ * (e.g. in HBase regions) can be combined again with the same functions, see {@link #toPackedColumns()} and
+ * {@link #merge(byte[], Map)}.
+ * <p/>
+ * This class is not thread safe.
+ */
+public final class FactGroupByAggregator {
+
+  // qualifier of the column that marks packed results, with the number of stored rows they aggregate as value
+  private static final byte[] PACKED_ROWS_COLUMN = new byte[0];
+
+  private final FactGroupBy groupBy;
+  private final int[] groupByOffsets;
+  private final int groupKeySize;
+  // group key -> aggregated row, for finding the group of a row
+  private final Map<byte[], AggregatedRow> groups;
+  // aggregated rows in the order their groups were first seen
+  private final List<AggregatedRow> rows;
+  // number of stored rows added, including the ones that did not contribute to the aggregated rows
+  private long storedRows;
+
+  public FactGroupByAggregator(FactGroupBy groupBy) {
+    this.groupBy = groupBy;
+    this.groupByOffsets = groupBy.getGroupByOffsets();
+    // <time base><dimension values to group by><measure name>
+    this.groupKeySize = Bytes.SIZEOF_INT + (groupByOffsets.length + 1) * groupBy.getIdSize();
+    this.groups = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    this.rows = Lists.newArrayList();
+  }
+
+  /**
+   * Adds a stored row to the aggregation. Rows must be added in the order of their keys.
+   *
+   * @param row the row key
+   * @param columns the columns of the row
+   * @return {@code true} if the row contributed to the aggregated results
+   */
+  public boolean add(byte[] row, Map<byte[], byte[]> columns) {
+    storedRows++;
+    return aggregate(row, columns);
+  }
+
+  /**
+   * Adds a row that is either a stored row or a range of stored rows aggregated with {@link #toPackedColumns()}.
+   * Rows and ranges must be added in the order of their keys, and a range must not overlap with any other row or
+   * range added.
+   *
+   * @param row the row key
+   * @param columns the columns of the row, sorted with {@link Bytes#BYTES_COMPARATOR}
+   */
+  public void merge(byte[] row, Map<byte[], byte[]> columns) {
+    byte[] packedRows = columns.get(PACKED_ROWS_COLUMN);
+    if (packedRows == null) {
+      add(row, columns);
+      return;
+    }
+
+    storedRows += Bytes.toLong(packedRows);
+    // packed columns are sorted by the key of the aggregated row, so all columns of a row are next to each other
+    byte[] aggregatedRow = null;
+    Map<byte[], byte[]> aggregatedColumns = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    for (Map.Entry<byte[], byte[]> column : columns.entrySet()) {
+      byte[] packedColumn = column.getKey();
+      if (packedColumn.length <= Bytes.SIZEOF_SHORT) {
+        continue;
+      }
+      int rowLength = packedColumn.length - Bytes.SIZEOF_SHORT;
+      if (aggregatedRow != null && !Bytes.equals(aggregatedRow, 0, aggregatedRow.length, packedColumn, 0, rowLength)) {
+        aggregate(aggregatedRow, aggregatedColumns);
+        aggregatedColumns.clear();
+      }
+      aggregatedRow = Bytes.head(packedColumn, rowLength);
+      aggregatedColumns.put(Bytes.tail(packedColumn, Bytes.SIZEOF_SHORT), column.getValue());
+    }
+    if (aggregatedRow != null) {
+      aggregate(aggregatedRow, aggregatedColumns);
+    }
+  }
+
+  private boolean aggregate(byte[] row, Map<byte[], byte[]> columns) {
+    int idSize = groupBy.getIdSize();
+    if (row.length < groupBy.getTimeBaseOffset() + Bytes.SIZEOF_INT + idSize) {
+      return false;
+    }
+
+    // last encoded is measure name
+    AggregationFunction function = groupBy.getFunction(Bytes.tail(row, idSize));
+    if (function == null) {
+      return false;
+    }
+
+    byte[] groupKey = new byte[groupKeySize];
+    int offset = Bytes.putBytes(groupKey, 0, row, groupBy.getTimeBaseOffset(), Bytes.SIZEOF_INT);
+    for (int groupByOffset : groupByOffsets) {
+      if (isAny(row, groupByOffset, idSize)) {
+        // no value for the dimension to group by
+        return false;
+      }
+      offset = Bytes.putBytes(groupKey, offset, row, groupByOffset, idSize);
+    }
+    Bytes.putBytes(groupKey, offset, row, row.length - idSize, idSize);
+
+    long timeBase = Bytes.toInt(row, groupBy.getTimeBaseOffset());
+    AggregatedRow aggregatedRow = groups.get(groupKey);
+    boolean added = false;
+    for (Map.Entry<byte[], byte[]> column : columns.entrySet()) {
+      // time leftover is encoded as 2 byte column name
+      long ts = timeBase + Bytes.toShort(column.getKey()) * groupBy.getResolution();
+      if (ts < groupBy.getStartTs() || ts > groupBy.getEndTs()) {
+        continue;
+      }
+      if (aggregatedRow == null) {
+        aggregatedRow = new AggregatedRow(row, function);
+        groups.put(groupKey, aggregatedRow);
+        rows.add(aggregatedRow);
+      }
+      aggregatedRow.add(column.getKey(), Bytes.toLong(column.getValue()));
+      added = true;
+    }
+    return added;
+  }
+
+  /**
+   * @return number of aggregated rows
+   */
+  public int size() {
+    return rows.size();
+  }
+
+  /**
+   * @return number of stored rows added, including the stored rows of merged ranges
+   */
+  public long getStoredRows() {
+    return storedRows;
+  }
+
+  /**
+   * @return the aggregated rows, in the order their groups were first added
+   */
+  public List<Row> getRows() {
+    List<Row> result = Lists.newArrayListWithCapacity(rows.size());
+    for (AggregatedRow row : rows) {
+      Map<byte[], byte[]> columns = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+      for (Map.Entry<byte[], Long> column : row.values.entrySet()) {
+        columns.put(column.getKey(), Bytes.toBytes(column.getValue()));
+      }
+      result.add(new Result(row.rowKey, columns));
+    }
+    return result;
+  }
+
+  /**
+   * Returns all aggregated rows packed into the columns of a single row, which can be added to another
+   * {@link FactGroupByAggregator} with {@link #merge(byte[], Map)}. Every value is stored in a column named by the
+   * key of its aggregated row followed by its column name. An additional column with an empty name holds the number
+   * of stored rows added, so that the packed columns are never empty, even if no row contributed to the results.
+   */
+  public NavigableMap<byte[], byte[]> toPackedColumns() {
+    NavigableMap<byte[], byte[]> columns = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    columns.put(PACKED_ROWS_COLUMN, Bytes.toBytes(storedRows));
+    for (AggregatedRow row : rows) {
+      for (Map.Entry<byte[], Long> column : row.values.entrySet()) {
+        columns.put(Bytes.add(row.rowKey, column.getKey()), Bytes.toBytes(column.getValue()));
+      }
+    }
+    return columns;
+  }
+
+  private static boolean isAny(byte[] row, int offset, int length) {
+    // all encoded ids start with 1, all zeroes is written for null values (see FactCodec)
+    for (int i = offset; i < offset + length; i++) {
+      if (row[i] != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Values of a single group.
+   */
+  private static final class AggregatedRow {
+    private final byte[] rowKey;
+    private final AggregationFunction function;
+    private final NavigableMap<byte[], Long> values;
+
+    private AggregatedRow(byte[] rowKey, AggregationFunction function) {
+      this.rowKey = rowKey;
+      this.function = function;
+      this.values = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    }
+
+    private void add(byte[] column, long value) {
+      Long current = values.get(column);
+      if (current == null) {
+        values.put(column, value);
+        return;
+      }
+      switch (function) {
+        case SUM:
+          values.put(column, current + value);
+          break;
+        case MAX:
+          values.put(column, Math.max(current, value));
+          break;
+        case MIN:
+          values.put(column, Math.min(current, value));
+          break;
+        case LATEST:
+          values.put(column, value);
+          break;
+        default:
+          // should never happen: developer error
+          throw new IllegalStateException("Unknown AggregationFunction: " + function);
+      }
+    }
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.timeseries;
+
+import co.cask.cdap.api.dataset.table.Row;
+import co.cask.cdap.api.dataset.table.Scanner;
+
+import java.util.Iterator;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link Scanner} that aggregates the rows of another {@link Scanner} in-process as defined by a
+ * {@link FactGroupBy}. The wrapped scanner can return stored rows as well as ranges of stored rows that were already
+ * aggregated where the data is stored, see {@link FactGroupByAggregator#merge}. It is consumed with the first call
+ * to {@link #next()}, until the given number of stored rows is reached.
+ */
+public final class FactGroupByScanner implements Scanner {
+
+  private final Scanner scanner;
+  private final FactGroupBy groupBy;
+  private final long maxStoredRows;
+  private Iterator<Row> rows;
+
+  public FactGroupByScanner(Scanner scanner, FactGroupBy groupBy, long maxStoredRows) {
+    this.scanner = scanner;
+    this.groupBy = groupBy;
+    this.maxStoredRows = maxStoredRows;
+  }
+
+  @Nullable
+  @Override
+  public Row next() {
+    if (rows == null) {
+      FactGroupByAggregator aggregator = new FactGroupByAggregator(groupBy);
+      Row row;
+      while (aggregator.getStoredRows() < maxStoredRows && (row = scanner.next()) != null) {
+        aggregator.merge(row.getRow(), row.getColumns());
+      }
+      rows = aggregator.getRows().iterator();
+    }
+    return rows.hasNext() ? rows.next() : null;
+  }
+
+  @Override
+  public void close() {
+    scanner.close();
+  }
+}
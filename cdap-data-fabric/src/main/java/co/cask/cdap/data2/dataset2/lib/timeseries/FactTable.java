@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -16,6 +16,7 @@
 package co.cask.cdap.data2.dataset2.lib.timeseries;
 
 import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.dataset.lib.cube.AggregationFunction;
 import co.cask.cdap.api.dataset.lib.cube.DimensionValue;
 import co.cask.cdap.api.dataset.lib.cube.MeasureType;
 import co.cask.cdap.api.dataset.lib.cube.Measurement;
@@ -164,7 +165,32 @@ public final class FactTable implements Closeable {
   }
 
   public FactScanner scan(FactScan scan) {
-    return new FactScanner(getScanner(scan), codec, scan.getStartTs(), scan.getEndTs(), scan.getMeasureNames());
+    return new FactScanner(getScanner(scan, null), codec, scan.getStartTs(), scan.getEndTs(), scan.getMeasureNames());
+  }
+
+  /**
+   * Scans facts and aggregates them while scanning, so that only the aggregated series are read from the underlying
+   * table rather than every fact. Facts that have no value in any of the dimensions to group by are skipped.
+   * Ranges of facts can be aggregated where they are stored (e.g. in HBase regions), the partial results are
+   * combined before the first result is returned.
+   *
+   * @param scan defines the facts to scan
+   * @param groupByDimensions names of the dimensions to group the facts by
+   * @param measureFunctions measures to scan, with the functions to aggregate their values with
+   * @param maxFacts maximum number of stored facts to aggregate. The limit is checked after every range of
+   *                 facts, so that slightly more facts may be aggregated
+   * @return {@link FactScanner} over the aggregated facts
+   */
+  public FactScanner scan(FactScan scan, Collection<String> groupByDimensions,
+                          Map<String, AggregationFunction> measureFunctions, int maxFacts) {
+    List<String> dimensionNames = Lists.newArrayList();
+    for (DimensionValue dimensionValue : scan.getDimensionValues()) {
+      dimensionNames.add(dimensionValue.getName());
+    }
+    FactGroupBy groupBy = codec.createGroupBy(dimensionNames, groupByDimensions, measureFunctions,
+                                              scan.getStartTs(), scan.getEndTs());
+    return new FactScanner(new FactGroupByScanner(getScanner(scan, groupBy), groupBy, maxFacts), codec,
+                           scan.getStartTs(), scan.getEndTs(), measureFunctions.keySet());
   }
 
   private List<String> getSortedMeasures(Collection<String> measures) {
@@ -180,7 +206,7 @@ public final class FactTable implements Closeable {
     return measureNames;
   }
 
-  private Scanner getScanner(FactScan scan) {
+  private Scanner getScanner(FactScan scan, @Nullable FactGroupBy groupBy) {
 
     // sort the measures based on their entity ids and based on that get the start and end row key metric names
     List<String> measureNames = getSortedMeasures(scan.getMeasureNames());
@@ -207,10 +233,14 @@ public final class FactTable implements Closeable {
       measureNames.isEmpty() ? createFuzzyRowFilter(scan, startRow) : createFuzzyRowFilter(scan, measureNames);
 
     if (LOG.isTraceEnabled()) {
-      LOG.trace("Scanning fact table {} with scan: {}; constructed startRow: {}, endRow: {}, fuzzyRowFilter: {}",
-                timeSeriesTable, scan, toPrettyLog(startRow), toPrettyLog(endRow), fuzzyRowFilter);
+      LOG.trace("Scanning fact table {} with scan: {}; constructed startRow: {}, endRow: {}, fuzzyRowFilter: {}, " +
+                  "groupBy: {}",
+                timeSeriesTable, scan, toPrettyLog(startRow), toPrettyLog(endRow), fuzzyRowFilter, groupBy);
     }
 
+    if (groupBy != null) {
+      return timeSeriesTable.scan(startRow, endRow, fuzzyRowFilter, groupBy);
+    }
     return timeSeriesTable.scan(startRow, endRow, fuzzyRowFilter);
   }
 
@@ -219,7 +249,7 @@ public final class FactTable implements Closeable {
    * @param scan specifies deletion criteria
    */
   public void delete(FactScan scan) {
-    try (Scanner scanner = getScanner(scan)) {
+    try (Scanner scanner = getScanner(scan, null)) {
       Row row;
       while ((row = scanner.next()) != null) {
         List<byte[]> columns = Lists.newArrayList();
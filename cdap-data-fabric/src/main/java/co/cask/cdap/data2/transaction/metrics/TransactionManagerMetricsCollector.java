@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014-2016 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -23,12 +23,28 @@ import co.cask.cdap.proto.id.NamespaceId;
 import com.google.common.collect.ImmutableMap;
 import com.google.inject.Inject;
 import org.apache.tephra.metrics.TxMetricsCollector;
+import org.apache.twill.common.Threads;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Implementation for TxMetricsCollector that delegate the the underlying {@link MetricsContext}.
+ * It also reports the heap usage and garbage collection time of the transaction server, since GC pauses there stall
+ * every commit.
  */
 public class TransactionManagerMetricsCollector extends TxMetricsCollector {
+
+  private static final long JVM_METRICS_INTERVAL_SECONDS = 10L;
+
   private final MetricsContext metricsContext;
+  private ScheduledExecutorService jvmMetricsExecutor;
+  private long lastGcTimeMillis;
+  private long lastGcCount;
 
   @Inject
   public TransactionManagerMetricsCollector(MetricsCollectionService service) {
@@ -56,4 +72,43 @@ public class TransactionManagerMetricsCollector extends TxMetricsCollector {
   public void rate(String metricName, int count) {
     metricsContext.increment(metricName, count);
   }
+
+  @Override
+  protected void startUp() throws Exception {
+    super.startUp();
+    jvmMetricsExecutor = Executors.newSingleThreadScheduledExecutor(
+      Threads.createDaemonThreadFactory("tx-jvm-metrics"));
+    jvmMetricsExecutor.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        emitJvmMetrics();
+      }
+    }, 0L, JVM_METRICS_INTERVAL_SECONDS, TimeUnit.SECONDS);
+  }
+
+  @Override
+  protected void shutDown() throws Exception {
+    if (jvmMetricsExecutor != null) {
+      jvmMetricsExecutor.shutdownNow();
+    }
+    super.shutDown();
+  }
+
+  private void emitJvmMetrics() {
+    MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+    metricsContext.gauge("jvm.heap.used.mb", heap.getUsed() / (1024 * 1024));
+    metricsContext.gauge("jvm.heap.committed.mb", heap.getCommitted() / (1024 * 1024));
+
+    long gcTimeMillis = 0L;
+    long gcCount = 0L;
+    for (GarbageCollectorMXBean gcBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+      // -1 if undefined for the collector
+      gcTimeMillis += Math.max(gcBean.getCollectionTime(), 0L);
+      gcCount += Math.max(gcBean.getCollectionCount(), 0L);
+    }
+    metricsContext.increment("jvm.gc.time.ms", gcTimeMillis - lastGcTimeMillis);
+    metricsContext.increment("jvm.gc.count", gcCount - lastGcCount);
+    lastGcTimeMillis = gcTimeMillis;
+    lastGcCount = gcCount;
+  }
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014-2015 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -23,18 +23,23 @@ import co.cask.cdap.data2.queue.ConsumerConfig;
 import co.cask.cdap.data2.queue.DequeueResult;
 import co.cask.cdap.data2.queue.DequeueStrategy;
 import co.cask.cdap.data2.queue.QueueConsumer;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.google.common.primitives.Ints;
 import com.google.common.primitives.Longs;
+import com.google.common.util.concurrent.Uninterruptibles;
 import org.apache.tephra.Transaction;
 import org.apache.tephra.TransactionAware;
 import org.apache.tephra.TxConstants;
+import org.apache.twill.common.Threads;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -47,7 +52,13 @@ import java.util.Map;
 import java.util.NavigableMap;
 import java.util.Set;
 import java.util.SortedMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javax.annotation.Nullable;
 
 /**
@@ -65,6 +76,10 @@ public abstract class AbstractQueueConsumer implements QueueConsumer, Transactio
   // Number of rows to scan = max(MIN_FETCH_ROWS, dequeueBatchSize * groupSize * PREFETCH_BATCHES)
   private static final int PREFETCH_BATCHES = 10;
 
+  // Shared by all consumers for scanning ahead. Idle threads are removed, hence it never needs to be shut down.
+  private static final ExecutorService PREFETCH_EXECUTOR =
+    Executors.newCachedThreadPool(Threads.createDaemonThreadFactory("queue-prefetch-%d"));
+
   private static final Function<SimpleQueueEntry, byte[]> ENTRY_TO_BYTE_ARRAY =
     new Function<SimpleQueueEntry, byte[]>() {
       @Override
@@ -82,8 +97,10 @@ public abstract class AbstractQueueConsumer implements QueueConsumer, Transactio
 
   // Maximum amount of time spent in dequeue to avoid transaction timeout.
   private final long maxDequeueMillis;
+  private final boolean prefetchEnabled;
 
   private byte[] scanStartRow;
+  private Prefetch prefetch;
   private boolean committed;
   protected Transaction transaction;
   protected int commitCount;
@@ -117,6 +134,7 @@ public abstract class AbstractQueueConsumer implements QueueConsumer, Transactio
                                 "Invalid value for %s", QueueConstants.ConfigKeys.DEQUEUE_TX_PERCENT);
     long txTimeout = TimeUnit.SECONDS.toMillis(cConf.getLong(TxConstants.Manager.CFG_TX_TIMEOUT));
     this.maxDequeueMillis = txTimeout * dequeuePercent / 100;
+    this.prefetchEnabled = cConf.getBoolean(QueueConstants.ConfigKeys.DEQUEUE_PREFETCH);
   }
 
   @Override
@@ -142,6 +160,14 @@ public abstract class AbstractQueueConsumer implements QueueConsumer, Transactio
     byte[] floorKey = consumingEntries.floorKey(scanStartRow);
     updateStartRow(floorKey == null ? scanStartRow : floorKey);
 
+    // If the cached entries won't be enough for the next dequeue, start scanning for more while this batch
+    // is being processed. No prefetch for an empty result, as the queue is likely to be drained.
+    if (prefetchEnabled && prefetch == null && !result.isEmpty() && entryCache.size() < maxBatchSize) {
+      prefetch = startPrefetch(maxBatchSize);
+    }
+    if (prefetch != null) {
+      prefetch.dequeuedRows.addAll(consumingEntries.keySet());
+    }
     return result;
   }
 
@@ -202,6 +228,24 @@ public abstract class AbstractQueueConsumer implements QueueConsumer, Transactio
     return true;
   }
 
+  /**
+   * Cancels the scan started for the next dequeue, if there is one. Subclasses should call it when closing.
+   */
+  protected final void cancelPrefetch() {
+    if (prefetch != null) {
+      prefetch.cancel();
+      prefetch = null;
+    }
+  }
+
+  /**
+   * Moves the row to start the next scan from. Rows scanned in the background from a different row are discarded.
+   */
+  @VisibleForTesting
+  final void setScanStartRow(byte[] startRow) {
+    scanStartRow = Arrays.copyOf(startRow, startRow.length);
+  }
+
   /**
    * Called when the start row is updated.
    */
@@ -312,14 +356,46 @@ public abstract class AbstractQueueConsumer implements QueueConsumer, Transactio
   }
 
   private void populateRowCache(Set<byte[]> excludeRows, int maxBatchSize, Stopwatch stopwatch) throws IOException {
+    int numRows = Math.max(MIN_FETCH_ROWS, maxBatchSize * PREFETCH_BATCHES);
 
-    long readPointer = transaction.getReadPointer();
+    // Use the rows scanned in the background if they were scanned from the current start row.
+    Prefetch prefetch = this.prefetch;
+    this.prefetch = null;
+    if (prefetch != null) {
+      if (Bytes.equals(prefetch.startRow, scanStartRow)) {
+        List<ImmutablePair<byte[], Map<byte[], byte[]>>> rows = prefetch.getRows();
+        if (rows != null) {
+          // Entries dequeued after the scan started may not be marked as processed in the scanned rows yet.
+          // Entries already in the cache are at least as recent as the scanned ones.
+          Set<byte[]> excludePrefetched = Sets.newTreeSet(Bytes.BYTES_COMPARATOR);
+          excludePrefetched.addAll(excludeRows);
+          excludePrefetched.addAll(prefetch.dequeuedRows);
+          excludePrefetched.addAll(entryCache.keySet());
+          // The rows need to be interpreted with the transaction that scanned them, not the current one
+          populateRowCache(new ListQueueScanner(rows), prefetch.transaction, excludePrefetched, numRows, stopwatch);
+          return;
+        }
+      } else {
+        prefetch.cancel();
+      }
+    }
 
     // Scan the table for queue entries.
-    int numRows = Math.max(MIN_FETCH_ROWS, maxBatchSize * PREFETCH_BATCHES);
     QueueScanner scanner = getScanner(scanStartRow,
                                       QueueEntryRow.getStopRowForTransaction(queueRowPrefix, transaction),
                                       numRows);
+    populateRowCache(scanner, transaction, excludeRows, numRows, stopwatch);
+  }
+
+  /**
+   * Fills the entry cache with the entries returned by the given scanner that can be consumed.
+   *
+   * @param scanner the scanner to read rows from. It will be closed by this method.
+   * @param transaction the transaction that the rows were scanned with
+   */
+  private void populateRowCache(QueueScanner scanner, Transaction transaction, Set<byte[]> excludeRows,
+                                int numRows, Stopwatch stopwatch) throws IOException {
+    long readPointer = transaction.getReadPointer();
     try {
       // Try fill up the cache
       boolean firstScannedRow = true;
@@ -366,7 +442,7 @@ public abstract class AbstractQueueConsumer implements QueueConsumer, Transactio
         byte[] stateBytes = entry.getSecond().get(stateColumnName);
 
         int counter = Bytes.toInt(rowKey, rowKey.length - 4, Ints.BYTES);
-        if (!shouldInclude(writePointer, counter, metaBytes, stateBytes)) {
+        if (!shouldInclude(transaction, writePointer, counter, metaBytes, stateBytes)) {
           continue;
         }
 
@@ -382,6 +458,51 @@ public abstract class AbstractQueueConsumer implements QueueConsumer, Transactio
     }
   }
 
+  /**
+   * Starts scanning the rows for the next dequeue in the background, using the current transaction.
+   * Only the reading of the rows happens in the background. They are filtered and claimed by the next dequeue.
+   */
+  @Nullable
+  private Prefetch startPrefetch(int maxBatchSize) {
+    int numRows = Math.max(MIN_FETCH_ROWS, maxBatchSize * PREFETCH_BATCHES);
+    final QueueScanner scanner;
+    try {
+      scanner = getScanner(scanStartRow, QueueEntryRow.getStopRowForTransaction(queueRowPrefix, transaction), numRows);
+    } catch (IOException e) {
+      // Not fatal, as the next dequeue will scan by itself
+      LOG.debug("Failed to start prefetching queue entries", e);
+      return null;
+    }
+    final int limit = numRows;
+    // Whoever sets it first owns the scanner and closes it, either the scan or the cancellation
+    final AtomicBoolean scannerOwned = new AtomicBoolean();
+    Future<List<ImmutablePair<byte[], Map<byte[], byte[]>>>> rows = PREFETCH_EXECUTOR.submit(
+      new Callable<List<ImmutablePair<byte[], Map<byte[], byte[]>>>>() {
+        @Override
+        public List<ImmutablePair<byte[], Map<byte[], byte[]>>> call() throws Exception {
+          if (!scannerOwned.compareAndSet(false, true)) {
+            // Cancelled before the scan started
+            return ImmutableList.of();
+          }
+          try {
+            List<ImmutablePair<byte[], Map<byte[], byte[]>>> rows = Lists.newArrayList();
+            ImmutablePair<byte[], Map<byte[], byte[]>> row = scanner.next();
+            while (row != null) {
+              rows.add(row);
+              if (rows.size() >= limit) {
+                break;
+              }
+              row = scanner.next();
+            }
+            return rows;
+          } finally {
+            scanner.close();
+          }
+        }
+      });
+    return new Prefetch(transaction, Arrays.copyOf(scanStartRow, scanStartRow.length), scanner, scannerOwned, rows);
+  }
+
   private byte[] encodeStateColumn(ConsumerEntryState state) {
     // State column content is encoded as (writePointer) + (instanceId) + (state)
     byte[] stateContent = new byte[Longs.BYTES + Ints.BYTES + 1];
@@ -391,7 +512,7 @@ public abstract class AbstractQueueConsumer implements QueueConsumer, Transactio
     return stateContent;
   }
 
-  private boolean shouldInclude(long enqueueWritePointer, int counter,
+  private boolean shouldInclude(Transaction transaction, long enqueueWritePointer, int counter,
                                 byte[] metaValue, byte[] stateValue) throws IOException {
 
     QueueEntryRow.CanConsume canConsume =
@@ -420,6 +541,81 @@ public abstract class AbstractQueueConsumer implements QueueConsumer, Transactio
     return getClass().getSimpleName() + "(queue = " + queueName + ")";
   }
 
+  /**
+   * The rows being scanned in the background for the next dequeue.
+   */
+  private static final class Prefetch {
+
+    private final Transaction transaction;
+    private final byte[] startRow;
+    private final QueueScanner scanner;
+    private final AtomicBoolean scannerOwned;
+    private final Future<List<ImmutablePair<byte[], Map<byte[], byte[]>>>> rows;
+    // Entries dequeued since the scan started
+    private final Set<byte[]> dequeuedRows;
+
+    private Prefetch(Transaction transaction, byte[] startRow, QueueScanner scanner, AtomicBoolean scannerOwned,
+                     Future<List<ImmutablePair<byte[], Map<byte[], byte[]>>>> rows) {
+      this.transaction = transaction;
+      this.startRow = startRow;
+      this.scanner = scanner;
+      this.scannerOwned = scannerOwned;
+      this.rows = rows;
+      this.dequeuedRows = Sets.newTreeSet(Bytes.BYTES_COMPARATOR);
+    }
+
+    /**
+     * Waits for the scan to complete.
+     *
+     * @return the scanned rows, or {@code null} if the scan failed
+     */
+    @Nullable
+    private List<ImmutablePair<byte[], Map<byte[], byte[]>>> getRows() {
+      try {
+        return Uninterruptibles.getUninterruptibly(rows);
+      } catch (ExecutionException e) {
+        // The dequeue will scan again
+        LOG.debug("Failed to prefetch queue entries", e.getCause());
+        return null;
+      }
+    }
+
+    private void cancel() {
+      // The future can be cancelled even if the scan is running, hence only close the scanner if the scan
+      // has not started yet. Otherwise the scan closes it when done.
+      rows.cancel(false);
+      if (scannerOwned.compareAndSet(false, true)) {
+        try {
+          scanner.close();
+        } catch (IOException e) {
+          LOG.debug("Failed to close queue scanner", e);
+        }
+      }
+    }
+  }
+
+  /**
+   * A {@link QueueScanner} over rows that are already read.
+   */
+  private static final class ListQueueScanner implements QueueScanner {
+
+    private final Iterator<ImmutablePair<byte[], Map<byte[], byte[]>>> rows;
+
+    private ListQueueScanner(List<ImmutablePair<byte[], Map<byte[], byte[]>>> rows) {
+      this.rows = rows.iterator();
+    }
+
+    @Override
+    public ImmutablePair<byte[], Map<byte[], byte[]>> next() {
+      return rows.hasNext() ? rows.next() : null;
+    }
+
+    @Override
+    public void close() {
+      // no-op
+    }
+  }
+
   /**
    * Implementation of dequeue result.
    */
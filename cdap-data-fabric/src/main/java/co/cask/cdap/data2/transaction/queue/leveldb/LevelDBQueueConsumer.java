@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014-2015 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -83,6 +83,7 @@ public final class LevelDBQueueConsumer extends AbstractQueueConsumer {
 
   @Override
   public void close() throws IOException {
+    cancelPrefetch();
     try {
       if (transaction != null) {
         // Use whatever last transaction for eviction.
@@ -28,6 +28,7 @@ import co.cask.cdap.common.namespace.NamespacedLocationFactory;
 import co.cask.cdap.common.utils.OSDetector;
 import co.cask.cdap.data.stream.CoordinatorStreamProperties;
 import co.cask.cdap.data.stream.StreamCoordinatorClient;
+import co.cask.cdap.data.stream.StreamDataBlockCodec;
 import co.cask.cdap.data.stream.StreamFileOffset;
 import co.cask.cdap.data.stream.StreamUtils;
 import co.cask.cdap.data.stream.service.StreamMetaStore;
@@ -59,6 +60,7 @@ import co.cask.cdap.proto.id.StreamViewId;
 import co.cask.cdap.proto.notification.NotificationFeedInfo;
 import co.cask.cdap.proto.security.Action;
 import co.cask.cdap.proto.security.Principal;
+import co.cask.cdap.security.authorization.AuthorizationUtil;
 import co.cask.cdap.security.impersonation.Impersonator;
 import co.cask.cdap.security.impersonation.OwnerAdmin;
 import co.cask.cdap.security.impersonation.SecurityUtil;
@@ -86,6 +88,7 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -286,13 +289,18 @@ public class FileStreamAdmin implements StreamAdmin {
 
   @Override
   public List<StreamSpecification> listStreams(final NamespaceId namespaceId) throws Exception {
-    final Predicate<EntityId> filter = authorizationEnforcer.createFilter(authenticationContext.getPrincipal());
     List<StreamSpecification> streamSpecifications = streamMetaStore.listStreams(namespaceId);
+    Set<StreamId> streamIds = new HashSet<>();
+    for (StreamSpecification spec : streamSpecifications) {
+      streamIds.add(namespaceId.stream(spec.getName()));
+    }
+    final Set<? extends EntityId> visible = AuthorizationUtil.isVisible(streamIds, authorizationEnforcer,
+                                                                        authenticationContext.getPrincipal());
     return Lists.newArrayList(Iterables.filter(streamSpecifications,
                                                new com.google.common.base.Predicate<StreamSpecification>() {
       @Override
       public boolean apply(StreamSpecification spec) {
-        return filter.apply(namespaceId.stream(spec.getName()));
+        return visible.contains(namespaceId.stream(spec.getName()));
       }
     }));
   }
@@ -320,7 +328,8 @@ public class FileStreamAdmin implements StreamAdmin {
           }
 
           return new StreamConfig(streamId, config.getPartitionDuration(), config.getIndexInterval(),
-                                  config.getTTL(), getStreamLocation(streamId), config.getFormat(), threshold);
+                                  config.getTTL(), getStreamLocation(streamId), config.getFormat(), threshold,
+                                  config.getCompressionCodec());
         }
       });
     } catch (Exception ex) {
@@ -613,8 +622,11 @@ public class FileStreamAdmin implements StreamAdmin {
                                        FormatSpecification.class);
           }
 
+          String compressionCodec = StreamDataBlockCodec.fromName(properties.getProperty(
+            Constants.Stream.COMPRESSION_CODEC, cConf.get(Constants.Stream.COMPRESSION_CODEC))).getName();
+
           final StreamConfig config = new StreamConfig(streamId, partitionDuration, indexInterval,
-                                                       ttl, streamLocation, formatSpec, threshold);
+                                                       ttl, streamLocation, formatSpec, threshold, compressionCodec);
           impersonator.doAs(streamId, new Callable<Void>() {
             @Override
             public Void call() throws Exception {
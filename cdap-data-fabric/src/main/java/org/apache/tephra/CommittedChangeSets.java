@@ -0,0 +1,281 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.tephra;
+
+import com.google.common.collect.Sets;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectRBTreeMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectSortedMap;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+
+import java.util.Collection;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Compact store of the change sets committed by transactions, keyed by commit pointer.
+ * <p/>
+ * The changes of each commit are packed into a few primitive arrays instead of a set of {@link ChangeId}, and an
+ * index from the 64 bit hash of a change to the latest commit pointer it was committed under makes conflict detection
+ * a lookup per change. Two different changes with the same hash can only cause a false conflict, never a missed one.
+ * The original change bytes are retained, so that the change sets can be written to snapshots.
+ * <p/>
+ * This class is thread safe. Conflict checks only take a read lock, so they can run concurrently with each other.
+ */
+final class CommittedChangeSets {
+
+  private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+  // Rough per-entry overhead of the tree map entry, the packed change set object and its array headers
+  private static final long CHANGE_SET_OVERHEAD = 48 + 16 + 3 * 16;
+  // A long key and a long value per index slot, assuming the default load factor
+  private static final long INDEX_ENTRY_SIZE = (long) (16 / Long2LongOpenHashMap.DEFAULT_LOAD_FACTOR);
+
+  private final Long2ObjectSortedMap<PackedChangeSet> changeSets = new Long2ObjectRBTreeMap<>();
+  // change hash -> the latest commit pointer in changeSets under which it was committed
+  private final Long2LongOpenHashMap latestCommitPointers = new Long2LongOpenHashMap();
+  private final Lock readLock;
+  private final Lock writeLock;
+  private long changeSetBytes;
+
+  CommittedChangeSets() {
+    ReadWriteLock lock = new ReentrantReadWriteLock();
+    this.readLock = lock.readLock();
+    this.writeLock = lock.writeLock();
+    // commit pointers are always positive, hence 0 means absent
+    this.latestCommitPointers.defaultReturnValue(0L);
+  }
+
+  /**
+   * Adds the changes committed under the given commit pointer. Changes that were already added under the same
+   * commit pointer are kept, and are only stored once.
+   */
+  void add(long commitPointer, Collection<ChangeId> changes) {
+    if (changes.isEmpty()) {
+      return;
+    }
+    writeLock.lock();
+    try {
+      PackedChangeSet existing = changeSets.get(commitPointer);
+      PackedChangeSet changeSet;
+      if (existing == null) {
+        changeSet = PackedChangeSet.pack(changes);
+      } else {
+        // Only happens when multiple transactions commit under the same pointer, hence not worth merging in place
+        Set<ChangeId> merged = existing.unpack();
+        merged.addAll(changes);
+        changeSet = PackedChangeSet.pack(merged);
+        changeSetBytes -= existing.getEstimatedSize();
+      }
+      changeSets.put(commitPointer, changeSet);
+      changeSetBytes += changeSet.getEstimatedSize();
+
+      for (long hash : changeSet.hashes) {
+        // commit pointers can arrive out of order when replaying the transaction log
+        if (latestCommitPointers.get(hash) < commitPointer) {
+          latestCommitPointers.put(hash, commitPointer);
+        }
+      }
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * Returns whether any of the given changes was committed under a commit pointer greater than the given
+   * transaction id, that is, by a transaction that committed after the given transaction started.
+   */
+  boolean hasConflicts(long transactionId, Collection<ChangeId> changes) {
+    if (changes.isEmpty()) {
+      return false;
+    }
+    readLock.lock();
+    try {
+      if (changeSets.isEmpty()) {
+        return false;
+      }
+      for (ChangeId change : changes) {
+        if (latestCommitPointers.get(hash(change.getKey())) > transactionId) {
+          return true;
+        }
+      }
+      return false;
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  /**
+   * Removes all change sets with a commit pointer smaller than the given one, along with their index entries.
+   */
+  void removeBefore(long commitPointer) {
+    writeLock.lock();
+    try {
+      Long2ObjectSortedMap<PackedChangeSet> toRemove = changeSets.headMap(commitPointer);
+      if (toRemove.isEmpty()) {
+        return;
+      }
+      ObjectIterator<Long2ObjectMap.Entry<PackedChangeSet>> iterator = toRemove.long2ObjectEntrySet().iterator();
+      while (iterator.hasNext()) {
+        Long2ObjectMap.Entry<PackedChangeSet> entry = iterator.next();
+        long removedPointer = entry.getLongKey();
+        PackedChangeSet changeSet = entry.getValue();
+        for (long hash : changeSet.hashes) {
+          // only remove if the change was not committed again later
+          if (latestCommitPointers.get(hash) == removedPointer) {
+            latestCommitPointers.remove(hash);
+          }
+        }
+        changeSetBytes -= changeSet.getEstimatedSize();
+        iterator.remove();
+      }
+      if (changeSets.isEmpty()) {
+        // release the table memory after a burst of changes
+        latestCommitPointers.trim();
+      }
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * Returns the number of commit pointers with changes.
+   */
+  int size() {
+    readLock.lock();
+    try {
+      return changeSets.size();
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  /**
+   * Returns the number of distinct change hashes being tracked.
+   */
+  int getChangeCount() {
+    readLock.lock();
+    try {
+      return latestCommitPointers.size();
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  /**
+   * Returns an estimate of the heap used by this store, in bytes.
+   */
+  long getEstimatedSize() {
+    readLock.lock();
+    try {
+      return changeSetBytes + latestCommitPointers.size() * INDEX_ENTRY_SIZE;
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  /**
+   * Returns a copy of the change sets as {@link ChangeId} sets, for writing a snapshot.
+   */
+  NavigableMap<Long, Set<ChangeId>> toChangeSets() {
+    readLock.lock();
+    try {
+      NavigableMap<Long, Set<ChangeId>> result = new TreeMap<>();
+      for (Long2ObjectMap.Entry<PackedChangeSet> entry : changeSets.long2ObjectEntrySet()) {
+        result.put(entry.getLongKey(), entry.getValue().unpack());
+      }
+      return result;
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  void clear() {
+    writeLock.lock();
+    try {
+      changeSets.clear();
+      latestCommitPointers.clear();
+      latestCommitPointers.trim();
+      changeSetBytes = 0;
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  private static long hash(byte[] change) {
+    return HASH_FUNCTION.hashBytes(change).asLong();
+  }
+
+  /**
+   * The changes of one commit, packed into one array of hashes and one array holding the concatenated change bytes.
+   */
+  private static final class PackedChangeSet {
+
+    private final long[] hashes;
+    private final byte[] keys;
+    // offsets[i] is the start of the i-th change in keys, offsets[hashes.length] is the end of the last one
+    private final int[] offsets;
+
+    static PackedChangeSet pack(Collection<ChangeId> changes) {
+      int size = 0;
+      for (ChangeId change : changes) {
+        size += change.getKey().length;
+      }
+      long[] hashes = new long[changes.size()];
+      byte[] keys = new byte[size];
+      int[] offsets = new int[changes.size() + 1];
+      int i = 0;
+      int offset = 0;
+      for (ChangeId change : changes) {
+        byte[] key = change.getKey();
+        hashes[i] = hash(key);
+        offsets[i++] = offset;
+        System.arraycopy(key, 0, keys, offset, key.length);
+        offset += key.length;
+      }
+      offsets[i] = offset;
+      return new PackedChangeSet(hashes, keys, offsets);
+    }
+
+    private PackedChangeSet(long[] hashes, byte[] keys, int[] offsets) {
+      this.hashes = hashes;
+      this.keys = keys;
+      this.offsets = offsets;
+    }
+
+    long getEstimatedSize() {
+      return CHANGE_SET_OVERHEAD + 8L * hashes.length + keys.length + 4L * offsets.length;
+    }
+
+    Set<ChangeId> unpack() {
+      Set<ChangeId> changes = Sets.newHashSetWithExpectedSize(hashes.length);
+      for (int i = 0; i < hashes.length; i++) {
+        byte[] key = new byte[offsets[i + 1] - offsets[i]];
+        System.arraycopy(keys, offsets[i], key, 0, key.length);
+        changes.add(new ChangeId(key));
+      }
+      return changes;
+    }
+  }
+}
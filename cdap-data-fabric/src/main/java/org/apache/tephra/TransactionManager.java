@@ -127,10 +127,10 @@ public class TransactionManager extends AbstractService {
   // the list of transactions that are invalid (not properly committed/aborted, or timed out)
   private final InvalidTxList invalidTxList = new InvalidTxList();
 
-  // todo: use moving array instead (use Long2ObjectMap<byte[]> in fastutil)
   // todo: should this be consolidated with inProgress?
-  // commit time next writePointer -> changes made by this tx
-  private final NavigableMap<Long, Set<ChangeId>> committedChangeSets = new ConcurrentSkipListMap<>();
+  // commit time next writePointer -> changes made by this tx, packed and indexed for conflict detection.
+  // Only modified while holding the monitor of this, but read without it.
+  private final CommittedChangeSets committedChangeSets = new CommittedChangeSets();
   // not committed yet
   private final Map<Long, Set<ChangeId>> committingChangeSets = Maps.newConcurrentMap();
 
@@ -316,7 +316,7 @@ public class TransactionManager extends AbstractService {
       @Override
       public void doRun() {
         txMetricsCollector.gauge("committing.size", committingChangeSets.size());
-        txMetricsCollector.gauge("committed.size", committedChangeSets.size());
+        emitCommittedChangeSetMetrics();
         txMetricsCollector.gauge("inprogress.size", inProgress.size());
         txMetricsCollector.gauge("invalid.size", getInvalidSize());
       }
@@ -325,7 +325,7 @@ public class TransactionManager extends AbstractService {
       protected void onShutdown() {
         // perform a final metrics emit
         txMetricsCollector.gauge("committing.size", committingChangeSets.size());
-        txMetricsCollector.gauge("committed.size", committedChangeSets.size());
+        emitCommittedChangeSetMetrics();
         txMetricsCollector.gauge("inprogress.size", inProgress.size());
         txMetricsCollector.gauge("invalid.size", getInvalidSize());
       }
@@ -338,6 +338,12 @@ public class TransactionManager extends AbstractService {
     metricsThread.start();
   }
 
+  private void emitCommittedChangeSetMetrics() {
+    txMetricsCollector.gauge("committed.size", committedChangeSets.size());
+    txMetricsCollector.gauge("committed.changes", committedChangeSets.getChangeCount());
+    txMetricsCollector.gauge("committed.memory.kb", (int) (committedChangeSets.getEstimatedSize() / 1024));
+  }
+
   private void cleanupTimedOutTransactions() {
     List<TransactionEdit> invalidEdits = null;
     logReadLock.lock();
@@ -467,7 +473,7 @@ public class TransactionManager extends AbstractService {
   public synchronized TransactionSnapshot getCurrentState() {
     return TransactionSnapshot.copyFrom(System.currentTimeMillis(), readPointer, lastWritePointer,
                                         invalidTxList, inProgress, committingChangeSets,
-                                        committedChangeSets);
+                                        committedChangeSets.toChangeSets());
   }
 
   public synchronized void recoverState() {
@@ -499,7 +505,7 @@ public class TransactionManager extends AbstractService {
     Preconditions.checkState(invalidTxList.isEmpty(), "invalid list should be empty!");
     Preconditions.checkState(inProgress.isEmpty(), "inProgress map should be empty!");
     Preconditions.checkState(committingChangeSets.isEmpty(), "committingChangeSets should be empty!");
-    Preconditions.checkState(committedChangeSets.isEmpty(), "committedChangeSets should be empty!");
+    Preconditions.checkState(committedChangeSets.size() == 0, "committedChangeSets should be empty!");
     LOG.info("Restoring snapshot of state: " + snapshot);
 
     lastSnapshotTime = snapshot.getTimestamp();
@@ -508,7 +514,9 @@ public class TransactionManager extends AbstractService {
     invalidTxList.addAll(snapshot.getInvalid());
     inProgress.putAll(txnBackwardsCompatCheck(defaultLongTimeout, longTimeoutTolerance, snapshot.getInProgress()));
     committingChangeSets.putAll(snapshot.getCommittingChangeSets());
-    committedChangeSets.putAll(snapshot.getCommittedChangeSets());
+    for (Map.Entry<Long, Set<ChangeId>> changeSet : snapshot.getCommittedChangeSets().entrySet()) {
+      committedChangeSets.add(changeSet.getKey(), changeSet.getValue());
+    }
   }
 
   /**
@@ -942,15 +950,9 @@ public class TransactionManager extends AbstractService {
       // No need to add empty changes to the committed change sets, they will never trigger any conflict
 
       // Record the committed change set with the next writePointer as the commit time.
-      // NOTE: we use current next writePointer as key for the map, hence we may have multiple txs changesets to be
+      // NOTE: we use current next writePointer as key, hence we may have multiple txs changesets to be
       //       stored under one key
-      Set<ChangeId> changeIds = committedChangeSets.get(commitPointer);
-      if (changeIds != null) {
-        // NOTE: we modify the new set to prevent concurrent modification exception, as other threads (e.g. in
-        // canCommit) use it unguarded
-        changes.addAll(changeIds);
-      }
-      committedChangeSets.put(commitPointer, changes);
+      committedChangeSets.add(commitPointer, changes);
     }
     // remove from in-progress set, so that it does not get excluded in the future
     InProgressTx previous = inProgress.remove(transactionId);
@@ -974,7 +976,14 @@ public class TransactionManager extends AbstractService {
     // here we ignore transactions that have no timeout, they are long-running and don't participate in
     // conflict detection.
     // TODO: for efficiency, can we do this once per-log in replayLogs instead of once per edit?
-    committedChangeSets.headMap(TxUtils.getFirstShortInProgress(inProgress)).clear();
+    pruneCommittedChangeSets(TxUtils.getFirstShortInProgress(inProgress));
+  }
+
+  /**
+   * Removes all committed change sets with a commit pointer smaller than the given one.
+   */
+  private void pruneCommittedChangeSets(long upToCommitPointer) {
+    committedChangeSets.removeBefore(upToCommitPointer);
   }
 
   public void abort(Transaction tx) {
@@ -1225,38 +1234,9 @@ public class TransactionManager extends AbstractService {
   }
 
   private boolean hasConflicts(Transaction tx, Set<ChangeId> changeIds) {
-    if (changeIds.isEmpty()) {
-      return false;
-    }
-
-    for (Map.Entry<Long, Set<ChangeId>> changeSet : committedChangeSets.entrySet()) {
-      // If commit time is greater than tx read-pointer,
-      // basically not visible but committed means "tx committed after given tx was started"
-      if (changeSet.getKey() > tx.getTransactionId()) {
-        if (overlap(changeSet.getValue(), changeIds)) {
-          return true;
-        }
-      }
-    }
-    return false;
-  }
-
-  private boolean overlap(Set<ChangeId> a, Set<ChangeId> b) {
-    // iterate over the smaller set, and check for every element in the other set
-    if (a.size() > b.size()) {
-      for (ChangeId change : b) {
-        if (a.contains(change)) {
-          return true;
-        }
-      }
-    } else {
-      for (ChangeId change : a) {
-        if (b.contains(change)) {
-          return true;
-        }
-      }
-    }
-    return false;
+    // If commit time is greater than tx read-pointer,
+    // basically not visible but committed means "tx committed after given tx was started"
+    return committedChangeSets.hasConflicts(tx.getTransactionId(), changeIds);
   }
 
   private void moveReadPointerIfNeeded(long committedWritePointer) {
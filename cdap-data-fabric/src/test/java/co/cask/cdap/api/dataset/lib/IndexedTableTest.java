@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014-2016 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -338,6 +338,59 @@ public class IndexedTableTest {
     }
   }
 
+  @Test
+  public void testIndexedLookupsWithColumns() throws Exception {
+    DatasetId indexColumnsDs = DatasetFrameworkTestUtil.NAMESPACE_ID.dataset("columnsLookup");
+    dsFrameworkUtil.createInstance("indexedTable", indexColumnsDs, DatasetProperties.builder()
+      .add(IndexedTable.INDEX_COLUMNS_CONF_KEY, idxColString)
+      .build());
+    final IndexedTable iTable = dsFrameworkUtil.getInstance(indexColumnsDs);
+    TransactionExecutor txnl = dsFrameworkUtil.newTransactionExecutor(iTable);
+
+    try {
+      txnl.execute(new TransactionExecutor.Subroutine() {
+        @Override
+        public void apply() throws Exception {
+          iTable.put(new Put(keyA).add(idxCol, idx1).add(valCol, valA));
+          // row without the value column
+          iTable.put(new Put(keyB).add(idxCol, idx1));
+          iTable.put(new Put(keyC).add(idxCol, idx2).add(valCol, valC));
+        }
+      });
+
+      txnl.execute(new TransactionExecutor.Subroutine() {
+        @Override
+        public void apply() throws Exception {
+          // only the value column is returned, and rows without it are skipped
+          Scanner scanner = iTable.readByIndex(idxCol, idx1, new byte[][] { valCol });
+          Row next = scanner.next();
+          Assert.assertNotNull(next);
+          Assert.assertTrue(Bytes.equals(keyA, next.getRow()));
+          Assert.assertEquals(1, next.getColumns().size());
+          Assert.assertTrue(Bytes.equals(valA, next.get(valCol)));
+          assertEmpty(scanner);
+
+          scanner = iTable.scanByIndex(idxCol, idx1, null, new byte[][] { idxCol });
+          next = scanner.next();
+          Assert.assertNotNull(next);
+          Assert.assertTrue(Bytes.equals(keyA, next.getRow()));
+          Assert.assertEquals(1, next.getColumns().size());
+          next = scanner.next();
+          Assert.assertNotNull(next);
+          Assert.assertTrue(Bytes.equals(keyB, next.getRow()));
+          next = scanner.next();
+          Assert.assertNotNull(next);
+          Assert.assertTrue(Bytes.equals(keyC, next.getRow()));
+          Assert.assertTrue(Bytes.equals(idx2, next.get(idxCol)));
+          Assert.assertNull(next.get(valCol));
+          assertEmpty(scanner);
+        }
+      });
+    } finally {
+      dsFrameworkUtil.deleteInstance(indexColumnsDs);
+    }
+  }
+
   @Test
   public void testIndexKeyDelimiterAmbiguity() throws Exception {
     final byte[] a = { 'a' };
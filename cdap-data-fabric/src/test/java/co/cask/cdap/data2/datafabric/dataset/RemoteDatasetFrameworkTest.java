@@ -16,10 +16,14 @@
 
 package co.cask.cdap.data2.datafabric.dataset;
 
+import co.cask.cdap.api.dataset.DatasetDefinition;
 import co.cask.cdap.api.dataset.DatasetManagementException;
+import co.cask.cdap.api.dataset.DatasetProperties;
 import co.cask.cdap.api.dataset.module.DatasetDefinitionRegistry;
 import co.cask.cdap.api.dataset.module.DatasetModule;
 import co.cask.cdap.api.metrics.MetricsCollectionService;
+import co.cask.cdap.api.metrics.MetricsContext;
+import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.CConfigurationUtil;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.discovery.EndpointStrategy;
@@ -27,8 +31,11 @@ import co.cask.cdap.common.discovery.RandomEndpointStrategy;
 import co.cask.cdap.common.guice.ConfigModule;
 import co.cask.cdap.common.guice.DiscoveryRuntimeModule;
 import co.cask.cdap.common.metrics.NoOpMetricsCollectionService;
+import co.cask.cdap.common.utils.Tasks;
 import co.cask.cdap.data.dataset.SystemDatasetInstantiatorFactory;
 import co.cask.cdap.data.runtime.DynamicTransactionExecutorFactory;
+import co.cask.cdap.data2.audit.DefaultAuditPublisher;
+import co.cask.cdap.data2.audit.InMemoryAuditPublisher;
 import co.cask.cdap.data2.datafabric.dataset.instance.DatasetInstanceManager;
 import co.cask.cdap.data2.datafabric.dataset.service.DatasetInstanceService;
 import co.cask.cdap.data2.datafabric.dataset.service.DatasetService;
@@ -56,7 +63,14 @@ import co.cask.cdap.data2.transaction.TransactionExecutorFactory;
 import co.cask.cdap.data2.transaction.TransactionSystemClientService;
 import co.cask.cdap.explore.client.DiscoveryExploreClient;
 import co.cask.cdap.explore.client.ExploreFacade;
+import co.cask.cdap.messaging.MessagingService;
+import co.cask.cdap.messaging.guice.MessagingServerRuntimeModule;
 import co.cask.cdap.proto.NamespaceMeta;
+import co.cask.cdap.proto.audit.AuditMessage;
+import co.cask.cdap.proto.audit.AuditPayload;
+import co.cask.cdap.proto.audit.AuditType;
+import co.cask.cdap.proto.id.DatasetId;
+import co.cask.cdap.proto.id.DatasetModuleId;
 import co.cask.cdap.proto.id.NamespaceId;
 import co.cask.cdap.security.auth.context.AuthenticationContextModules;
 import co.cask.cdap.security.authorization.AuthorizationEnforcementModule;
@@ -68,9 +82,12 @@ import co.cask.cdap.security.spi.authorization.AuthorizationEnforcer;
 import co.cask.cdap.security.spi.authorization.PrivilegesManager;
 import co.cask.http.HttpHandler;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.AtomicLongMap;
 import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.Service;
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
@@ -89,7 +106,10 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -100,6 +120,9 @@ public class RemoteDatasetFrameworkTest extends AbstractDatasetFrameworkTest {
   private DatasetOpExecutorService opExecutorService;
   private DatasetService service;
   private RemoteDatasetFramework framework;
+  private DiscoveryServiceClient discoveryServiceClient;
+  private AuthenticationContext authenticationContext;
+  private InMemoryAuditPublisher moduleAuditPublisher;
 
   @Before
   public void before() throws Exception {
@@ -140,9 +163,9 @@ public class RemoteDatasetFrameworkTest extends AbstractDatasetFrameworkTest {
     TransactionSystemClientService txSystemClientService = new DelegatingTransactionSystemClientService(txSystemClient);
 
     DiscoveryService discoveryService = injector.getInstance(DiscoveryService.class);
-    DiscoveryServiceClient discoveryServiceClient = injector.getInstance(DiscoveryServiceClient.class);
+    discoveryServiceClient = injector.getInstance(DiscoveryServiceClient.class);
     MetricsCollectionService metricsCollectionService = injector.getInstance(MetricsCollectionService.class);
-    AuthenticationContext authenticationContext = injector.getInstance(AuthenticationContext.class);
+    authenticationContext = injector.getInstance(AuthenticationContext.class);
 
     framework = new RemoteDatasetFramework(cConf, discoveryServiceClient, registryFactory, authenticationContext);
     SystemDatasetInstantiatorFactory datasetInstantiatorFactory =
@@ -179,6 +202,9 @@ public class RemoteDatasetFrameworkTest extends AbstractDatasetFrameworkTest {
                                                             authenticationContext, cConf, impersonator,
                                                             txSystemClientService, mdsFramework, txExecutorFactory,
                                                             DEFAULT_MODULES);
+    // Module changes are published separately, to not mix them with the instance changes checked by the base tests
+    moduleAuditPublisher = new InMemoryAuditPublisher();
+    typeService.setAuditPublisher(moduleAuditPublisher);
     DatasetOpExecutor opExecutor = new LocalDatasetOpExecutor(cConf, discoveryServiceClient, opExecutorService,
                                                               authenticationContext);
     DatasetInstanceService instanceService = new DatasetInstanceService(
@@ -229,6 +255,137 @@ public class RemoteDatasetFrameworkTest extends AbstractDatasetFrameworkTest {
     }
   }
 
+  @Test
+  public void testMetaCache() throws Exception {
+    DatasetModuleId inMemory = NAMESPACE_ID.datasetModule("inMemory");
+    DatasetId datasetId = NAMESPACE_ID.dataset("cached");
+    framework.addModule(inMemory, new InMemoryTableModule());
+    framework.addInstance("table", datasetId, DatasetProperties.builder().add("key", "v1").build());
+
+    // Another framework, e.g. in a program container, caches the metadata it fetched for instantiating datasets
+    RemoteDatasetFramework otherFramework = new RemoteDatasetFramework(cConf, discoveryServiceClient, registryFactory,
+                                                                       authenticationContext);
+    Assert.assertNotNull(otherFramework.getDataset(datasetId, DatasetDefinition.NO_ARGUMENTS, null));
+    Assert.assertTrue(otherFramework.hasType(NAMESPACE_ID.datasetType("table")));
+    long cacheSize = otherFramework.getMetaCacheSize();
+    Assert.assertTrue(cacheSize > 1);
+
+    // Specs are always fetched from the service, so changes made elsewhere are visible right away
+    framework.updateInstance(datasetId, DatasetProperties.builder().add("key", "v2").build());
+    Assert.assertEquals("v2", framework.getDatasetSpec(datasetId).getProperty("key"));
+    Assert.assertEquals("v2", otherFramework.getDatasetSpec(datasetId).getProperty("key"));
+    Assert.assertEquals(cacheSize, otherFramework.getMetaCacheSize());
+
+    // Cached instance metadata is dropped on invalidation, which happens on a change published to the audit topic
+    otherFramework.invalidate(datasetId);
+    Assert.assertTrue(otherFramework.getMetaCacheSize() < cacheSize);
+
+    // Deleting the module invalidates everything, and the change is published for other processes
+    framework.deleteInstance(datasetId);
+    Assert.assertNull(framework.getDatasetSpec(datasetId));
+    framework.deleteModule(inMemory);
+    Assert.assertEquals(0, framework.getMetaCacheSize());
+    Assert.assertFalse(framework.hasType(NAMESPACE_ID.datasetType("table")));
+    Assert.assertEquals(
+      ImmutableList.of(new AuditMessage(0, inMemory, "", AuditType.CREATE, AuditPayload.EMPTY_PAYLOAD),
+                       new AuditMessage(0, inMemory, "", AuditType.DELETE, AuditPayload.EMPTY_PAYLOAD)),
+      moduleAuditPublisher.popMessages());
+  }
+
+  @Test
+  public void testMetaCacheInvalidation() throws Exception {
+    CConfiguration cConf = CConfiguration.copy(RemoteDatasetFrameworkTest.cConf);
+    cConf.setLong(Constants.Dataset.ClientCache.INVALIDATION_POLL_INTERVAL_MS, 50L);
+    Injector injector = Guice.createInjector(
+      new ConfigModule(cConf),
+      new DiscoveryRuntimeModule().getInMemoryModules(),
+      new MessagingServerRuntimeModule().getInMemoryModules(),
+      new AbstractModule() {
+        @Override
+        protected void configure() {
+          bind(MetricsCollectionService.class).to(NoOpMetricsCollectionService.class);
+        }
+      }
+    );
+    MessagingService messagingService = injector.getInstance(MessagingService.class);
+    if (messagingService instanceof Service) {
+      ((Service) messagingService).startAndWait();
+    }
+    try {
+      DatasetModuleId inMemory = NAMESPACE_ID.datasetModule("inMemory");
+      final DatasetId datasetId = NAMESPACE_ID.dataset("invalidated");
+      framework.addModule(inMemory, new InMemoryTableModule());
+      framework.addInstance("table", datasetId, DatasetProperties.EMPTY);
+
+      final RemoteDatasetFramework otherFramework = new RemoteDatasetFramework(cConf, discoveryServiceClient,
+                                                                             registryFactory, authenticationContext);
+      otherFramework.setMetaCacheInvalidator(injector.getInstance(DatasetMetaCacheInvalidator.class));
+      Assert.assertNotNull(otherFramework.getDataset(datasetId, DatasetDefinition.NO_ARGUMENTS, null));
+      final long cacheSize = otherFramework.getMetaCacheSize();
+      Assert.assertTrue(cacheSize > 0);
+
+      // A change of the dataset published to the audit topic invalidates the cached instance metadata
+      injector.getInstance(DefaultAuditPublisher.class).publish(datasetId, AuditType.UPDATE,
+                                                                AuditPayload.EMPTY_PAYLOAD);
+      Tasks.waitFor(true, new Callable<Boolean>() {
+        @Override
+        public Boolean call() throws Exception {
+          return otherFramework.getMetaCacheSize() < cacheSize;
+        }
+      }, 10, TimeUnit.SECONDS, 50, TimeUnit.MILLISECONDS);
+
+      // A change of a module invalidates all cached metadata, since any type or instance may refer to it
+      Assert.assertNotNull(otherFramework.getDataset(datasetId, DatasetDefinition.NO_ARGUMENTS, null));
+      Assert.assertTrue(otherFramework.getMetaCacheSize() > 0);
+      injector.getInstance(DefaultAuditPublisher.class).publish(inMemory, AuditType.UPDATE,
+                                                                AuditPayload.EMPTY_PAYLOAD);
+      Tasks.waitFor(0L, new Callable<Long>() {
+        @Override
+        public Long call() throws Exception {
+          return otherFramework.getMetaCacheSize();
+        }
+      }, 10, TimeUnit.SECONDS, 50, TimeUnit.MILLISECONDS);
+
+      framework.deleteInstance(datasetId);
+      framework.deleteModule(inMemory);
+    } finally {
+      if (messagingService instanceof Service) {
+        ((Service) messagingService).stopAndWait();
+      }
+    }
+  }
+
+  @Test
+  public void testMetaCacheMetrics() throws Exception {
+    DatasetModuleId inMemory = NAMESPACE_ID.datasetModule("inMemory");
+    DatasetId datasetId = NAMESPACE_ID.dataset("metrics");
+    framework.addModule(inMemory, new InMemoryTableModule());
+    framework.addInstance("table", datasetId, DatasetProperties.EMPTY);
+
+    final AtomicLongMap<String> counts = AtomicLongMap.create();
+    RemoteDatasetFramework otherFramework = new RemoteDatasetFramework(cConf, discoveryServiceClient,
+                                                                       registryFactory, authenticationContext);
+    otherFramework.setMetricsCollectionService(new NoOpMetricsCollectionService() {
+      @Override
+      public MetricsContext getContext(Map<String, String> tags) {
+        return new CountingMetricsContext(counts);
+      }
+    });
+
+    // The first access fetches the metadata from the service, the second one is served from the cache
+    Assert.assertNotNull(otherFramework.getDataset(datasetId, DatasetDefinition.NO_ARGUMENTS, null));
+    long misses = counts.get("dataset.meta.cache.miss");
+    Assert.assertTrue(misses > 0);
+    Assert.assertEquals(0L, counts.get("dataset.meta.cache.hit"));
+
+    Assert.assertNotNull(otherFramework.getDataset(datasetId, DatasetDefinition.NO_ARGUMENTS, null));
+    Assert.assertEquals(misses, counts.get("dataset.meta.cache.miss"));
+    Assert.assertTrue(counts.get("dataset.meta.cache.hit") > 0);
+
+    framework.deleteInstance(datasetId);
+    framework.deleteModule(inMemory);
+  }
+
   private void createNamespace (NamespaceId namespaceId) throws Exception {
     // since the namespace admin here is an in memory one we need to create the location explicitly
     namespacedLocationFactory.get(namespaceId).mkdirs();
@@ -255,4 +412,41 @@ public class RemoteDatasetFrameworkTest extends AbstractDatasetFrameworkTest {
   protected DatasetFramework getFramework() {
     return framework;
   }
+
+  /**
+   * A {@link MetricsContext} that counts the increments of each metric.
+   */
+  private static final class CountingMetricsContext implements MetricsContext {
+
+    private final AtomicLongMap<String> counts;
+
+    CountingMetricsContext(AtomicLongMap<String> counts) {
+      this.counts = counts;
+    }
+
+    @Override
+    public MetricsContext childContext(Map<String, String> tags) {
+      return this;
+    }
+
+    @Override
+    public MetricsContext childContext(String tagName, String tagValue) {
+      return this;
+    }
+
+    @Override
+    public Map<String, String> getTags() {
+      return Collections.emptyMap();
+    }
+
+    @Override
+    public void increment(String metricName, long value) {
+      counts.addAndGet(metricName, value);
+    }
+
+    @Override
+    public void gauge(String metricName, long value) {
+      // no-op
+    }
+  }
 }
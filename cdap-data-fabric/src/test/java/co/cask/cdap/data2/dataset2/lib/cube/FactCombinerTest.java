@@ -0,0 +1,72 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.cube;
+
+import co.cask.cdap.api.dataset.lib.cube.DimensionValue;
+import co.cask.cdap.api.dataset.lib.cube.MeasureType;
+import co.cask.cdap.api.dataset.lib.cube.Measurement;
+import co.cask.cdap.data2.dataset2.lib.timeseries.Fact;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit test for {@link FactCombiner}.
+ */
+public class FactCombinerTest {
+
+  @Test
+  public void testCombine() {
+    List<DimensionValue> dims1 = ImmutableList.of(new DimensionValue("dim1", "value1"));
+    List<DimensionValue> dims2 = ImmutableList.of(new DimensionValue("dim1", "value2"));
+
+    FactCombiner combiner = new FactCombiner(60);
+    // facts in the same minute with the same dimension values are combined
+    combiner.add(120, dims1, ImmutableList.of(new Measurement("count", MeasureType.COUNTER, 1),
+                                              new Measurement("gauge", MeasureType.GAUGE, 10)));
+    combiner.add(150, dims1, ImmutableList.of(new Measurement("count", MeasureType.COUNTER, 2),
+                                              new Measurement("gauge", MeasureType.GAUGE, 5)));
+    combiner.add(179, dims1, ImmutableList.of(new Measurement("count", MeasureType.COUNTER, 3)));
+    // different dimension values are not combined
+    combiner.add(121, dims2, ImmutableList.of(new Measurement("count", MeasureType.COUNTER, 4)));
+    // different minute is not combined
+    combiner.add(180, dims1, ImmutableList.of(new Measurement("count", MeasureType.COUNTER, 5)));
+
+    List<Fact> facts = combiner.getFacts();
+    Assert.assertEquals(3, facts.size());
+
+    assertFact(facts.get(0), 120, dims1, ImmutableMap.of("count", 6L, "gauge", 5L));
+    assertFact(facts.get(1), 120, dims2, ImmutableMap.of("count", 4L));
+    assertFact(facts.get(2), 180, dims1, ImmutableMap.of("count", 5L));
+  }
+
+  private void assertFact(Fact fact, long timestamp, List<DimensionValue> dimensionValues,
+                          Map<String, Long> measures) {
+    Assert.assertEquals(timestamp, fact.getTimestamp());
+    Assert.assertEquals(dimensionValues, fact.getDimensionValues());
+    Map<String, Long> actual = Maps.newHashMap();
+    for (Measurement measurement : fact.getMeasurements()) {
+      actual.put(measurement.getName(), measurement.getValue());
+    }
+    Assert.assertEquals(measures, actual);
+  }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 Cask Data, Inc.
+ * Copyright 2015-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -23,6 +23,7 @@ import co.cask.cdap.data2.dataset2.DatasetFrameworkTestUtil;
 import co.cask.cdap.data2.dataset2.lib.table.FuzzyRowFilter;
 import co.cask.cdap.data2.dataset2.lib.table.MetricsTable;
 import co.cask.cdap.data2.dataset2.lib.table.MetricsTableTest;
+import co.cask.cdap.data2.dataset2.lib.timeseries.FactGroupBy;
 import co.cask.cdap.proto.id.DatasetId;
 import org.apache.tephra.TransactionAware;
 import org.apache.tephra.TransactionExecutor;
@@ -164,6 +165,17 @@ public class MetricsTableOnTableTest extends MetricsTableTest {
       });
     }
 
+    @Override
+    public Scanner scan(@Nullable final byte[] start, @Nullable final byte[] stop,
+                        @Nullable final FuzzyRowFilter filter, final FactGroupBy groupBy) {
+      return txnl.executeUnchecked(new Callable<Scanner>() {
+        @Override
+        public Scanner call() {
+          return delegate.scan(start, stop, filter, groupBy);
+        }
+      });
+    }
+
     @Override
     public void close() throws IOException {
       delegate.close();
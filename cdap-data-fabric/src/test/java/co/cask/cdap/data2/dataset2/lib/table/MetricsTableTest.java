@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014-2015 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -17,9 +17,20 @@
 package co.cask.cdap.data2.dataset2.lib.table;
 
 import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.dataset.lib.cube.AggregationFunction;
+import co.cask.cdap.api.dataset.lib.cube.DimensionValue;
+import co.cask.cdap.api.dataset.lib.cube.MeasureType;
+import co.cask.cdap.api.dataset.lib.cube.Measurement;
+import co.cask.cdap.api.dataset.lib.cube.TimeValue;
 import co.cask.cdap.api.dataset.table.Row;
 import co.cask.cdap.api.dataset.table.Scanner;
 import co.cask.cdap.common.utils.ImmutablePair;
+import co.cask.cdap.data2.dataset2.lib.timeseries.EntityTable;
+import co.cask.cdap.data2.dataset2.lib.timeseries.Fact;
+import co.cask.cdap.data2.dataset2.lib.timeseries.FactScan;
+import co.cask.cdap.data2.dataset2.lib.timeseries.FactScanResult;
+import co.cask.cdap.data2.dataset2.lib.timeseries.FactScanner;
+import co.cask.cdap.data2.dataset2.lib.timeseries.FactTable;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSortedMap;
@@ -29,7 +40,9 @@ import org.junit.Test;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
@@ -322,6 +335,66 @@ public abstract class MetricsTableTest {
     Assert.assertEquals(9, count);
   }
 
+  @Test
+  public void testGroupByScan() throws Exception {
+    // more stored rows than aggregated into a single range by HBase regions
+    int groups = 1500;
+    int resolution = 60;
+    FactTable factTable = new FactTable(getTable("testGroupByScanData"),
+                                        new EntityTable(getTable("testGroupByScanEntity")), resolution, 3600);
+    long ts = 1422312900L / resolution * resolution;
+    List<Fact> facts = new ArrayList<>();
+    for (int i = 0; i < groups; i++) {
+      for (int k = 1; k <= 2; k++) {
+        facts.add(new Fact(ts, ImmutableList.of(new DimensionValue("dim1", "value" + i),
+                                                new DimensionValue("dim2", "value" + k)),
+                           new Measurement("metric", MeasureType.COUNTER, i + k)));
+      }
+    }
+    factTable.add(facts);
+
+    // sum by dim1: every group combines the facts of both dim2 values, and is returned exactly once
+    FactScan scan = new FactScan(ts, ts + resolution, "metric",
+                                 ImmutableList.of(new DimensionValue("dim1", null), new DimensionValue("dim2", null)));
+    Map<String, Long> totals = new HashMap<>();
+    FactScanner scanner = factTable.scan(scan, ImmutableList.of("dim1"),
+                                         ImmutableMap.of("metric", AggregationFunction.SUM), Integer.MAX_VALUE);
+    try {
+      while (scanner.hasNext()) {
+        FactScanResult result = scanner.next();
+        String group = null;
+        for (DimensionValue dimensionValue : result.getDimensionValues()) {
+          if ("dim1".equals(dimensionValue.getName())) {
+            group = dimensionValue.getValue();
+          }
+        }
+        for (TimeValue timeValue : result) {
+          Assert.assertEquals(ts, timeValue.getTimestamp());
+          Assert.assertNull(totals.put(group, timeValue.getValue()));
+        }
+      }
+    } finally {
+      scanner.close();
+    }
+    Assert.assertEquals(groups, totals.size());
+    for (int i = 0; i < groups; i++) {
+      Assert.assertEquals(Long.valueOf(2 * i + 3), totals.get("value" + i));
+    }
+
+    // the number of stored facts to aggregate is limited
+    scanner = factTable.scan(scan, ImmutableList.of("dim1"), ImmutableMap.of("metric", AggregationFunction.SUM), 10);
+    int results = 0;
+    try {
+      while (scanner.hasNext()) {
+        scanner.next();
+        results++;
+      }
+    } finally {
+      scanner.close();
+    }
+    Assert.assertTrue(results > 0 && results < groups);
+  }
+
   private <T> SortedMap<byte[], T> mapOf(byte[] key, T value) {
     SortedMap<byte[], T> map = new TreeMap<>(Bytes.BYTES_COMPARATOR);
     map.put(key, value);
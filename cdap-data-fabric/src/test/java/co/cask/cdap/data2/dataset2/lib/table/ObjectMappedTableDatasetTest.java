@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015 Cask Data, Inc.
+ * Copyright © 2015-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -17,8 +17,10 @@
 package co.cask.cdap.data2.dataset2.lib.table;
 
 import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.data.batch.RecordScanner;
 import co.cask.cdap.api.data.batch.Split;
 import co.cask.cdap.api.data.batch.SplitReader;
+import co.cask.cdap.api.data.format.StructuredRecord;
 import co.cask.cdap.api.dataset.lib.CloseableIterator;
 import co.cask.cdap.api.dataset.lib.KeyValue;
 import co.cask.cdap.api.dataset.lib.ObjectMappedTable;
@@ -26,6 +28,8 @@ import co.cask.cdap.api.dataset.lib.ObjectMappedTableProperties;
 import co.cask.cdap.api.dataset.table.Scan;
 import co.cask.cdap.data2.dataset2.DatasetFrameworkTestUtil;
 import co.cask.cdap.proto.id.DatasetId;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import org.apache.tephra.TransactionAware;
 import org.apache.tephra.TransactionExecutor;
@@ -257,6 +261,75 @@ public class ObjectMappedTableDatasetTest {
     }
   }
 
+  @Test
+  public void testProjection() throws Exception {
+    dsFrameworkUtil.createInstance(ObjectMappedTable.class.getName(), RECORDS_ID,
+                                   ObjectMappedTableProperties.builder().setType(Record.class).build());
+    try {
+      final ObjectMappedTableDataset<Record> records = dsFrameworkUtil.getInstance(RECORDS_ID);
+      TransactionExecutor txnl = dsFrameworkUtil.newInMemoryTransactionExecutor((TransactionAware) records);
+
+      final Record record = new Record(Integer.MAX_VALUE, Long.MAX_VALUE, Float.MAX_VALUE, Double.MAX_VALUE, "foobar",
+                                       Bytes.toBytes("foobar"), ByteBuffer.wrap(Bytes.toBytes("foobar")),
+                                       UUID.randomUUID());
+      txnl.execute(new TransactionExecutor.Subroutine() {
+        @Override
+        public void apply() throws Exception {
+          records.write("123", record);
+        }
+      });
+
+      // fields that are not read keep their default values
+      final Record expected = new Record(0, Long.MAX_VALUE, null, null, "foobar", null, null, null);
+      final List<String> fields = ImmutableList.of("stringField", "longField");
+      txnl.execute(new TransactionExecutor.Subroutine() {
+        @Override
+        public void apply() throws Exception {
+          Assert.assertEquals(expected, records.read(Bytes.toBytes("123"), fields));
+          Assert.assertNull(records.read(Bytes.toBytes("456"), fields));
+
+          try (CloseableIterator<KeyValue<byte[], Record>> iterator = records.scan(new Scan(null, null), fields)) {
+            Assert.assertTrue(iterator.hasNext());
+            KeyValue<byte[], Record> keyValue = iterator.next();
+            Assert.assertArrayEquals(Bytes.toBytes("123"), keyValue.getKey());
+            Assert.assertEquals(expected, keyValue.getValue());
+            Assert.assertFalse(iterator.hasNext());
+          }
+
+          // the record scanner matches the fields ignoring case, as Hive lower cases column names
+          Split split = Iterables.getOnlyElement(records.getSplits(1, null, null));
+          RecordScanner<StructuredRecord> scanner =
+            records.createSplitRecordScanner(split, ImmutableList.of("rowkey", "stringfield"));
+          try {
+            scanner.initialize(split);
+            Assert.assertTrue(scanner.nextRecord());
+            StructuredRecord structuredRecord = scanner.getCurrentRecord();
+            Assert.assertEquals(2, structuredRecord.getSchema().getFields().size());
+            Assert.assertArrayEquals(Bytes.toBytes("123"), (byte[]) structuredRecord.get("rowkey"));
+            Assert.assertEquals("foobar", structuredRecord.get("stringField"));
+            Assert.assertFalse(scanner.nextRecord());
+          } finally {
+            scanner.close();
+          }
+        }
+      });
+    } finally {
+      dsFrameworkUtil.deleteInstance(RECORDS_ID);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownProjectedFieldFails() throws Exception {
+    dsFrameworkUtil.createInstance(ObjectMappedTable.class.getName(), RECORDS_ID,
+                                   ObjectMappedTableProperties.builder().setType(Record.class).build());
+    try {
+      ObjectMappedTableDataset<Record> records = dsFrameworkUtil.getInstance(RECORDS_ID);
+      records.read(Bytes.toBytes("123"), ImmutableList.of("stringField", "missingField"));
+    } finally {
+      dsFrameworkUtil.deleteInstance(RECORDS_ID);
+    }
+  }
+
   @Test(expected = IllegalArgumentException.class)
   public void testInvalidTypeFails() throws Exception {
     dsFrameworkUtil.createInstance(ObjectMappedTable.class.getName(),
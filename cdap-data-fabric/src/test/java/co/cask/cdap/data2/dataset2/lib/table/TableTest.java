@@ -21,13 +21,17 @@ import co.cask.cdap.api.dataset.DatasetAdmin;
 import co.cask.cdap.api.dataset.DatasetContext;
 import co.cask.cdap.api.dataset.DatasetProperties;
 import co.cask.cdap.api.dataset.metrics.MeteredDataset;
+import co.cask.cdap.api.dataset.table.ColumnValueFilter;
 import co.cask.cdap.api.dataset.table.ConflictDetection;
 import co.cask.cdap.api.dataset.table.Delete;
+import co.cask.cdap.api.dataset.table.Filter;
+import co.cask.cdap.api.dataset.table.FilterList;
 import co.cask.cdap.api.dataset.table.Get;
 import co.cask.cdap.api.dataset.table.Increment;
 import co.cask.cdap.api.dataset.table.Put;
 import co.cask.cdap.api.dataset.table.Result;
 import co.cask.cdap.api.dataset.table.Row;
+import co.cask.cdap.api.dataset.table.RowPrefixFilter;
 import co.cask.cdap.api.dataset.table.Scan;
 import co.cask.cdap.api.dataset.table.Scanner;
 import co.cask.cdap.api.dataset.table.Table;
@@ -1292,6 +1296,148 @@ public abstract class TableTest<T extends Table> {
     return count;
   }
 
+  @Test
+  public void testScanWithColumnValueAndPrefixFilters() throws Exception {
+    DatasetAdmin admin = getTableAdmin(CONTEXT1, MY_TABLE);
+    admin.create();
+    try {
+      Transaction tx1 = txClient.startShort();
+      Table table = getTable(CONTEXT1, MY_TABLE);
+      ((TransactionAware) table).startTx(tx1);
+
+      // rows a1, a2, a3, b1, b2, b3 with c1 = v1, v2, v3
+      for (String prefix : new String[] { "a", "b" }) {
+        for (int i = 1; i <= 3; i++) {
+          table.put(new Put(prefix + i).add("c1", "v" + i).add("c2", prefix));
+        }
+      }
+      verifyScanWithColumnValueAndPrefixFilters(table);
+
+      Assert.assertTrue(txClient.canCommit(tx1, ((TransactionAware) table).getTxChanges()));
+      Assert.assertTrue(((TransactionAware) table).commitTx());
+      Assert.assertTrue(txClient.commit(tx1));
+      ((TransactionAware) table).postTxCommit();
+
+      Transaction tx2 = txClient.startShort();
+      ((TransactionAware) table).startTx(tx2);
+      verifyScanWithColumnValueAndPrefixFilters(table);
+
+      // buffered changes must be taken into account: a1 now matches, a2 no longer matches, c2 is new
+      Filter filter = new ColumnValueFilter(C1, ColumnValueFilter.CompareOp.EQUAL, V2);
+      table.put(new Put("a1").add("c1", "v2"));
+      table.delete(new Delete("a2").add("c1"));
+      table.put(new Put("c2").add("c1", "v2"));
+      verifyScan(table, filter, "a1", "b2", "c2");
+
+      Assert.assertTrue(txClient.canCommit(tx2, ((TransactionAware) table).getTxChanges()));
+      Assert.assertTrue(((TransactionAware) table).commitTx());
+      Assert.assertTrue(txClient.commit(tx2));
+      ((TransactionAware) table).postTxCommit();
+
+      Transaction tx3 = txClient.startShort();
+      ((TransactionAware) table).startTx(tx3);
+      verifyScan(table, filter, "a1", "b2", "c2");
+      verifyScan(table, new ColumnValueFilter(C1, ColumnValueFilter.CompareOp.NOT_EQUAL, V3), "a1", "b1", "b2", "c2");
+    } finally {
+      admin.drop();
+    }
+  }
+
+  private static void verifyScanWithColumnValueAndPrefixFilters(Table table) {
+    verifyScan(table, new RowPrefixFilter(Bytes.toBytes("a")), "a1", "a2", "a3");
+    verifyScan(table, new RowPrefixFilter(Bytes.toBytes("b"), Bytes.toBytes("a2")), "a2", "b1", "b2", "b3");
+    verifyScan(table, new ColumnValueFilter(C1, ColumnValueFilter.CompareOp.EQUAL, V2), "a2", "b2");
+    verifyScan(table, new ColumnValueFilter(C1, ColumnValueFilter.CompareOp.GREATER_OR_EQUAL, V2),
+               "a2", "a3", "b2", "b3");
+    verifyScan(table, new ColumnValueFilter(C1, ColumnValueFilter.CompareOp.LESS, V2), "a1", "b1");
+    // rows without the column never match
+    verifyScan(table, new ColumnValueFilter(C3, ColumnValueFilter.CompareOp.NOT_EQUAL, V1));
+    verifyScan(table, new FilterList(FilterList.Operator.MUST_PASS_ALL,
+                                     new RowPrefixFilter(Bytes.toBytes("a")),
+                                     new ColumnValueFilter(C1, ColumnValueFilter.CompareOp.LESS, V3)),
+               "a1", "a2");
+    verifyScan(table, new FilterList(FilterList.Operator.MUST_PASS_ONE,
+                                     new RowPrefixFilter(Bytes.toBytes("b1")),
+                                     new ColumnValueFilter(C1, ColumnValueFilter.CompareOp.EQUAL, V3),
+                                     new FilterList(FilterList.Operator.MUST_PASS_ALL,
+                                                    new ColumnValueFilter("c2", ColumnValueFilter.CompareOp.EQUAL, "b"),
+                                                    new ColumnValueFilter(C1, ColumnValueFilter.CompareOp.EQUAL, V2))),
+               "a3", "b1", "b2", "b3");
+  }
+
+  private static void verifyScan(Table table, Filter filter, String... expectedRows) {
+    List<String> rows = new ArrayList<>();
+    try (Scanner scanner = table.scan(new Scan(null, null, filter))) {
+      Row row;
+      while ((row = scanner.next()) != null) {
+        rows.add(Bytes.toString(row.getRow()));
+      }
+    }
+    Assert.assertEquals(Arrays.asList(expectedRows), rows);
+  }
+
+  @Test
+  public void testScanWithColumns() throws Exception {
+    DatasetAdmin admin = getTableAdmin(CONTEXT1, MY_TABLE);
+    admin.create();
+    try {
+      Transaction tx1 = txClient.startShort();
+      Table table = getTable(CONTEXT1, MY_TABLE);
+      ((TransactionAware) table).startTx(tx1);
+      table.put(new Put(R1).add(C1, V1).add(C2, V2));
+      table.put(new Put(R2).add(C2, V2));
+      table.put(new Put(R3).add(C3, V3));
+      Assert.assertTrue(txClient.canCommit(tx1, ((TransactionAware) table).getTxChanges()));
+      Assert.assertTrue(((TransactionAware) table).commitTx());
+      Assert.assertTrue(txClient.commit(tx1));
+      ((TransactionAware) table).postTxCommit();
+
+      Transaction tx2 = txClient.startShort();
+      ((TransactionAware) table).startTx(tx2);
+      // rows without any of the columns are not returned
+      verifyScanColumns(table, null, a(C1, C2), "r1:c1=v1,c2=v2", "r2:c2=v2");
+      verifyScanColumns(table, null, a(C1), "r1:c1=v1");
+
+      // buffered changes must be taken into account, but only for the scanned columns
+      table.put(new Put(R3).add(C1, V1));
+      table.put(new Put(R1).add(C3, V3));
+      table.delete(new Delete(R2).add(C2));
+      verifyScanColumns(table, null, a(C1, C2), "r1:c1=v1,c2=v2", "r3:c1=v1");
+      // the filter can depend on a column that is not scanned
+      Filter filter = new ColumnValueFilter(C1, ColumnValueFilter.CompareOp.EQUAL, V1);
+      verifyScanColumns(table, filter, a(C2, C3), "r1:c2=v2,c3=v3", "r3:c3=v3");
+
+      Assert.assertTrue(txClient.canCommit(tx2, ((TransactionAware) table).getTxChanges()));
+      Assert.assertTrue(((TransactionAware) table).commitTx());
+      Assert.assertTrue(txClient.commit(tx2));
+      ((TransactionAware) table).postTxCommit();
+
+      Transaction tx3 = txClient.startShort();
+      ((TransactionAware) table).startTx(tx3);
+      verifyScanColumns(table, null, a(C1, C2), "r1:c1=v1,c2=v2", "r3:c1=v1");
+      verifyScanColumns(table, filter, a(C2, C3), "r1:c2=v2,c3=v3", "r3:c3=v3");
+    } finally {
+      admin.drop();
+    }
+  }
+
+  private static void verifyScanColumns(Table table, Filter filter, byte[][] columns, String... expectedRows) {
+    List<String> rows = new ArrayList<>();
+    try (Scanner scanner = table.scan(new Scan(null, null, filter, columns))) {
+      Row row;
+      while ((row = scanner.next()) != null) {
+        StringBuilder sb = new StringBuilder(Bytes.toString(row.getRow()));
+        String sep = ":";
+        for (Map.Entry<byte[], byte[]> column : row.getColumns().entrySet()) {
+          sb.append(sep).append(Bytes.toString(column.getKey())).append('=').append(Bytes.toString(column.getValue()));
+          sep = ",";
+        }
+        rows.add(sb.toString());
+      }
+    }
+    Assert.assertEquals(Arrays.asList(expectedRows), rows);
+  }
+
 
   @Test
   public void testBasicColumnRangeWithTx() throws Exception {
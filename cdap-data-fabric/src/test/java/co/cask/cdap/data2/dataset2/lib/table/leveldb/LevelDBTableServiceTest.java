@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014-2016 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -29,6 +29,7 @@ import co.cask.cdap.data2.util.TableId;
 import co.cask.cdap.security.auth.context.AuthenticationContextModules;
 import co.cask.cdap.security.authorization.AuthorizationEnforcementModule;
 import co.cask.cdap.security.authorization.AuthorizationTestModule;
+import com.google.common.collect.ImmutableMap;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import org.junit.Assert;
@@ -38,7 +39,20 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableMap;
 import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -112,6 +126,187 @@ public class LevelDBTableServiceTest {
     Assert.assertEquals(table2Size, service.getTableStats().get(tableId2).getDiskSizeBytes());
   }
 
+  @Test
+  public void testConcurrentIncrement() throws Exception {
+    String tableName = "cdap_default.concurrentIncrement";
+    service.ensureTableExists(tableName);
+
+    final byte[] column = Bytes.toBytes("c");
+    final int iterations = 500;
+    List<Callable<Void>> tasks = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      // Each thread uses its own LevelDBTableCore, as different dataset instances do
+      final LevelDBTableCore core = new LevelDBTableCore(tableName, service);
+      final boolean multiRow = i % 2 == 0;
+      tasks.add(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          for (int j = 0; j < iterations; j++) {
+            if (multiRow) {
+              core.increment(createIncrements(Bytes.BYTES_COMPARATOR, column, 0, 1, 2, 3));
+            } else {
+              core.increment(Bytes.toBytes(j % 4), ImmutableMap.of(column, 4L));
+            }
+          }
+          return null;
+        }
+      });
+    }
+    runConcurrently(tasks);
+
+    // Half of the threads increment every row by one on each iteration, the other half increment
+    // one row by four, so all rows should end up with the same value.
+    LevelDBTableCore core = new LevelDBTableCore(tableName, service);
+    for (int row = 0; row < 4; row++) {
+      Assert.assertEquals(tasks.size() * iterations, getLong(core, Bytes.toBytes(row), column));
+    }
+    service.dropTable(tableName);
+  }
+
+  @Test
+  public void testConcurrentIncrementResults() throws Exception {
+    String tableName = "cdap_default.concurrentIncrementResults";
+    service.ensureTableExists(tableName);
+
+    final byte[] row = Bytes.toBytes("row");
+    final byte[] column = Bytes.toBytes("c");
+    final int iterations = 500;
+    final Set<Long> results = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+    List<Callable<Void>> tasks = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      final LevelDBTableCore core = new LevelDBTableCore(tableName, service);
+      tasks.add(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          for (int j = 0; j < iterations; j++) {
+            results.add(core.increment(row, ImmutableMap.of(column, 1L)).get(column));
+          }
+          return null;
+        }
+      });
+    }
+    runConcurrently(tasks);
+
+    // Every increment sees the result of all increments before it, hence returns a different value
+    long expected = tasks.size() * iterations;
+    Assert.assertEquals(expected, results.size());
+    Assert.assertEquals(expected, (long) Collections.max(results));
+    service.dropTable(tableName);
+  }
+
+  @Test
+  public void testConcurrentMultiRowIncrement() throws Exception {
+    String tableName = "cdap_default.concurrentMultiRowIncrement";
+    service.ensureTableExists(tableName);
+
+    final byte[] column = Bytes.toBytes("c");
+    final int rows = 6;
+    final int iterations = 300;
+    long[] expected = new long[rows];
+    List<Callable<Void>> tasks = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      final LevelDBTableCore core = new LevelDBTableCore(tableName, service);
+      // Overlapping sets of rows, iterated in different orders, to verify that the row locks cannot deadlock
+      final Comparator<byte[]> order = i % 2 == 0
+        ? Bytes.BYTES_COMPARATOR : Collections.reverseOrder(Bytes.BYTES_COMPARATOR);
+      final int[] rowIds = { i % rows, (i + 1) % rows, (i + 3) % rows };
+      for (int rowId : rowIds) {
+        expected[rowId] += iterations;
+      }
+      tasks.add(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          for (int j = 0; j < iterations; j++) {
+            core.increment(createIncrements(order, column, rowIds));
+          }
+          return null;
+        }
+      });
+    }
+    runConcurrently(tasks);
+
+    LevelDBTableCore core = new LevelDBTableCore(tableName, service);
+    for (int row = 0; row < rows; row++) {
+      Assert.assertEquals(expected[row], getLong(core, Bytes.toBytes(row), column));
+    }
+    service.dropTable(tableName);
+  }
+
+  @Test
+  public void testConcurrentSwap() throws Exception {
+    String tableName = "cdap_default.concurrentSwap";
+    service.ensureTableExists(tableName);
+
+    final byte[] row = Bytes.toBytes("row");
+    final byte[] column = Bytes.toBytes("c");
+    final int iterations = 200;
+    List<Callable<Void>> tasks = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      final LevelDBTableCore core = new LevelDBTableCore(tableName, service);
+      tasks.add(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          for (int j = 0; j < iterations; j++) {
+            // Increments with compare-and-swap, retrying until no other thread changed the value in between
+            boolean swapped;
+            do {
+              byte[] oldValue = core.getRow(row, new byte[][] { column }, null, null, -1, null).get(column);
+              long newValue = oldValue == null ? 1L : Bytes.toLong(oldValue) + 1;
+              swapped = core.swap(row, column, oldValue, Bytes.toBytes(newValue));
+            } while (!swapped);
+          }
+          return null;
+        }
+      });
+    }
+    runConcurrently(tasks);
+
+    LevelDBTableCore core = new LevelDBTableCore(tableName, service);
+    Assert.assertEquals(tasks.size() * iterations, getLong(core, row, column));
+    service.dropTable(tableName);
+  }
+
+  /**
+   * Runs the given tasks in threads of their own, all starting at the same time, and waits for their completion.
+   */
+  private void runConcurrently(List<Callable<Void>> tasks) throws Exception {
+    final CountDownLatch startLatch = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+    try {
+      List<Future<Void>> futures = new ArrayList<>();
+      for (final Callable<Void> task : tasks) {
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            startLatch.await();
+            return task.call();
+          }
+        }));
+      }
+      startLatch.countDown();
+      for (Future<Void> future : futures) {
+        future.get(60, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private NavigableMap<byte[], NavigableMap<byte[], Long>> createIncrements(Comparator<byte[]> order, byte[] column,
+                                                                           int... rowIds) {
+    NavigableMap<byte[], NavigableMap<byte[], Long>> increments = new TreeMap<>(order);
+    for (int rowId : rowIds) {
+      NavigableMap<byte[], Long> columns = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+      columns.put(column, 1L);
+      increments.put(Bytes.toBytes(rowId), columns);
+    }
+    return increments;
+  }
+
+  private long getLong(LevelDBTableCore core, byte[] row, byte[] column) throws IOException {
+    return Bytes.toLong(core.getRow(row, new byte[][] { column }, null, null, -1, null).get(column));
+  }
+
   private void writeSome(String tableName) throws IOException {
     LevelDBTableCore table = new LevelDBTableCore(tableName, service);
     Random r = new Random();
@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 Cask Data, Inc.
+ * Copyright 2015-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -16,18 +16,26 @@
 
 package co.cask.cdap.data2.dataset2.lib.timeseries;
 
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.dataset.lib.cube.AggregationFunction;
 import co.cask.cdap.api.dataset.lib.cube.DimensionValue;
+import co.cask.cdap.api.dataset.table.Row;
 import co.cask.cdap.common.utils.ImmutablePair;
 import co.cask.cdap.data2.dataset2.lib.table.FuzzyRowFilter;
 import co.cask.cdap.data2.dataset2.lib.table.MetricsTable;
 import co.cask.cdap.data2.dataset2.lib.table.inmemory.InMemoryMetricsTable;
 import co.cask.cdap.data2.dataset2.lib.table.inmemory.InMemoryTableService;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
 
 /**
  *
@@ -153,4 +161,136 @@ public class FactCodecTest {
     // todo: test prefix of multi dimension valued row key is not same one dimension valued row key
     // todo: test that rollTimebaseInterval applies well
   }
+
+  @Test
+  public void testGroupBy() throws Exception {
+    InMemoryTableService.create("FactCodecGroupByTest");
+    int resolution = 10;
+    int rollTimebaseInterval = 100;
+    FactCodec codec = new FactCodec(new EntityTable(new InMemoryMetricsTable("FactCodecGroupByTest")),
+                                    resolution, rollTimebaseInterval);
+    long ts = 1422312900;
+
+    // group by the second dimension, the group by is serialized as it would be when passed to HBase
+    FactGroupBy groupBy = codec.createGroupBy(ImmutableList.of("dimension1", "dimension2"),
+                                              ImmutableList.of("dimension2"),
+                                              ImmutableMap.of("myMetric", AggregationFunction.SUM),
+                                              ts, ts + resolution);
+    FactGroupByAggregator aggregator = new FactGroupByAggregator(FactGroupBy.fromBytes(groupBy.toBytes()));
+
+    byte[] rowKey = codec.createRowKey(dimensionValues("value1", "value2"), "myMetric", ts);
+    Assert.assertTrue(aggregator.add(rowKey, columns(codec, ts, 1, ts + resolution, 2, ts + 2 * resolution, 4)));
+    // facts with different values in the other dimension are combined
+    Assert.assertTrue(aggregator.add(codec.createRowKey(dimensionValues("value3", "value2"), "myMetric", ts),
+                                     columns(codec, ts, 10)));
+    Assert.assertTrue(aggregator.add(codec.createRowKey(dimensionValues("value1", "value4"), "myMetric", ts),
+                                     columns(codec, ts, 100)));
+    // facts without value in the dimension to group by, of other measures, or out of time range are skipped
+    Assert.assertFalse(aggregator.add(codec.createRowKey(dimensionValues("value1", null), "myMetric", ts),
+                                      columns(codec, ts, 1000)));
+    Assert.assertFalse(aggregator.add(codec.createRowKey(dimensionValues("value1", "value2"), "otherMetric", ts),
+                                      columns(codec, ts, 1000)));
+    Assert.assertFalse(aggregator.add(codec.createRowKey(dimensionValues("value1", "value2"), "myMetric",
+                                                         ts + rollTimebaseInterval),
+                                      columns(codec, ts + rollTimebaseInterval, 1000)));
+
+    List<Row> rows = aggregator.getRows();
+    Assert.assertEquals(2, rows.size());
+    // aggregated rows use the key of the first row of the group
+    Assert.assertArrayEquals(rowKey, rows.get(0).getRow());
+    Assert.assertEquals(ImmutableMap.of(ts, 11L, ts + resolution, 2L), getTimeValues(codec, rows.get(0)));
+    Assert.assertEquals(dimensionValues("value1", "value4"), codec.getDimensionValues(rows.get(1).getRow()));
+    Assert.assertEquals(ImmutableMap.of(ts, 100L), getTimeValues(codec, rows.get(1)));
+  }
+
+  @Test
+  public void testGroupByMerge() throws Exception {
+    InMemoryTableService.create("FactCodecGroupByMergeTest");
+    int resolution = 10;
+    int rollTimebaseInterval = 100;
+    FactCodec codec = new FactCodec(new EntityTable(new InMemoryMetricsTable("FactCodecGroupByMergeTest")),
+                                    resolution, rollTimebaseInterval);
+    long ts = 1422312900;
+
+    FactGroupBy groupBy = codec.createGroupBy(ImmutableList.of("dimension1", "dimension2"),
+                                              ImmutableList.of("dimension2"),
+                                              ImmutableMap.of("sumMetric", AggregationFunction.SUM,
+                                                              "latestMetric", AggregationFunction.LATEST),
+                                              ts, ts + resolution);
+
+    // stored rows, sorted by their keys
+    NavigableMap<byte[], NavigableMap<byte[], byte[]>> storedRows = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    for (int i = 1; i <= 5; i++) {
+      for (String measure : ImmutableList.of("sumMetric", "latestMetric")) {
+        storedRows.put(codec.createRowKey(dimensionValues("value" + i, "value" + (i % 2)), measure, ts),
+                       columns(codec, ts, i, ts + resolution, 10 * i));
+      }
+    }
+    storedRows.put(codec.createRowKey(dimensionValues("value1", null), "sumMetric", ts), columns(codec, ts, 1000));
+    List<byte[]> rowKeys = Lists.newArrayList(storedRows.keySet());
+
+    FactGroupByAggregator expected = new FactGroupByAggregator(groupBy);
+    for (Map.Entry<byte[], NavigableMap<byte[], byte[]>> row : storedRows.entrySet()) {
+      expected.add(row.getKey(), row.getValue());
+    }
+
+    // aggregate ranges of rows separately, as in HBase regions, and combine them with stored rows
+    FactGroupByAggregator merged = new FactGroupByAggregator(groupBy);
+    int[] rangeEnds = {1, 2, 6, 7, 9, rowKeys.size()};
+    int rangeStart = 0;
+    for (int i = 0; i < rangeEnds.length; i++) {
+      List<byte[]> range = rowKeys.subList(rangeStart, rangeEnds[i]);
+      rangeStart = rangeEnds[i];
+      if (i % 2 == 1) {
+        for (byte[] rowKey : range) {
+          merged.merge(rowKey, storedRows.get(rowKey));
+        }
+        continue;
+      }
+      FactGroupByAggregator rangeAggregator = new FactGroupByAggregator(groupBy);
+      for (byte[] rowKey : range) {
+        rangeAggregator.add(rowKey, storedRows.get(rowKey));
+      }
+      merged.merge(range.get(range.size() - 1), rangeAggregator.toPackedColumns());
+    }
+
+    Assert.assertEquals(storedRows.size(), merged.getStoredRows());
+    Assert.assertEquals(4, expected.size());
+    List<Row> expectedRows = expected.getRows();
+    List<Row> mergedRows = merged.getRows();
+    Assert.assertEquals(expectedRows.size(), mergedRows.size());
+    for (int i = 0; i < expectedRows.size(); i++) {
+      Assert.assertArrayEquals(expectedRows.get(i).getRow(), mergedRows.get(i).getRow());
+      Assert.assertEquals(getTimeValues(codec, expectedRows.get(i)), getTimeValues(codec, mergedRows.get(i)));
+    }
+
+    // a range without any row to aggregate is not empty
+    FactGroupByAggregator emptyRange = new FactGroupByAggregator(groupBy);
+    emptyRange.add(codec.createRowKey(dimensionValues("value1", null), "sumMetric", ts), columns(codec, ts, 1000));
+    Assert.assertEquals(0, emptyRange.size());
+    Assert.assertFalse(emptyRange.toPackedColumns().isEmpty());
+    merged.merge(rowKeys.get(rowKeys.size() - 1), emptyRange.toPackedColumns());
+    Assert.assertEquals(storedRows.size() + 1, merged.getStoredRows());
+    Assert.assertEquals(expectedRows.size(), merged.size());
+  }
+
+  private List<DimensionValue> dimensionValues(String value1, String value2) {
+    return ImmutableList.of(new DimensionValue("dimension1", value1), new DimensionValue("dimension2", value2));
+  }
+
+  private NavigableMap<byte[], byte[]> columns(FactCodec codec, long... tsAndValues) {
+    NavigableMap<byte[], byte[]> columns = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    for (int i = 0; i < tsAndValues.length; i += 2) {
+      columns.put(codec.createColumn(tsAndValues[i]), Bytes.toBytes(tsAndValues[i + 1]));
+    }
+    return columns;
+  }
+
+  private Map<Long, Long> getTimeValues(FactCodec codec, Row row) {
+    Map<Long, Long> timeValues = Maps.newHashMap();
+    for (Map.Entry<byte[], byte[]> column : row.getColumns().entrySet()) {
+      timeValues.put(codec.getTimestamp(row.getRow(), column.getKey()), Bytes.toLong(column.getValue()));
+    }
+    return timeValues;
+  }
 }
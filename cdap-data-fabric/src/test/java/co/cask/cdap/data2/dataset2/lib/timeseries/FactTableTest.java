@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -16,6 +16,7 @@
 package co.cask.cdap.data2.dataset2.lib.timeseries;
 
 import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.dataset.lib.cube.AggregationFunction;
 import co.cask.cdap.api.dataset.lib.cube.DimensionValue;
 import co.cask.cdap.api.dataset.lib.cube.MeasureType;
 import co.cask.cdap.api.dataset.lib.cube.Measurement;
@@ -474,6 +475,50 @@ public class FactTableTest {
     assertScan(table, expected, scan);
   }
 
+  @Test
+  public void testGroupByScan() throws Exception {
+    InMemoryTableService.create("GroupByEntityTable");
+    InMemoryTableService.create("GroupByDataTable");
+    int resolution = 10;
+    int rollTimebaseInterval = 2;
+
+    FactTable table = new FactTable(new InMemoryMetricsTable("GroupByDataTable"),
+                                    new EntityTable(new InMemoryMetricsTable("GroupByEntityTable")),
+                                    resolution, rollTimebaseInterval);
+
+    long ts = ((System.currentTimeMillis() / 1000) / resolution) * resolution;
+
+    for (int i = 0; i < 3; i++) {
+      for (int k = 1; k < 3; k++) {
+        writeInc(table, "metric" + k, ts + i * resolution, k + i, "dim1", "value1", "dim2", "value2");
+        writeInc(table, "metric" + k, ts + i * resolution, 2 * k + i, "dim1", "value2", "dim2", "value2");
+        writeInc(table, "metric" + k, ts + i * resolution, 3 * k + i, "dim1", "value2", "dim2", "value1");
+        writeInc(table, "metric" + k, ts + i * resolution, 4 * k + i, "dim1", "value1", "dim2", "value3");
+        writeInc(table, "metric" + k, ts + i * resolution, 5 * k + i, "dim1", null, "dim2", "value3");
+      }
+    }
+
+    List<DimensionValue> anyDims = dimValues("dim1", null, "dim2", null);
+
+    // sum by dim2: facts with different dim1 values are combined
+    FactScan scan = new FactScan(ts, ts + 3 * resolution, "metric1", anyDims);
+    Table<String, String, List<TimeValue>> expected = HashBasedTable.create();
+    expected.put("metric1", "value1", timeValues(ts, resolution, 3, 4, 5));
+    expected.put("metric1", "value2", timeValues(ts, resolution, 3, 5, 7));
+    expected.put("metric1", "value3", timeValues(ts, resolution, 9, 11, 13));
+    assertGroupByScan(table, expected, scan, "dim2", ImmutableMap.of("metric1", AggregationFunction.SUM));
+
+    // max by dim1 in the time range: facts with null value in dim1 are skipped
+    scan = new FactScan(ts + resolution, ts + 3 * resolution, ImmutableList.of("metric1", "metric2"), anyDims);
+    expected = HashBasedTable.create();
+    expected.put("metric1", "value1", timeValues(ts + resolution, resolution, 5, 6));
+    expected.put("metric1", "value2", timeValues(ts + resolution, resolution, 4, 5));
+    expected.put("metric2", "value1", timeValues(ts + resolution, resolution, 9, 10));
+    expected.put("metric2", "value2", timeValues(ts + resolution, resolution, 7, 8));
+    assertGroupByScan(table, expected, scan, "dim1",
+                      ImmutableMap.of("metric1", AggregationFunction.MAX, "metric2", AggregationFunction.MAX));
+  }
+
   @Test
   public void testMaxResolution() throws Exception {
     // we use Integer.MAX_VALUE as resolution to compute all-time total values
@@ -584,6 +629,36 @@ public class FactTableTest {
     return dimensionValues;
   }
 
+  private void assertGroupByScan(FactTable table, Table<String, String, List<TimeValue>> expected, FactScan scan,
+                                 String groupByDimension, Map<String, AggregationFunction> measureFunctions) {
+    // measure name, value of the dimension to group by -> time values
+    Table<String, String, List<TimeValue>> resultTable = HashBasedTable.create();
+    FactScanner scanner = table.scan(scan, ImmutableList.of(groupByDimension), measureFunctions, Integer.MAX_VALUE);
+    try {
+      while (scanner.hasNext()) {
+        FactScanResult result = scanner.next();
+        String groupValue = null;
+        for (DimensionValue dimensionValue : result.getDimensionValues()) {
+          if (groupByDimension.equals(dimensionValue.getName())) {
+            groupValue = dimensionValue.getValue();
+          }
+        }
+        Assert.assertNotNull(groupValue);
+        List<TimeValue> timeValues = resultTable.get(result.getMeasureName(), groupValue);
+        if (timeValues == null) {
+          timeValues = Lists.newArrayList();
+          resultTable.put(result.getMeasureName(), groupValue, timeValues);
+        }
+        // all facts of a group are aggregated into a single result
+        timeValues.addAll(Lists.newArrayList(result.iterator()));
+      }
+    } finally {
+      scanner.close();
+    }
+
+    Assert.assertEquals(expected, resultTable);
+  }
+
   private void assertScan(FactTable table, Table<String, List<DimensionValue>, List<TimeValue>> expected,
                           FactScan scan) throws Exception {
     Table<String, List<DimensionValue>, List<TimeValue>> resultTable = HashBasedTable.create();
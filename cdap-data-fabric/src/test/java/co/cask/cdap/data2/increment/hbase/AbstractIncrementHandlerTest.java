@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015-2016 Cask Data, Inc.
+ * Copyright © 2015-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -16,22 +16,36 @@
 
 package co.cask.cdap.data2.increment.hbase;
 
+import co.cask.cdap.api.dataset.lib.cube.AggregationFunction;
+import co.cask.cdap.api.dataset.lib.cube.DimensionValue;
+import co.cask.cdap.api.dataset.table.Row;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.data.hbase.HBaseTestBase;
 import co.cask.cdap.data.hbase.HBaseTestFactory;
 import co.cask.cdap.data2.dataset2.lib.table.hbase.HBaseTable;
+import co.cask.cdap.data2.dataset2.lib.table.inmemory.InMemoryMetricsTable;
+import co.cask.cdap.data2.dataset2.lib.table.inmemory.InMemoryTableService;
+import co.cask.cdap.data2.dataset2.lib.timeseries.EntityTable;
+import co.cask.cdap.data2.dataset2.lib.timeseries.FactCodec;
+import co.cask.cdap.data2.dataset2.lib.timeseries.FactGroupBy;
+import co.cask.cdap.data2.dataset2.lib.timeseries.FactGroupByAggregator;
 import co.cask.cdap.data2.util.TableId;
 import co.cask.cdap.data2.util.hbase.HBaseTableUtil;
 import co.cask.cdap.data2.util.hbase.HBaseTableUtilFactory;
+import co.cask.cdap.data2.util.hbase.ScanBuilder;
 import co.cask.cdap.proto.id.NamespaceId;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.client.Delete;
 import org.apache.hadoop.hbase.client.Get;
 import org.apache.hadoop.hbase.client.HTable;
 import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.ResultScanner;
+import org.apache.hadoop.hbase.client.Scan;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.tephra.TxConstants;
 import org.junit.Assert;
@@ -45,9 +59,12 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.util.List;
 import java.util.Map;
+import javax.annotation.Nullable;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -450,6 +467,101 @@ public abstract class AbstractIncrementHandlerTest {
     }
   }
 
+  @Test
+  public void testFactGroupByScan() throws Exception {
+    TableId tableId = TableId.from(NamespaceId.DEFAULT.getEntityName(), "factGroupByTest");
+    createTable(tableId);
+
+    InMemoryTableService.create("factGroupByEntities");
+    int resolution = 60;
+    FactCodec codec = new FactCodec(new EntityTable(new InMemoryMetricsTable("factGroupByEntities")), resolution, 3600);
+    long factTs = 1422312900L / resolution * resolution;
+    FactGroupBy groupBy = codec.createGroupBy(ImmutableList.of("dim1", "dim2"), ImmutableList.of("dim1"),
+                                              ImmutableMap.of("metric", AggregationFunction.SUM), factTs, factTs);
+    byte[] column = codec.createColumn(factTs);
+
+    try (HTable table = new HBaseTableUtilFactory(cConf).get().createHTable(conf, tableId)) {
+      // more stored rows than aggregated into a single range
+      int groups = 1500;
+      List<Put> puts = Lists.newArrayList();
+      for (int i = 0; i < groups; i++) {
+        for (int k = 1; k <= 2; k++) {
+          byte[] row = codec.createRowKey(ImmutableList.of(new DimensionValue("dim1", "value" + i),
+                                                           new DimensionValue("dim2", "value" + k)),
+                                          "metric", factTs);
+          // increments are summed before the rows are aggregated
+          puts.add(newIncrement(row, column, i));
+          puts.add(newIncrement(row, column, k));
+        }
+      }
+      table.put(puts);
+      int storedRows = 2 * groups;
+
+      // every result aggregates a range of rows, the first one a single row
+      List<Result> results = scan(table, groupBy, null, 0);
+      int maxRangeRows = FactGroupBy.MAX_RANGE_ROWS;
+      assertEquals(1 + (storedRows - 1 + maxRangeRows - 1) / maxRangeRows, results.size());
+      assertGroupTotals(codec, groupBy, results, groups);
+
+      // a scan restarted after the last row of a range continues with the next range
+      byte[] restartRow = results.get(1).getRow();
+      List<Result> restarted = Lists.newArrayList(results.subList(0, 2));
+      restarted.addAll(scan(table, groupBy, Bytes.add(restartRow, new byte[1]), 0));
+      assertGroupTotals(codec, groupBy, restarted, groups);
+
+      // a scan restarted at the last row of a range returns that row alone first, so that it can be skipped
+      restarted = Lists.newArrayList(results.subList(0, 2));
+      List<Result> restartedResults = scan(table, groupBy, restartRow, 0);
+      assertArrayEquals(restartRow, restartedResults.get(0).getRow());
+      restarted.addAll(restartedResults.subList(1, restartedResults.size()));
+      assertGroupTotals(codec, groupBy, restarted, groups);
+
+      // scans with a batch limit return the stored rows
+      assertEquals(storedRows, scan(table, groupBy, null, 10).size());
+    }
+  }
+
+  private List<Result> scan(HTable table, FactGroupBy groupBy, @Nullable byte[] startRow,
+                            int batch) throws IOException {
+    ScanBuilder scan = tableUtil.buildScan()
+      .addFamily(FAMILY)
+      .setCaching(1)
+      .setAttribute(FactGroupBy.SCAN_ATTRIBUTE, groupBy.toBytes());
+    if (startRow != null) {
+      scan.setStartRow(startRow);
+    }
+    if (batch > 0) {
+      scan.setBatch(batch);
+    }
+    List<Result> results = Lists.newArrayList();
+    try (ResultScanner scanner = table.getScanner(scan.build())) {
+      for (Result result : scanner) {
+        results.add(result);
+      }
+    }
+    return results;
+  }
+
+  private void assertGroupTotals(FactCodec codec, FactGroupBy groupBy, List<Result> results, int groups) {
+    FactGroupByAggregator aggregator = new FactGroupByAggregator(groupBy);
+    for (Result result : results) {
+      aggregator.merge(result.getRow(), result.getFamilyMap(FAMILY));
+    }
+    assertEquals(2 * groups, aggregator.getStoredRows());
+
+    Map<String, Long> totals = Maps.newHashMap();
+    for (Row row : aggregator.getRows()) {
+      String group = codec.getDimensionValues(row.getRow()).get(0).getValue();
+      for (byte[] value : row.getColumns().values()) {
+        assertNull(totals.put(group, Bytes.toLong(value)));
+      }
+    }
+    assertEquals(groups, totals.size());
+    for (int i = 0; i < groups; i++) {
+      assertEquals(Long.valueOf(2 * i + 3), totals.get("value" + i));
+    }
+  }
+
   public Put newIncrement(byte[] row, byte[] column, long value) {
       return newIncrement(row, column, ts++, value);
   }
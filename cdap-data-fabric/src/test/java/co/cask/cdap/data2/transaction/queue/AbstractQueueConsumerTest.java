@@ -0,0 +1,278 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.transaction.queue;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.queue.QueueName;
+import co.cask.cdap.common.utils.ImmutablePair;
+import co.cask.cdap.common.utils.Tasks;
+import co.cask.cdap.data2.queue.ConsumerConfig;
+import co.cask.cdap.data2.queue.DequeueResult;
+import co.cask.cdap.data2.queue.DequeueStrategy;
+import co.cask.cdap.data2.queue.QueueEntry;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import org.apache.tephra.Transaction;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for prefetching of queue entries in the {@link AbstractQueueConsumer}.
+ */
+public class AbstractQueueConsumerTest {
+
+  private static final QueueName QUEUE_NAME = QueueName.fromFlowlet("namespace", "app", "flow", "flowlet", "out");
+  private static final ConsumerConfig CONSUMER_CONFIG = new ConsumerConfig(0L, 0, 1, DequeueStrategy.FIFO, null);
+
+  @Test
+  public void testPrefetch() throws Exception {
+    TestQueueConsumer consumer = new TestQueueConsumer();
+    consumer.enqueue(1, 2);
+
+    consumer.startTx(createTransaction(10));
+    consumer.blockPrefetch();
+    Assert.assertEquals(ImmutableList.of(1, 2), toList(consumer.dequeue(2)));
+    consumer.awaitPrefetch();
+
+    // Entries enqueued before the background scan reads them are picked up by the next dequeue
+    consumer.enqueue(3, 4);
+    Assert.assertTrue(consumer.commitTx());
+    consumer.unblockPrefetch();
+
+    consumer.startTx(createTransaction(11));
+    Assert.assertEquals(ImmutableList.of(3, 4), toList(consumer.dequeue(2)));
+    // The dequeue used the prefetched rows instead of scanning by itself, and started the next prefetch
+    Assert.assertEquals(3, consumer.scans.get());
+    consumer.close();
+    waitForCloses(consumer, 3);
+  }
+
+  @Test
+  public void testPrefetchStartRowMismatch() throws Exception {
+    TestQueueConsumer consumer = new TestQueueConsumer();
+    consumer.enqueue(1, 2);
+
+    consumer.startTx(createTransaction(10));
+    consumer.blockPrefetch();
+    Assert.assertEquals(ImmutableList.of(1, 2), toList(consumer.dequeue(2)));
+    consumer.awaitPrefetch();
+    consumer.enqueue(3, 4);
+    Assert.assertTrue(consumer.commitTx());
+
+    // Rows scanned from a different start row are not used, and the dequeue scans by itself
+    consumer.setScanStartRow(QueueEntryRow.getQueueEntryRowKey(QUEUE_NAME, 2L, 0));
+    consumer.startTx(createTransaction(11));
+    Assert.assertEquals(ImmutableList.of(3, 4), toList(consumer.dequeue(2)));
+    Assert.assertEquals(4, consumer.scans.get());
+
+    // The discarded scan closes its scanner when done
+    consumer.unblockPrefetch();
+    waitForCloses(consumer, 4);
+    consumer.close();
+    Assert.assertEquals(4, consumer.closes.get());
+  }
+
+  @Test
+  public void testRollbackAfterPrefetch() throws Exception {
+    TestQueueConsumer consumer = new TestQueueConsumer();
+    consumer.enqueue(1, 2, 3);
+
+    consumer.startTx(createTransaction(10));
+    Assert.assertEquals(ImmutableList.of(1, 2), toList(consumer.dequeue(2)));
+    Assert.assertTrue(consumer.commitTx());
+    Assert.assertTrue(consumer.rollbackTx());
+
+    // The rolled back entries are dequeued again, once, along with the one left in the cache
+    consumer.startTx(createTransaction(11));
+    Assert.assertEquals(ImmutableList.of(1, 2, 3), toList(consumer.dequeue(3)));
+    Assert.assertTrue(consumer.commitTx());
+
+    consumer.startTx(createTransaction(12));
+    Assert.assertTrue(consumer.dequeue(3).isEmpty());
+    consumer.close();
+  }
+
+  @Test
+  public void testCloseDuringPrefetch() throws Exception {
+    TestQueueConsumer consumer = new TestQueueConsumer();
+    consumer.enqueue(1, 2);
+
+    consumer.startTx(createTransaction(10));
+    consumer.blockPrefetch();
+    Assert.assertEquals(ImmutableList.of(1, 2), toList(consumer.dequeue(2)));
+    consumer.awaitPrefetch();
+
+    // The running scan still uses the scanner, hence it is not closed by the consumer
+    consumer.close();
+    Assert.assertEquals(2, consumer.scans.get());
+    Assert.assertEquals(1, consumer.closes.get());
+
+    // Only the scan closes it once it completes
+    consumer.unblockPrefetch();
+    waitForCloses(consumer, 2);
+    TimeUnit.MILLISECONDS.sleep(100);
+    Assert.assertEquals(2, consumer.closes.get());
+  }
+
+  private void waitForCloses(final TestQueueConsumer consumer, int closes) throws Exception {
+    Tasks.waitFor(closes, new Callable<Integer>() {
+      @Override
+      public Integer call() throws Exception {
+        return consumer.closes.get();
+      }
+    }, 10, TimeUnit.SECONDS);
+  }
+
+  private Transaction createTransaction(long writePointer) {
+    return new Transaction(writePointer - 1, writePointer, new long[0], new long[0], Transaction.NO_TX_IN_PROGRESS);
+  }
+
+  private List<Integer> toList(DequeueResult<byte[]> result) {
+    List<Integer> values = Lists.newArrayList();
+    for (byte[] data : result) {
+      values.add(Bytes.toInt(data));
+    }
+    return values;
+  }
+
+  /**
+   * A queue consumer that reads from an in-memory table, and counts the scanners opened and closed.
+   */
+  private static final class TestQueueConsumer extends AbstractQueueConsumer {
+
+    private final NavigableMap<byte[], NavigableMap<byte[], byte[]>> table =
+      new ConcurrentSkipListMap<>(Bytes.BYTES_COMPARATOR);
+    private final AtomicInteger scans = new AtomicInteger();
+    private final AtomicInteger closes = new AtomicInteger();
+    private volatile CountDownLatch prefetchStarted;
+    private volatile CountDownLatch prefetchBlock;
+
+    TestQueueConsumer() {
+      super(createCConf(), CONSUMER_CONFIG, QUEUE_NAME);
+    }
+
+    private static CConfiguration createCConf() {
+      CConfiguration cConf = CConfiguration.create();
+      cConf.setBoolean(QueueConstants.ConfigKeys.DEQUEUE_PREFETCH, true);
+      return cConf;
+    }
+
+    /**
+     * Enqueues the given values, each with the value as the write pointer.
+     */
+    void enqueue(int... values) throws IOException {
+      for (int value : values) {
+        NavigableMap<byte[], byte[]> row = new ConcurrentSkipListMap<>(Bytes.BYTES_COMPARATOR);
+        row.put(QueueEntryRow.DATA_COLUMN, Bytes.toBytes(value));
+        row.put(QueueEntryRow.META_COLUMN, QueueEntry.serializeHashKeys(ImmutableMap.<String, Integer>of()));
+        table.put(QueueEntryRow.getQueueEntryRowKey(QUEUE_NAME, value, 0), row);
+      }
+    }
+
+    /**
+     * Makes the next background scan block before reading the first row.
+     */
+    void blockPrefetch() {
+      prefetchStarted = new CountDownLatch(1);
+      prefetchBlock = new CountDownLatch(1);
+    }
+
+    void awaitPrefetch() throws InterruptedException {
+      Assert.assertTrue(prefetchStarted.await(10, TimeUnit.SECONDS));
+    }
+
+    void unblockPrefetch() {
+      prefetchBlock.countDown();
+    }
+
+    @Override
+    public void postTxCommit() {
+      // no-op
+    }
+
+    @Override
+    public void close() throws IOException {
+      cancelPrefetch();
+    }
+
+    @Override
+    protected boolean claimEntry(byte[] rowKey, byte[] stateContent) throws IOException {
+      table.get(rowKey).put(stateColumnName, stateContent);
+      return true;
+    }
+
+    @Override
+    protected void updateState(Set<byte[]> rowKeys, byte[] stateColumnName, byte[] stateContent) throws IOException {
+      for (byte[] rowKey : rowKeys) {
+        table.get(rowKey).put(stateColumnName, stateContent);
+      }
+    }
+
+    @Override
+    protected void undoState(Set<byte[]> rowKeys, byte[] stateColumnName) throws IOException {
+      for (byte[] rowKey : rowKeys) {
+        table.get(rowKey).remove(stateColumnName);
+      }
+    }
+
+    @Override
+    protected QueueScanner getScanner(byte[] startRow, byte[] stopRow, int numRows) throws IOException {
+      scans.incrementAndGet();
+      final Iterator<Map.Entry<byte[], NavigableMap<byte[], byte[]>>> rows =
+        table.subMap(startRow, stopRow).entrySet().iterator();
+      return new QueueScanner() {
+        @Override
+        public ImmutablePair<byte[], Map<byte[], byte[]>> next() throws IOException {
+          CountDownLatch block = prefetchBlock;
+          if (block != null && Thread.currentThread().getName().startsWith("queue-prefetch")) {
+            prefetchStarted.countDown();
+            try {
+              block.await();
+            } catch (InterruptedException e) {
+              throw new IOException(e);
+            }
+          }
+          if (!rows.hasNext()) {
+            return null;
+          }
+          Map.Entry<byte[], NavigableMap<byte[], byte[]>> row = rows.next();
+          return new ImmutablePair<byte[], Map<byte[], byte[]>>(row.getKey(),
+                                                                ImmutableMap.copyOf(row.getValue()));
+        }
+
+        @Override
+        public void close() throws IOException {
+          closes.incrementAndGet();
+        }
+      };
+    }
+  }
+}
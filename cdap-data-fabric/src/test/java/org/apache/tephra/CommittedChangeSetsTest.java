@@ -0,0 +1,105 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.tephra;
+
+import com.google.common.collect.ImmutableSet;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.NavigableMap;
+import java.util.Set;
+
+/**
+ * Tests for {@link CommittedChangeSets}.
+ */
+public class CommittedChangeSetsTest {
+
+  private static final ChangeId A = new ChangeId(new byte[] { 'a' });
+  private static final ChangeId B = new ChangeId(new byte[] { 'b', 'b' });
+  private static final ChangeId C = new ChangeId(new byte[0]);
+
+  @Test
+  public void testConflicts() {
+    CommittedChangeSets changeSets = new CommittedChangeSets();
+    changeSets.add(10L, ImmutableSet.of(A, B));
+    changeSets.add(20L, ImmutableSet.of(B));
+
+    Assert.assertTrue(changeSets.hasConflicts(5L, ImmutableSet.of(A)));
+    Assert.assertFalse(changeSets.hasConflicts(10L, ImmutableSet.of(A)));
+    Assert.assertTrue(changeSets.hasConflicts(15L, ImmutableSet.of(A, B)));
+    Assert.assertFalse(changeSets.hasConflicts(5L, ImmutableSet.of(C)));
+    Assert.assertFalse(changeSets.hasConflicts(5L, ImmutableSet.<ChangeId>of()));
+
+    // removing the change set at 10 keeps B, which was committed again at 20
+    changeSets.removeBefore(15L);
+    Assert.assertEquals(1, changeSets.size());
+    Assert.assertEquals(1, changeSets.getChangeCount());
+    Assert.assertFalse(changeSets.hasConflicts(5L, ImmutableSet.of(A)));
+    Assert.assertTrue(changeSets.hasConflicts(15L, ImmutableSet.of(B)));
+
+    changeSets.removeBefore(21L);
+    Assert.assertEquals(0, changeSets.size());
+    Assert.assertEquals(0, changeSets.getChangeCount());
+    Assert.assertFalse(changeSets.hasConflicts(15L, ImmutableSet.of(B)));
+  }
+
+  @Test
+  public void testOutOfOrderCommits() {
+    // commit pointers can arrive out of order when replaying the transaction log
+    CommittedChangeSets changeSets = new CommittedChangeSets();
+    changeSets.add(20L, ImmutableSet.of(A));
+    changeSets.add(10L, ImmutableSet.of(A));
+    Assert.assertTrue(changeSets.hasConflicts(15L, ImmutableSet.of(A)));
+
+    changeSets.removeBefore(15L);
+    Assert.assertTrue(changeSets.hasConflicts(15L, ImmutableSet.of(A)));
+  }
+
+  @Test
+  public void testChangeSetsCopy() {
+    CommittedChangeSets changeSets = new CommittedChangeSets();
+    changeSets.add(10L, ImmutableSet.of(A, C));
+    // multiple transactions can commit under the same commit pointer
+    changeSets.add(10L, ImmutableSet.of(B, C));
+    changeSets.add(11L, ImmutableSet.of(B));
+    Assert.assertTrue(changeSets.getEstimatedSize() > 0);
+
+    NavigableMap<Long, Set<ChangeId>> copy = changeSets.toChangeSets();
+    Assert.assertEquals(2, copy.size());
+    Assert.assertEquals(ImmutableSet.of(A, B, C), copy.get(10L));
+    Assert.assertEquals(ImmutableSet.of(B), copy.get(11L));
+
+    changeSets.clear();
+    Assert.assertEquals(0, changeSets.size());
+    Assert.assertEquals(0L, changeSets.getEstimatedSize());
+  }
+
+  @Test
+  public void testSameCommitPointer() {
+    CommittedChangeSets changeSets = new CommittedChangeSets();
+    changeSets.add(10L, ImmutableSet.of(A, C));
+    changeSets.add(10L, ImmutableSet.of(B, C));
+    changeSets.add(10L, ImmutableSet.of(A));
+
+    // changes committed again under the same pointer are only stored once
+    CommittedChangeSets expected = new CommittedChangeSets();
+    expected.add(10L, ImmutableSet.of(A, B, C));
+    Assert.assertEquals(expected.getEstimatedSize(), changeSets.getEstimatedSize());
+    Assert.assertEquals(3, changeSets.getChangeCount());
+    Assert.assertEquals(ImmutableSet.of(A, B, C), changeSets.toChangeSets().get(10L));
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.apache.tephra;
+
+import com.google.common.collect.ImmutableList;
+import org.apache.hadoop.conf.Configuration;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collection;
+
+/**
+ * Tests conflict detection of the {@link TransactionManager}.
+ */
+public class TransactionManagerConflictTest {
+
+  private static final byte[] A = new byte[] { 'a' };
+  private static final byte[] B = new byte[] { 'b' };
+
+  private TransactionManager txManager;
+
+  @Before
+  public void before() {
+    txManager = new TransactionManager(new Configuration());
+    txManager.startAndWait();
+  }
+
+  @After
+  public void after() {
+    txManager.stopAndWait();
+  }
+
+  @Test
+  public void testConflict() throws TransactionNotInProgressException {
+    Transaction tx1 = txManager.startShort();
+    Transaction tx2 = txManager.startShort();
+    Transaction tx3 = txManager.startShort();
+
+    Assert.assertTrue(txManager.canCommit(tx1, changes(A)));
+    Assert.assertTrue(txManager.canCommit(tx2, changes(A, B)));
+    Assert.assertTrue(txManager.commit(tx1));
+
+    // tx2 overlaps with tx1, which committed after tx2 started
+    Assert.assertFalse(txManager.commit(tx2));
+    txManager.abort(tx2);
+    // tx3 does not overlap
+    Assert.assertTrue(txManager.canCommit(tx3, changes(B)));
+    Assert.assertTrue(txManager.commit(tx3));
+
+    // a tx started after tx1 committed does not conflict with it
+    Transaction tx4 = txManager.startShort();
+    Assert.assertTrue(txManager.canCommit(tx4, changes(A)));
+    Assert.assertTrue(txManager.commit(tx4));
+
+    // with no transactions in progress, all committed change sets are pruned
+    Assert.assertEquals(0, txManager.getCommittedSize());
+  }
+
+  @Test
+  public void testConflictAfterPruning() throws TransactionNotInProgressException {
+    Transaction tx0 = txManager.startShort();
+    Transaction tx1 = txManager.startShort();
+    Assert.assertTrue(txManager.canCommit(tx1, changes(A)));
+    Assert.assertTrue(txManager.commit(tx1));
+
+    Transaction tx2 = txManager.startShort();
+    Transaction tx3 = txManager.startShort();
+    Assert.assertTrue(txManager.canCommit(tx2, changes(A)));
+    Assert.assertTrue(txManager.commit(tx2));
+    Assert.assertEquals(2, txManager.getCommittedSize());
+
+    // committing tx0 prunes the change set of tx1, but not the one of tx2 that also changed A
+    Assert.assertTrue(txManager.commit(tx0));
+    Assert.assertEquals(1, txManager.getCommittedSize());
+    Assert.assertFalse(txManager.canCommit(tx3, changes(A)));
+    Assert.assertTrue(txManager.canCommit(tx3, changes(B)));
+    Assert.assertTrue(txManager.commit(tx3));
+    Assert.assertEquals(0, txManager.getCommittedSize());
+  }
+
+  private static Collection<byte[]> changes(byte[]... changes) {
+    return ImmutableList.copyOf(changes);
+  }
+}
@@ -416,7 +416,8 @@ public abstract class AbstractExploreClient extends ExploreHttpClient implements
   }
 
   /**
-   * Result iterator which polls Explore service using HTTP to get next results.
+   * Result iterator which gets the results from the Explore service using HTTP. The results are streamed
+   * in batches of the fetch size if the service supports it, otherwise they are polled page by page.
    */
   private static final class ClientExploreExecutionResult extends AbstractIterator<QueryResult>
     implements ExploreExecutionResult {
@@ -426,6 +427,8 @@ public abstract class AbstractExploreClient extends ExploreHttpClient implements
     private int fetchSize = DEFAULT_FETCH_SIZE;
     private Iterator<QueryResult> delegate;
     private List<ColumnDesc> resultSchema = null;
+    private QueryResultBatchReader batchReader;
+    private boolean streamingUnsupported;
 
     private final ExploreHttpClient exploreClient;
     private final QueryHandle handle;
@@ -452,9 +455,8 @@ public abstract class AbstractExploreClient extends ExploreHttpClient implements
         return delegate.next();
       }
       try {
-        // call the endpoint 'next' to get more results and set delegate
-        List<QueryResult> nextResults = convertRows(exploreClient.nextResults(handle, fetchSize));
-        delegate = nextResults.iterator();
+        // get more results and set delegate
+        delegate = fetchNextResults().iterator();
 
         // At this point, if delegate has no result, there are no more results at all
         if (!delegate.hasNext()) {
@@ -471,6 +473,20 @@ public abstract class AbstractExploreClient extends ExploreHttpClient implements
       }
     }
 
+    private List<QueryResult> fetchNextResults() throws ExploreException, HandleNotFoundException {
+      if (batchReader == null && !streamingUnsupported) {
+        // The handle may be closed as soon as all results are streamed, hence get the schema first
+        getResultSchema();
+        batchReader = exploreClient.streamResults(handle, fetchSize);
+        streamingUnsupported = batchReader == null;
+      }
+      if (batchReader != null) {
+        return convertRows(batchReader.next());
+      }
+      // call the endpoint 'next' to get more results
+      return convertRows(exploreClient.nextResults(handle, fetchSize));
+    }
+
     private List<QueryResult> convertRows(List<QueryResult> rows) throws ExploreException {
       List<ColumnDesc> schema = getResultSchema();
       ImmutableList.Builder<QueryResult> builder = ImmutableList.builder();
@@ -494,9 +510,9 @@ public abstract class AbstractExploreClient extends ExploreHttpClient implements
             } else if (schemaColumn.getType().equals("TINYINT")) {
               columnValue = ((Double) columnValue).byteValue();
             }
-          } else if ("BINARY".equals(columnType)) {
+          } else if ("BINARY".equals(columnType) && !(columnValue instanceof byte[])) {
             // A BINARY value is a byte array, which is deserialized by GSon into a list of
-            // double objects - here we recreate a byte[] object.
+            // double objects - here we recreate a byte[] object. Streamed results contain the byte[] already.
             List<Object> binary;
             if (columnValue instanceof List) {
               binary = (List) columnValue;
@@ -534,6 +550,9 @@ public abstract class AbstractExploreClient extends ExploreHttpClient implements
 
     @Override
     public void close() throws IOException {
+      if (batchReader != null) {
+        batchReader.close();
+      }
       try {
         exploreClient.close(handle);
       } catch (HandleNotFoundException e) {
@@ -33,6 +33,7 @@ import co.cask.cdap.explore.service.MetaDataInfo;
 import co.cask.cdap.explore.service.TableNotFoundException;
 import co.cask.cdap.explore.utils.ColumnsArgs;
 import co.cask.cdap.explore.utils.FunctionsArgs;
+import co.cask.cdap.explore.utils.QueryResultBatchCodec;
 import co.cask.cdap.explore.utils.SchemasArgs;
 import co.cask.cdap.explore.utils.TablesArgs;
 import co.cask.cdap.internal.io.SchemaTypeAdapter;
@@ -64,6 +65,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.lang.reflect.Type;
 import java.net.HttpURLConnection;
 import java.net.InetSocketAddress;
@@ -73,6 +75,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import javax.annotation.Nullable;
+import javax.net.ssl.HttpsURLConnection;
 
 /**
  * The methods of this class call the HTTP APIs exposed by explore and return the raw information
@@ -301,6 +304,64 @@ abstract class ExploreHttpClient implements Explore {
     throw new ExploreException("Cannot get next results. Reason: " + response);
   }
 
+  /**
+   * Opens a stream of the results of a query, which the server sends as binary batches of the given size.
+   *
+   * @return a reader for the result batches, or {@code null} if the results cannot be streamed from the server,
+   *         in which case they should be fetched with {@link #nextResults(QueryHandle, int)}
+   */
+  @Nullable
+  QueryResultBatchReader streamResults(QueryHandle handle, int batchSize) throws ExploreException {
+    String resolvedUrl = resolve(String.format("data/explore/queries/%s/%s", handle.getHandle(), "stream"));
+    HttpURLConnection urlConn = null;
+    try {
+      urlConn = (HttpURLConnection) new URL(resolvedUrl).openConnection();
+      urlConn.setRequestMethod(HttpMethod.POST.name());
+      urlConn.setConnectTimeout(getHttpRequestConfig().getConnectTimeout());
+      urlConn.setReadTimeout(getHttpRequestConfig().getReadTimeout());
+      Map<String, String> headers = addSecurityHeaders(null);
+      if (headers != null) {
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+          urlConn.setRequestProperty(header.getKey(), header.getValue());
+        }
+      }
+      if (urlConn instanceof HttpsURLConnection && !verifySSLCert()) {
+        try {
+          HttpRequests.disableCertCheck((HttpsURLConnection) urlConn);
+        } catch (Exception e) {
+          LOG.warn("Failed to disable SSL certificate check for {}", resolvedUrl, e);
+        }
+      }
+      urlConn.setDoOutput(true);
+      try (OutputStream os = urlConn.getOutputStream()) {
+        os.write(GSON.toJson(ImmutableMap.of("size", batchSize)).getBytes(Charsets.UTF_8));
+      }
+
+      int responseCode = urlConn.getResponseCode();
+      if (responseCode == HttpURLConnection.HTTP_OK
+        && QueryResultBatchCodec.CONTENT_TYPE.equals(urlConn.getContentType())) {
+        QueryResultBatchReader reader = new QueryResultBatchReader(urlConn);
+        urlConn = null;
+        return reader;
+      }
+      if (responseCode == HttpURLConnection.HTTP_OK || responseCode == HttpURLConnection.HTTP_NOT_FOUND
+        || responseCode == HttpURLConnection.HTTP_BAD_METHOD) {
+        // either the handle is unknown, or the server does not support streaming;
+        // fetching with nextResults reports the former and works in both cases
+        return null;
+      }
+      throw new ExploreException("Cannot stream results. Reason: " + responseCode + " "
+                                   + urlConn.getResponseMessage());
+    } catch (IOException e) {
+      throw new ExploreException(String.format("Error connecting to Explore Service at %s while streaming results",
+                                               resolvedUrl), e);
+    } finally {
+      if (urlConn != null) {
+        urlConn.disconnect();
+      }
+    }
+  }
+
   @Override
   public List<QueryResult> previewResults(QueryHandle handle)
     throws ExploreException, HandleNotFoundException, SQLException {
@@ -0,0 +1,95 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.explore.client;
+
+import co.cask.cdap.explore.service.ExploreException;
+import co.cask.cdap.explore.utils.QueryResultBatchCodec;
+import co.cask.cdap.proto.QueryResult;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.apache.twill.common.Threads;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.annotation.Nullable;
+
+/**
+ * Reads the batches of query results streamed by the Explore service. The next batch is always read in the
+ * background, so that it is transferred and decoded while the current batch is consumed.
+ */
+final class QueryResultBatchReader implements Closeable {
+
+  private final HttpURLConnection urlConn;
+  private final DataInputStream input;
+  private final ExecutorService executor;
+
+  @Nullable
+  private Future<List<QueryResult>> nextBatch;
+
+  QueryResultBatchReader(HttpURLConnection urlConn) throws IOException {
+    this.urlConn = urlConn;
+    this.input = new DataInputStream(new BufferedInputStream(urlConn.getInputStream()));
+    this.executor = Executors.newSingleThreadExecutor(Threads.createDaemonThreadFactory("explore-result-reader-%d"));
+    this.nextBatch = prefetch();
+  }
+
+  /**
+   * Returns the next batch of results and starts reading the one after it.
+   *
+   * @return the next batch of results, or an empty list if all results have been read
+   * @throws ExploreException if the results cannot be read from the server
+   */
+  List<QueryResult> next() throws ExploreException {
+    if (nextBatch == null) {
+      return ImmutableList.of();
+    }
+    try {
+      List<QueryResult> batch = Uninterruptibles.getUninterruptibly(nextBatch);
+      nextBatch = batch.isEmpty() ? null : prefetch();
+      return batch;
+    } catch (ExecutionException e) {
+      nextBatch = null;
+      throw new ExploreException("Failed to read query results", e.getCause());
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    executor.shutdownNow();
+    // disconnecting also unblocks a read in progress
+    urlConn.disconnect();
+  }
+
+  private Future<List<QueryResult>> prefetch() {
+    return executor.submit(new Callable<List<QueryResult>>() {
+      @Override
+      public List<QueryResult> call() throws Exception {
+        List<QueryResult> batch = QueryResultBatchCodec.decode(input);
+        return batch == null ? ImmutableList.<QueryResult>of() : batch;
+      }
+    });
+  }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.explore.utils;
+
+import co.cask.cdap.proto.QueryResult;
+import com.google.common.base.Preconditions;
+import com.google.gson.Gson;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import javax.annotation.Nullable;
+
+/**
+ * Encodes and decodes batches of {@link QueryResult} for streaming query results over HTTP.
+ *
+ * A stream is a sequence of batches, terminated by a batch with zero rows. Each batch is written as
+ * {@code <rows(int)><columns(int)><compressed length(int)><deflated column data>}. Inside the column data,
+ * the values are laid out column by column, each value prefixed by a one byte type tag, so that values of
+ * the same column are stored next to each other, which both keeps the values typed and compresses well.
+ * Values of types that have no tag are sent as JSON, the same way the JSON results endpoints do.
+ */
+public final class QueryResultBatchCodec {
+
+  /**
+   * Content type of a stream of encoded batches.
+   */
+  public static final String CONTENT_TYPE = "application/x-cdap-explore-batches";
+
+  private static final Gson GSON = new Gson();
+
+  private static final byte NULL = 0;
+  private static final byte BOOLEAN = 1;
+  private static final byte BYTE = 2;
+  private static final byte SHORT = 3;
+  private static final byte INT = 4;
+  private static final byte LONG = 5;
+  private static final byte FLOAT = 6;
+  private static final byte DOUBLE = 7;
+  private static final byte STRING = 8;
+  private static final byte BINARY = 9;
+  private static final byte JSON = 10;
+
+  private QueryResultBatchCodec() {
+  }
+
+  /**
+   * Encodes one batch of rows. All rows in the batch must have the same number of columns.
+   *
+   * @param rows the rows to encode; an empty list encodes the end of the stream
+   * @return the encoded batch
+   */
+  public static byte[] encode(List<QueryResult> rows) throws IOException {
+    if (rows.isEmpty()) {
+      return endOfBatches();
+    }
+    int columns = rows.get(0).getColumns().size();
+
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    try {
+      DataOutputStream output = new DataOutputStream(new DeflaterOutputStream(compressed, deflater));
+      for (int column = 0; column < columns; column++) {
+        for (QueryResult row : rows) {
+          Preconditions.checkArgument(row.getColumns().size() == columns, "Rows in a batch differ in length.");
+          writeValue(output, row.getColumns().get(column));
+        }
+      }
+      output.close();
+    } finally {
+      deflater.end();
+    }
+
+    ByteArrayOutputStream os = new ByteArrayOutputStream(compressed.size() + 3 * 4);
+    DataOutputStream output = new DataOutputStream(os);
+    output.writeInt(rows.size());
+    output.writeInt(columns);
+    output.writeInt(compressed.size());
+    compressed.writeTo(output);
+    output.flush();
+    return os.toByteArray();
+  }
+
+  /**
+   * @return the encoded marker for the end of the stream
+   */
+  public static byte[] endOfBatches() {
+    return new byte[4];
+  }
+
+  /**
+   * Decodes the next batch from the given input.
+   *
+   * @return the rows of the batch, or {@code null} if the end of the stream is reached
+   */
+  @Nullable
+  public static List<QueryResult> decode(DataInput input) throws IOException {
+    int rows = input.readInt();
+    if (rows == 0) {
+      return null;
+    }
+    int columns = input.readInt();
+    byte[] compressed = new byte[input.readInt()];
+    input.readFully(compressed);
+
+    List<List<Object>> values = new ArrayList<>(rows);
+    for (int i = 0; i < rows; i++) {
+      values.add(new ArrayList<>(columns));
+    }
+    DataInputStream data = new DataInputStream(new ByteArrayInputStream(inflate(compressed)));
+    for (int column = 0; column < columns; column++) {
+      for (List<Object> row : values) {
+        row.add(readValue(data));
+      }
+    }
+
+    List<QueryResult> results = new ArrayList<>(rows);
+    for (List<Object> row : values) {
+      results.add(new QueryResult(row));
+    }
+    return Collections.unmodifiableList(results);
+  }
+
+  private static void writeValue(DataOutput output, @Nullable Object value) throws IOException {
+    if (value == null) {
+      output.writeByte(NULL);
+    } else if (value instanceof Boolean) {
+      output.writeByte(BOOLEAN);
+      output.writeBoolean((Boolean) value);
+    } else if (value instanceof Byte) {
+      output.writeByte(BYTE);
+      output.writeByte((Byte) value);
+    } else if (value instanceof Short) {
+      output.writeByte(SHORT);
+      output.writeShort((Short) value);
+    } else if (value instanceof Integer) {
+      output.writeByte(INT);
+      output.writeInt((Integer) value);
+    } else if (value instanceof Long) {
+      output.writeByte(LONG);
+      output.writeLong((Long) value);
+    } else if (value instanceof Float) {
+      output.writeByte(FLOAT);
+      output.writeFloat((Float) value);
+    } else if (value instanceof Double) {
+      output.writeByte(DOUBLE);
+      output.writeDouble((Double) value);
+    } else if (value instanceof String) {
+      output.writeByte(STRING);
+      writeBytes(output, ((String) value).getBytes(StandardCharsets.UTF_8));
+    } else if (value instanceof byte[]) {
+      output.writeByte(BINARY);
+      writeBytes(output, (byte[]) value);
+    } else {
+      output.writeByte(JSON);
+      writeBytes(output, GSON.toJson(value).getBytes(StandardCharsets.UTF_8));
+    }
+  }
+
+  @Nullable
+  private static Object readValue(DataInput input) throws IOException {
+    byte type = input.readByte();
+    switch (type) {
+      case NULL:
+        return null;
+      case BOOLEAN:
+        return input.readBoolean();
+      case BYTE:
+        return input.readByte();
+      case SHORT:
+        return input.readShort();
+      case INT:
+        return input.readInt();
+      case LONG:
+        return input.readLong();
+      case FLOAT:
+        return input.readFloat();
+      case DOUBLE:
+        return input.readDouble();
+      case STRING:
+        return new String(readBytes(input), StandardCharsets.UTF_8);
+      case BINARY:
+        return readBytes(input);
+      case JSON:
+        return GSON.fromJson(new String(readBytes(input), StandardCharsets.UTF_8), Object.class);
+      default:
+        throw new IOException("Unknown value type " + type);
+    }
+  }
+
+  private static void writeBytes(DataOutput output, byte[] bytes) throws IOException {
+    output.writeInt(bytes.length);
+    output.write(bytes);
+  }
+
+  private static byte[] readBytes(DataInput input) throws IOException {
+    byte[] bytes = new byte[input.readInt()];
+    input.readFully(bytes);
+    return bytes;
+  }
+
+  private static byte[] inflate(byte[] compressed) throws IOException {
+    Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(compressed);
+      ByteArrayOutputStream os = new ByteArrayOutputStream(compressed.length * 4);
+      byte[] buffer = new byte[8192];
+      while (!inflater.finished()) {
+        int len = inflater.inflate(buffer);
+        if (len == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          throw new IOException("Truncated query result batch");
+        }
+        os.write(buffer, 0, len);
+      }
+      return os.toByteArray();
+    } catch (DataFormatException e) {
+      throw new IOException("Corrupted query result batch", e);
+    } finally {
+      inflater.end();
+    }
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.explore.utils;
+
+import co.cask.cdap.proto.QueryResult;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for {@link QueryResultBatchCodec}.
+ */
+public class QueryResultBatchCodecTest {
+
+  @Test
+  public void testEncodeDecode() throws Exception {
+    List<QueryResult> first = ImmutableList.of(
+      new QueryResult(Arrays.<Object>asList(true, (byte) 1, (short) 2, 3, 4L, 5.5f, 6.5d, "seven",
+                                            new byte[] { 8, 9 }, ImmutableMap.of("k", "v"))),
+      new QueryResult(Arrays.<Object>asList(null, null, null, null, null, null, null, null, null, null)));
+    List<QueryResult> second = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      second.add(new QueryResult(Arrays.<Object>asList(i, "row" + i)));
+    }
+
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    os.write(QueryResultBatchCodec.encode(first));
+    os.write(QueryResultBatchCodec.encode(second));
+    os.write(QueryResultBatchCodec.encode(ImmutableList.<QueryResult>of()));
+
+    DataInputStream input = new DataInputStream(new ByteArrayInputStream(os.toByteArray()));
+    List<QueryResult> decoded = QueryResultBatchCodec.decode(input);
+    Assert.assertNotNull(decoded);
+    Assert.assertEquals(2, decoded.size());
+
+    List<Object> row = decoded.get(0).getColumns();
+    Assert.assertEquals(Arrays.<Object>asList(true, (byte) 1, (short) 2, 3, 4L, 5.5f, 6.5d, "seven"),
+                        row.subList(0, 8));
+    Assert.assertArrayEquals(new byte[] { 8, 9 }, (byte[]) row.get(8));
+    // values without a type of their own are sent as JSON
+    Assert.assertEquals("v", ((Map<?, ?>) row.get(9)).get("k"));
+    Assert.assertEquals(first.get(1), decoded.get(1));
+
+    Assert.assertEquals(second, QueryResultBatchCodec.decode(input));
+    Assert.assertNull(QueryResultBatchCodec.decode(input));
+    Assert.assertEquals(-1, input.read());
+  }
+}
@@ -21,6 +21,7 @@ import co.cask.cdap.explore.service.ExploreException;
 import co.cask.cdap.explore.service.ExploreService;
 import co.cask.cdap.explore.service.HandleNotFoundException;
 import co.cask.cdap.explore.service.hive.OperationInfo;
+import co.cask.cdap.explore.utils.QueryResultBatchCodec;
 import co.cask.cdap.proto.ColumnDesc;
 import co.cask.cdap.proto.QueryHandle;
 import co.cask.cdap.proto.QueryResult;
@@ -28,8 +29,11 @@ import co.cask.cdap.proto.QueryStatus;
 import co.cask.cdap.security.impersonation.ImpersonationUtils;
 import co.cask.http.HttpResponder;
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.Lists;
 import com.google.inject.Inject;
+import org.apache.hadoop.security.UserGroupInformation;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
 import org.jboss.netty.handler.codec.http.HttpRequest;
 import org.jboss.netty.handler.codec.http.HttpResponseStatus;
 import org.slf4j.Logger;
@@ -227,6 +231,44 @@ public class ExploreQueryExecutorHttpHandler extends AbstractExploreQueryExecuto
     }
   }
 
+  @POST
+  @Path("data/explore/queries/{id}/stream")
+  public void streamQueryResults(HttpRequest request, HttpResponder responder,
+                                 @PathParam("id") String id) throws IOException, ExploreException {
+    // NOTE: this call is a POST because it is not idempotent: cursor of results is moved
+    try {
+      final QueryHandle handle = QueryHandle.fromId(id);
+      Map<String, String> args = decodeArguments(request);
+      final int size = args.containsKey("size") ? Integer.valueOf(args.get("size")) : DOWNLOAD_FETCH_CHUNK_SIZE;
+      if (handle.equals(QueryHandle.NO_OP)) {
+        responder.sendByteArray(HttpResponseStatus.OK, QueryResultBatchCodec.endOfBatches(),
+                                ImmutableMultimap.of(HttpHeaders.Names.CONTENT_TYPE,
+                                                     QueryResultBatchCodec.CONTENT_TYPE));
+        return;
+      }
+      // fetch the first batch before responding, so that errors are returned with a proper status
+      UserGroupInformation ugi = exploreService.getOperationInfo(handle).getUGI();
+      List<QueryResult> results = doAs(handle, new Callable<List<QueryResult>>() {
+        @Override
+        public List<QueryResult> call() throws Exception {
+          return exploreService.nextResults(handle, size);
+        }
+      });
+      responder.sendContent(HttpResponseStatus.OK,
+                            new QueryResultBatchesBodyProducer(exploreService, handle, ugi, size, results),
+                            ImmutableMultimap.of(HttpHeaders.Names.CONTENT_TYPE, QueryResultBatchCodec.CONTENT_TYPE));
+    } catch (IllegalArgumentException e) {
+      LOG.debug("Got exception:", e);
+      responder.sendString(HttpResponseStatus.BAD_REQUEST, e.getMessage());
+    } catch (SQLException e) {
+      LOG.debug("Got exception:", e);
+      responder.sendString(HttpResponseStatus.BAD_REQUEST,
+                           String.format("[SQLState %s] %s", e.getSQLState(), e.getMessage()));
+    } catch (HandleNotFoundException e) {
+      responder.sendStatus(HttpResponseStatus.NOT_FOUND);
+    }
+  }
+
   @POST
   @Path("data/explore/queries/{id}/download")
   public void downloadQueryResults(HttpRequest request, final HttpResponder responder,
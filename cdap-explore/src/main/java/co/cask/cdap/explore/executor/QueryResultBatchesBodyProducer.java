@@ -0,0 +1,102 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.explore.executor;
+
+import co.cask.cdap.explore.service.ExploreService;
+import co.cask.cdap.explore.utils.QueryResultBatchCodec;
+import co.cask.cdap.proto.QueryHandle;
+import co.cask.cdap.proto.QueryResult;
+import co.cask.cdap.security.impersonation.ImpersonationUtils;
+import co.cask.http.BodyProducer;
+import org.apache.hadoop.security.UserGroupInformation;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * BodyProducer used for streaming the results of a query as binary batches encoded by {@link QueryResultBatchCodec},
+ * one batch per chunk. The stream ends with an empty batch once all results are fetched. Results are fetched as
+ * the user that submitted the query, the same way as the first batch is fetched by the handler.
+ */
+final class QueryResultBatchesBodyProducer extends BodyProducer {
+
+  private static final Logger LOG = LoggerFactory.getLogger(QueryResultBatchesBodyProducer.class);
+
+  private final ExploreService exploreService;
+  private final QueryHandle handle;
+  private final UserGroupInformation ugi;
+  private final int batchSize;
+
+  private List<QueryResult> results;
+  private boolean finished;
+
+  /**
+   * Creates a producer that starts with the given results, which the caller fetched already so that
+   * errors such as an unknown handle can be reported before the response starts.
+   */
+  QueryResultBatchesBodyProducer(ExploreService exploreService, QueryHandle handle, UserGroupInformation ugi,
+                                 int batchSize, List<QueryResult> firstResults) {
+    this.exploreService = exploreService;
+    this.handle = handle;
+    this.ugi = ugi;
+    this.batchSize = batchSize;
+    this.results = firstResults;
+  }
+
+  @Override
+  public ChannelBuffer nextChunk() throws Exception {
+    if (finished) {
+      return ChannelBuffers.EMPTY_BUFFER;
+    }
+    if (results == null) {
+      results = ImpersonationUtils.doAs(ugi, new Callable<List<QueryResult>>() {
+        @Override
+        public List<QueryResult> call() throws Exception {
+          return exploreService.nextResults(handle, batchSize);
+        }
+      });
+    }
+    if (results.isEmpty()) {
+      finished = true;
+      return ChannelBuffers.wrappedBuffer(QueryResultBatchCodec.endOfBatches());
+    }
+
+    ChannelBuffer chunk = ChannelBuffers.wrappedBuffer(QueryResultBatchCodec.encode(results));
+    results = null;
+    return chunk;
+  }
+
+  @Override
+  public void finished() throws Exception {
+    // nothing to release, the query handle is closed by the client
+  }
+
+  @Override
+  public void handleError(Throwable cause) {
+    if (cause instanceof ClosedChannelException) {
+      // the client may close the results before reading all of them
+      LOG.debug("Connection closed while streaming query results.", cause);
+      return;
+    }
+    LOG.error("Received error while streaming query results.", cause);
+  }
+}
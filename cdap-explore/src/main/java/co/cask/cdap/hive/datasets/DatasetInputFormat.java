@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -16,6 +16,7 @@
 
 package co.cask.cdap.hive.datasets;
 
+import co.cask.cdap.api.data.batch.ProjectableRecordScannable;
 import co.cask.cdap.api.data.batch.RecordScannable;
 import co.cask.cdap.api.data.batch.RecordScanner;
 import co.cask.cdap.api.data.batch.Split;
@@ -23,6 +24,7 @@ import com.google.common.base.Throwables;
 import com.google.gson.Gson;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.serde2.ColumnProjectionUtils;
 import org.apache.hadoop.hive.shims.ShimLoader;
 import org.apache.hadoop.io.ObjectWritable;
 import org.apache.hadoop.io.Text;
@@ -39,8 +41,10 @@ import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.Nullable;
 
 /**
  * Map reduce input format to read from datasets that implement RecordScannable.
@@ -84,6 +88,22 @@ public class DatasetInputFormat implements InputFormat<Void, ObjectWritable> {
     return new DatasetRecordReader(jobConf, datasetInputSplit);
   }
 
+  /**
+   * Returns the names of the columns that Hive reads from the table, or {@code null} if it reads all columns.
+   */
+  @Nullable
+  private static List<String> getReadColumnNames(Configuration conf) {
+    if (conf.getBoolean(ColumnProjectionUtils.READ_ALL_COLUMNS, true)) {
+      return null;
+    }
+    String columnNames = conf.get(ColumnProjectionUtils.READ_COLUMN_NAMES_CONF_STR);
+    // no column names are given if a query does not need any column, for example 'select count(*)'
+    if (columnNames == null || columnNames.isEmpty()) {
+      return null;
+    }
+    return Arrays.asList(columnNames.split(","));
+  }
+
   /**
    * This class duplicates all the functionality of
    * {@link co.cask.cdap.internal.app.runtime.batch.dataset.DataSetInputSplit}, but implements
@@ -150,6 +170,7 @@ public class DatasetInputFormat implements InputFormat<Void, ObjectWritable> {
     private final AtomicBoolean initialized;
     private final DatasetAccessor datasetAccessor;
     private final DatasetInputSplit datasetInputSplit;
+    private final List<String> readColumnNames;
     private RecordScannable recordScannable;
     private RecordScanner recordScanner;
 
@@ -157,20 +178,26 @@ public class DatasetInputFormat implements InputFormat<Void, ObjectWritable> {
       this.initialized = new AtomicBoolean(false);
       this.datasetAccessor = new DatasetAccessor(conf);
       this.datasetInputSplit = datasetInputSplit;
+      this.readColumnNames = getReadColumnNames(conf);
     }
 
     private void initialize() throws IOException {
       try {
         datasetAccessor.initialize();
         recordScannable = datasetAccessor.getDataset();
-        recordScanner = recordScannable.createSplitRecordScanner(
-          new Split() {
-            @Override
-            public long getLength() {
-              return datasetInputSplit.getLength();
-            }
+        Split split = new Split() {
+          @Override
+          public long getLength() {
+            return datasetInputSplit.getLength();
           }
-        );
+        };
+        // only read the columns that the query needs, if the dataset supports it
+        if (readColumnNames != null && recordScannable instanceof ProjectableRecordScannable) {
+          recordScanner = ((ProjectableRecordScannable) recordScannable).createSplitRecordScanner(split,
+                                                                                                  readColumnNames);
+        } else {
+          recordScanner = recordScannable.createSplitRecordScanner(split);
+        }
         recordScanner.initialize(datasetInputSplit.getDataSetSplit());
         initialized.set(true);
       } catch (InterruptedException ie) {
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -155,6 +155,12 @@ public class ObjectDeserializer {
       Schema.Field schemaField = fieldMap.get(hiveName);
       // use the name from the schema field in case it is not all lowercase
       Object recordField = getRecordField(obj, schemaField.getName());
+      // a record read with a projection does not contain the fields that the query does not need
+      if (recordField == null && obj instanceof StructuredRecord
+        && ((StructuredRecord) obj).getSchema().getField(schemaField.getName()) == null) {
+        objectFields.add(null);
+        continue;
+      }
       objectFields.add(deserializeField(recordField, fieldType, schemaField.getSchema()));
     }
     return objectFields;
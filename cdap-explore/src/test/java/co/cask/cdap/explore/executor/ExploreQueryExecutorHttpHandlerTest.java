@@ -0,0 +1,184 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.explore.executor;
+
+import co.cask.cdap.explore.client.ExploreClient;
+import co.cask.cdap.explore.client.ExploreExecutionResult;
+import co.cask.cdap.explore.client.FixedAddressExploreClient;
+import co.cask.cdap.explore.service.BaseHiveExploreServiceTest;
+import co.cask.cdap.explore.utils.QueryResultBatchCodec;
+import co.cask.cdap.proto.QueryHandle;
+import co.cask.cdap.proto.QueryResult;
+import co.cask.cdap.security.impersonation.Impersonator;
+import co.cask.http.AbstractHandlerHook;
+import co.cask.http.HandlerInfo;
+import co.cask.http.HttpHandler;
+import co.cask.http.HttpResponder;
+import co.cask.http.NettyHttpService;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.AtomicLongMap;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataInputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for streaming query results with the {@link ExploreQueryExecutorHttpHandler}.
+ */
+public class ExploreQueryExecutorHttpHandlerTest extends BaseHiveExploreServiceTest {
+
+  @ClassRule
+  public static TemporaryFolder tmpFolder = new TemporaryFolder();
+
+  // handler method name -> number of calls
+  private static final AtomicLongMap<String> CALLS = AtomicLongMap.create();
+  private static volatile boolean streamingEnabled;
+  private static NettyHttpService httpService;
+
+  @BeforeClass
+  public static void start() throws Exception {
+    initialize(tmpFolder);
+
+    List<HttpHandler> handlers = ImmutableList.<HttpHandler>of(
+      new NamespacedExploreQueryExecutorHttpHandler(exploreService, injector.getInstance(Impersonator.class)),
+      new ExploreQueryExecutorHttpHandler(exploreService));
+    httpService = NettyHttpService.builder()
+      .setHost("localhost")
+      .addHttpHandlers(handlers)
+      .setHandlerHooks(ImmutableList.of(new AbstractHandlerHook() {
+        @Override
+        public boolean preCall(HttpRequest request, HttpResponder responder, HandlerInfo handlerInfo) {
+          CALLS.incrementAndGet(handlerInfo.getMethodName());
+          if (!streamingEnabled && "streamQueryResults".equals(handlerInfo.getMethodName())) {
+            // simulates a server that does not have the streaming endpoint
+            responder.sendStatus(HttpResponseStatus.NOT_FOUND);
+            return false;
+          }
+          return true;
+        }
+      }))
+      .build();
+    httpService.startAndWait();
+  }
+
+  @AfterClass
+  public static void stop() throws Exception {
+    httpService.stopAndWait();
+  }
+
+  @Before
+  public void resetCalls() {
+    CALLS.clear();
+    streamingEnabled = true;
+  }
+
+  @Test
+  public void testStreamResults() throws Exception {
+    List<QueryResult> results = runQuery();
+    Assert.assertEquals(3, results.size());
+    Assert.assertEquals(1, CALLS.get("streamQueryResults"));
+    Assert.assertEquals(0, CALLS.get("getQueryNextResults"));
+
+    // the results are the same as the paged results
+    streamingEnabled = false;
+    Assert.assertEquals(results, runQuery());
+  }
+
+  @Test
+  public void testStreamFallback() throws Exception {
+    streamingEnabled = false;
+    List<QueryResult> results = runQuery();
+    Assert.assertEquals(3, results.size());
+    Assert.assertEquals(1, CALLS.get("streamQueryResults"));
+    // with a fetch size of one: one call per result, and one more to find that there are no more results
+    Assert.assertEquals(4, CALLS.get("getQueryNextResults"));
+  }
+
+  @Test
+  public void testStreamEndpoint() throws Exception {
+    QueryHandle handle = exploreService.execute(NAMESPACE_ID, "show databases");
+    waitForCompletionStatus(handle, 50, TimeUnit.MILLISECONDS, 200);
+
+    HttpURLConnection urlConn = openStream(handle, 2);
+    try {
+      Assert.assertEquals(HttpURLConnection.HTTP_OK, urlConn.getResponseCode());
+      Assert.assertEquals(QueryResultBatchCodec.CONTENT_TYPE, urlConn.getContentType());
+      // three results are streamed in batches of two, followed by the end marker
+      List<Integer> batchSizes = new ArrayList<>();
+      try (DataInputStream input = new DataInputStream(urlConn.getInputStream())) {
+        List<QueryResult> batch;
+        while ((batch = QueryResultBatchCodec.decode(input)) != null) {
+          batchSizes.add(batch.size());
+        }
+        Assert.assertEquals(-1, input.read());
+      }
+      Assert.assertEquals(ImmutableList.of(2, 1), batchSizes);
+    } finally {
+      urlConn.disconnect();
+      exploreService.close(handle);
+    }
+
+    // unknown handles are reported before the response starts
+    urlConn = openStream(QueryHandle.fromId(UUID.randomUUID().toString()), 2);
+    try {
+      Assert.assertEquals(HttpURLConnection.HTTP_NOT_FOUND, urlConn.getResponseCode());
+    } finally {
+      urlConn.disconnect();
+    }
+  }
+
+  private List<QueryResult> runQuery() throws Exception {
+    InetSocketAddress address = httpService.getBindAddress();
+    ExploreClient client = new FixedAddressExploreClient(address.getHostName(), address.getPort(), null, false, false);
+    try (ExploreExecutionResult result = client.submit(NAMESPACE_ID, "show databases").get()) {
+      result.setFetchSize(1);
+      return Lists.newArrayList(result);
+    } finally {
+      client.close();
+    }
+  }
+
+  private HttpURLConnection openStream(QueryHandle handle, int size) throws Exception {
+    InetSocketAddress address = httpService.getBindAddress();
+    URL url = new URL(String.format("http://%s:%d/v3/data/explore/queries/%s/stream",
+                                    address.getHostName(), address.getPort(), handle.getHandle()));
+    HttpURLConnection urlConn = (HttpURLConnection) url.openConnection();
+    urlConn.setRequestMethod("POST");
+    urlConn.setDoOutput(true);
+    try (OutputStream os = urlConn.getOutputStream()) {
+      os.write(String.format("{\"size\":%d}", size).getBytes(StandardCharsets.UTF_8));
+    }
+    return urlConn;
+  }
+}
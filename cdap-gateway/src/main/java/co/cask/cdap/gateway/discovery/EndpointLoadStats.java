@@ -0,0 +1,245 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.gateway.discovery;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Keeps track of the load of the endpoints that requests are routed to. For each endpoint, it tracks the number of
+ * outstanding requests, an exponentially weighted moving average (EWMA) of the response latency, and the number of
+ * consecutive failures. An endpoint that fails too many times in a row is ejected for a while, which makes
+ * {@link LeastLoadedEndpointStrategy} avoid it.
+ */
+@ThreadSafe
+public final class EndpointLoadStats {
+
+  // Weight of a new latency sample in the moving average
+  private static final double LATENCY_SAMPLE_WEIGHT = 0.2d;
+  // Latency assumed for an endpoint without samples, so that its score still grows with the outstanding requests
+  private static final long MIN_LATENCY_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private final int ejectionFailures;
+  private final long ejectionNanos;
+  private final Ticker ticker;
+  private final LoadingCache<InetSocketAddress, Endpoint> endpoints;
+  private final AtomicLong failures = new AtomicLong();
+
+  /**
+   * Creates an instance.
+   *
+   * @param ejectionFailures number of consecutive failures after which an endpoint is ejected
+   * @param ejectionTime time for which an endpoint stays ejected
+   * @param unit unit of the ejection time
+   */
+  public EndpointLoadStats(int ejectionFailures, long ejectionTime, TimeUnit unit) {
+    this(ejectionFailures, ejectionTime, unit, Ticker.systemTicker());
+  }
+
+  @VisibleForTesting
+  EndpointLoadStats(int ejectionFailures, long ejectionTime, TimeUnit unit, Ticker ticker) {
+    this.ejectionFailures = ejectionFailures;
+    this.ejectionNanos = unit.toNanos(ejectionTime);
+    this.ticker = ticker;
+    // Endpoints come and go with the services, hence drop the ones not used for a while
+    this.endpoints = CacheBuilder.newBuilder()
+      .expireAfterAccess(1, TimeUnit.HOURS)
+      .build(new CacheLoader<InetSocketAddress, Endpoint>() {
+        @Override
+        public Endpoint load(InetSocketAddress key) throws Exception {
+          return new Endpoint();
+        }
+      });
+  }
+
+  /**
+   * Records that a request has been sent to the given endpoint.
+   */
+  public void requestStarted(InetSocketAddress address) {
+    Endpoint endpoint = endpoints.getUnchecked(address);
+    synchronized (endpoint) {
+      endpoint.outstanding++;
+    }
+  }
+
+  /**
+   * Records that the response of a request to the given endpoint has been received.
+   *
+   * @param latencyNanos time between sending the request and receiving the complete response
+   */
+  public void requestCompleted(InetSocketAddress address, long latencyNanos) {
+    Endpoint endpoint = endpoints.getUnchecked(address);
+    synchronized (endpoint) {
+      endpoint.outstanding = Math.max(0, endpoint.outstanding - 1);
+      endpoint.latencyNanos = endpoint.latencyNanos < 0
+        ? latencyNanos
+        : endpoint.latencyNanos + LATENCY_SAMPLE_WEIGHT * (latencyNanos - endpoint.latencyNanos);
+      endpoint.consecutiveFailures = 0;
+    }
+  }
+
+  /**
+   * Records that the router gave up on a request to the given endpoint before its response was received, for
+   * example because the client went away. This is not held against the endpoint.
+   */
+  public void requestCancelled(InetSocketAddress address) {
+    Endpoint endpoint = endpoints.getUnchecked(address);
+    synchronized (endpoint) {
+      endpoint.outstanding = Math.max(0, endpoint.outstanding - 1);
+    }
+  }
+
+  /**
+   * Records that the connection to the given endpoint has been lost before the response of a request was received.
+   */
+  public void requestFailed(InetSocketAddress address) {
+    Endpoint endpoint = endpoints.getUnchecked(address);
+    synchronized (endpoint) {
+      endpoint.outstanding = Math.max(0, endpoint.outstanding - 1);
+      failed(endpoint);
+    }
+  }
+
+  /**
+   * Records that a connection to the given endpoint could not be established.
+   */
+  public void connectFailed(InetSocketAddress address) {
+    Endpoint endpoint = endpoints.getUnchecked(address);
+    synchronized (endpoint) {
+      failed(endpoint);
+    }
+  }
+
+  /**
+   * Returns whether the given endpoint is ejected because of repeated failures.
+   */
+  public boolean isEjected(InetSocketAddress address) {
+    Endpoint endpoint = endpoints.getIfPresent(address);
+    if (endpoint == null) {
+      return false;
+    }
+    synchronized (endpoint) {
+      return isEjected(endpoint);
+    }
+  }
+
+  /**
+   * Returns the load score of the given endpoint, which is the product of the number of outstanding requests plus one,
+   * and the average latency. An endpoint with a lower score is expected to respond faster.
+   */
+  public double getScore(InetSocketAddress address) {
+    Endpoint endpoint = endpoints.getIfPresent(address);
+    if (endpoint == null) {
+      return MIN_LATENCY_NANOS;
+    }
+    synchronized (endpoint) {
+      return (endpoint.outstanding + 1) * Math.max(endpoint.latencyNanos, MIN_LATENCY_NANOS);
+    }
+  }
+
+  /**
+   * Returns the total number of failures recorded so far.
+   */
+  public long getFailures() {
+    return failures.get();
+  }
+
+  /**
+   * Returns a summary of the current load of all endpoints.
+   */
+  public Summary getSummary() {
+    int outstanding = 0;
+    int ejected = 0;
+    double maxLatencyNanos = 0d;
+    for (Endpoint endpoint : endpoints.asMap().values()) {
+      synchronized (endpoint) {
+        outstanding += endpoint.outstanding;
+        if (isEjected(endpoint)) {
+          ejected++;
+        }
+        maxLatencyNanos = Math.max(maxLatencyNanos, endpoint.latencyNanos);
+      }
+    }
+    return new Summary(outstanding, ejected, (long) maxLatencyNanos);
+  }
+
+  private void failed(Endpoint endpoint) {
+    failures.incrementAndGet();
+    if (++endpoint.consecutiveFailures >= ejectionFailures && !isEjected(endpoint)) {
+      endpoint.ejectedUntilNanos = ticker.read() + ejectionNanos;
+      endpoint.consecutiveFailures = 0;
+    }
+  }
+
+  private boolean isEjected(Endpoint endpoint) {
+    return endpoint.ejectedUntilNanos != 0L && endpoint.ejectedUntilNanos - ticker.read() > 0;
+  }
+
+  /**
+   * Load information of one endpoint. All fields are guarded by the instance monitor.
+   */
+  private static final class Endpoint {
+    private int outstanding;
+    private double latencyNanos = -1d;
+    private int consecutiveFailures;
+    private long ejectedUntilNanos;
+  }
+
+  /**
+   * Summary of the load of all endpoints.
+   */
+  public static final class Summary {
+    private final int outstandingRequests;
+    private final int ejectedEndpoints;
+    private final long maxLatencyNanos;
+
+    private Summary(int outstandingRequests, int ejectedEndpoints, long maxLatencyNanos) {
+      this.outstandingRequests = outstandingRequests;
+      this.ejectedEndpoints = ejectedEndpoints;
+      this.maxLatencyNanos = maxLatencyNanos;
+    }
+
+    /**
+     * Returns the number of requests sent to any endpoint whose response has not been received yet.
+     */
+    public int getOutstandingRequests() {
+      return outstandingRequests;
+    }
+
+    /**
+     * Returns the number of endpoints currently ejected.
+     */
+    public int getEjectedEndpoints() {
+      return ejectedEndpoints;
+    }
+
+    /**
+     * Returns the highest average latency among all endpoints.
+     */
+    public long getMaxLatencyNanos() {
+      return maxLatencyNanos;
+    }
+  }
+}
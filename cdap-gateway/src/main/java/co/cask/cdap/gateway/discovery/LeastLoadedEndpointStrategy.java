@@ -0,0 +1,74 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.gateway.discovery;
+
+import co.cask.cdap.common.discovery.AbstractEndpointStrategy;
+import org.apache.twill.discovery.Discoverable;
+import org.apache.twill.discovery.ServiceDiscovered;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import javax.annotation.Nullable;
+
+/**
+ * Picks the less loaded of two randomly chosen endpoints, based on the {@link EndpointLoadStats}. Comparing two
+ * random endpoints, instead of always taking the least loaded one, avoids sending bursts of requests to the same
+ * endpoint before its load is updated. Ejected endpoints are skipped, unless all endpoints are ejected.
+ */
+public class LeastLoadedEndpointStrategy extends AbstractEndpointStrategy {
+
+  private final EndpointLoadStats loadStats;
+
+  public LeastLoadedEndpointStrategy(ServiceDiscovered serviceDiscovered, EndpointLoadStats loadStats) {
+    super(serviceDiscovered);
+    this.loadStats = loadStats;
+  }
+
+  @Nullable
+  @Override
+  public Discoverable pick() {
+    List<Discoverable> candidates = new ArrayList<>();
+    List<Discoverable> ejected = new ArrayList<>();
+    for (Discoverable discoverable : serviceDiscovered) {
+      if (loadStats.isEjected(discoverable.getSocketAddress())) {
+        ejected.add(discoverable);
+      } else {
+        candidates.add(discoverable);
+      }
+    }
+    if (candidates.isEmpty()) {
+      // Better to try an ejected endpoint than to fail the request right away
+      candidates = ejected;
+    }
+
+    int size = candidates.size();
+    if (size <= 1) {
+      return size == 0 ? null : candidates.get(0);
+    }
+
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    int first = random.nextInt(size);
+    // Pick a second index different from the first one
+    int second = (first + 1 + random.nextInt(size - 1)) % size;
+    Discoverable firstCandidate = candidates.get(first);
+    Discoverable secondCandidate = candidates.get(second);
+    double firstScore = loadStats.getScore(firstCandidate.getSocketAddress());
+    double secondScore = loadStats.getScore(secondCandidate.getSocketAddress());
+    return firstScore <= secondScore ? firstCandidate : secondCandidate;
+  }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2016 Cask Data, Inc.
+ * Copyright © 2016-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -55,6 +55,7 @@ class ClientChannelPipelineFactory implements ChannelPipelineFactory {
     pipeline.addLast("idle-event-generator",
                      new IdleStateHandler(timer, 0, 0, connectionTimeout));
     pipeline.addLast("idle-event-processor", new IdleEventProcessor());
+    // load tracker gets dynamically added last
     return pipeline;
   }
 }
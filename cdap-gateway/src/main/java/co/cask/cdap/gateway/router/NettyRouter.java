@@ -16,10 +16,14 @@
 
 package co.cask.cdap.gateway.router;
 
+import co.cask.cdap.api.metrics.MetricsCollectionService;
+import co.cask.cdap.api.metrics.MetricsContext;
 import co.cask.cdap.common.ServiceBindException;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.conf.SConfiguration;
+import co.cask.cdap.gateway.discovery.EndpointLoadStats;
+import co.cask.cdap.gateway.router.handlers.ConnectionPool;
 import co.cask.cdap.gateway.router.handlers.HttpRequestHandler;
 import co.cask.cdap.gateway.router.handlers.HttpStatusRequestHandler;
 import co.cask.cdap.gateway.router.handlers.SecurityAuthenticationHttpHandler;
@@ -33,6 +37,7 @@ import com.google.common.util.concurrent.AbstractIdleService;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
+import org.apache.twill.common.Threads;
 import org.apache.twill.discovery.DiscoveryServiceClient;
 import org.jboss.netty.bootstrap.ClientBootstrap;
 import org.jboss.netty.bootstrap.ServerBootstrap;
@@ -68,6 +73,7 @@ import java.util.Map;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -77,6 +83,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 public class NettyRouter extends AbstractIdleService {
   private static final Logger LOG = LoggerFactory.getLogger(NettyRouter.class);
   private static final int CLOSE_CHANNEL_TIMEOUT_SECS = 10;
+  private static final long METRICS_INTERVAL_SECS = 10L;
 
   private final int serverBossThreadPoolSize;
   private final int serverWorkerThreadPoolSize;
@@ -95,11 +102,14 @@ public class NettyRouter extends AbstractIdleService {
   private final boolean sslEnabled;
   private final SSLHandlerFactory sslHandlerFactory;
   private final int connectionTimeout;
+  private final ConnectionPool connectionPool;
 
   private Timer timer;
   private ServerBootstrap serverBootstrap;
   private ClientBootstrap clientBootstrap;
   private DiscoveryServiceClient discoveryServiceClient;
+  private MetricsCollectionService metricsCollectionService;
+  private ScheduledExecutorService metricsExecutor;
 
   @Inject
   public NettyRouter(CConfiguration cConf, SConfiguration sConf, @Named(Constants.Router.ADDRESS) InetAddress hostname,
@@ -143,10 +153,18 @@ public class NettyRouter extends AbstractIdleService {
       this.sslHandlerFactory = null;
     }
     this.connectionTimeout = cConf.getInt(Constants.Router.CONNECTION_TIMEOUT_SECS);
+    this.connectionPool = new ConnectionPool(cConf.getInt(Constants.Router.CLIENT_CONNECTION_POOL_SIZE));
     LOG.info("Using connection timeout: {}", connectionTimeout);
     LOG.info("Service to Port Mapping - {}", this.serviceToPortMap);
   }
 
+  @SuppressWarnings("unused")
+  @Inject(optional = true)
+  public void setMetricsCollectionService(MetricsCollectionService metricsCollectionService) {
+    // Optional injection is used since the router runs without a metrics client in some environments
+    this.metricsCollectionService = metricsCollectionService;
+  }
+
   @Override
   protected void startUp() throws ServiceBindException {
     ChannelUpstreamHandler connectionTracker = new SimpleChannelUpstreamHandler() {
@@ -164,12 +182,16 @@ public class NettyRouter extends AbstractIdleService {
     bootstrapClient(connectionTracker);
 
     bootstrapServer(connectionTracker);
+    startMetricsReporting();
   }
 
   @Override
   protected void shutDown() throws Exception {
     LOG.info("Stopping Netty Router...");
 
+    if (metricsExecutor != null) {
+      metricsExecutor.shutdownNow();
+    }
     try {
       if (!channelGroup.close().await(CLOSE_CHANNEL_TIMEOUT_SECS, TimeUnit.SECONDS)) {
         LOG.warn("Timeout when closing all channels.");
@@ -241,7 +263,8 @@ public class NettyRouter extends AbstractIdleService {
           }
           // for now there's only one hardcoded rule, but if there will be more, we may want it generic and configurable
           pipeline.addLast("http-request-handler",
-                           new HttpRequestHandler(clientBootstrap, serviceLookup, ImmutableList.<ProxyRule>of()));
+                           new HttpRequestHandler(clientBootstrap, serviceLookup, ImmutableList.<ProxyRule>of(),
+                                                  connectionPool));
           return pipeline;
         }
       }
@@ -300,6 +323,43 @@ public class NettyRouter extends AbstractIdleService {
     clientBootstrap.setOption("bufferFactory", new DirectChannelBufferFactory());
   }
 
+  /**
+   * Periodically emits the connection pool and endpoint load metrics, if a metrics collection service is available.
+   */
+  private void startMetricsReporting() {
+    if (metricsCollectionService == null) {
+      return;
+    }
+    final MetricsContext metricsContext = metricsCollectionService.getContext(Constants.Metrics.ROUTER_CONTEXT);
+    final EndpointLoadStats loadStats = serviceLookup.getEndpointLoadStats();
+    metricsExecutor = Executors.newSingleThreadScheduledExecutor(Threads.createDaemonThreadFactory("router-metrics"));
+    metricsExecutor.scheduleWithFixedDelay(new Runnable() {
+      private long lastReused;
+      private long lastCreated;
+      private long lastFailures;
+
+      @Override
+      public void run() {
+        long reused = connectionPool.getReusedCount();
+        long created = connectionPool.getCreatedCount();
+        long failures = loadStats.getFailures();
+        metricsContext.increment("router.connections.reused", reused - lastReused);
+        metricsContext.increment("router.connections.created", created - lastCreated);
+        metricsContext.increment("router.endpoint.failures", failures - lastFailures);
+        lastReused = reused;
+        lastCreated = created;
+        lastFailures = failures;
+
+        EndpointLoadStats.Summary summary = loadStats.getSummary();
+        metricsContext.gauge("router.connections.idle", connectionPool.getIdleCount());
+        metricsContext.gauge("router.requests.outstanding", summary.getOutstandingRequests());
+        metricsContext.gauge("router.endpoints.ejected", summary.getEjectedEndpoints());
+        metricsContext.gauge("router.endpoint.latency.max.ms",
+                             TimeUnit.NANOSECONDS.toMillis(summary.getMaxLatencyNanos()));
+      }
+    }, METRICS_INTERVAL_SECS, METRICS_INTERVAL_SECS, TimeUnit.SECONDS);
+  }
+
   private boolean isSSLEnabled() {
     return sslEnabled;
   }
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014-2015 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -16,6 +16,7 @@
 
 package co.cask.cdap.gateway.router;
 
+import co.cask.cdap.api.metrics.MetricsCollectionService;
 import co.cask.cdap.common.ServiceBindException;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
@@ -24,6 +25,8 @@ import co.cask.cdap.common.guice.DiscoveryRuntimeModule;
 import co.cask.cdap.common.guice.IOModule;
 import co.cask.cdap.common.guice.ZKClientModule;
 import co.cask.cdap.common.runtime.DaemonMain;
+import co.cask.cdap.messaging.guice.MessagingClientModule;
+import co.cask.cdap.metrics.guice.MetricsClientRuntimeModule;
 import co.cask.cdap.route.store.RouteStore;
 import co.cask.cdap.route.store.ZKRouteStore;
 import co.cask.cdap.security.guice.SecurityModules;
@@ -49,6 +52,7 @@ public class RouterMain extends DaemonMain {
 
   private CConfiguration cConf;
   private ZKClientService zkClientService;
+  private MetricsCollectionService metricsCollectionService;
   private NettyRouter router;
   private RouteStore routeStore;
 
@@ -93,6 +97,7 @@ public class RouterMain extends DaemonMain {
 
       Injector injector = createGuiceInjector(cConf);
       zkClientService = injector.getInstance(ZKClientService.class);
+      metricsCollectionService = injector.getInstance(MetricsCollectionService.class);
 
       // Get the Router
       router = injector.getInstance(NettyRouter.class);
@@ -117,6 +122,7 @@ public class RouterMain extends DaemonMain {
                                                                     "ZooKeeper quorum settings are correct in " +
                                                                     "cdap-site.xml. Currently configured as: %s",
                                                                     cConf.get(Constants.Zookeeper.QUORUM)));
+    metricsCollectionService.startAndWait();
     router.startAndWait();
     LOG.info("Router started.");
   }
@@ -124,7 +130,7 @@ public class RouterMain extends DaemonMain {
   @Override
   public void stop() {
     LOG.info("Stopping Router...");
-    Futures.getUnchecked(Services.chainStop(router, zkClientService));
+    Futures.getUnchecked(Services.chainStop(router, metricsCollectionService, zkClientService));
     try {
       routeStore.close();
     } catch (Exception ex) {
@@ -146,6 +152,8 @@ public class RouterMain extends DaemonMain {
       new RouterModules().getDistributedModules(),
       new SecurityModules().getDistributedModules(),
       new IOModule(),
+      new MessagingClientModule(),
+      new MetricsClientRuntimeModule().getDistributedModules(),
       new AbstractModule() {
         @Override
         protected void configure() {
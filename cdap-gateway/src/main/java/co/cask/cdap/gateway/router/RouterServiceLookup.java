@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -22,6 +22,8 @@ import co.cask.cdap.common.discovery.EndpointStrategy;
 import co.cask.cdap.common.discovery.RandomEndpointStrategy;
 import co.cask.cdap.common.service.ServiceDiscoverable;
 import co.cask.cdap.common.utils.Networks;
+import co.cask.cdap.gateway.discovery.EndpointLoadStats;
+import co.cask.cdap.gateway.discovery.LeastLoadedEndpointStrategy;
 import co.cask.cdap.gateway.discovery.RouteFallbackStrategy;
 import co.cask.cdap.gateway.discovery.UserServiceEndpointStrategy;
 import co.cask.cdap.route.store.RouteStore;
@@ -52,6 +54,7 @@ import java.util.concurrent.atomic.AtomicReference;
 public class RouterServiceLookup {
   private static final Logger LOG = LoggerFactory.getLogger(RouterServiceLookup.class);
   private static final String DEFAULT_SERVICE_NAME = "default";
+  private static final String LEAST_LOADED_STRATEGY = "least-loaded";
 
   private final AtomicReference<Map<Integer, String>> serviceMapRef =
     new AtomicReference<Map<Integer, String>>(ImmutableMap.<Integer, String>of());
@@ -61,6 +64,8 @@ public class RouterServiceLookup {
   private final RouterPathLookup routerPathLookup;
   private final RouteStore routeStore;
   private final RouteFallbackStrategy fallbackStrategy;
+  private final EndpointLoadStats endpointLoadStats;
+  private final boolean leastLoaded;
 
   @Inject
   public RouterServiceLookup(CConfiguration cConf, DiscoveryServiceClient discoveryServiceClient,
@@ -78,6 +83,10 @@ public class RouterServiceLookup {
     this.routeStore = routeStore;
     this.fallbackStrategy = RouteFallbackStrategy.valueOfRouteFallbackStrategy(
       cConf.get(Constants.Router.ROUTER_USERSERVICE_FALLBACK_STRAGEY));
+    this.endpointLoadStats = new EndpointLoadStats(cConf.getInt(Constants.Router.ENDPOINT_EJECTION_FAILURES),
+                                                   cConf.getLong(Constants.Router.ENDPOINT_EJECTION_SECS),
+                                                   TimeUnit.SECONDS);
+    this.leastLoaded = LEAST_LOADED_STRATEGY.equals(cConf.get(Constants.Router.LOAD_BALANCING_STRATEGY));
   }
 
   /**
@@ -140,6 +149,13 @@ public class RouterServiceLookup {
     }
   }
 
+  /**
+   * @return the load of the endpoints that requests are routed to.
+   */
+  public EndpointLoadStats getEndpointLoadStats() {
+    return endpointLoadStats;
+  }
+
   public void updateServiceMap(Map<Integer, String> serviceMap) {
     serviceMapRef.set(serviceMap);
   }
@@ -198,10 +214,16 @@ public class RouterServiceLookup {
     String serviceName = routeDestination.getServiceName();
     ServiceDiscovered serviceDiscovered = discoveryServiceClient.discover(serviceName);
 
-    EndpointStrategy endpointStrategy = ServiceDiscoverable.isServiceDiscoverable(serviceName) ?
-      new UserServiceEndpointStrategy(serviceDiscovered, routeStore, ServiceDiscoverable.getId(serviceName),
-                                      fallbackStrategy, routeDestination.getVersion()) :
-      new RandomEndpointStrategy(serviceDiscovered);
+    EndpointStrategy endpointStrategy;
+    if (ServiceDiscoverable.isServiceDiscoverable(serviceName)) {
+      endpointStrategy = new UserServiceEndpointStrategy(serviceDiscovered, routeStore,
+                                                         ServiceDiscoverable.getId(serviceName),
+                                                         fallbackStrategy, routeDestination.getVersion());
+    } else if (leastLoaded) {
+      endpointStrategy = new LeastLoadedEndpointStrategy(serviceDiscovered, endpointLoadStats);
+    } else {
+      endpointStrategy = new RandomEndpointStrategy(serviceDiscovered);
+    }
     if (endpointStrategy.pick(300L, TimeUnit.MILLISECONDS) == null) {
       LOG.debug("Discoverable endpoint {} not found", routeDestination);
     }
@@ -0,0 +1,121 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.gateway.router.handlers;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import org.jboss.netty.channel.Channel;
+
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Pool of idle keep-alive connections to the endpoints that requests are routed to, shared by all inbound
+ * connections of the router. At most a fixed number of idle connections are kept for each endpoint. The idle
+ * timeout of the client pipeline closes connections that stay in the pool for too long; such connections are
+ * dropped from the pool when they are acquired next.
+ */
+@ThreadSafe
+public final class ConnectionPool {
+
+  private final int maxIdlePerEndpoint;
+  private final LoadingCache<WrappedDiscoverable, BlockingDeque<Channel>> idleChannels;
+  private final AtomicLong reused = new AtomicLong();
+  private final AtomicLong created = new AtomicLong();
+
+  /**
+   * Creates a pool that keeps at most the given number of idle connections per endpoint.
+   * A pool with a size of zero does not keep any connection.
+   */
+  public ConnectionPool(final int maxIdlePerEndpoint) {
+    this.maxIdlePerEndpoint = maxIdlePerEndpoint;
+    this.idleChannels = CacheBuilder.newBuilder()
+      .expireAfterAccess(1, TimeUnit.HOURS)
+      .build(new CacheLoader<WrappedDiscoverable, BlockingDeque<Channel>>() {
+        @Override
+        public BlockingDeque<Channel> load(WrappedDiscoverable key) throws Exception {
+          return new LinkedBlockingDeque<>(Math.max(1, maxIdlePerEndpoint));
+        }
+      });
+  }
+
+  /**
+   * Takes an idle connection to the given endpoint from the pool.
+   *
+   * @return a connected {@link Channel}, or {@code null} if there is no idle connection to the endpoint
+   */
+  @Nullable
+  Channel acquire(WrappedDiscoverable discoverable) {
+    BlockingDeque<Channel> channels = idleChannels.getIfPresent(discoverable);
+    if (channels != null) {
+      // Take the most recently used one, which is the least likely to be closed by the idle timeout
+      Channel channel = channels.pollFirst();
+      while (channel != null) {
+        if (channel.isConnected()) {
+          reused.incrementAndGet();
+          return channel;
+        }
+        channel = channels.pollFirst();
+      }
+    }
+    created.incrementAndGet();
+    return null;
+  }
+
+  /**
+   * Puts an idle connection to the given endpoint into the pool.
+   *
+   * @return {@code true} if the connection is added to the pool, {@code false} if the pool for the endpoint is
+   *         full, in which case the caller should close the connection
+   */
+  boolean release(WrappedDiscoverable discoverable, Channel channel) {
+    if (maxIdlePerEndpoint <= 0 || !channel.isConnected()) {
+      return false;
+    }
+    return idleChannels.getUnchecked(discoverable).offerFirst(channel);
+  }
+
+  /**
+   * Returns the number of connections in the pool, including the ones that are closed but not yet removed.
+   */
+  public int getIdleCount() {
+    int count = 0;
+    for (BlockingDeque<Channel> channels : idleChannels.asMap().values()) {
+      count += channels.size();
+    }
+    return count;
+  }
+
+  /**
+   * Returns the number of times a connection has been taken from the pool.
+   */
+  public long getReusedCount() {
+    return reused.get();
+  }
+
+  /**
+   * Returns the number of times a new connection had to be opened because the pool had none.
+   */
+  public long getCreatedCount() {
+    return created.get();
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.gateway.router.handlers;
+
+import co.cask.cdap.gateway.discovery.EndpointLoadStats;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelHandler;
+import org.jboss.netty.handler.codec.http.HttpChunk;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.jboss.netty.handler.codec.http.HttpResponse;
+import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+
+import java.net.InetSocketAddress;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Tracks the requests sent over a connection to an endpoint and their responses, to record the load of the
+ * endpoint in the {@link EndpointLoadStats}, and to tell whether the connection can be reused for other requests.
+ * It must be the last handler of the client pipeline, so that it sees the decoded responses.
+ */
+final class EndpointLoadTracker extends SimpleChannelHandler {
+
+  private final EndpointLoadStats loadStats;
+  private final InetSocketAddress address;
+  // Start times of the requests whose response has not been received yet, in the order they were sent
+  private final Queue<Long> requestStartTimes;
+  private volatile boolean requestComplete = true;
+  private volatile boolean keepAlive = true;
+  // Whether the endpoint may have left the connection in a state where it cannot serve other requests
+  private volatile boolean broken;
+  // Whether the router closed the connection, as opposed to the endpoint
+  private volatile boolean closeRequested;
+
+  EndpointLoadTracker(EndpointLoadStats loadStats, InetSocketAddress address) {
+    this.loadStats = loadStats;
+    this.address = address;
+    this.requestStartTimes = new ConcurrentLinkedQueue<>();
+  }
+
+  /**
+   * Returns whether there is no request in progress over the connection, both sides agreed to keep it open, and
+   * none of the responses indicates that the endpoint may not serve further requests over it.
+   */
+  boolean isReusable() {
+    return requestComplete && keepAlive && !broken && requestStartTimes.isEmpty();
+  }
+
+  @Override
+  public void writeRequested(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+    Object message = e.getMessage();
+    if (message instanceof HttpRequest) {
+      HttpRequest request = (HttpRequest) message;
+      requestComplete = !request.isChunked();
+      keepAlive = keepAlive && HttpHeaders.isKeepAlive(request);
+      requestStartTimes.add(System.nanoTime());
+      loadStats.requestStarted(address);
+    } else if (message instanceof HttpChunk && ((HttpChunk) message).isLast()) {
+      requestComplete = true;
+    }
+    super.writeRequested(ctx, e);
+  }
+
+  @Override
+  public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+    Object message = e.getMessage();
+    if (message instanceof HttpResponse) {
+      HttpResponse response = (HttpResponse) message;
+      keepAlive = keepAlive && HttpHeaders.isKeepAlive(response);
+      broken = broken || isBrokenConnectionStatus(response.getStatus());
+      // An interim 100 Continue response is followed by the actual response
+      if (!response.isChunked() && !HttpResponseStatus.CONTINUE.equals(response.getStatus())) {
+        responseCompleted();
+      }
+    } else if (message instanceof HttpChunk && ((HttpChunk) message).isLast()) {
+      responseCompleted();
+    }
+    super.messageReceived(ctx, e);
+  }
+
+  @Override
+  public void closeRequested(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+    closeRequested = true;
+    super.closeRequested(ctx, e);
+  }
+
+  @Override
+  public void channelClosed(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+    keepAlive = false;
+    while (requestStartTimes.poll() != null) {
+      if (closeRequested) {
+        loadStats.requestCancelled(address);
+      } else {
+        loadStats.requestFailed(address);
+      }
+    }
+    super.channelClosed(ctx, e);
+  }
+
+  /**
+   * Returns whether a response with the given status may leave the connection unusable for other requests.
+   * Services built on the netty-http library without the {@link co.cask.cdap.common.http.RoutingFailureHandler}
+   * ignore all requests on a connection after they failed a request with an exception, which is answered with a
+   * server error. Since the router cannot tell such responses apart from an error returned by a handler, connections
+   * are not reused after any server error.
+   */
+  private boolean isBrokenConnectionStatus(HttpResponseStatus status) {
+    return status.getCode() >= HttpResponseStatus.INTERNAL_SERVER_ERROR.getCode();
+  }
+
+  private void responseCompleted() {
+    Long startTime = requestStartTimes.poll();
+    if (startTime != null) {
+      loadStats.requestCompleted(address, System.nanoTime() - startTime);
+    }
+  }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014-2015 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -19,6 +19,7 @@ package co.cask.cdap.gateway.router.handlers;
 import co.cask.cdap.common.HandlerException;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.discovery.EndpointStrategy;
+import co.cask.cdap.gateway.discovery.EndpointLoadStats;
 import co.cask.cdap.gateway.router.ProxyRule;
 import co.cask.cdap.gateway.router.RouterServiceLookup;
 import co.cask.cdap.security.tools.PermissiveTrustManagerFactory;
@@ -63,7 +64,8 @@ import javax.net.ssl.SSLEngine;
 
 /**
  * Handler that handles HTTP requests and forwards to appropriate services. The service discovery is
- * performed using Discovery service for forwarding.
+ * performed using Discovery service for forwarding. Connections to the services are taken from and returned to
+ * a {@link ConnectionPool} shared by all inbound connections.
  */
 public class HttpRequestHandler extends SimpleChannelUpstreamHandler {
 
@@ -71,6 +73,8 @@ public class HttpRequestHandler extends SimpleChannelUpstreamHandler {
 
   private final ClientBootstrap clientBootstrap;
   private final RouterServiceLookup serviceLookup;
+  private final ConnectionPool connectionPool;
+  private final EndpointLoadStats endpointLoadStats;
   // Data structure is used to clean up the channel futures on connection close.
   private final Map<WrappedDiscoverable, MessageSender> discoveryLookup;
   private final List<ProxyRule> proxyRules;
@@ -81,9 +85,12 @@ public class HttpRequestHandler extends SimpleChannelUpstreamHandler {
 
   public HttpRequestHandler(ClientBootstrap clientBootstrap,
                             RouterServiceLookup serviceLookup,
-                            List<ProxyRule> proxyRules) {
+                            List<ProxyRule> proxyRules,
+                            ConnectionPool connectionPool) {
     this.clientBootstrap = clientBootstrap;
     this.serviceLookup = serviceLookup;
+    this.connectionPool = connectionPool;
+    this.endpointLoadStats = serviceLookup.getEndpointLoadStats();
     this.discoveryLookup = new HashMap<>();
     this.proxyRules = proxyRules;
   }
@@ -116,50 +123,25 @@ public class HttpRequestHandler extends SimpleChannelUpstreamHandler {
       WrappedDiscoverable discoverable = getDiscoverable(request,
                                                          (InetSocketAddress) inboundChannel.getLocalAddress());
 
-      // If no event sender, make new connection, otherwise reuse existing one.
+      // If no event sender, take a pooled connection or make new connection, otherwise reuse existing one.
       MessageSender sender =  discoveryLookup.get(discoverable);
       if (sender == null || !sender.isConnected()) {
-        InetSocketAddress address = discoverable.getSocketAddress();
-
-        ChannelFuture future = clientBootstrap.connect(address);
-        final Channel outboundChannel = future.getChannel();
-        outboundChannel.getPipeline().addAfter("request-encoder",
-                                               "outbound-handler", new OutboundHandler(inboundChannel));
-        if (Arrays.equals(Constants.Security.SSL_URI_SCHEME.getBytes(), discoverable.getPayload())) {
-          SSLContext clientContext;
-          try {
-            clientContext = SSLContext.getInstance("TLS");
-            clientContext.init(null, PermissiveTrustManagerFactory.getTrustManagers(), null);
-          } catch (NoSuchAlgorithmException | KeyManagementException e) {
-            throw new RuntimeException("SSL is enabled for app-fabric but failed to create SSLContext in the router " +
-                                         "client.", e);
-          }
-          SSLEngine engine = clientContext.createSSLEngine();
-          engine.setUseClientMode(true);
-          engine.setEnabledProtocols(new String[] {"TLSv1.2", "TLSv1.1", "TLSv1"});
-          outboundChannel.getPipeline().addFirst("ssl", new SslHandler(engine));
-          LOG.trace("Adding ssl handler to the pipeline.");
+        Channel outboundChannel = connectionPool.acquire(discoverable);
+        ChannelFuture future;
+        if (outboundChannel != null) {
+          outboundChannel.getPipeline().get(OutboundHandler.class).setInboundChannel(inboundChannel);
+          // Reading may have been suspended for the previous inbound channel
+          outboundChannel.setReadable(true);
+          future = Channels.succeededFuture(outboundChannel);
+        } else {
+          future = connect(discoverable, inboundChannel);
+          outboundChannel = future.getChannel();
         }
         sender = new MessageSender(inboundChannel, future);
         discoveryLookup.put(discoverable, sender);
 
         // Remember the in-flight outbound channel
         inboundChannel.setAttachment(outboundChannel);
-        outboundChannel.getCloseFuture().addListener(new ChannelFutureListener() {
-          @Override
-          public void operationComplete(ChannelFuture future) throws Exception {
-            inboundChannel.getPipeline().execute(new Runnable() {
-              @Override
-              public void run() {
-                // When the outbound channel closed,
-                // close the inbound channel as well if it carries the in-flight request
-                if (outboundChannel.equals(inboundChannel.getAttachment())) {
-                  closeOnFlush(inboundChannel);
-                }
-              }
-            });
-          }
-        });
       } else {
         Channel outboundChannel = (Channel) inboundChannel.getAttachment();
         if (outboundChannel != null) {
@@ -182,6 +164,43 @@ public class HttpRequestHandler extends SimpleChannelUpstreamHandler {
     }
   }
 
+  /**
+   * Opens a new connection to the given endpoint, with its responses written to the given inbound channel.
+   */
+  private ChannelFuture connect(WrappedDiscoverable discoverable, Channel inboundChannel) {
+    final InetSocketAddress address = discoverable.getSocketAddress();
+
+    ChannelFuture future = clientBootstrap.connect(address);
+    Channel outboundChannel = future.getChannel();
+    outboundChannel.getPipeline().addAfter("request-encoder",
+                                           "outbound-handler", new OutboundHandler(inboundChannel));
+    outboundChannel.getPipeline().addLast("load-tracker", new EndpointLoadTracker(endpointLoadStats, address));
+    if (Arrays.equals(Constants.Security.SSL_URI_SCHEME.getBytes(), discoverable.getPayload())) {
+      SSLContext clientContext;
+      try {
+        clientContext = SSLContext.getInstance("TLS");
+        clientContext.init(null, PermissiveTrustManagerFactory.getTrustManagers(), null);
+      } catch (NoSuchAlgorithmException | KeyManagementException e) {
+        throw new RuntimeException("SSL is enabled for app-fabric but failed to create SSLContext in the router " +
+                                     "client.", e);
+      }
+      SSLEngine engine = clientContext.createSSLEngine();
+      engine.setUseClientMode(true);
+      engine.setEnabledProtocols(new String[] {"TLSv1.2", "TLSv1.1", "TLSv1"});
+      outboundChannel.getPipeline().addFirst("ssl", new SslHandler(engine));
+      LOG.trace("Adding ssl handler to the pipeline.");
+    }
+    future.addListener(new ChannelFutureListener() {
+      @Override
+      public void operationComplete(ChannelFuture future) throws Exception {
+        if (!future.isSuccess()) {
+          endpointLoadStats.connectFailed(address);
+        }
+      }
+    });
+    return future;
+  }
+
   private HttpRequest applyProxyRules(HttpRequest request) {
     for (ProxyRule rule : proxyRules) {
       request = rule.apply(request);
@@ -251,10 +270,12 @@ public class HttpRequestHandler extends SimpleChannelUpstreamHandler {
 
   @Override
   public void channelClosed(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
-    // Close all event sender
+    // Return the idle connections to the pool and close all other event senders
     LOG.trace("Channel closed {}", ctx.getChannel());
-    for (Closeable c : discoveryLookup.values()) {
-      Closeables.closeQuietly(c);
+    for (Map.Entry<WrappedDiscoverable, MessageSender> entry : discoveryLookup.entrySet()) {
+      if (!entry.getValue().release(entry.getKey(), connectionPool)) {
+        Closeables.closeQuietly(entry.getValue());
+      }
     }
     channelClosed = true;
     super.channelClosed(ctx, e);
@@ -363,6 +384,24 @@ public class HttpRequestHandler extends SimpleChannelUpstreamHandler {
       }
     }
 
+    /**
+     * Returns the connection to the given pool if it is idle and can be reused.
+     *
+     * @return {@code true} if the connection is added to the pool
+     */
+    private boolean release(WrappedDiscoverable discoverable, ConnectionPool pool) {
+      if (!channelFuture.isSuccess() || !messages.isEmpty()) {
+        return false;
+      }
+      Channel channel = channelFuture.getChannel();
+      EndpointLoadTracker tracker = channel.getPipeline().get(EndpointLoadTracker.class);
+      if (tracker == null || !tracker.isReusable()) {
+        return false;
+      }
+      channel.getPipeline().get(OutboundHandler.class).setInboundChannel(null);
+      return pool.release(discoverable, channel);
+    }
+
     @Override
     public void close() throws IOException {
       closeOnFlush(channelFuture.getChannel());
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -29,21 +29,37 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.nio.channels.ClosedChannelException;
+import javax.annotation.Nullable;
 
 /**
- * Handles requests to and from a discoverable endpoint.
+ * Handles requests to and from a discoverable endpoint. The connection can be handed over to another inbound
+ * channel through the {@link ConnectionPool}.
  */
 public class OutboundHandler extends SimpleChannelUpstreamHandler {
   private static final Logger LOG = LoggerFactory.getLogger(OutboundHandler.class);
 
-  private final Channel inboundChannel;
+  private volatile Channel inboundChannel;
 
   public OutboundHandler(Channel inboundChannel) {
     this.inboundChannel = inboundChannel;
   }
 
+  /**
+   * Sets the inbound channel that responses are written to, or {@code null} while the connection is in the pool.
+   */
+  void setInboundChannel(@Nullable Channel inboundChannel) {
+    this.inboundChannel = inboundChannel;
+  }
+
   @Override
   public void messageReceived(ChannelHandlerContext ctx, MessageEvent event) throws Exception {
+    Channel inboundChannel = this.inboundChannel;
+    if (inboundChannel == null) {
+      // Nothing is expected while the connection is idle in the pool
+      LOG.trace("Unexpected message on idle connection {}", ctx.getChannel());
+      HttpRequestHandler.closeOnFlush(ctx.getChannel());
+      return;
+    }
     // write the channel buffer to inbound channel
     ChannelBuffer wrappedMessage = ChannelBuffers.wrappedBuffer((ChannelBuffer) event.getMessage());
     Channels.write(inboundChannel, wrappedMessage);
@@ -52,6 +68,10 @@ public class OutboundHandler extends SimpleChannelUpstreamHandler {
 
   @Override
   public void channelInterestChanged(ChannelHandlerContext ctx, final ChannelStateEvent e) throws Exception {
+    final Channel inboundChannel = this.inboundChannel;
+    if (inboundChannel == null) {
+      return;
+    }
     inboundChannel.getPipeline().execute(new Runnable() {
       @Override
       public void run() {
@@ -69,6 +89,25 @@ public class OutboundHandler extends SimpleChannelUpstreamHandler {
     });
   }
 
+  @Override
+  public void channelClosed(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+    final Channel outboundChannel = ctx.getChannel();
+    final Channel inboundChannel = this.inboundChannel;
+    if (inboundChannel != null) {
+      inboundChannel.getPipeline().execute(new Runnable() {
+        @Override
+        public void run() {
+          // When the outbound channel closed,
+          // close the inbound channel as well if it carries the in-flight request
+          if (outboundChannel.equals(inboundChannel.getAttachment())) {
+            HttpRequestHandler.closeOnFlush(inboundChannel);
+          }
+        }
+      });
+    }
+    super.channelClosed(ctx, e);
+  }
+
   @Override
   public void exceptionCaught(ChannelHandlerContext ctx, ExceptionEvent e) throws Exception {
     Throwable cause = e.getCause();
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014-2015 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -130,6 +130,8 @@ public abstract class GatewayTestBase {
     conf.set(Constants.Router.ADDRESS, hostname);
     conf.setInt(Constants.Router.ROUTER_PORT, 0);
     conf.set(Constants.CFG_LOCAL_DATA_DIR, tmpFolder.newFolder().getAbsolutePath());
+    // Small buffer for pipelined stream ingestion, so that requests larger than it have to be suspended
+    conf.setInt(Constants.Stream.ASYNC_BUFFER_SIZE, 4096);
     injector = startGateway(conf);
   }
 
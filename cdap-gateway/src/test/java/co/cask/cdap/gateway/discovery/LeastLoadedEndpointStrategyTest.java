@@ -0,0 +1,164 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.gateway.discovery;
+
+import com.google.common.base.Ticker;
+import org.apache.twill.common.Cancellable;
+import org.apache.twill.discovery.Discoverable;
+import org.apache.twill.discovery.ServiceDiscovered;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for {@link LeastLoadedEndpointStrategy}.
+ */
+public class LeastLoadedEndpointStrategyTest {
+
+  @Test
+  public void testLeastLoaded() {
+    List<Discoverable> candidates = createCandidates(2);
+    InetSocketAddress busy = candidates.get(0).getSocketAddress();
+    InetSocketAddress idle = candidates.get(1).getSocketAddress();
+
+    EndpointLoadStats loadStats = new EndpointLoadStats(3, 30, TimeUnit.SECONDS);
+    LeastLoadedEndpointStrategy strategy = new LeastLoadedEndpointStrategy(new SimpleServiceDiscovered(candidates),
+                                                                           loadStats);
+    for (int i = 0; i < 3; i++) {
+      loadStats.requestStarted(busy);
+    }
+    for (int i = 0; i < 100; i++) {
+      Assert.assertEquals(idle, strategy.pick().getSocketAddress());
+    }
+
+    // A slow endpoint should be avoided once the outstanding requests are completed
+    for (int i = 0; i < 3; i++) {
+      loadStats.requestCompleted(busy, TimeUnit.SECONDS.toNanos(1));
+    }
+    loadStats.requestStarted(idle);
+    loadStats.requestCompleted(idle, TimeUnit.MILLISECONDS.toNanos(5));
+    for (int i = 0; i < 100; i++) {
+      Assert.assertEquals(idle, strategy.pick().getSocketAddress());
+    }
+    Assert.assertEquals(0, loadStats.getSummary().getOutstandingRequests());
+    Assert.assertEquals(TimeUnit.SECONDS.toNanos(1), loadStats.getSummary().getMaxLatencyNanos());
+  }
+
+  @Test
+  public void testEjection() {
+    List<Discoverable> candidates = createCandidates(3);
+    InetSocketAddress failing = candidates.get(0).getSocketAddress();
+
+    ManualTicker ticker = new ManualTicker();
+    EndpointLoadStats loadStats = new EndpointLoadStats(3, 30, TimeUnit.SECONDS, ticker);
+    LeastLoadedEndpointStrategy strategy = new LeastLoadedEndpointStrategy(new SimpleServiceDiscovered(candidates),
+                                                                           loadStats);
+
+    // Not ejected before the number of consecutive failures is reached
+    loadStats.connectFailed(failing);
+    loadStats.connectFailed(failing);
+    Assert.assertFalse(loadStats.isEjected(failing));
+    loadStats.connectFailed(failing);
+    Assert.assertTrue(loadStats.isEjected(failing));
+    Assert.assertEquals(1, loadStats.getSummary().getEjectedEndpoints());
+    Assert.assertEquals(3, loadStats.getFailures());
+
+    for (int i = 0; i < 100; i++) {
+      Assert.assertNotEquals(failing, strategy.pick().getSocketAddress());
+    }
+
+    // The endpoint comes back after the ejection time
+    ticker.advance(TimeUnit.SECONDS.toNanos(31));
+    Assert.assertFalse(loadStats.isEjected(failing));
+    Set<InetSocketAddress> picked = new HashSet<>();
+    for (int i = 0; i < 1000; i++) {
+      picked.add(strategy.pick().getSocketAddress());
+    }
+    Assert.assertTrue(picked.contains(failing));
+
+    // If all endpoints are ejected, still pick one of them
+    for (Discoverable candidate : candidates) {
+      for (int i = 0; i < 3; i++) {
+        loadStats.requestStarted(candidate.getSocketAddress());
+        loadStats.requestFailed(candidate.getSocketAddress());
+      }
+    }
+    Assert.assertEquals(3, loadStats.getSummary().getEjectedEndpoints());
+    Assert.assertNotNull(strategy.pick());
+
+    // No endpoint at all
+    candidates.clear();
+    Assert.assertNull(strategy.pick());
+  }
+
+  private List<Discoverable> createCandidates(int count) {
+    List<Discoverable> candidates = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      candidates.add(new Discoverable("service", InetSocketAddress.createUnresolved("host" + i, 10000 + i)));
+    }
+    return candidates;
+  }
+
+  private static final class ManualTicker extends Ticker {
+    private long nanos;
+
+    @Override
+    public long read() {
+      return nanos;
+    }
+
+    void advance(long nanos) {
+      this.nanos += nanos;
+    }
+  }
+
+  private static class SimpleServiceDiscovered implements ServiceDiscovered {
+    private final List<Discoverable> discoverables;
+
+    SimpleServiceDiscovered(List<Discoverable> discoverables) {
+      this.discoverables = discoverables;
+    }
+
+    @Override
+    public String getName() {
+      return null;
+    }
+
+    @Override
+    public Cancellable watchChanges(ChangeListener changeListener, Executor executor) {
+      return null;
+    }
+
+    @Override
+    public boolean contains(Discoverable discoverable) {
+      return false;
+    }
+
+    @Override
+    public Iterator<Discoverable> iterator() {
+      return discoverables.iterator();
+    }
+  }
+}
@@ -20,8 +20,12 @@ import co.cask.cdap.api.data.format.FormatSpecification;
 import co.cask.cdap.api.data.format.Formats;
 import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.api.flow.flowlet.StreamEvent;
+import co.cask.cdap.api.stream.StreamEventData;
 import co.cask.cdap.common.NamespaceNotFoundException;
 import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.io.BinaryEncoder;
+import co.cask.cdap.common.io.Encoder;
+import co.cask.cdap.common.stream.StreamEventDataCodec;
 import co.cask.cdap.common.stream.StreamEventTypeAdapter;
 import co.cask.cdap.common.utils.Tasks;
 import co.cask.cdap.data2.transaction.stream.StreamConfig;
@@ -39,14 +43,18 @@ import co.cask.common.http.HttpRequest;
 import co.cask.common.http.HttpRequests;
 import co.cask.common.http.HttpResponse;
 import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.io.ByteStreams;
+import com.google.common.primitives.Bytes;
 import com.google.common.reflect.TypeToken;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import org.apache.commons.lang3.ArrayUtils;
 import org.jboss.netty.handler.codec.http.HttpMethod;
@@ -55,11 +63,15 @@ import org.junit.After;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
@@ -244,6 +256,71 @@ public class StreamHandlerTest extends GatewayTestBase {
     urlConn.disconnect();
   }
 
+  @Test
+  public void testPipelineEnqueue() throws Exception {
+    StreamId streamId = NamespaceId.DEFAULT.stream("test_stream_pipeline");
+    createStream(streamId);
+
+    // The frames are sent in small chunks, hence split across chunks
+    HttpURLConnection urlConn = sendPipeline(streamId, Bytes.concat(frame(batch(2, "0", "1")),
+                                                                    frame(batch(1, "2")),
+                                                                    frame(batch(3, "3", "4", "5"))));
+    Assert.assertEquals(HttpResponseStatus.OK.getCode(), urlConn.getResponseCode());
+    JsonObject result = new JsonParser().parse(new String(ByteStreams.toByteArray(urlConn.getInputStream()),
+                                                          Charsets.UTF_8)).getAsJsonObject();
+    urlConn.disconnect();
+    Assert.assertEquals(3, result.get("batches").getAsInt());
+    Assert.assertEquals(6L, result.get("events").getAsLong());
+    Assert.assertEquals(ImmutableList.of("0", "1", "2", "3", "4", "5"), fetchEvents(streamId));
+
+    // Invalid frame lengths
+    for (int length : new int[] { -1, Integer.MAX_VALUE }) {
+      urlConn = sendPipeline(streamId, ByteBuffer.allocate(4).putInt(length).array());
+      Assert.assertEquals(HttpResponseStatus.BAD_REQUEST.getCode(), urlConn.getResponseCode());
+      urlConn.disconnect();
+    }
+
+    // Truncated last frame
+    byte[] frame = frame(batch(1, "6"));
+    urlConn = sendPipeline(streamId, Arrays.copyOf(frame, frame.length - 1));
+    Assert.assertEquals(HttpResponseStatus.BAD_REQUEST.getCode(), urlConn.getResponseCode());
+    urlConn.disconnect();
+    Assert.assertEquals(6, fetchEvents(streamId).size());
+
+    // A failing batch, the ones before it are persisted and reported
+    urlConn = sendPipeline(streamId, Bytes.concat(frame(batch(2, "6", "7")), frame(batch(-1)),
+                                                  frame(batch(1, "8"))));
+    Assert.assertEquals(HttpResponseStatus.INTERNAL_SERVER_ERROR.getCode(), urlConn.getResponseCode());
+    result = new JsonParser().parse(new String(ByteStreams.toByteArray(urlConn.getErrorStream()),
+                                               Charsets.UTF_8)).getAsJsonObject();
+    urlConn.disconnect();
+    Assert.assertEquals(1, result.get("batches").getAsInt());
+    Assert.assertEquals(2L, result.get("events").getAsLong());
+    Assert.assertEquals(ImmutableList.of("0", "1", "2", "3", "4", "5", "6", "7"), fetchEvents(streamId));
+
+    // A request much larger than the async buffer of the stream writer, which suspends reading while it is full
+    List<String> bodies = Lists.newArrayList();
+    List<byte[]> frames = Lists.newArrayList();
+    for (int i = 0; i < 100; i++) {
+      List<String> batchBodies = Lists.newArrayList();
+      for (int j = 0; j < 10; j++) {
+        batchBodies.add(Strings.padStart(Integer.toString(i * 10 + j), 100, '0'));
+      }
+      bodies.addAll(batchBodies);
+      frames.add(frame(batch(batchBodies.size(), batchBodies.toArray(new String[batchBodies.size()]))));
+    }
+    StreamId largeStreamId = NamespaceId.DEFAULT.stream("test_stream_pipeline_large");
+    createStream(largeStreamId);
+    urlConn = sendPipeline(largeStreamId, Bytes.concat(frames.toArray(new byte[frames.size()][])), 1024);
+    Assert.assertEquals(HttpResponseStatus.OK.getCode(), urlConn.getResponseCode());
+    result = new JsonParser().parse(new String(ByteStreams.toByteArray(urlConn.getInputStream()),
+                                               Charsets.UTF_8)).getAsJsonObject();
+    urlConn.disconnect();
+    Assert.assertEquals(100, result.get("batches").getAsInt());
+    Assert.assertEquals(1000L, result.get("events").getAsLong());
+    Assert.assertEquals(bodies, fetchEvents(largeStreamId));
+  }
+
   @Test
   public void testListStreams() throws Exception {
     List<StreamDetail> specs = listStreams(NamespaceId.DEFAULT);
@@ -485,6 +562,36 @@ public class StreamHandlerTest extends GatewayTestBase {
     Assert.assertEquals(200, response.getResponseCode());
   }
 
+  private HttpURLConnection sendPipeline(StreamId streamId, byte[] body) throws Exception {
+    return sendPipeline(streamId, body, 7);
+  }
+
+  private HttpURLConnection sendPipeline(StreamId streamId, byte[] body, int chunkSize) throws Exception {
+    URL url = createURL(streamId.getNamespace(), "streams/" + streamId.getEntityName() + "/pipeline");
+    HttpURLConnection urlConn = openURL(url, HttpMethod.POST);
+    urlConn.setDoOutput(true);
+    urlConn.setChunkedStreamingMode(chunkSize);
+    try (OutputStream os = urlConn.getOutputStream()) {
+      os.write(body);
+    }
+    return urlConn;
+  }
+
+  private byte[] batch(int count, String... bodies) throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    Encoder encoder = new BinaryEncoder(os);
+    encoder.writeInt(count);
+    for (String body : bodies) {
+      StreamEventDataCodec.encode(new StreamEventData(ImmutableMap.<String, String>of(),
+                                                      Charsets.UTF_8.encode(body)), encoder);
+    }
+    return os.toByteArray();
+  }
+
+  private byte[] frame(byte[] batch) {
+    return ByteBuffer.allocate(4 + batch.length).putInt(batch.length).put(batch).array();
+  }
+
   private List<String> fetchEvents(StreamId streamId) throws Exception {
     URL url = createURL(streamId.getNamespace(), "streams/" + streamId.getEntityName() + "/events");
     HttpRequest request = HttpRequest.get(url).build();
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014-2015 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -18,6 +18,7 @@ package co.cask.cdap.gateway.router;
 
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.discovery.ResolvingDiscoverable;
+import co.cask.cdap.common.http.RoutingFailureHandler;
 import co.cask.http.AbstractHttpHandler;
 import co.cask.http.ChunkResponder;
 import co.cask.http.HttpResponder;
@@ -30,6 +31,7 @@ import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
 import com.google.common.util.concurrent.AbstractIdleService;
 import com.ning.http.client.AsyncCompletionHandler;
 import com.ning.http.client.AsyncHttpClient;
@@ -311,6 +313,78 @@ public abstract class NettyRouterTestBase {
     Assert.assertEquals(times, defaultServer1.getNumRequests() + defaultServer2.getNumRequests());
   }
 
+  @Test(timeout = 30000)
+  public void testConnectionPool() throws Exception {
+    defaultServer2.cancelRegistration();
+
+    // Each request is made on a new client connection, which is closed after the response. The connection to the
+    // server is returned to the pool when the client connection closes, and is reused by the next client.
+    Assert.assertEquals(200, requestOnNewConnection("GET", "/v1/ping/1", null));
+    Assert.assertEquals(200, requestOnNewConnection("GET", "/v1/ping/2", null));
+    Assert.assertEquals(1, defaultServer1.getNumConnectionsOpened());
+
+    // Requests that cannot be routed by the server are answered on a used connection, which stays usable
+    Assert.assertEquals(404, requestOnNewConnection("POST", "/v1/unknown/3", "body"));
+    Assert.assertEquals(200, requestOnNewConnection("GET", "/v1/ping/4", null));
+    Assert.assertEquals(404, requestOnNewConnection("GET", "/v1/unknown/5", null));
+    Assert.assertEquals(405, requestOnNewConnection("POST", "/v1/ping/6", "body"));
+    Assert.assertEquals(200, requestOnNewConnection("GET", "/v1/ping/7", null));
+    Assert.assertEquals(1, defaultServer1.getNumConnectionsOpened());
+    Assert.assertEquals(4, defaultServer1.getNumRequests());
+  }
+
+  /**
+   * Makes a keep-alive request on a new connection to the router and closes the connection after the response.
+   *
+   * @return the status code of the response
+   */
+  private int requestOnNewConnection(String method, String path, @Nullable String body) throws Exception {
+    URI uri = new URI(resolveURI(Constants.Router.GATEWAY_DISCOVERY_NAME, path));
+    try (Socket socket = getSocketFactory().createSocket(uri.getHost(), uri.getPort())) {
+      OutputStream os = socket.getOutputStream();
+      StringBuilder request = new StringBuilder()
+        .append(method).append(' ').append(uri.getPath()).append(" HTTP/1.1\r\n")
+        .append("Host: ").append(uri.getHost()).append("\r\n")
+        .append("Connection: keep-alive\r\n");
+      if (body != null) {
+        request.append("Transfer-Encoding: chunked\r\n\r\n")
+          .append(Integer.toHexString(body.length())).append("\r\n").append(body).append("\r\n")
+          .append("0\r\n\r\n");
+      } else {
+        request.append("\r\n");
+      }
+      os.write(request.toString().getBytes(Charsets.UTF_8));
+      os.flush();
+
+      // Read the status line and the headers, followed by the body
+      InputStream is = socket.getInputStream();
+      String statusLine = readLine(is);
+      int contentLength = 0;
+      for (String line = readLine(is); !line.isEmpty(); line = readLine(is)) {
+        if (line.toLowerCase().startsWith("content-length:")) {
+          contentLength = Integer.parseInt(line.substring("content-length:".length()).trim());
+        }
+      }
+      ByteStreams.skipFully(is, contentLength);
+      return Integer.parseInt(statusLine.split(" ")[1]);
+    } finally {
+      // The connection to the server is released by the router asynchronously after the client connection closed
+      TimeUnit.MILLISECONDS.sleep(200);
+    }
+  }
+
+  private String readLine(InputStream is) throws IOException {
+    StringBuilder line = new StringBuilder();
+    int c = is.read();
+    while (c >= 0 && c != '\n') {
+      if (c != '\r') {
+        line.append((char) c);
+      }
+      c = is.read();
+    }
+    return line.toString();
+  }
+
   // have a timeout of 10 seconds, in case the final call to reader.read hangs (in the case that connection isn't
   // disconnected)
   @Test(timeout = 10000)
@@ -529,7 +603,7 @@ public abstract class NettyRouterTestBase {
               super.channelClosed(ctx, e);
             }
           });
-          return input;
+          return RoutingFailureHandler.wrapRouter(input);
         }
       });
       httpService = builder.build();
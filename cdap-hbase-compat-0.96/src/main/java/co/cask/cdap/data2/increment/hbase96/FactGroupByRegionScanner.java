@@ -0,0 +1,146 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.increment.hbase96;
+
+import co.cask.cdap.data2.dataset2.lib.timeseries.FactGroupBy;
+import co.cask.cdap.data2.dataset2.lib.timeseries.FactGroupByAggregator;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HRegionInfo;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.regionserver.RegionScanner;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Aggregates the rows of a region as defined by a {@link FactGroupBy}, so that only aggregated rows are returned
+ * to the client. Each call to {@code next()} aggregates a range of at most {@link FactGroupBy#MAX_RANGE_ROWS} rows
+ * into a single row in the packed form of {@link FactGroupByAggregator#toPackedColumns()}, which has the key of the
+ * last row of the range. This bounds the work of every call, and a scan that is restarted after the last row
+ * returned, e.g. after the scanner expired, continues at the start of the next range. The first call aggregates
+ * a single row, since some clients restart a scan at the last row returned and skip the first row of the new
+ * scanner.
+ * <p/>
+ * Calls that limit the number of cells returned are passed to the wrapped scanner, which returns the stored rows.
+ */
+class FactGroupByRegionScanner implements RegionScanner {
+
+  private final RegionScanner scanner;
+  private final FactGroupBy groupBy;
+  private boolean firstRange = true;
+
+  FactGroupByRegionScanner(RegionScanner scanner, FactGroupBy groupBy) {
+    this.scanner = scanner;
+    this.groupBy = groupBy;
+  }
+
+  @Override
+  public HRegionInfo getRegionInfo() {
+    return scanner.getRegionInfo();
+  }
+
+  @Override
+  public boolean isFilterDone() throws IOException {
+    return scanner.isFilterDone();
+  }
+
+  @Override
+  public boolean reseek(byte[] bytes) throws IOException {
+    throw new UnsupportedOperationException("RegionScanner.reseek() is not supported when aggregating facts");
+  }
+
+  @Override
+  public long getMaxResultSize() {
+    return scanner.getMaxResultSize();
+  }
+
+  @Override
+  public long getMvccReadPoint() {
+    return scanner.getMvccReadPoint();
+  }
+
+  @Override
+  public boolean nextRaw(List<Cell> cells) throws IOException {
+    return nextRange(cells, true);
+  }
+
+  @Override
+  public boolean nextRaw(List<Cell> cells, int limit) throws IOException {
+    return limit > 0 ? scanner.nextRaw(cells, limit) : nextRange(cells, true);
+  }
+
+  @Override
+  public boolean next(List<Cell> cells) throws IOException {
+    return nextRange(cells, false);
+  }
+
+  @Override
+  public boolean next(List<Cell> cells, int limit) throws IOException {
+    return limit > 0 ? scanner.next(cells, limit) : nextRange(cells, false);
+  }
+
+  private boolean nextRange(List<Cell> cells, boolean raw) throws IOException {
+    FactGroupByAggregator aggregator = new FactGroupByAggregator(groupBy);
+    int maxRows = firstRange ? 1 : FactGroupBy.MAX_RANGE_ROWS;
+    firstRange = false;
+
+    List<Cell> rowCells = new ArrayList<>();
+    byte[] lastRow = null;
+    byte[] family = null;
+    // the newest timestamp of all aggregated cells, used for the cells returned
+    long timestamp = 0;
+    boolean hasMore;
+    do {
+      rowCells.clear();
+      hasMore = raw ? scanner.nextRaw(rowCells) : scanner.next(rowCells);
+      if (rowCells.isEmpty()) {
+        continue;
+      }
+      // cells of a column are sorted from newest to oldest, only the newest is used
+      NavigableMap<byte[], byte[]> columns = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+      for (Cell cell : rowCells) {
+        byte[] qualifier = CellUtil.cloneQualifier(cell);
+        if (!columns.containsKey(qualifier)) {
+          columns.put(qualifier, CellUtil.cloneValue(cell));
+        }
+        timestamp = Math.max(timestamp, cell.getTimestamp());
+      }
+      lastRow = CellUtil.cloneRow(rowCells.get(0));
+      family = CellUtil.cloneFamily(rowCells.get(0));
+      aggregator.add(lastRow, columns);
+    } while (hasMore && aggregator.getStoredRows() < maxRows);
+
+    if (lastRow != null) {
+      for (Map.Entry<byte[], byte[]> column : aggregator.toPackedColumns().entrySet()) {
+        cells.add(CellUtil.createCell(lastRow, family, column.getKey(), timestamp,
+                                      KeyValue.Type.Put.getCode(), column.getValue()));
+      }
+    }
+    return hasMore;
+  }
+
+  @Override
+  public void close() throws IOException {
+    scanner.close();
+  }
+}
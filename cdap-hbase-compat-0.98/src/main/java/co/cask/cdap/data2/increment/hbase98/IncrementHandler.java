@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015-2016 Cask Data, Inc.
+ * Copyright © 2015-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -17,6 +17,7 @@
 package co.cask.cdap.data2.increment.hbase98;
 
 import co.cask.cdap.data2.dataset2.lib.table.hbase.HBaseTable;
+import co.cask.cdap.data2.dataset2.lib.timeseries.FactGroupBy;
 import co.cask.cdap.data2.increment.hbase.IncrementHandlerState;
 import co.cask.cdap.data2.increment.hbase.TimestampOracle;
 import com.google.common.annotations.VisibleForTesting;
@@ -253,7 +254,14 @@ public class IncrementHandler extends BaseRegionObserver {
   public RegionScanner postScannerOpen(ObserverContext<RegionCoprocessorEnvironment> ctx, Scan scan,
                                        RegionScanner scanner)
     throws IOException {
-    return new IncrementSummingScanner(region, scan.getBatch(), scanner, ScanType.USER_SCAN);
+    RegionScanner summingScanner = new IncrementSummingScanner(region, scan.getBatch(), scanner, ScanType.USER_SCAN);
+    byte[] groupBy = scan.getAttribute(FactGroupBy.SCAN_ATTRIBUTE);
+    if (groupBy == null || scan.getBatch() > 0) {
+      // scans that return rows in batches of cells get the stored rows, which the client aggregates as well
+      return summingScanner;
+    }
+    // aggregate ranges of summed rows in the region, so that only the aggregated rows are returned to the client
+    return new FactGroupByRegionScanner(summingScanner, FactGroupBy.fromBytes(groupBy));
   }
 
   @Override
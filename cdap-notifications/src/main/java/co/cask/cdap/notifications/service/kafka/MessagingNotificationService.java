@@ -1,5 +1,5 @@
 /*
-* Copyright © 2014-2016 Cask Data, Inc.
+* Copyright © 2014-2017 Cask Data, Inc.
 *
 * Licensed under the Apache License, Version 2.0 (the "License"); you may not
 * use this file except in compliance with the License. You may obtain a copy of
@@ -60,6 +60,8 @@ import java.util.concurrent.atomic.AtomicBoolean;
  */
 public class MessagingNotificationService extends AbstractNotificationService {
   private static final Logger LOG = LoggerFactory.getLogger(MessagingNotificationService.class);
+  // Maximum time for each fetch to wait for new notifications
+  private static final long FETCH_WAIT_TIMEOUT_MILLIS = 5000L;
 
   private final MessagingService messagingService;
   private final TopicId notificationTopic;
@@ -135,8 +137,10 @@ public class MessagingNotificationService extends AbstractNotificationService {
 
       @Override
       public void run() {
+        long fetchStartTime = System.currentTimeMillis();
         try {
           MessageFetcher fetcher = messagingService.prepareFetch(notificationTopic);
+          fetcher.setWaitTimeout(FETCH_WAIT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
           if (messageId == null) {
             fetcher.setStartTime(startTime);
           } else {
@@ -163,8 +167,9 @@ public class MessagingNotificationService extends AbstractNotificationService {
           LOG.error("Failed to get notification", e);
         }
 
-        // Back-off if it was empty fetch.
-        if (emptyFetchCount > 0) {
+        // Back-off if it was empty fetch. An empty fetch that waited for the full timeout already throttled
+        // the polling, hence only back-off if it returned early (e.g. failure or no long polling support).
+        if (emptyFetchCount > 0 && System.currentTimeMillis() - fetchStartTime < FETCH_WAIT_TIMEOUT_MILLIS) {
           // Schedule the next fetch. Exponential strategy doesn't use the time component,
           // so doesn't matter what we passed in
           subscribeExecutor.schedule(this,
@@ -0,0 +1,44 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.security.spi.authorization;
+
+import co.cask.cdap.api.annotation.Beta;
+import co.cask.cdap.proto.id.EntityId;
+import co.cask.cdap.proto.security.Principal;
+
+import java.util.Set;
+
+/**
+ * Checks which of a set of {@link EntityId entities} are visible to a {@link Principal}, all at once. It is an
+ * optional capability of an {@link AuthorizationEnforcer}, which {@link Authorizer} extensions can implement when their
+ * backend can check many entities in a single lookup. Entities of enforcers that do not implement it are checked one
+ * by one through {@link AuthorizationEnforcer#createFilter(Principal)}.
+ */
+@Beta
+public interface VisibilityChecker {
+
+  /**
+   * Returns the subset of the specified entities that the specified {@link Principal} has access (READ/WRITE/ADMIN/ALL)
+   * to.
+   *
+   * @param entityIds the {@link EntityId entities} to check
+   * @param principal the {@link Principal} for which to check
+   * @return the {@link EntityId entities} that the specified principal has access to
+   * @throws Exception if any errors occurred while checking the privileges
+   */
+  Set<? extends EntityId> isVisible(Set<? extends EntityId> entityIds, Principal principal) throws Exception;
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.proto.security;
+
+import co.cask.cdap.proto.id.EntityId;
+import co.cask.cdap.security.authorization.RemoteAuthorizationEnforcer;
+
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Request sent by the {@link RemoteAuthorizationEnforcer} to check which of a set of entities are visible to a
+ * {@link Principal}.
+ */
+public class VisibilityRequest {
+
+  private final Principal principal;
+  private final Set<EntityId> entityIds;
+
+  public VisibilityRequest(Principal principal, Set<EntityId> entityIds) {
+    this.principal = principal;
+    this.entityIds = entityIds;
+  }
+
+  public Principal getPrincipal() {
+    return principal;
+  }
+
+  public Set<EntityId> getEntityIds() {
+    return entityIds;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    VisibilityRequest that = (VisibilityRequest) o;
+    return Objects.equals(principal, that.principal) && Objects.equals(entityIds, that.entityIds);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(principal, entityIds);
+  }
+
+  @Override
+  public String toString() {
+    return "VisibilityRequest{" +
+      "principal=" + principal +
+      ", entityIds=" + entityIds +
+      '}';
+  }
+}
@@ -24,15 +24,17 @@ import co.cask.cdap.proto.security.Action;
 import co.cask.cdap.proto.security.Principal;
 import co.cask.cdap.security.spi.authorization.AuthorizationEnforcer;
 import co.cask.cdap.security.spi.authorization.UnauthorizedException;
+import co.cask.cdap.security.spi.authorization.VisibilityChecker;
 
 import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.Set;
 
 /**
- * Abstract Class that implements common methods for the {@link AuthorizationEnforcer} interface.
+ * Abstract Class that implements common methods for the {@link AuthorizationEnforcer} and {@link VisibilityChecker}
+ * interfaces.
  */
-public abstract class AbstractAuthorizationEnforcer implements AuthorizationEnforcer {
+public abstract class AbstractAuthorizationEnforcer implements AuthorizationEnforcer, VisibilityChecker {
 
   private static final Predicate<EntityId> ALLOW_ALL = new Predicate<EntityId>() {
     @Override
@@ -78,22 +80,29 @@ public abstract class AbstractAuthorizationEnforcer implements AuthorizationEnfo
     return new Predicate<EntityId>() {
       @Override
       public boolean apply(EntityId entityId) {
-        for (Action action : Action.values()) {
-          try {
-            enforce(entityId, principal, action);
-            return true;
-          } catch (UnauthorizedException ignored) {
-            // The principal does not have this particular privilege but for filter as long as they have any privilege
-            // we return true, so ignoring this exception.
-          } catch (Exception ex) {
-            throw new RuntimeException(ex);
-          }
+        try {
+          return AuthorizationUtil.isVisible(entityId, AbstractAuthorizationEnforcer.this, principal);
+        } catch (Exception ex) {
+          throw new RuntimeException(ex);
         }
-        return false;
       }
     };
   }
 
+  @Override
+  public Set<? extends EntityId> isVisible(Set<? extends EntityId> entityIds, Principal principal) throws Exception {
+    if (!isSecurityAuthorizationEnabled()) {
+      return entityIds;
+    }
+    Set<EntityId> visible = new HashSet<>();
+    for (EntityId entityId : entityIds) {
+      if (AuthorizationUtil.isVisible(entityId, this, principal)) {
+        visible.add(entityId);
+      }
+    }
+    return visible;
+  }
+
   protected boolean isSecurityAuthorizationEnabled() {
     return securityEnabled && authorizationEnabled;
   }
@@ -0,0 +1,78 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.security.authorization;
+
+import co.cask.cdap.proto.id.EntityId;
+import co.cask.cdap.proto.security.Action;
+import co.cask.cdap.proto.security.Principal;
+import co.cask.cdap.security.spi.authorization.AuthorizationEnforcer;
+import co.cask.cdap.security.spi.authorization.UnauthorizedException;
+import co.cask.cdap.security.spi.authorization.VisibilityChecker;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Utility methods for authorization.
+ */
+public final class AuthorizationUtil {
+
+  private AuthorizationUtil() {
+    // no-op
+  }
+
+  /**
+   * Returns the subset of the specified entities that the specified {@link Principal} has access (READ/WRITE/ADMIN/ALL)
+   * to. If the given enforcer is a {@link VisibilityChecker}, all entities are checked in one call. Otherwise each
+   * entity is checked with {@link #isVisible(EntityId, AuthorizationEnforcer, Principal)}.
+   *
+   * @param entityIds the {@link EntityId entities} to check
+   * @param enforcer the {@link AuthorizationEnforcer} to check with
+   * @param principal the {@link Principal} for which to check
+   * @return the {@link EntityId entities} that the specified principal has access to
+   * @throws Exception if any errors occurred while checking the privileges
+   */
+  public static Set<? extends EntityId> isVisible(Set<? extends EntityId> entityIds, AuthorizationEnforcer enforcer,
+                                                  Principal principal) throws Exception {
+    if (enforcer instanceof VisibilityChecker) {
+      return ((VisibilityChecker) enforcer).isVisible(entityIds, principal);
+    }
+    Set<EntityId> visible = new HashSet<>();
+    for (EntityId entityId : entityIds) {
+      if (isVisible(entityId, enforcer, principal)) {
+        visible.add(entityId);
+      }
+    }
+    return visible;
+  }
+
+  /**
+   * Returns whether the specified {@link Principal} has any of the privileges on the specified entity, enforcing one
+   * {@link Action} at a time.
+   */
+  static boolean isVisible(EntityId entityId, AuthorizationEnforcer enforcer, Principal principal) throws Exception {
+    for (Action action : Action.values()) {
+      try {
+        enforcer.enforce(entityId, principal, action);
+        return true;
+      } catch (UnauthorizedException ignored) {
+        // The principal does not have this particular privilege, but having any of them makes the entity visible
+      }
+    }
+    return false;
+  }
+}
@@ -35,6 +35,9 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import javax.annotation.Nullable;
 
@@ -82,11 +85,54 @@ public class DefaultAuthorizationEnforcer extends AbstractAuthorizationEnforcer
     doEnforce(entity, principal, Collections.singleton(action));
   }
 
+  @Override
+  public Set<? extends EntityId> isVisible(Set<? extends EntityId> entityIds, Principal principal) throws Exception {
+    if (!isSecurityAuthorizationEnabled()) {
+      return entityIds;
+    }
+    Set<EntityId> visible = new HashSet<>();
+    Set<EntityId> toCheck = new HashSet<>();
+    for (EntityId entityId : entityIds) {
+      if (isBypassed(entityId, principal)) {
+        visible.add(entityId);
+      } else {
+        toCheck.add(entityId);
+      }
+    }
+    if (toCheck.isEmpty()) {
+      return visible;
+    }
+    LOG.debug("Checking visibility of {} entities for principal {}.", toCheck.size(), principal);
+    Set<? extends EntityId> visibleChecked = AuthorizationUtil.isVisible(toCheck, authorizerInstantiator.get(),
+                                                                              principal);
+    visible.addAll(visibleChecked);
+
+    // If privilege propagation is enabled then an entity is also visible if its parent is, which is checked for all
+    // the parents at once.
+    if (propagatePrivileges) {
+      Map<EntityId, Set<EntityId>> parentToChildren = new HashMap<>();
+      for (EntityId entityId : toCheck) {
+        if (!visibleChecked.contains(entityId) && entityId instanceof ParentedId) {
+          EntityId parent = ((ParentedId) entityId).getParent();
+          Set<EntityId> children = parentToChildren.get(parent);
+          if (children == null) {
+            children = new HashSet<>();
+            parentToChildren.put(parent, children);
+          }
+          children.add(entityId);
+        }
+      }
+      if (!parentToChildren.isEmpty()) {
+        for (EntityId parent : isVisible(parentToChildren.keySet(), principal)) {
+          visible.addAll(parentToChildren.get(parent));
+        }
+      }
+    }
+    return visible;
+  }
+
   private void doEnforce(EntityId entity, Principal principal, Set<Action> actions) throws Exception {
-    // bypass the check when the principal is the master user and the entity is in the system namespace
-    if (entity instanceof NamespacedEntityId &&
-      ((NamespacedEntityId) entity).getNamespaceId().equals(NamespaceId.SYSTEM) &&
-      principal.equals(masterUser)) {
+    if (isBypassed(entity, principal)) {
       return;
     }
     LOG.debug("Enforcing actions {} on {} for principal {}.", actions, entity, principal);
@@ -102,4 +148,14 @@ public class DefaultAuthorizationEnforcer extends AbstractAuthorizationEnforcer
       }
     }
   }
+
+  /**
+   * Returns whether the check should be bypassed, which is when the principal is the master user and the entity is in
+   * the system namespace.
+   */
+  private boolean isBypassed(EntityId entity, Principal principal) {
+    return entity instanceof NamespacedEntityId &&
+      ((NamespacedEntityId) entity).getNamespaceId().equals(NamespaceId.SYSTEM) &&
+      principal.equals(masterUser);
+  }
 }
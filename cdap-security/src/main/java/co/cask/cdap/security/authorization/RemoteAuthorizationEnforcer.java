@@ -25,25 +25,34 @@ import co.cask.cdap.proto.id.EntityId;
 import co.cask.cdap.proto.security.Action;
 import co.cask.cdap.proto.security.AuthorizationPrivilege;
 import co.cask.cdap.proto.security.Principal;
+import co.cask.cdap.proto.security.VisibilityRequest;
 import co.cask.cdap.security.spi.authorization.UnauthorizedException;
 import co.cask.common.http.HttpMethod;
 import co.cask.common.http.HttpRequest;
+import co.cask.common.http.HttpResponse;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
 import com.google.inject.Inject;
 import org.apache.twill.discovery.DiscoveryServiceClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.lang.reflect.Type;
 import java.net.HttpURLConnection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 
 /**
@@ -57,11 +66,13 @@ public class RemoteAuthorizationEnforcer extends AbstractAuthorizationEnforcer {
   private static final Gson GSON = new GsonBuilder()
     .registerTypeAdapter(EntityId.class, new EntityIdTypeAdapter())
     .create();
+  private static final Type SET_ENTITY_TYPE = new TypeToken<Set<EntityId>>() { }.getType();
 
   private final RemoteClient remoteClient;
   private final boolean cacheEnabled;
 
   private final LoadingCache<AuthorizationPrivilege, Boolean> authPolicyCache;
+  private final Cache<VisibilityKey, Boolean> visibilityCache;
 
   @Inject
   public RemoteAuthorizationEnforcer(CConfiguration cConf, final DiscoveryServiceClient discoveryClient) {
@@ -84,6 +95,10 @@ public class RemoteAuthorizationEnforcer extends AbstractAuthorizationEnforcer {
           return doEnforce(authorizationPrivilege);
         }
       });
+    visibilityCache = CacheBuilder.newBuilder()
+      .expireAfterWrite(cacheTTLSecs, TimeUnit.SECONDS)
+      .maximumSize(cacheMaxEntries)
+      .build();
   }
 
   @Override
@@ -99,6 +114,78 @@ public class RemoteAuthorizationEnforcer extends AbstractAuthorizationEnforcer {
     }
   }
 
+  @Override
+  public Set<? extends EntityId> isVisible(Set<? extends EntityId> entityIds, Principal principal) throws Exception {
+    if (!isSecurityAuthorizationEnabled()) {
+      return entityIds;
+    }
+    if (!cacheEnabled) {
+      return doIsVisible(new HashSet<>(entityIds), principal);
+    }
+
+    Set<EntityId> visible = new HashSet<>();
+    Set<EntityId> unknown = new HashSet<>();
+    for (EntityId entityId : entityIds) {
+      Boolean cached = getCachedVisibility(entityId, principal);
+      if (cached == null) {
+        unknown.add(entityId);
+      } else if (cached) {
+        visible.add(entityId);
+      }
+    }
+    if (unknown.isEmpty()) {
+      return visible;
+    }
+
+    LOG.trace("Cache miss for the visibility of {} entities for {}", unknown.size(), principal);
+    Set<EntityId> visibleUnknown = doIsVisible(unknown, principal);
+    for (EntityId entityId : unknown) {
+      boolean isVisible = visibleUnknown.contains(entityId);
+      visibilityCache.put(new VisibilityKey(principal, entityId), isVisible);
+      if (!isVisible) {
+        // An entity is invisible only if the principal has none of the privileges on it
+        for (Action action : Action.values()) {
+          authPolicyCache.put(new AuthorizationPrivilege(principal, entityId, action), false);
+        }
+      }
+    }
+    visible.addAll(visibleUnknown);
+    return visible;
+  }
+
+  /**
+   * Returns the visibility of the given entity from the caches, or {@code null} if it is not known.
+   */
+  @Nullable
+  private Boolean getCachedVisibility(EntityId entityId, Principal principal) {
+    Boolean visible = visibilityCache.getIfPresent(new VisibilityKey(principal, entityId));
+    if (visible != null) {
+      return visible;
+    }
+    // The entity is also known to be visible if any privilege on it is allowed, or invisible if all are disallowed
+    boolean allDisallowed = true;
+    for (Action action : Action.values()) {
+      Boolean allowed = authPolicyCache.getIfPresent(new AuthorizationPrivilege(principal, entityId, action));
+      if (Boolean.TRUE.equals(allowed)) {
+        return true;
+      }
+      allDisallowed = allDisallowed && allowed != null;
+    }
+    return allDisallowed ? false : null;
+  }
+
+  private Set<EntityId> doIsVisible(Set<EntityId> entityIds, Principal principal) throws IOException {
+    HttpRequest request = remoteClient.requestBuilder(HttpMethod.POST, "isVisible")
+      .withBody(GSON.toJson(new VisibilityRequest(principal, entityIds)))
+      .build();
+    HttpResponse response = remoteClient.execute(request);
+    if (response.getResponseCode() != HttpURLConnection.HTTP_OK) {
+      throw new IOException(String.format("Failed to check the visibility of entities for %s. Reason: %s",
+                                          principal, response));
+    }
+    return GSON.fromJson(response.getResponseBodyAsString(), SET_ENTITY_TYPE);
+  }
+
   private boolean doEnforce(AuthorizationPrivilege authorizationPrivilege) throws IOException {
     HttpRequest request = remoteClient.requestBuilder(HttpMethod.POST, "enforce")
       .withBody(GSON.toJson(authorizationPrivilege))
@@ -110,4 +197,34 @@ public class RemoteAuthorizationEnforcer extends AbstractAuthorizationEnforcer {
   public Map<AuthorizationPrivilege, Boolean> cacheAsMap() {
     return Collections.unmodifiableMap(authPolicyCache.asMap());
   }
+
+  /**
+   * Key for caching whether an entity is visible to a principal.
+   */
+  private static final class VisibilityKey {
+    private final Principal principal;
+    private final EntityId entityId;
+
+    VisibilityKey(Principal principal, EntityId entityId) {
+      this.principal = principal;
+      this.entityId = entityId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      VisibilityKey that = (VisibilityKey) o;
+      return Objects.equals(principal, that.principal) && Objects.equals(entityId, that.entityId);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(principal, entityId);
+    }
+  }
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2016 Cask Data, Inc.
+ * Copyright © 2016-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -198,6 +198,11 @@ public class DefaultAuthorizationEnforcerTest extends AuthorizationTestBase {
       for (DatasetId datasetId : ImmutableSet.of(ds21, ds23)) {
         Assert.assertFalse(bobFilter.apply(datasetId));
       }
+
+      // checking all entities at once should give the same result as the filters
+      Set<EntityId> allEntities = ImmutableSet.<EntityId>of(ns1, ns2, ds11, ds12, ds21, ds22, ds23);
+      Assert.assertEquals(allEntities, authEnforcementService.isVisible(allEntities, ALICE));
+      Assert.assertEquals(ImmutableSet.of(ds11, ds12, ds22), authEnforcementService.isVisible(allEntities, BOB));
     }
   }
 
@@ -221,6 +226,9 @@ public class DefaultAuthorizationEnforcerTest extends AuthorizationTestBase {
       Assert.assertFalse(filter.apply(ns1));
       Assert.assertTrue(filter.apply(instanceId));
       Assert.assertTrue(filter.apply(NamespaceId.SYSTEM));
+      Assert.assertEquals(ImmutableSet.of(instanceId, NamespaceId.SYSTEM),
+                          authorizationEnforcer.isVisible(ImmutableSet.of(ns1, instanceId, NamespaceId.SYSTEM),
+                                                          systemUser));
     }
   }
 
@@ -236,6 +244,7 @@ public class DefaultAuthorizationEnforcerTest extends AuthorizationTestBase {
       Predicate<EntityId> filter = authEnforcementService.createFilter(BOB);
       Assert.assertTrue(filter.apply(NS));
       Assert.assertTrue(filter.apply(ds));
+      Assert.assertEquals(ImmutableSet.of(NS, ds), authEnforcementService.isVisible(ImmutableSet.of(NS, ds), BOB));
     }
   }
 
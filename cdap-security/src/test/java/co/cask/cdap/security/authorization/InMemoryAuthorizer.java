@@ -1,5 +1,5 @@
 /*
- * Copyright © 2016 Cask Data, Inc.
+ * Copyright © 2016-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -28,6 +28,7 @@ import co.cask.cdap.security.spi.authorization.Authorizer;
 import co.cask.cdap.security.spi.authorization.RoleAlreadyExistsException;
 import co.cask.cdap.security.spi.authorization.RoleNotFoundException;
 import co.cask.cdap.security.spi.authorization.UnauthorizedException;
+import co.cask.cdap.security.spi.authorization.VisibilityChecker;
 import com.google.common.base.Splitter;
 import com.google.common.collect.Sets;
 
@@ -40,9 +41,9 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 /**
- * In-memory implementation of {@link Authorizer}.
+ * In-memory implementation of {@link Authorizer}, which also checks the visibility of many entities at once.
  */
-public class InMemoryAuthorizer extends AbstractAuthorizer {
+public class InMemoryAuthorizer extends AbstractAuthorizer implements VisibilityChecker {
 
   private final ConcurrentMap<EntityId, ConcurrentMap<Principal, Set<Action>>> privileges = new ConcurrentHashMap<>();
   private final ConcurrentMap<Role, Set<Principal>> roleToPrincipals = new ConcurrentHashMap<>();
@@ -93,6 +94,27 @@ public class InMemoryAuthorizer extends AbstractAuthorizer {
     return super.createFilter(principal);
   }
 
+  @Override
+  public Set<? extends EntityId> isVisible(Set<? extends EntityId> entityIds, Principal principal) throws Exception {
+    // super users do not have any enforcement
+    if (superUsers.contains(principal) || superUsers.contains(allSuperUsers)) {
+      return entityIds;
+    }
+    Set<EntityId> visible = new HashSet<>();
+    for (EntityId entityId : entityIds) {
+      for (Action action : Action.values()) {
+        try {
+          enforce(entityId, principal, action);
+          visible.add(entityId);
+          break;
+        } catch (UnauthorizedException e) {
+          // The principal needs only one of the privileges for the entity to be visible
+        }
+      }
+    }
+    return visible;
+  }
+
   @Override
   public void grant(EntityId entity, Principal principal, Set<Action> actions) {
     getActions(entity, principal).addAll(actions);
@@ -37,6 +37,7 @@ import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.lang.FilterClassLoader;
 import co.cask.cdap.common.lang.InstantiatorFactory;
+import co.cask.cdap.common.namespace.NamespacedLocationFactory;
 import co.cask.cdap.common.service.Retries;
 import co.cask.cdap.common.service.RetryStrategies;
 import co.cask.cdap.data.ProgramContextAware;
@@ -46,6 +47,7 @@ import co.cask.cdap.internal.app.runtime.AbstractProgramRunnerWithPlugin;
 import co.cask.cdap.internal.app.runtime.BasicProgramContext;
 import co.cask.cdap.internal.app.runtime.ProgramOptionConstants;
 import co.cask.cdap.internal.app.runtime.ProgramRunners;
+import co.cask.cdap.internal.app.runtime.distributed.GeneratedJarCache;
 import co.cask.cdap.internal.app.runtime.plugin.PluginInstantiator;
 import co.cask.cdap.internal.app.runtime.workflow.NameMappedDatasetFramework;
 import co.cask.cdap.internal.app.runtime.workflow.WorkflowProgramInfo;
@@ -94,6 +96,7 @@ final class SparkProgramRunner extends AbstractProgramRunnerWithPlugin
   private final CConfiguration cConf;
   private final Configuration hConf;
   private final LocationFactory locationFactory;
+  private final NamespacedLocationFactory namespacedLocationFactory;
   private final TransactionSystemClient txClient;
   private final DatasetFramework datasetFramework;
   private final MetricsCollectionService metricsCollectionService;
@@ -108,6 +111,7 @@ final class SparkProgramRunner extends AbstractProgramRunnerWithPlugin
 
   @Inject
   SparkProgramRunner(CConfiguration cConf, Configuration hConf, LocationFactory locationFactory,
+                     NamespacedLocationFactory namespacedLocationFactory,
                      TransactionSystemClient txClient, DatasetFramework datasetFramework,
                      MetricsCollectionService metricsCollectionService,
                      DiscoveryServiceClient discoveryServiceClient, StreamAdmin streamAdmin,
@@ -118,6 +122,7 @@ final class SparkProgramRunner extends AbstractProgramRunnerWithPlugin
     this.cConf = cConf;
     this.hConf = hConf;
     this.locationFactory = locationFactory;
+    this.namespacedLocationFactory = namespacedLocationFactory;
     this.txClient = txClient;
     this.datasetFramework = datasetFramework;
     this.metricsCollectionService = metricsCollectionService;
@@ -193,8 +198,10 @@ final class SparkProgramRunner extends AbstractProgramRunnerWithPlugin
         : new DistributedSparkSubmitter(hConf, locationFactory, host, runtimeContext,
                                         options.getArguments().getOption(Constants.AppFabric.APP_SCHEDULER_QUEUE));
 
+      GeneratedJarCache jarCache = GeneratedJarCache.create(
+        cConf, namespacedLocationFactory.get(program.getId().getNamespaceId()));
       Service sparkRuntimeService = new SparkRuntimeService(cConf, spark, getPluginArchive(options),
-                                                            runtimeContext, submitter);
+                                                            runtimeContext, submitter, jarCache);
 
       sparkRuntimeService.addListener(
         createRuntimeServiceListener(program.getId(), runId, arguments, options.getUserArguments(),
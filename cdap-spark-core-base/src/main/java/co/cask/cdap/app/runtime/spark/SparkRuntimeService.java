@@ -1,5 +1,5 @@
 /*
- * Copyright © 2016 Cask Data, Inc.
+ * Copyright © 2016-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -42,6 +42,7 @@ import co.cask.cdap.internal.app.runtime.LocalizationUtils;
 import co.cask.cdap.internal.app.runtime.MetricsFieldSetter;
 import co.cask.cdap.internal.app.runtime.ProgramRunners;
 import co.cask.cdap.internal.app.runtime.batch.distributed.ContainerLauncherGenerator;
+import co.cask.cdap.internal.app.runtime.distributed.GeneratedJarCache;
 import co.cask.cdap.internal.app.runtime.distributed.LocalizeResource;
 import co.cask.cdap.internal.lang.Fields;
 import co.cask.cdap.internal.lang.Reflections;
@@ -53,6 +54,7 @@ import com.google.common.base.Predicates;
 import com.google.common.base.Throwables;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
+import com.google.common.hash.HashCode;
 import com.google.common.io.Files;
 import com.google.common.util.concurrent.AbstractExecutionThreadService;
 import com.google.common.util.concurrent.ListenableFuture;
@@ -64,6 +66,7 @@ import org.apache.spark.deploy.SparkSubmit;
 import org.apache.twill.api.RunId;
 import org.apache.twill.api.TwillRunnable;
 import org.apache.twill.common.Cancellable;
+import org.apache.twill.filesystem.Location;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import scala.Tuple2;
@@ -87,8 +90,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
-import java.util.Set;
-import java.util.TreeSet;
+import java.util.TreeMap;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicReference;
@@ -120,12 +122,13 @@ final class SparkRuntimeService extends AbstractExecutionThreadService {
   private final SparkSubmitter sparkSubmitter;
   private final AtomicReference<ListenableFuture<RunId>> completion;
   private final BasicSparkClientContext context;
+  private final GeneratedJarCache jarCache;
 
   private Callable<ListenableFuture<RunId>> submitSpark;
   private Runnable cleanupTask;
 
   SparkRuntimeService(CConfiguration cConf, Spark spark, @Nullable File pluginArchive,
-                      SparkRuntimeContext runtimeContext, SparkSubmitter sparkSubmitter) {
+                      SparkRuntimeContext runtimeContext, SparkSubmitter sparkSubmitter, GeneratedJarCache jarCache) {
     this.cConf = cConf;
     this.spark = spark;
     this.runtimeContext = runtimeContext;
@@ -133,6 +136,7 @@ final class SparkRuntimeService extends AbstractExecutionThreadService {
     this.sparkSubmitter = sparkSubmitter;
     this.completion = new AtomicReference<>();
     this.context = new BasicSparkClientContext(runtimeContext);
+    this.jarCache = jarCache;
   }
 
   @Override
@@ -202,7 +206,7 @@ final class SparkRuntimeService extends AbstractExecutionThreadService {
         }
 
         // Create and localize the launcher jar, which is for setting up services and classloader for spark containers
-        localizeResources.add(new LocalizeResource(createLauncherJar(tempDir)));
+        localizeResources.add(new LocalizeResource(getLauncherJar(tempDir), false));
 
         // Create metrics conf file in the current directory since
         // the same value for the "spark.metrics.conf" config needs to be used for both driver and executor processes
@@ -224,14 +228,14 @@ final class SparkRuntimeService extends AbstractExecutionThreadService {
         Joiner joiner = Joiner.on(File.pathSeparator).skipNulls();
 
         // Localize the spark.jar archive, which contains all CDAP and dependency jars
-        File sparkJar = new File(tempDir, CDAP_SPARK_JAR);
-        classpath = joiner.join(Iterables.transform(buildDependencyJar(sparkJar), new Function<String, String>() {
+        Map<String, File> dependencyJars = getDependencyJars();
+        classpath = joiner.join(Iterables.transform(dependencyJars.keySet(), new Function<String, String>() {
           @Override
           public String apply(String name) {
             return Paths.get("$PWD", CDAP_SPARK_JAR, name).toString();
           }
         }));
-        localizeResources.add(new LocalizeResource(sparkJar, true));
+        localizeResources.add(new LocalizeResource(getDependencyJar(dependencyJars.values(), tempDir), true));
 
         // Localize logback if there is one. It is placed at the beginning of the classpath
         File logbackJar = ProgramRunners.createLogbackJar(new File(tempDir, "logback.xml.jar"));
@@ -427,18 +431,37 @@ final class SparkRuntimeService extends AbstractExecutionThreadService {
     }
   }
 
+  /**
+   * Returns the {@link URI} of the launcher jar, which is shared by all runs with the same CDAP classes.
+   *
+   * @see #createLauncherJar(Location)
+   */
+  private URI getLauncherJar(File tempDir) throws IOException {
+    HashCode key = new GeneratedJarCache.KeyBuilder()
+      .add(CDAP_LAUNCHER_JAR)
+      .addClassPath(SparkContainerLauncher.class.getClassLoader())
+      .build();
+    Location dir = jarCache.get(key, Locations.toLocation(tempDir), new GeneratedJarCache.Generator() {
+      @Override
+      public void generate(Location targetDir) throws IOException {
+        createLauncherJar(targetDir);
+      }
+    });
+    return SparkPackageUtils.resolveURI(dir.append(CDAP_LAUNCHER_JAR));
+  }
+
   /**
    * Creates a JAR file which contains generate Spark YARN container main classes. Those classes
    * are used for intercepting the Java main method in the YARN container so that we can control the
    * ClassLoader creation.
    */
-  private File createLauncherJar(File tempDir) throws IOException {
-    File jarFile = new File(tempDir, CDAP_LAUNCHER_JAR);
+  private Location createLauncherJar(Location targetDir) throws IOException {
+    Location jarLocation = targetDir.append(CDAP_LAUNCHER_JAR);
     ContainerLauncherGenerator.generateLauncherJar(
       Arrays.asList("org.apache.spark.deploy.yarn.ApplicationMaster",
                     "org.apache.spark.executor.CoarseGrainedExecutorBackend"),
-      SparkContainerLauncher.class, Files.newOutputStreamSupplier(jarFile));
-    return jarFile;
+      SparkContainerLauncher.class, Locations.newOutputSupplier(jarLocation));
+    return jarLocation;
   }
 
   /**
@@ -513,37 +536,66 @@ final class SparkRuntimeService extends AbstractExecutionThreadService {
   }
 
   /**
-   * Packages all the dependencies of the Spark job. It contains all CDAP classes that are needed to run the
+   * Finds all the dependencies of the Spark job. They are all CDAP classes that are needed to run the
    * user spark program.
    *
-   * @param targetFile the target file for the jar created
-   * @return list of jar file name that contains all dependency jars in sorted order
-   * @throws IOException if failed to package the jar
+   * @return the dependency jar files, keyed and sorted by their names
    */
-  private Iterable<String> buildDependencyJar(File targetFile) throws IOException, URISyntaxException {
-    Set<String> classpath = new TreeSet<>();
-    try (JarOutputStream jarOut = new JarOutputStream(new BufferedOutputStream(new FileOutputStream(targetFile)))) {
-      jarOut.setLevel(Deflater.NO_COMPRESSION);
-
-      // Zip all the jar files under the same directory that contains the jar for this class and twill class.
-      // Those are the directory created by TWILL that contains all dependency jars for this container
-      for (String className : Arrays.asList(getClass().getName(), TwillRunnable.class.getName())) {
-        Enumeration<URL> resources = getClass().getClassLoader().getResources(className.replace('.', '/') + ".class");
-        while (resources.hasMoreElements()) {
-          URL classURL = resources.nextElement();
-          File libDir = new File(ClassLoaders.getClassPathURL(className, classURL).toURI()).getParentFile();
-
-          for (File file : DirUtils.listFiles(libDir, "jar")) {
-            if (classpath.add(file.getName())) {
-              jarOut.putNextEntry(new JarEntry(file.getName()));
-              Files.copy(file, jarOut);
-              jarOut.closeEntry();
-            }
+  private Map<String, File> getDependencyJars() throws IOException, URISyntaxException {
+    Map<String, File> jars = new TreeMap<>();
+
+    // All the jar files under the same directory that contains the jar for this class and twill class.
+    // Those are the directory created by TWILL that contains all dependency jars for this container
+    for (String className : Arrays.asList(getClass().getName(), TwillRunnable.class.getName())) {
+      Enumeration<URL> resources = getClass().getClassLoader().getResources(className.replace('.', '/') + ".class");
+      while (resources.hasMoreElements()) {
+        URL classURL = resources.nextElement();
+        File libDir = new File(ClassLoaders.getClassPathURL(className, classURL).toURI()).getParentFile();
+
+        for (File file : DirUtils.listFiles(libDir, "jar")) {
+          if (!jars.containsKey(file.getName())) {
+            jars.put(file.getName(), file);
           }
         }
       }
     }
-    return classpath;
+    return jars;
+  }
+
+  /**
+   * Returns the {@link URI} of the jar that packages the given dependency jars, which is shared by all runs with the
+   * same dependencies.
+   */
+  private URI getDependencyJar(final Collection<File> dependencyJars, File tempDir) throws IOException {
+    GeneratedJarCache.KeyBuilder keyBuilder = new GeneratedJarCache.KeyBuilder().add(CDAP_SPARK_JAR);
+    for (File file : dependencyJars) {
+      keyBuilder.addFile(file);
+    }
+    Location dir = jarCache.get(keyBuilder.build(), Locations.toLocation(tempDir), new GeneratedJarCache.Generator() {
+      @Override
+      public void generate(Location targetDir) throws IOException {
+        buildDependencyJar(dependencyJars, targetDir.append(CDAP_SPARK_JAR));
+      }
+    });
+    return SparkPackageUtils.resolveURI(dir.append(CDAP_SPARK_JAR));
+  }
+
+  /**
+   * Packages the given dependency jars of the Spark job into one jar.
+   *
+   * @param dependencyJars the jar files to package
+   * @param target the target location for the jar created
+   * @throws IOException if failed to package the jar
+   */
+  private void buildDependencyJar(Collection<File> dependencyJars, Location target) throws IOException {
+    try (JarOutputStream jarOut = new JarOutputStream(new BufferedOutputStream(target.getOutputStream()))) {
+      jarOut.setLevel(Deflater.NO_COMPRESSION);
+      for (File file : dependencyJars) {
+        jarOut.putNextEntry(new JarEntry(file.getName()));
+        Files.copy(file, jarOut);
+        jarOut.closeEntry();
+      }
+    }
   }
 
   /**
@@ -653,6 +705,9 @@ final class SparkRuntimeService extends AbstractExecutionThreadService {
           }
         }
 
+        // The cached jars used by the program can expire once it completes
+        jarCache.close();
+
         try {
           DirUtils.deleteDirectoryContents(directory);
         } catch (IOException e) {
@@ -0,0 +1,60 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.app.runtime.spark.serializer;
+
+import co.cask.cdap.api.data.schema.Schema;
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * A process wide cache of {@link Schema} decoded from JSON. It avoids parsing the same schema JSON repeatedly when
+ * deserializing many objects of the same schema, and makes all decoded copies of a schema share the same instance.
+ */
+final class SchemaCache {
+
+  private static final LoadingCache<String, Schema> SCHEMAS = CacheBuilder.newBuilder()
+    .maximumSize(1000)
+    .build(new CacheLoader<String, Schema>() {
+      @Override
+      public Schema load(String json) throws Exception {
+        return Schema.parseJson(json);
+      }
+    });
+
+  /**
+   * Returns the {@link Schema} of the given JSON representation.
+   *
+   * @throws IOException if failed to parse the JSON
+   */
+  static Schema fromJson(String json) throws IOException {
+    try {
+      return SCHEMAS.get(json);
+    } catch (ExecutionException e) {
+      Throwables.propagateIfPossible(e.getCause(), IOException.class);
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+
+  private SchemaCache() {
+    // no-op
+  }
+}
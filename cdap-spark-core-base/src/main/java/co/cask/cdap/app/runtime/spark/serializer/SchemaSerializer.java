@@ -38,7 +38,7 @@ public class SchemaSerializer extends Serializer<Schema> {
   @Override
   public Schema read(Kryo kryo, Input input, Class<Schema> type) {
     try {
-      return Schema.parseJson(input.readString());
+      return SchemaCache.fromJson(input.readString());
     } catch (IOException e) {
       throw new KryoException("Fail to deserialize Schema", e);
     }
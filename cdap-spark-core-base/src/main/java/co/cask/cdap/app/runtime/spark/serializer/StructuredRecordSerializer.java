@@ -18,44 +18,133 @@ package co.cask.cdap.app.runtime.spark.serializer;
 
 import co.cask.cdap.api.data.format.StructuredRecord;
 import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.api.data.schema.SchemaHash;
+import co.cask.cdap.api.spark.SparkSerializationProperties;
 import co.cask.cdap.format.io.StructuredRecordDatumReader;
 import co.cask.cdap.format.io.StructuredRecordDatumWriter;
+import co.cask.cdap.internal.io.SchemaTypeAdapter;
 import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.KryoException;
 import com.esotericsoftware.kryo.Serializer;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.reflect.TypeToken;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.apache.spark.SparkEnv;
 
 import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * A Kryo {@link Serializer} for {@link StructuredRecord}.
+ *
+ * Each record is prefixed with its schema. Records of schemas listed in the
+ * {@link SparkSerializationProperties#KNOWN_SCHEMAS} Spark configuration are written with the {@link SchemaHash} of
+ * the schema, which avoids writing the schema for every record. Since the hash only depends on the schema, records
+ * can be read by any process that knows the schema, regardless of the order of the configured schemas. Records of
+ * other schemas are written with the schema in JSON.
  */
 public class StructuredRecordSerializer extends Serializer<StructuredRecord> {
 
+  private static final byte INLINE_SCHEMA = 0;
+  private static final byte KNOWN_SCHEMA = 1;
+  private static final int HASH_LENGTH = 16;
+
   private static final StructuredRecordDatumWriter DATUM_WRITER = new StructuredRecordDatumWriter();
   private static final StructuredRecordDatumReader DATUM_READER = new StructuredRecordDatumReader();
+  private static final Gson GSON = new GsonBuilder()
+    .registerTypeAdapter(Schema.class, new SchemaTypeAdapter())
+    .create();
+  private static final Type SCHEMA_LIST_TYPE = new TypeToken<List<Schema>>() { }.getType();
+
+  private Map<SchemaHash, Schema> knownSchemas;
+
+  public StructuredRecordSerializer() {
+    // Known schemas are loaded lazily from the SparkEnv, since the SparkEnv may not be available yet when
+    // the Kryo instance is created.
+  }
+
+  @VisibleForTesting
+  StructuredRecordSerializer(List<Schema> knownSchemas) {
+    setKnownSchemas(knownSchemas);
+  }
 
   @Override
   public void write(Kryo kryo, Output output, StructuredRecord record) {
-    // First write out the schema
-    kryo.writeObject(output, record.getSchema());
+    // First write out the schema hash if it is a known schema, otherwise the schema itself
+    Schema schema = record.getSchema();
+    loadKnownSchemas();
+    SchemaHash hash = schema.getSchemaHash();
+    if (knownSchemas.containsKey(hash)) {
+      output.writeByte(KNOWN_SCHEMA);
+      output.writeBytes(hash.toByteArray());
+    } else {
+      output.writeByte(INLINE_SCHEMA);
+      output.writeString(schema.toString());
+    }
     // Then write out the data
     try {
       DATUM_WRITER.encode(record, new KryoEncoder(output));
     } catch (IOException e) {
-      throw new KryoException("Failed to encode StructuredRecord " + record.getSchema().getRecordName(), e);
+      throw new KryoException("Failed to encode StructuredRecord " + schema.getRecordName(), e);
     }
   }
 
   @Override
   public StructuredRecord read(Kryo kryo, Input input, Class<StructuredRecord> type) {
     // Read the schema
-    Schema schema = kryo.readObject(input, Schema.class);
+    Schema schema = readSchema(input);
     try {
       return DATUM_READER.read(new KryoDecoder(input), schema);
     } catch (IOException e) {
       throw new KryoException("Failed to decode StructuredRecord " + schema.getRecordName(), e);
     }
   }
+
+  private Schema readSchema(Input input) {
+    if (input.readByte() == INLINE_SCHEMA) {
+      try {
+        return SchemaCache.fromJson(input.readString());
+      } catch (IOException e) {
+        throw new KryoException("Failed to decode schema of StructuredRecord", e);
+      }
+    }
+    SchemaHash hash = new SchemaHash(ByteBuffer.wrap(input.readBytes(HASH_LENGTH)));
+    loadKnownSchemas();
+    Schema schema = knownSchemas.get(hash);
+    if (schema == null) {
+      throw new KryoException("Unknown schema hash " + hash + " of StructuredRecord. The schema is not known through "
+                                + "the " + SparkSerializationProperties.KNOWN_SCHEMAS + " configuration");
+    }
+    return schema;
+  }
+
+  /**
+   * Loads the known schemas from the Spark configuration if they are not loaded yet.
+   */
+  private void loadKnownSchemas() {
+    if (knownSchemas != null) {
+      return;
+    }
+    SparkEnv sparkEnv = SparkEnv.get();
+    String schemas = sparkEnv == null ? null
+      : sparkEnv.conf().get(SparkSerializationProperties.KNOWN_SCHEMAS, null);
+    setKnownSchemas(schemas == null ? ImmutableList.<Schema>of() : GSON.<List<Schema>>fromJson(schemas,
+                                                                                               SCHEMA_LIST_TYPE));
+  }
+
+  private void setKnownSchemas(List<Schema> schemas) {
+    Map<SchemaHash, Schema> hashes = new HashMap<>();
+    for (Schema schema : schemas) {
+      hashes.put(schema.getSchemaHash(), schema);
+    }
+    knownSchemas = hashes;
+  }
 }
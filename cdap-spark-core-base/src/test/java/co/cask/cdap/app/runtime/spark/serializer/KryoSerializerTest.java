@@ -20,8 +20,10 @@ import co.cask.cdap.api.data.format.StructuredRecord;
 import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.format.StructuredRecordStringConverter;
 import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import org.junit.Assert;
 import org.junit.Test;
@@ -87,6 +89,58 @@ public class KryoSerializerTest {
                         StructuredRecordStringConverter.toJsonString(newRecord));
   }
 
+  @Test
+  public void testKnownSchema() throws IOException {
+    Schema schema = createSchema();
+    StructuredRecord record = StructuredRecord.builder(schema)
+      .set("boolean", false)
+      .set("int", 1)
+      .set("long", 2L)
+      .set("float", 3.5f)
+      .set("double", 4.25d)
+      .set("string", "Known Schema")
+      .set("bytes", new byte[] {1, 2, 3})
+      .set("enum", "b")
+      .set("array", new int[] {4, 5})
+      .set("map", ImmutableMap.of("4", 4))
+      .set("union", "union").build();
+
+    Kryo kryo = new Kryo();
+    kryo.register(StructuredRecord.class, new StructuredRecordSerializer(ImmutableList.of(schema)));
+
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    try (Output output = new Output(bos)) {
+      kryo.writeObject(output, record);
+    }
+    byte[] knownSchemaBytes = bos.toByteArray();
+
+    // Record of a known schema is not serialized with the schema
+    Assert.assertTrue(knownSchemaBytes.length < schema.toString().length());
+
+    StructuredRecord newRecord = kryo.readObject(new Input(knownSchemaBytes), StructuredRecord.class);
+    Assert.assertEquals(StructuredRecordStringConverter.toJsonString(record),
+                        StructuredRecordStringConverter.toJsonString(newRecord));
+
+    // Known schemas are identified by hash, hence the order of the known schemas doesn't matter
+    Schema otherSchema = Schema.recordOf("other", Schema.Field.of("x", Schema.of(Schema.Type.INT)));
+    Kryo reorderedKryo = new Kryo();
+    reorderedKryo.register(StructuredRecord.class,
+                           new StructuredRecordSerializer(ImmutableList.of(otherSchema, schema)));
+    newRecord = reorderedKryo.readObject(new Input(knownSchemaBytes), StructuredRecord.class);
+    Assert.assertEquals(StructuredRecordStringConverter.toJsonString(record),
+                        StructuredRecordStringConverter.toJsonString(newRecord));
+
+    // Deserializing without knowing the schema should fail
+    Kryo unknownKryo = new Kryo();
+    unknownKryo.register(StructuredRecord.class, new StructuredRecordSerializer(ImmutableList.<Schema>of()));
+    try {
+      unknownKryo.readObject(new Input(knownSchemaBytes), StructuredRecord.class);
+      Assert.fail("Expected failure when deserializing record of unknown schema");
+    } catch (KryoException e) {
+      // Expected
+    }
+  }
+
   private Schema createSchema() {
     return Schema.recordOf("record",
       Schema.Field.of("boolean", Schema.of(Schema.Type.BOOLEAN)),
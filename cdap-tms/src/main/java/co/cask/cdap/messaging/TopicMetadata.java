@@ -1,5 +1,5 @@
 /*
- * Copyright © 2016 Cask Data, Inc.
+ * Copyright © 2016-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -19,17 +19,33 @@ package co.cask.cdap.messaging;
 import co.cask.cdap.proto.id.TopicId;
 import com.google.common.collect.ImmutableMap;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 
 /**
  * Represents metadata about a messaging topic.
+ *
+ * A topic can have multiple partitions, as specified by the {@link #PARTITIONS_KEY} property. Each partition is
+ * stored as a separate topic, hence has its own writer, cache and row key range. Partition {@code 0} is the topic
+ * itself, while the other partitions are internal topics as returned by {@link #getPartitionTopicId(int)}, which are
+ * marked by the {@link #PARTITION_OF_KEY} property.
+ * Publishers can route messages by key through {@link #getPartitionTopicId(byte[])} and consumers can fetch from
+ * each partition topic independently.
  */
 public class TopicMetadata {
 
   public static final String GENERATION_KEY = MessagingUtils.Constants.GENERATION_KEY;
   public static final String TTL_KEY = MessagingUtils.Constants.TTL_KEY;
+  public static final String PARTITIONS_KEY = "partitions";
+  // Property of the internal partition topics, with the name of the topic that they belong to as the value
+  public static final String PARTITION_OF_KEY = "partition.of";
+
+  // Separator between the topic name and the partition number for the internal partition topic names
+  private static final String PARTITION_TOPIC_SEPARATOR = "-partition-";
 
   private final TopicId topicId;
   private final Map<String, String> properties;
@@ -109,6 +125,85 @@ public class TopicMetadata {
     return Integer.parseInt(properties.get(TTL_KEY));
   }
 
+  /**
+   * Returns the number of partitions of the topic. Topic created without the partitions property has one partition.
+   */
+  public int getPartitions() {
+    if (!validated) {
+      validatePartitions();
+    }
+    String partitions = properties.get(PARTITIONS_KEY);
+    return partitions == null ? 1 : Integer.parseInt(partitions);
+  }
+
+  /**
+   * Returns the {@link TopicId} that stores messages of the given partition.
+   *
+   * @param partition the partition number, which must be in the range of {@code [0, getPartitions())}
+   * @return the topic itself for partition {@code 0}, otherwise the internal topic for the partition
+   */
+  public TopicId getPartitionTopicId(int partition) {
+    int partitions = getPartitions();
+    if (partition < 0 || partition >= partitions) {
+      throw new IllegalArgumentException("Partition " + partition + " is out of range for topic " + topicId
+                                           + " with " + partitions + " partitions");
+    }
+    if (partition == 0) {
+      return topicId;
+    }
+    return new TopicId(topicId.getNamespace(), topicId.getTopic() + PARTITION_TOPIC_SEPARATOR + partition);
+  }
+
+  /**
+   * Returns the {@link TopicId} of the partition that messages with the given key should be published to.
+   * Messages with the same key always go to the same partition.
+   */
+  public TopicId getPartitionTopicId(byte[] key) {
+    return getPartitionTopicId((Arrays.hashCode(key) & Integer.MAX_VALUE) % getPartitions());
+  }
+
+  /**
+   * Returns the {@link TopicId} of all partitions of the topic, ordered by partition number.
+   */
+  public List<TopicId> getPartitionTopicIds() {
+    return getPartitionTopicIds(0, 1);
+  }
+
+  /**
+   * Returns the {@link TopicId} of partitions assigned to a consumer in a group of consumers. Partitions are
+   * assigned in round robin fashion, so that every partition is consumed by exactly one consumer in the group.
+   *
+   * @param consumerId the id of the consumer in the group, in the range of {@code [0, consumers)}
+   * @param consumers total number of consumers in the group
+   * @return the list of partition topics assigned to the consumer, which can be empty if there are
+   *         more consumers than partitions
+   */
+  public List<TopicId> getPartitionTopicIds(int consumerId, int consumers) {
+    if (consumers <= 0 || consumerId < 0 || consumerId >= consumers) {
+      throw new IllegalArgumentException("Invalid consumer id " + consumerId + " for " + consumers + " consumers");
+    }
+    List<TopicId> topicIds = new ArrayList<>();
+    for (int i = consumerId; i < getPartitions(); i += consumers) {
+      topicIds.add(getPartitionTopicId(i));
+    }
+    return topicIds;
+  }
+
+  /**
+   * Returns {@code true} if this topic is an internal topic for storing a partition of another topic.
+   */
+  public boolean isPartitionTopic() {
+    return properties.containsKey(PARTITION_OF_KEY);
+  }
+
+  /**
+   * Returns {@code true} if the given topic has a name that an internal partition topic can have. Only such topics
+   * can be partition topics, but topics created by users can have such names as well.
+   */
+  public static boolean hasPartitionTopicName(TopicId topicId) {
+    return topicId.getTopic().contains(PARTITION_TOPIC_SEPARATOR);
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) {
@@ -142,6 +237,7 @@ public class TopicMetadata {
   private void validateProperties() {
     validateTTL();
     validateGeneration();
+    validatePartitions();
   }
 
   /**
@@ -163,6 +259,26 @@ public class TopicMetadata {
     }
   }
 
+  /**
+   * Validates the optional "partitions" property of the given topic.
+   *
+   * @throws IllegalArgumentException if the partitions value is not a number or <= 0.
+   */
+  private void validatePartitions() {
+    String partitions = properties.get(PARTITIONS_KEY);
+    if (partitions == null) {
+      return;
+    }
+    try {
+      if (Integer.parseInt(partitions) <= 0) {
+        throw new IllegalArgumentException("The partitions property must be greater than zero for topic " + topicId);
+      }
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("The partitions property must be a number greater than zero for topic "
+                                           + topicId, e);
+    }
+  }
+
   /**
    * Validates the "generation" property of the given topic.
    *
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2016 Cask Data, Inc.
+ * Copyright © 2016-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -397,10 +397,21 @@ public final class ClientMessagingService implements MessagingService {
 
       // The cask common http library doesn't support read streaming, and we don't want to buffer all messages
       // in memory, hence we use the HttpURLConnection directly instead.
-      URL url = remoteClient.resolve(createTopicPath(topicId) + "/poll");
+      // The wait timeout is passed as query parameter, which is ignored by server that doesn't support long polling.
+      long waitTimeout = getWaitTimeoutMillis();
+      String path = createTopicPath(topicId) + "/poll";
+      if (waitTimeout > 0) {
+        path += "?timeout=" + waitTimeout;
+      }
+      URL url = remoteClient.resolve(path);
       final HttpURLConnection urlConn = (HttpURLConnection)  url.openConnection();
       urlConn.setConnectTimeout(HTTP_REQUEST_CONFIG.getConnectTimeout());
-      urlConn.setReadTimeout(HTTP_REQUEST_CONFIG.getReadTimeout());
+      int readTimeout = HTTP_REQUEST_CONFIG.getReadTimeout();
+      // Extend the read timeout to cover the time that the server can wait before responding
+      if (readTimeout > 0 && waitTimeout > 0) {
+        readTimeout = (int) Math.min(Integer.MAX_VALUE, readTimeout + waitTimeout);
+      }
+      urlConn.setReadTimeout(readTimeout);
       urlConn.setRequestMethod("POST");
       urlConn.setRequestProperty(HttpHeaders.CONTENT_TYPE, "avro/binary");
       urlConn.setDoInput(true);
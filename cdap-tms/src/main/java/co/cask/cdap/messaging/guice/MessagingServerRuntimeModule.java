@@ -1,5 +1,5 @@
 /*
- * Copyright © 2016 Cask Data, Inc.
+ * Copyright © 2016-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -29,6 +29,7 @@ import co.cask.cdap.messaging.server.MessagingHttpService;
 import co.cask.cdap.messaging.server.MetadataHandler;
 import co.cask.cdap.messaging.server.StoreHandler;
 import co.cask.cdap.messaging.service.CoreMessagingService;
+import co.cask.cdap.messaging.service.PublishNotifier;
 import co.cask.cdap.messaging.store.MessageTable;
 import co.cask.cdap.messaging.store.TableFactory;
 import co.cask.cdap.messaging.store.cache.CachingTableFactory;
@@ -79,6 +80,8 @@ public class MessagingServerRuntimeModule extends RuntimeModule {
         bind(TableFactory.class).to(CachingTableFactory.class).in(Scopes.SINGLETON);
         expose(TableFactory.class);
 
+        // The notifier is shared between the messaging service and the fetch handler for long polling
+        bind(PublishNotifier.class).in(Scopes.SINGLETON);
         bind(MessagingService.class).to(CoreMessagingService.class).in(Scopes.SINGLETON);
         expose(MessagingService.class);
 
@@ -116,6 +119,7 @@ public class MessagingServerRuntimeModule extends RuntimeModule {
       });
 
       bind(TableFactory.class).to(LevelDBTableFactory.class).in(Scopes.SINGLETON);
+      bind(PublishNotifier.class).in(Scopes.SINGLETON);
       bind(MessagingService.class).to(CoreMessagingService.class).in(Scopes.SINGLETON);
       expose(MessagingService.class);
 
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2016 Cask Data, Inc.
+ * Copyright © 2016-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -20,6 +20,7 @@ import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.dataset.lib.CloseableIterator;
 import co.cask.cdap.api.messaging.TopicNotFoundException;
 import co.cask.cdap.common.BadRequestException;
+import co.cask.cdap.common.HttpExceptionHandler;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.io.ByteBuffers;
@@ -27,10 +28,12 @@ import co.cask.cdap.messaging.MessageFetcher;
 import co.cask.cdap.messaging.MessagingService;
 import co.cask.cdap.messaging.Schemas;
 import co.cask.cdap.messaging.data.RawMessage;
+import co.cask.cdap.messaging.service.PublishNotifier;
 import co.cask.cdap.proto.id.NamespaceId;
 import co.cask.cdap.proto.id.TopicId;
 import co.cask.http.AbstractHttpHandler;
 import co.cask.http.BodyProducer;
+import co.cask.http.HandlerContext;
 import co.cask.http.HttpResponder;
 import com.google.common.collect.ImmutableMultimap;
 import com.google.inject.Inject;
@@ -45,6 +48,8 @@ import org.apache.avro.io.DecoderFactory;
 import org.apache.avro.io.Encoder;
 import org.apache.avro.io.EncoderFactory;
 import org.apache.tephra.TransactionCodec;
+import org.apache.twill.common.Cancellable;
+import org.apache.twill.common.Threads;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBufferInputStream;
 import org.jboss.netty.buffer.ChannelBufferOutputStream;
@@ -60,10 +65,18 @@ import java.net.SocketException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javax.annotation.Nullable;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
 
 /**
  * A netty http handler for handling message fetching REST API for the messaging system.
@@ -73,21 +86,51 @@ public final class FetchHandler extends AbstractHttpHandler {
 
   private static final Logger LOG = LoggerFactory.getLogger(FetchHandler.class);
   private static final TransactionCodec TRANSACTION_CODEC = new TransactionCodec();
+  private static final HttpExceptionHandler EXCEPTION_HANDLER = new HttpExceptionHandler();
 
   private final MessagingService messagingService;
+  private final PublishNotifier publishNotifier;
+  private final int pollThreads;
+  private final long maxPollWaitMillis;
+  private final long pollRecheckIntervalMillis;
   private int messageChunkSize;
+  private ScheduledExecutorService pollExecutor;
 
   @Inject
-  FetchHandler(CConfiguration cConf, MessagingService messagingService) {
+  FetchHandler(CConfiguration cConf, MessagingService messagingService, PublishNotifier publishNotifier) {
     this.messagingService = messagingService;
+    this.publishNotifier = publishNotifier;
+    // Waiting polls are re-fetched with the same parallelism as the http server IO threads
+    this.pollThreads = cConf.getInt(Constants.MessagingSystem.HTTP_SERVER_WORKER_THREADS);
+    this.maxPollWaitMillis = cConf.getLong(Constants.MessagingSystem.HTTP_SERVER_MAX_POLL_WAIT_MS);
+    this.pollRecheckIntervalMillis = cConf.getLong(Constants.MessagingSystem.POLL_RECHECK_INTERVAL_MS);
     this.messageChunkSize = cConf.getInt(Constants.MessagingSystem.HTTP_SERVER_CONSUME_CHUNK_SIZE);
   }
 
+  @Override
+  public void init(HandlerContext context) {
+    super.init(context);
+    pollExecutor = Executors.newScheduledThreadPool(Math.max(1, pollThreads),
+                                                    Threads.createDaemonThreadFactory("messaging-poll-%d"));
+  }
+
+  @Override
+  public void destroy(HandlerContext context) {
+    super.destroy(context);
+    pollExecutor.shutdownNow();
+  }
+
+  /**
+   * Fetches messages from a topic. If the {@code timeout} query parameter is provided and there is no message
+   * available, the response will be deferred until there are new messages or the timeout expired, whichever comes
+   * first. The waiting doesn't block the http server threads.
+   */
   @POST
   @Path("poll")
   public void poll(HttpRequest request, HttpResponder responder,
                    @PathParam("namespace") String namespace,
-                   @PathParam("topic") String topic) throws Exception {
+                   @PathParam("topic") String topic,
+                   @QueryParam("timeout") @DefaultValue("0") long timeout) throws Exception {
 
     TopicId topicId = new NamespaceId(namespace).topic(topic);
 
@@ -95,14 +138,30 @@ public final class FetchHandler extends AbstractHttpHandler {
     if (!"avro/binary".equals(request.getHeader(HttpHeaders.Names.CONTENT_TYPE))) {
       throw new BadRequestException("Only avro/binary content type is supported.");
     }
+    if (timeout < 0) {
+      throw new BadRequestException("Poll timeout must be >= 0.");
+    }
 
     // Decode the poll request
     Decoder decoder = DecoderFactory.get().directBinaryDecoder(new ChannelBufferInputStream(request.getContent()),
                                                                null);
     DatumReader<GenericRecord> datumReader = new GenericDatumReader<>(Schemas.V1.ConsumeRequest.SCHEMA);
+    GenericRecord fetchRequest = datumReader.read(null, decoder);
+
+    long waitMillis = Math.min(timeout, maxPollWaitMillis);
+    if (waitMillis <= 0) {
+      // Fetch the messages
+      sendMessages(responder, fetchMessages(fetchRequest, topicId));
+      return;
+    }
+
+    new LongPoll(request, responder, topicId, fetchRequest, System.currentTimeMillis() + waitMillis).poll();
+  }
 
-    // Fetch the messages
-    CloseableIterator<RawMessage> iterator = fetchMessages(datumReader.read(null, decoder), topicId);
+  /**
+   * Sends the messages provided by the given {@link CloseableIterator} as the response.
+   */
+  private void sendMessages(HttpResponder responder, CloseableIterator<RawMessage> iterator) {
     try {
       responder.sendContent(HttpResponseStatus.OK, new MessagesBodyProducer(iterator, messageChunkSize),
                             ImmutableMultimap.of(HttpHeaders.Names.CONTENT_TYPE, "avro/binary"));
@@ -146,6 +205,107 @@ public final class FetchHandler extends AbstractHttpHandler {
     return fetcher.fetch();
   }
 
+  /**
+   * Performs a poll request that waits for new messages. The first fetch happens in the http server thread.
+   * If there is no message, it waits for notification from the {@link PublishNotifier} or for the recheck
+   * interval and fetches again in the poll executor thread, until there are messages or the deadline passed.
+   */
+  private final class LongPoll implements Runnable {
+
+    private final HttpRequest request;
+    private final HttpResponder responder;
+    private final TopicId topicId;
+    private final GenericRecord fetchRequest;
+    private final long deadline;
+
+    LongPoll(HttpRequest request, HttpResponder responder,
+             TopicId topicId, GenericRecord fetchRequest, long deadline) {
+      this.request = request;
+      this.responder = responder;
+      this.topicId = topicId;
+      this.fetchRequest = fetchRequest;
+      this.deadline = deadline;
+    }
+
+    @Override
+    public void run() {
+      try {
+        poll();
+      } catch (Throwable t) {
+        EXCEPTION_HANDLER.handle(t, request, responder);
+      }
+    }
+
+    /**
+     * Fetches messages and sends them back if there are any or if the deadline passed.
+     * Otherwise schedules another fetch when there are new publishes or after the recheck interval.
+     */
+    void poll() throws Exception {
+      // Get the publish count before fetching, so that publishes happened after the fetch won't be missed
+      long publishCount = publishNotifier.getPublishCount(topicId);
+      CloseableIterator<RawMessage> iterator = fetchMessages(fetchRequest, topicId);
+      long remaining = deadline - System.currentTimeMillis();
+      boolean respond;
+      try {
+        respond = remaining <= 0 || iterator.hasNext();
+      } catch (Throwable t) {
+        iterator.close();
+        throw t;
+      }
+      if (respond) {
+        sendMessages(responder, iterator);
+        return;
+      }
+      iterator.close();
+
+      // The listener is added before scheduling the timer, so that it is never left behind by a timer that fires
+      // before the listener is added. If the listener is called right away, there is no need for the timer.
+      Trigger trigger = new Trigger();
+      trigger.listenerCancellable = publishNotifier.addListener(topicId, publishCount, trigger);
+      if (trigger.triggered.get()) {
+        return;
+      }
+      // Publishes through other messaging service instances are not notified, hence also recheck periodically.
+      trigger.timer = pollExecutor.schedule(trigger, Math.min(remaining, pollRecheckIntervalMillis),
+                                            TimeUnit.MILLISECONDS);
+      // The listener may have been called before the timer was set
+      if (trigger.triggered.get()) {
+        trigger.timer.cancel(false);
+      }
+    }
+
+    /**
+     * Submits the next fetch to the poll executor on either the first publish notification or the recheck timer.
+     */
+    private final class Trigger implements Runnable {
+
+      private final AtomicBoolean triggered = new AtomicBoolean();
+      private volatile ScheduledFuture<?> timer;
+      private volatile Cancellable listenerCancellable;
+
+      @Override
+      public void run() {
+        if (!triggered.compareAndSet(false, true)) {
+          return;
+        }
+        // Either of them can be null if triggered before being set, in which case poll() cancels the timer, and
+        // the listener is already removed by the PublishNotifier
+        if (timer != null) {
+          timer.cancel(false);
+        }
+        if (listenerCancellable != null) {
+          listenerCancellable.cancel();
+        }
+        try {
+          pollExecutor.execute(LongPoll.this);
+        } catch (RejectedExecutionException e) {
+          // Happens when the handler is being destroyed
+          LOG.debug("Poll request for topic {} is dropped", topicId);
+        }
+      }
+    }
+  }
+
   /**
    * A {@link BodyProducer} to encode and send back messages.
    * Instead of using GenericDatumWriter, we perform the array encoding manually so that we don't have to buffer
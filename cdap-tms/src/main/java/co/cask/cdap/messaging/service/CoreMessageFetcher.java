@@ -1,5 +1,5 @@
 /*
- * Copyright © 2016 Cask Data, Inc.
+ * Copyright © 2016-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -44,17 +44,59 @@ final class CoreMessageFetcher extends MessageFetcher {
   private final TopicMetadata topicMetadata;
   private final TableProvider<MessageTable> messageTableProvider;
   private final TableProvider<PayloadTable> payloadTableProvider;
+  private final PublishNotifier publishNotifier;
+  private final long recheckIntervalMillis;
 
   CoreMessageFetcher(TopicMetadata topicMetadata,
                      TableProvider<MessageTable> messageTableProvider,
-                     TableProvider<PayloadTable> payloadTableProvider) {
+                     TableProvider<PayloadTable> payloadTableProvider,
+                     PublishNotifier publishNotifier, long recheckIntervalMillis) {
     this.topicMetadata = topicMetadata;
     this.messageTableProvider = messageTableProvider;
     this.payloadTableProvider = payloadTableProvider;
+    this.publishNotifier = publishNotifier;
+    this.recheckIntervalMillis = recheckIntervalMillis;
   }
 
   @Override
   public CloseableIterator<RawMessage> fetch() throws IOException {
+    long waitTimeout = getWaitTimeoutMillis();
+    if (waitTimeout <= 0) {
+      return createIterator();
+    }
+
+    TopicId topicId = topicMetadata.getTopicId();
+    long deadline = System.currentTimeMillis() + waitTimeout;
+    while (true) {
+      // Get the publish count before fetching, so that publishes happened after the fetch won't be missed
+      long publishCount = publishNotifier.getPublishCount(topicId);
+      CloseableIterator<RawMessage> iterator = createIterator();
+      long remaining = deadline - System.currentTimeMillis();
+      try {
+        if (remaining <= 0 || iterator.hasNext()) {
+          return iterator;
+        }
+      } catch (Throwable t) {
+        iterator.close();
+        throw t;
+      }
+      iterator.close();
+
+      // Wait for new publishes. Periodically recheck the table as well, since publishes can happen
+      // through other messaging service instances, which won't be notified.
+      try {
+        publishNotifier.await(topicId, publishCount, Math.min(remaining, recheckIntervalMillis), TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return createIterator();
+      }
+    }
+  }
+
+  /**
+   * Creates a {@link CloseableIterator} to fetch messages from the tables.
+   */
+  private CloseableIterator<RawMessage> createIterator() throws IOException {
     MessageTable messageTable = messageTableProvider.get();
     try {
       return new MessageCloseableIterator(messageTable);
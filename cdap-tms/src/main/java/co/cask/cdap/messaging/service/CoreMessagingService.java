@@ -1,5 +1,5 @@
 /*
- * Copyright © 2016 Cask Data, Inc.
+ * Copyright © 2016-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -54,6 +54,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -85,16 +86,19 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
   private final TimeProvider timeProvider;
   private final MetricsCollectionService metricsCollectionService;
   private final long txMaxLifeTimeInMillis;
+  private final PublishNotifier publishNotifier;
+  private final long pollRecheckIntervalMillis;
 
   @Inject
   CoreMessagingService(CConfiguration cConf, TableFactory tableFactory,
-                       MetricsCollectionService metricsCollectionService) {
-    this(cConf, tableFactory, TimeProvider.SYSTEM_TIME, metricsCollectionService);
+                       MetricsCollectionService metricsCollectionService, PublishNotifier publishNotifier) {
+    this(cConf, tableFactory, TimeProvider.SYSTEM_TIME, metricsCollectionService, publishNotifier);
   }
 
   @VisibleForTesting
   CoreMessagingService(CConfiguration cConf, TableFactory tableFactory,
-                       TimeProvider timeProvider, MetricsCollectionService metricsCollectionService) {
+                       TimeProvider timeProvider, MetricsCollectionService metricsCollectionService,
+                       PublishNotifier publishNotifier) {
     this.cConf = cConf;
     this.tableFactory = tableFactory;
     this.topicCache = createTopicCache();
@@ -114,34 +118,82 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
     this.metricsCollectionService = metricsCollectionService;
     this.txMaxLifeTimeInMillis = TimeUnit.SECONDS.toMillis(cConf.getLong(TxConstants.Manager.CFG_TX_MAX_LIFETIME,
                                                                          TxConstants.Manager.DEFAULT_TX_MAX_LIFETIME));
+    this.publishNotifier = publishNotifier;
+    this.pollRecheckIntervalMillis = cConf.getLong(Constants.MessagingSystem.POLL_RECHECK_INTERVAL_MS);
   }
 
   @Override
   public void createTopic(TopicMetadata topicMetadata) throws TopicAlreadyExistsException, IOException {
+    TopicId topicId = topicMetadata.getTopicId();
+    checkReservedProperties(topicMetadata);
     try (MetadataTable metadataTable = createMetadataTable()) {
       Map<String, String> properties = createDefaultProperties();
       properties.putAll(topicMetadata.getProperties());
-      metadataTable.createTopic(new TopicMetadata(topicMetadata.getTopicId(), properties, true));
+      TopicMetadata metadata = new TopicMetadata(topicId, properties, true);
+
+      // Topics created by users can have the same name as a partition topic
+      for (TopicId partitionTopicId : getPartitionTopics(metadata)) {
+        try {
+          if (!metadataTable.getMetadata(partitionTopicId).isPartitionTopic()) {
+            throw new TopicAlreadyExistsException(partitionTopicId.getNamespace(), partitionTopicId.getTopic());
+          }
+        } catch (TopicNotFoundException e) {
+          // expected
+        }
+      }
+      metadataTable.createTopic(metadata);
+      createPartitionTopics(metadataTable, metadata);
     }
   }
 
   @Override
   public void updateTopic(TopicMetadata topicMetadata) throws TopicNotFoundException, IOException {
+    TopicId topicId = topicMetadata.getTopicId();
+    checkReservedProperties(topicMetadata);
     try (MetadataTable metadataTable = createMetadataTable()) {
+      TopicMetadata oldMetadata = metadataTable.getMetadata(topicId);
+      checkNotPartitionTopic(oldMetadata);
       Map<String, String> properties = createDefaultProperties();
       properties.putAll(topicMetadata.getProperties());
-      metadataTable.updateTopic(new TopicMetadata(topicMetadata.getTopicId(), properties, true));
-      topicCache.invalidate(topicMetadata.getTopicId());
+      TopicMetadata metadata = new TopicMetadata(topicId, properties, true);
+
+      // The number of partitions is fixed since messages are routed by it
+      if (!properties.containsKey(TopicMetadata.PARTITIONS_KEY) && oldMetadata.getPartitions() > 1) {
+        properties.put(TopicMetadata.PARTITIONS_KEY, Integer.toString(oldMetadata.getPartitions()));
+        metadata = new TopicMetadata(topicId, properties, true);
+      }
+      if (metadata.getPartitions() != oldMetadata.getPartitions()) {
+        throw new IllegalArgumentException("Cannot change the number of partitions of topic " + topicId);
+      }
+
+      metadataTable.updateTopic(metadata);
+      topicCache.invalidate(topicId);
+      for (TopicId partitionTopicId : getPartitionTopics(metadata)) {
+        metadataTable.updateTopic(new TopicMetadata(partitionTopicId, getPartitionProperties(metadata), true));
+        topicCache.invalidate(partitionTopicId);
+      }
     }
   }
 
   @Override
   public void deleteTopic(TopicId topicId) throws TopicNotFoundException, IOException {
     try (MetadataTable metadataTable = createMetadataTable()) {
+      TopicMetadata metadata = metadataTable.getMetadata(topicId);
+      checkNotPartitionTopic(metadata);
       metadataTable.deleteTopic(topicId);
-      topicCache.invalidate(topicId);
-      messageTableWriterCache.invalidate(topicId);
-      payloadTableWriterCache.invalidate(topicId);
+      invalidateTopic(topicId);
+      publishNotifier.topicDeleted(topicId);
+
+      for (TopicId partitionTopicId : getPartitionTopics(metadata)) {
+        try {
+          metadataTable.deleteTopic(partitionTopicId);
+        } catch (TopicNotFoundException e) {
+          // Can happen if a previous deletion was interrupted. Simply ignore it.
+          LOG.debug("Partition topic {} of topic {} is already deleted", partitionTopicId, topicId);
+        }
+        invalidateTopic(partitionTopicId);
+        publishNotifier.topicDeleted(partitionTopicId);
+      }
     }
   }
 
@@ -158,9 +210,16 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
 
   @Override
   public List<TopicId> listTopics(NamespaceId namespaceId) throws IOException {
+    List<TopicId> topics = new ArrayList<>();
     try (MetadataTable metadataTable = createMetadataTable()) {
-      return metadataTable.listTopics(namespaceId);
+      // Partition topics are internal to the topic that they belong to
+      for (TopicId topicId : metadataTable.listTopics(namespaceId)) {
+        if (!TopicMetadata.hasPartitionTopicName(topicId) || !isPartitionTopic(metadataTable, topicId)) {
+          topics.add(topicId);
+        }
+      }
     }
+    return topics;
   }
 
   @Override
@@ -176,7 +235,7 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
       public PayloadTable get() throws IOException {
         return createPayloadTable(metadata);
       }
-    });
+    }, publishNotifier, pollRecheckIntervalMillis);
   }
 
   @Nullable
@@ -187,7 +246,9 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
       if (request.isTransactional()) {
         ensureValidTxLifetime(request.getTransactionWritePointer());
       }
-      return messageTableWriterCache.get(request.getTopicId()).persist(request, metadata);
+      RollbackDetail rollbackDetail = messageTableWriterCache.get(request.getTopicId()).persist(request, metadata);
+      publishNotifier.published(request.getTopicId());
+      return rollbackDetail;
     } catch (ExecutionException e) {
       Throwable cause = Objects.firstNonNull(e.getCause(), e);
       Throwables.propagateIfPossible(cause, TopicNotFoundException.class, IOException.class);
@@ -316,6 +377,89 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
     }
   }
 
+  /**
+   * Creates the internal topics for storing messages of partitions other than the first one of the given topic.
+   */
+  private void createPartitionTopics(MetadataTable metadataTable, TopicMetadata metadata) throws IOException {
+    Map<String, String> properties = getPartitionProperties(metadata);
+    for (TopicId partitionTopicId : getPartitionTopics(metadata)) {
+      TopicMetadata partitionMetadata = new TopicMetadata(partitionTopicId, properties, true);
+      try {
+        metadataTable.createTopic(partitionMetadata);
+      } catch (TopicAlreadyExistsException e) {
+        // Left over from a previous topic of the same name that was not fully deleted.
+        // Recreate it so that it starts with a new generation without the old messages.
+        LOG.debug("Recreating partition topic {} of topic {}", partitionTopicId, metadata.getTopicId());
+        try {
+          metadataTable.deleteTopic(partitionTopicId);
+          metadataTable.createTopic(partitionMetadata);
+        } catch (TopicNotFoundException | TopicAlreadyExistsException ex) {
+          // Shouldn't happen since it is just created or deleted
+          throw new IOException("Failed to recreate partition topic " + partitionTopicId, ex);
+        }
+      }
+      invalidateTopic(partitionTopicId);
+    }
+  }
+
+  /**
+   * Returns the internal partition topics of the given topic, which excludes the topic itself.
+   */
+  private List<TopicId> getPartitionTopics(TopicMetadata metadata) {
+    List<TopicId> partitionTopicIds = metadata.getPartitionTopicIds();
+    return partitionTopicIds.subList(1, partitionTopicIds.size());
+  }
+
+  /**
+   * Returns the properties of partition topics based on the metadata of the topic that they belong to.
+   */
+  private Map<String, String> getPartitionProperties(TopicMetadata metadata) {
+    Map<String, String> properties = new HashMap<>(metadata.getProperties());
+    properties.remove(TopicMetadata.PARTITIONS_KEY);
+    properties.put(TopicMetadata.PARTITION_OF_KEY, metadata.getTopicId().getTopic());
+    return properties;
+  }
+
+  /**
+   * Returns whether the given topic is an internal partition topic, which is {@code false} if it doesn't exist.
+   */
+  private boolean isPartitionTopic(MetadataTable metadataTable, TopicId topicId) throws IOException {
+    try {
+      return metadataTable.getMetadata(topicId).isPartitionTopic();
+    } catch (TopicNotFoundException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Checks that the given topic is not an internal partition topic, which is only modified with its topic.
+   */
+  private void checkNotPartitionTopic(TopicMetadata metadata) {
+    if (metadata.isPartitionTopic()) {
+      throw new IllegalArgumentException("Topic " + metadata.getTopicId() + " is a partition of topic "
+                                           + metadata.getProperties().get(TopicMetadata.PARTITION_OF_KEY));
+    }
+  }
+
+  /**
+   * Checks that the given metadata provided by a user doesn't have properties that are reserved for internal use.
+   */
+  private void checkReservedProperties(TopicMetadata topicMetadata) {
+    if (topicMetadata.getProperties().containsKey(TopicMetadata.PARTITION_OF_KEY)) {
+      throw new IllegalArgumentException("Property " + TopicMetadata.PARTITION_OF_KEY + " of topic "
+                                           + topicMetadata.getTopicId() + " is reserved for partition topics");
+    }
+  }
+
+  /**
+   * Invalidates all the cached states for the given topic.
+   */
+  private void invalidateTopic(TopicId topicId) {
+    topicCache.invalidate(topicId);
+    messageTableWriterCache.invalidate(topicId);
+    payloadTableWriterCache.invalidate(topicId);
+  }
+
   /**
    * Creates a loading cache for {@link TopicMetadata}.
    */
@@ -0,0 +1,177 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging.service;
+
+import co.cask.cdap.proto.id.TopicId;
+import org.apache.twill.common.Cancellable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Keeps track of publishes happened in this process so that consumers waiting for new messages can be woken up
+ * as soon as messages are published to a topic, instead of repeatedly polling the message table.
+ *
+ * Consumers first obtain the current publish count of a topic through {@link #getPublishCount(TopicId)}, then
+ * fetch messages. If no message is available, they can wait for the publish count to change by either
+ * {@link #await(TopicId, long, long, TimeUnit) blocking} or {@link #addListener(TopicId, long, Runnable)
+ * registering a listener}.
+ */
+@ThreadSafe
+public final class PublishNotifier {
+
+  private static final Logger LOG = LoggerFactory.getLogger(PublishNotifier.class);
+
+  private static final Cancellable NO_OP_CANCELLABLE = new Cancellable() {
+    @Override
+    public void cancel() {
+      // no-op
+    }
+  };
+
+  private final ConcurrentMap<TopicId, TopicState> topicStates = new ConcurrentHashMap<>();
+
+  /**
+   * Returns the number of publishes happened to the given topic since this process started.
+   */
+  public long getPublishCount(TopicId topicId) {
+    TopicState state = getTopicState(topicId);
+    synchronized (state) {
+      return state.publishCount;
+    }
+  }
+
+  /**
+   * Notifies that messages were published to the given topic.
+   */
+  public void published(TopicId topicId) {
+    // If there is no state, no consumer has obtained the publish count yet, hence there is no one to notify
+    TopicState state = topicStates.get(topicId);
+    if (state != null) {
+      notifyPublished(topicId, state);
+    }
+  }
+
+  /**
+   * Notifies that the given topic was deleted. The state of the topic is removed, and consumers waiting on it are
+   * woken up so that they find out that the topic no longer exists.
+   */
+  public void topicDeleted(TopicId topicId) {
+    TopicState state = topicStates.remove(topicId);
+    if (state != null) {
+      notifyPublished(topicId, state);
+    }
+  }
+
+  /**
+   * Adds a listener that will be called once when the publish count of the given topic is different from the given
+   * count. If the count is already different, the listener is called immediately from the caller thread.
+   * Otherwise, it is called from the publishing thread, hence the listener shouldn't perform any blocking operation.
+   *
+   * @param topicId the topic to listen on
+   * @param publishCount the publish count obtained from {@link #getPublishCount(TopicId)}
+   * @param listener the listener to call
+   * @return a {@link Cancellable} to remove the listener
+   */
+  public Cancellable addListener(TopicId topicId, long publishCount, final Runnable listener) {
+    final TopicState state = getTopicState(topicId);
+    synchronized (state) {
+      if (state.publishCount == publishCount) {
+        state.listeners.add(listener);
+        return new Cancellable() {
+          @Override
+          public void cancel() {
+            synchronized (state) {
+              state.listeners.remove(listener);
+            }
+          }
+        };
+      }
+    }
+    listener.run();
+    return NO_OP_CANCELLABLE;
+  }
+
+  /**
+   * Blocks until the publish count of the given topic is different from the given count or the timeout expired.
+   *
+   * @param topicId the topic to wait on
+   * @param publishCount the publish count obtained from {@link #getPublishCount(TopicId)}
+   * @param timeout maximum time to wait
+   * @param unit unit for the timeout
+   * @return {@code true} if there were new publishes to the topic; {@code false} if the timeout expired
+   * @throws InterruptedException if the current thread is interrupted while waiting
+   */
+  public boolean await(TopicId topicId, long publishCount,
+                       long timeout, TimeUnit unit) throws InterruptedException {
+    TopicState state = getTopicState(topicId);
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    synchronized (state) {
+      long remaining = deadline - System.nanoTime();
+      while (state.publishCount == publishCount && remaining > 0) {
+        TimeUnit.NANOSECONDS.timedWait(state, remaining);
+        remaining = deadline - System.nanoTime();
+      }
+      return state.publishCount != publishCount;
+    }
+  }
+
+  private void notifyPublished(TopicId topicId, TopicState state) {
+    List<Runnable> listeners;
+    synchronized (state) {
+      state.publishCount++;
+      state.notifyAll();
+      if (state.listeners.isEmpty()) {
+        return;
+      }
+      listeners = new ArrayList<>(state.listeners);
+      state.listeners.clear();
+    }
+    for (Runnable listener : listeners) {
+      try {
+        listener.run();
+      } catch (Throwable t) {
+        // Never fail the publish because of a listener
+        LOG.warn("Exception raised when notifying publish to topic {}", topicId, t);
+      }
+    }
+  }
+
+  private TopicState getTopicState(TopicId topicId) {
+    TopicState state = topicStates.get(topicId);
+    if (state != null) {
+      return state;
+    }
+    state = new TopicState();
+    TopicState existing = topicStates.putIfAbsent(topicId, state);
+    return existing == null ? state : existing;
+  }
+
+  /**
+   * Publish state of a topic. All fields are guarded by the instance lock.
+   */
+  private static final class TopicState {
+    private final List<Runnable> listeners = new ArrayList<>();
+    private long publishCount;
+  }
+}
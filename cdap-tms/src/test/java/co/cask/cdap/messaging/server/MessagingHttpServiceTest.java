@@ -1,5 +1,5 @@
 /*
- * Copyright © 2016 Cask Data, Inc.
+ * Copyright © 2016-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -36,6 +36,7 @@ import co.cask.cdap.messaging.data.RawMessage;
 import co.cask.cdap.messaging.guice.MessagingServerRuntimeModule;
 import co.cask.cdap.proto.id.NamespaceId;
 import co.cask.cdap.proto.id.TopicId;
+import com.google.common.base.Stopwatch;
 import com.google.common.base.Strings;
 import com.google.common.collect.Iterators;
 import com.google.inject.AbstractModule;
@@ -57,6 +58,11 @@ import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Tests for {@link MessagingHttpService}.
@@ -75,6 +81,8 @@ public class MessagingHttpServiceTest {
     cConf = CConfiguration.create();
     cConf.set(Constants.CFG_LOCAL_DATA_DIR, TEMP_FOLDER.newFolder().getAbsolutePath());
     cConf.setInt(Constants.MessagingSystem.HTTP_SERVER_CONSUME_CHUNK_SIZE, 128);
+    // Use a long recheck interval so that long polling relies on publish notification
+    cConf.setLong(Constants.MessagingSystem.POLL_RECHECK_INTERVAL_MS, 60000L);
     // Set max life time to a high value so that dummy tx ids that we create in the tests still work
     cConf.setLong(TxConstants.Manager.CFG_TX_MAX_LIFETIME, 10000000000L);
 
@@ -494,4 +502,159 @@ public class MessagingHttpServiceTest {
 
     client.deleteTopic(topicId);
   }
+
+  @Test
+  public void testLongPoll() throws Exception {
+    final TopicId topicId = new NamespaceId("ns1").topic("testLongPoll");
+    client.createTopic(new TopicMetadata(topicId));
+
+    // Poll on an empty topic should return empty after the wait timeout
+    Stopwatch stopwatch = new Stopwatch().start();
+    try (CloseableIterator<RawMessage> iterator = client.prepareFetch(topicId)
+                                                        .setWaitTimeout(500, TimeUnit.MILLISECONDS).fetch()) {
+      Assert.assertFalse(iterator.hasNext());
+    }
+    Assert.assertTrue(stopwatch.elapsedMillis() >= 500);
+
+    // Poll in another thread and publish while it is waiting. The poll should return as soon as there is message.
+    final long startTime = System.currentTimeMillis();
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<List<RawMessage>> future = executor.submit(new Callable<List<RawMessage>>() {
+        @Override
+        public List<RawMessage> call() throws Exception {
+          List<RawMessage> messages = new ArrayList<>();
+          try (CloseableIterator<RawMessage> iterator = client.prepareFetch(topicId)
+                                                              .setStartTime(startTime)
+                                                              .setWaitTimeout(30, TimeUnit.SECONDS).fetch()) {
+            Iterators.addAll(messages, iterator);
+          }
+          return messages;
+        }
+      });
+
+      TimeUnit.MILLISECONDS.sleep(500);
+      client.publish(StoreRequestBuilder.of(topicId).addPayloads("m1").build());
+
+      List<RawMessage> messages = future.get(10, TimeUnit.SECONDS);
+      Assert.assertEquals(1, messages.size());
+      Assert.assertEquals("m1", Bytes.toString(messages.get(0).getPayload()));
+    } finally {
+      executor.shutdownNow();
+    }
+
+    client.deleteTopic(topicId);
+  }
+
+  @Test
+  public void testPartitionedTopic() throws Exception {
+    NamespaceId nsId = new NamespaceId("partition");
+    TopicId topicId = nsId.topic("t");
+
+    client.createTopic(new TopicMetadata(topicId, TopicMetadata.PARTITIONS_KEY, 3));
+    TopicMetadata metadata = client.getTopic(topicId);
+    Assert.assertEquals(3, metadata.getPartitions());
+
+    // Only the topic itself is visible
+    Assert.assertEquals(Arrays.asList(topicId), client.listTopics(nsId));
+
+    // Partition topics cannot be created, updated or deleted on their own
+    try {
+      client.createTopic(new TopicMetadata(metadata.getPartitionTopicId(1)));
+      Assert.fail("Expected TopicAlreadyExistsException");
+    } catch (TopicAlreadyExistsException e) {
+      // expected
+    }
+    try {
+      client.deleteTopic(metadata.getPartitionTopicId(1));
+      Assert.fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    try {
+      client.updateTopic(new TopicMetadata(metadata.getPartitionTopicId(1), TopicMetadata.TTL_KEY, 100));
+      Assert.fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    try {
+      client.createTopic(new TopicMetadata(nsId.topic("p"), TopicMetadata.PARTITION_OF_KEY, "t"));
+      Assert.fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+
+    // Topics with the same name as partition topics can be created by users
+    TopicId userTopicId = nsId.topic("a-partition-1");
+    client.createTopic(new TopicMetadata(userTopicId));
+    Assert.assertEquals(new HashSet<>(Arrays.asList(topicId, userTopicId)), new HashSet<>(client.listTopics(nsId)));
+    client.publish(StoreRequestBuilder.of(userTopicId).addPayloads("user").build());
+    // A partitioned topic whose partition names are taken cannot be created
+    try {
+      client.createTopic(new TopicMetadata(nsId.topic("a"), TopicMetadata.PARTITIONS_KEY, 2));
+      Assert.fail("Expected TopicAlreadyExistsException");
+    } catch (TopicAlreadyExistsException e) {
+      // expected
+    }
+    try (CloseableIterator<RawMessage> iterator = client.prepareFetch(userTopicId).fetch()) {
+      Assert.assertEquals("user", Bytes.toString(iterator.next().getPayload()));
+    }
+    client.deleteTopic(userTopicId);
+    Assert.assertEquals(Arrays.asList(topicId), client.listTopics(nsId));
+
+    // Publish messages by key. Messages with the same key goes to the same partition.
+    for (int i = 0; i < 30; i++) {
+      String key = "key" + (i % 10);
+      client.publish(StoreRequestBuilder.of(metadata.getPartitionTopicId(Bytes.toBytes(key)))
+                       .addPayloads(key + ":" + i).build());
+    }
+
+    // Consume from each partition with two consumers in a group
+    List<TopicId> partitions = new ArrayList<>(metadata.getPartitionTopicIds(0, 2));
+    partitions.addAll(metadata.getPartitionTopicIds(1, 2));
+    Assert.assertEquals(new HashSet<>(metadata.getPartitionTopicIds()), new HashSet<>(partitions));
+
+    Set<String> payloads = new HashSet<>();
+    for (TopicId partition : partitions) {
+      try (CloseableIterator<RawMessage> iterator = client.prepareFetch(partition).fetch()) {
+        while (iterator.hasNext()) {
+          String payload = Bytes.toString(iterator.next().getPayload());
+          String key = payload.substring(0, payload.indexOf(':'));
+          Assert.assertEquals(partition, metadata.getPartitionTopicId(Bytes.toBytes(key)));
+          payloads.add(payload);
+        }
+      }
+    }
+    Assert.assertEquals(30, payloads.size());
+
+    // Update the topic. The number of partitions is retained and cannot be changed.
+    client.updateTopic(new TopicMetadata(topicId, TopicMetadata.TTL_KEY, 100));
+    Assert.assertEquals(3, client.getTopic(topicId).getPartitions());
+    try {
+      client.updateTopic(new TopicMetadata(topicId, TopicMetadata.PARTITIONS_KEY, 4));
+      Assert.fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+
+    // Deleting the topic deletes all partitions
+    client.deleteTopic(topicId);
+    for (TopicId partition : metadata.getPartitionTopicIds()) {
+      try {
+        client.getTopic(partition);
+        Assert.fail("Expected TopicNotFoundException");
+      } catch (TopicNotFoundException e) {
+        // expected
+      }
+    }
+
+    // Recreate the topic shouldn't see old messages
+    client.createTopic(new TopicMetadata(topicId, TopicMetadata.PARTITIONS_KEY, 3));
+    for (TopicId partition : metadata.getPartitionTopicIds()) {
+      try (CloseableIterator<RawMessage> iterator = client.prepareFetch(partition).fetch()) {
+        Assert.assertFalse(iterator.hasNext());
+      }
+    }
+    client.deleteTopic(topicId);
+  }
 }
@@ -0,0 +1,88 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging.service;
+
+import co.cask.cdap.proto.id.NamespaceId;
+import co.cask.cdap.proto.id.TopicId;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for {@link PublishNotifier}.
+ */
+public class PublishNotifierTest {
+
+  @Test
+  public void testListener() throws InterruptedException {
+    PublishNotifier notifier = new PublishNotifier();
+    TopicId topicId = NamespaceId.DEFAULT.topic("listener");
+    CountingListener listener = new CountingListener();
+
+    long publishCount = notifier.getPublishCount(topicId);
+    notifier.addListener(topicId, publishCount, listener);
+    Assert.assertEquals(0, listener.count.get());
+    Assert.assertFalse(notifier.await(topicId, publishCount, 1, TimeUnit.MILLISECONDS));
+
+    // The listener is called once
+    notifier.published(topicId);
+    notifier.published(topicId);
+    Assert.assertEquals(1, listener.count.get());
+    Assert.assertTrue(notifier.await(topicId, publishCount, 1, TimeUnit.MILLISECONDS));
+
+    // A listener added with an outdated count is called right away
+    notifier.addListener(topicId, publishCount, listener);
+    Assert.assertEquals(2, listener.count.get());
+
+    // A cancelled listener is not called
+    notifier.addListener(topicId, notifier.getPublishCount(topicId), listener).cancel();
+    notifier.published(topicId);
+    Assert.assertEquals(2, listener.count.get());
+  }
+
+  @Test
+  public void testTopicDeleted() throws InterruptedException {
+    PublishNotifier notifier = new PublishNotifier();
+    TopicId topicId = NamespaceId.DEFAULT.topic("deleted");
+    CountingListener listener = new CountingListener();
+
+    // Consumers waiting on a deleted topic are woken up
+    long publishCount = notifier.getPublishCount(topicId);
+    notifier.addListener(topicId, publishCount, listener);
+    notifier.topicDeleted(topicId);
+    Assert.assertEquals(1, listener.count.get());
+
+    // Publishes to a topic without consumers don't add any state
+    notifier.published(topicId);
+    Assert.assertEquals(0, notifier.getPublishCount(topicId));
+  }
+
+  /**
+   * A listener that counts the number of calls.
+   */
+  private static final class CountingListener implements Runnable {
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public void run() {
+      count.incrementAndGet();
+    }
+  }
+}
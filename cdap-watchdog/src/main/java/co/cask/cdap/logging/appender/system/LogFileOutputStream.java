@@ -18,9 +18,11 @@ package co.cask.cdap.logging.appender.system;
 
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import co.cask.cdap.common.io.ByteBuffers;
+import co.cask.cdap.common.io.Locations;
 import co.cask.cdap.common.io.Syncable;
 import co.cask.cdap.logging.serialize.LoggingEvent;
 import co.cask.cdap.logging.serialize.LoggingEventSerializer;
+import co.cask.cdap.logging.write.LogFileIndex;
 import com.google.common.io.Closeables;
 import org.apache.avro.Schema;
 import org.apache.avro.file.DataFileWriter;
@@ -41,25 +43,42 @@ import java.nio.ByteBuffer;
  *
  * Since there is no way to check the state of the underlying file on an exception,
  * all methods of this class assume that the file state is bad on any exception and close the file.
+ *
+ * When the file is closed, a {@link LogFileIndex} of the file is written next to it, so that readers can seek
+ * to the blocks of a given time range and skip blocks without events of the requested log levels.
  */
 
 class LogFileOutputStream implements Closeable, Flushable, Syncable {
   private static final Logger LOG = LoggerFactory.getLogger(LogFileOutputStream.class);
 
   private final Location location;
+  private final String filePermissions;
+  private final int syncIntervalBytes;
   private final long createTime;
   private final Closeable closeable;
   private final LoggingEventSerializer serializer;
+  private final LogFileIndex.Builder indexBuilder;
 
   private OutputStream outputStream;
   private DataFileWriter<GenericRecord> dataFileWriter;
   private long fileSize;
 
+  // Stats of the events appended since the last sync, which are recorded as one index entry on the next sync
+  private long rangePosition;
+  private long rangeMinTimestamp;
+  private long rangeMaxTimestamp;
+  private int rangeLevelMask;
+  private int rangeEvents;
+  private long rangeBytes;
+
   LogFileOutputStream(Location location, String filePermissions,
                       int syncIntervalBytes, long createTime, Closeable closeable) throws IOException {
     this.location = location;
+    this.filePermissions = filePermissions;
+    this.syncIntervalBytes = syncIntervalBytes;
     this.closeable = closeable;
     this.serializer = new LoggingEventSerializer();
+    this.indexBuilder = new LogFileIndex.Builder();
 
     Schema schema = serializer.getAvroSchema();
     try {
@@ -70,6 +89,8 @@ class LogFileOutputStream implements Closeable, Flushable, Syncable {
       this.dataFileWriter.setSyncInterval(syncIntervalBytes);
       this.createTime = createTime;
       this.fileSize = 0;
+      // No block is written yet, hence sync just returns the position of the first block
+      this.rangePosition = dataFileWriter.sync();
     } catch (IOException e) {
       Closeables.closeQuietly(outputStream);
       Closeables.closeQuietly(dataFileWriter);
@@ -88,12 +109,29 @@ class LogFileOutputStream implements Closeable, Flushable, Syncable {
       if (encoded != null) {
         // TODO: CDAP-8735 Remove the copying after upgraded to Avro 1.7.4+
         dataFileWriter.appendEncoded(ByteBuffers.copy(encoded));
+        rangeBytes += encoded.remaining();
       } else {
         dataFileWriter.append(((LoggingEvent) event).getRecord());
       }
-      return;
+    } else {
+      dataFileWriter.append(serializer.toGenericRecord(event));
+    }
+
+    long timestamp = event.getTimeStamp();
+    if (rangeEvents == 0) {
+      rangeMinTimestamp = timestamp;
+      rangeMaxTimestamp = timestamp;
+    } else {
+      rangeMinTimestamp = Math.min(rangeMinTimestamp, timestamp);
+      rangeMaxTimestamp = Math.max(rangeMaxTimestamp, timestamp);
+    }
+    rangeLevelMask |= LogFileIndex.getLevelMask(event.getLevel());
+    rangeEvents++;
+
+    // End the block when it reaches the sync interval, so that each index entry covers about one Avro block
+    if (rangeBytes >= syncIntervalBytes) {
+      endRange(dataFileWriter.sync());
     }
-    dataFileWriter.append(serializer.toGenericRecord(event));
   }
 
   /**
@@ -115,6 +153,7 @@ class LogFileOutputStream implements Closeable, Flushable, Syncable {
   @Override
   public void flush() throws IOException {
     fileSize = dataFileWriter.sync();
+    endRange(fileSize);
   }
 
   @Override
@@ -131,9 +170,49 @@ class LogFileOutputStream implements Closeable, Flushable, Syncable {
   public void close() throws IOException {
     LOG.trace("Closing file {}", location);
     try {
-      dataFileWriter.close();
+      try {
+        endRange(dataFileWriter.sync());
+      } finally {
+        dataFileWriter.close();
+      }
+      writeIndex();
     } finally {
       closeable.close();
     }
   }
+
+  /**
+   * Records an index entry for the events appended since the last sync.
+   *
+   * @param syncPosition the position returned by the sync of the {@link DataFileWriter}
+   */
+  private void endRange(long syncPosition) {
+    if (rangeEvents > 0) {
+      indexBuilder.addEntry(rangePosition, rangeMinTimestamp, rangeMaxTimestamp, rangeLevelMask);
+    }
+    rangePosition = syncPosition;
+    rangeLevelMask = 0;
+    rangeEvents = 0;
+    rangeBytes = 0;
+  }
+
+  /**
+   * Writes the index of the log file. Failure to write the index is not fatal, since readers can always
+   * scan the log file without it.
+   */
+  private void writeIndex() {
+    Location indexLocation = null;
+    try {
+      indexLocation = LogFileIndex.getIndexLocation(location);
+      try (OutputStream os = filePermissions.isEmpty() ? indexLocation.getOutputStream()
+                                                       : indexLocation.getOutputStream(filePermissions)) {
+        indexBuilder.build().write(os);
+      }
+    } catch (IOException e) {
+      LOG.warn("Failed to write index for log file {}", location, e);
+      if (indexLocation != null) {
+        Locations.deleteQuietly(indexLocation);
+      }
+    }
+  }
 }
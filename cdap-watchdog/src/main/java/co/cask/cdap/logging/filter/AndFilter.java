@@ -1,5 +1,5 @@
 /*
- * Copyright © 2014 Cask Data, Inc.
+ * Copyright © 2014-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -32,6 +32,10 @@ public class AndFilter implements Filter {
     this.expressions = ImmutableList.copyOf(expressions);
   }
 
+  public List<? extends Filter> getExpressions() {
+    return expressions;
+  }
+
   @Override
   public boolean match(ILoggingEvent event) {
     for (Filter expression : expressions) {
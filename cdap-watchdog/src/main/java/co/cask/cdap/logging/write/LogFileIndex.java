@@ -0,0 +1,244 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.logging.write;
+
+import ch.qos.logback.classic.Level;
+import co.cask.cdap.common.io.Locations;
+import co.cask.cdap.logging.filter.AndFilter;
+import co.cask.cdap.logging.filter.Filter;
+import co.cask.cdap.logging.filter.LogLevelExpression;
+import co.cask.cdap.logging.filter.OrFilter;
+import com.google.common.collect.ImmutableList;
+import org.apache.twill.filesystem.Location;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * Index of a log file, stored in a sidecar file next to the log file. Each entry of the index covers a range of
+ * Avro blocks in the log file and contains the sync position where the range starts, the minimum and maximum
+ * timestamps of the events in the range and a bit mask of the log levels of those events.
+ */
+public final class LogFileIndex {
+
+  private static final String INDEX_FILE_SUFFIX = ".idx";
+  private static final int VERSION = 1;
+  private static final List<Level> LEVELS = ImmutableList.of(Level.TRACE, Level.DEBUG, Level.INFO,
+                                                             Level.WARN, Level.ERROR);
+  private static final int ALL_LEVELS = (1 << LEVELS.size()) - 1;
+
+  private final List<Entry> entries;
+  // maxTimestamps[i] is the maximum event timestamp of the entries from 0 to i
+  private final long[] maxTimestamps;
+
+  private LogFileIndex(List<Entry> entries) {
+    this.entries = ImmutableList.copyOf(entries);
+    this.maxTimestamps = new long[entries.size()];
+    long maxTimestamp = Long.MIN_VALUE;
+    for (int i = 0; i < entries.size(); i++) {
+      maxTimestamp = Math.max(maxTimestamp, entries.get(i).getMaxTimestamp());
+      maxTimestamps[i] = maxTimestamp;
+    }
+  }
+
+  /**
+   * Returns the {@link Location} of the index file of the given log file.
+   */
+  public static Location getIndexLocation(Location logLocation) throws IOException {
+    return Locations.getParent(logLocation).append(logLocation.getName() + INDEX_FILE_SUFFIX);
+  }
+
+  /**
+   * Returns the bit mask for the given log level. A {@code null} or unknown level maps to all levels.
+   */
+  public static int getLevelMask(@Nullable Level level) {
+    if (level == null) {
+      return ALL_LEVELS;
+    }
+    switch (level.toInt()) {
+      case Level.TRACE_INT:
+        return 1;
+      case Level.DEBUG_INT:
+        return 1 << 1;
+      case Level.INFO_INT:
+        return 1 << 2;
+      case Level.WARN_INT:
+        return 1 << 3;
+      case Level.ERROR_INT:
+        return 1 << 4;
+      default:
+        return ALL_LEVELS;
+    }
+  }
+
+  /**
+   * Returns the bit mask of the log levels of events that can be matched by the given {@link Filter}.
+   */
+  public static int getLevelMask(Filter filter) {
+    if (filter instanceof LogLevelExpression) {
+      Level minLevel = ((LogLevelExpression) filter).getLevel();
+      int mask = 0;
+      for (Level level : LEVELS) {
+        if (level.isGreaterOrEqual(minLevel)) {
+          mask |= getLevelMask(level);
+        }
+      }
+      return mask;
+    }
+    if (filter instanceof AndFilter) {
+      int mask = ALL_LEVELS;
+      for (Filter expression : ((AndFilter) filter).getExpressions()) {
+        mask &= getLevelMask(expression);
+      }
+      return mask;
+    }
+    if (filter instanceof OrFilter) {
+      int mask = 0;
+      for (Filter expression : ((OrFilter) filter).getExpressions()) {
+        mask |= getLevelMask(expression);
+      }
+      return mask;
+    }
+    return ALL_LEVELS;
+  }
+
+  /**
+   * Reads a {@link LogFileIndex} from the given {@link InputStream}.
+   *
+   * @throws IOException if failed to read or the index is incomplete
+   */
+  public static LogFileIndex read(InputStream is) throws IOException {
+    DataInputStream input = new DataInputStream(is);
+    int version = input.readInt();
+    if (version != VERSION) {
+      throw new IOException("Unsupported log file index version " + version);
+    }
+    int size = input.readInt();
+    List<Entry> entries = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      entries.add(new Entry(input.readLong(), input.readLong(), input.readLong(), input.readInt()));
+    }
+    return new LogFileIndex(entries);
+  }
+
+  /**
+   * Writes this index to the given {@link OutputStream}.
+   */
+  public void write(OutputStream os) throws IOException {
+    DataOutputStream output = new DataOutputStream(os);
+    output.writeInt(VERSION);
+    output.writeInt(entries.size());
+    for (Entry entry : entries) {
+      output.writeLong(entry.getPosition());
+      output.writeLong(entry.getMinTimestamp());
+      output.writeLong(entry.getMaxTimestamp());
+      output.writeInt(entry.getLevelMask());
+    }
+    output.flush();
+  }
+
+  /**
+   * Returns the entries of this index, ordered by position.
+   */
+  public List<Entry> getEntries() {
+    return entries;
+  }
+
+  /**
+   * Returns the index of the first entry that may contain events with timestamp greater than or equal to the
+   * given timestamp, assuming that events are mostly written in timestamp order. All entries before the returned one
+   * only contain events with smaller timestamps. If there is no such entry, the number of entries is returned.
+   */
+  public int findFirst(long timestamp) {
+    int low = 0;
+    int high = maxTimestamps.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (maxTimestamps[mid] < timestamp) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Builder for {@link LogFileIndex}. Entries must be added in position order.
+   */
+  public static final class Builder {
+    private final List<Entry> entries = new ArrayList<>();
+
+    public Builder addEntry(long position, long minTimestamp, long maxTimestamp, int levelMask) {
+      entries.add(new Entry(position, minTimestamp, maxTimestamp, levelMask));
+      return this;
+    }
+
+    public LogFileIndex build() {
+      return new LogFileIndex(entries);
+    }
+  }
+
+  /**
+   * An entry of the index, covering the blocks from its position to the position of the next entry.
+   */
+  public static final class Entry {
+    private final long position;
+    private final long minTimestamp;
+    private final long maxTimestamp;
+    private final int levelMask;
+
+    private Entry(long position, long minTimestamp, long maxTimestamp, int levelMask) {
+      this.position = position;
+      this.minTimestamp = minTimestamp;
+      this.maxTimestamp = maxTimestamp;
+      this.levelMask = levelMask;
+    }
+
+    /**
+     * Returns the sync position in the log file where the range of this entry starts.
+     */
+    public long getPosition() {
+      return position;
+    }
+
+    public long getMinTimestamp() {
+      return minTimestamp;
+    }
+
+    public long getMaxTimestamp() {
+      return maxTimestamp;
+    }
+
+    public int getLevelMask() {
+      return levelMask;
+    }
+
+    /**
+     * Returns {@code true} if the range of this entry has events of the levels in the given mask.
+     */
+    public boolean hasLevels(int levelMask) {
+      return (this.levelMask & levelMask) != 0;
+    }
+  }
+}
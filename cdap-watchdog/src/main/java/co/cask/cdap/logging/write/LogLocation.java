@@ -42,7 +42,9 @@ import org.apache.twill.filesystem.Location;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Deque;
@@ -50,6 +52,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.concurrent.Callable;
+import javax.annotation.Nullable;
 
 /**
  * LogLocation representing a log file and methods to read the file's contents.
@@ -153,6 +156,11 @@ public class LogLocation {
     Deque<Collection<LogEvent>> logSegments = new LinkedList<>();
     int count = 0;
     try {
+      LogFileIndex index = readIndex();
+      if (index != null) {
+        return readLogPrev(index, logFilter, fromTimeMs, maxEvents);
+      }
+
       try (DataFileReader<GenericRecord> dataFileReader = createReader()) {
 
         if (!dataFileReader.hasNext()) {
@@ -206,6 +214,39 @@ public class LogLocation {
     return Lists.newArrayList(Iterables.skip(Iterables.concat(logSegments), skip));
   }
 
+  /**
+   * Reads previous log events using the {@link LogFileIndex} of the file, by reading the index entries backwards
+   * starting from the one containing fromTimeMs, and skipping entries that don't have events of the levels
+   * accepted by the filter.
+   */
+  private Collection<LogEvent> readLogPrev(LogFileIndex index, Filter logFilter,
+                                           long fromTimeMs, int maxEvents) throws IOException {
+    Deque<Collection<LogEvent>> logSegments = new LinkedList<>();
+    int count = 0;
+    List<LogFileIndex.Entry> entries = index.getEntries();
+    int levelMask = LogFileIndex.getLevelMask(logFilter);
+
+    try (DataFileReader<GenericRecord> dataFileReader = createReader()) {
+      // Events up to fromTimeMs are in the entries up to the first one that has events after fromTimeMs
+      for (int i = Math.min(index.findFirst(fromTimeMs + 1), entries.size() - 1); i >= 0 && count < maxEvents; i--) {
+        if (!entries.get(i).hasLevels(levelMask)) {
+          continue;
+        }
+        long endPosition = i + 1 < entries.size() ? entries.get(i + 1).getPosition() : -1;
+        dataFileReader.seek(entries.get(i).getPosition());
+        List<LogEvent> logSegment = readToEndSyncPosition(dataFileReader, logFilter, fromTimeMs, endPosition);
+        if (!logSegment.isEmpty()) {
+          logSegments.addFirst(logSegment);
+          count = count + logSegment.size();
+        }
+        LOG.trace("Read log events {} from index entry {} of file {}", count, i, location);
+      }
+    }
+
+    int skip = count >= maxEvents ? count - maxEvents : 0;
+    return Lists.newArrayList(Iterables.skip(Iterables.concat(logSegments), skip));
+  }
+
   /**
    *  Read current block in Avro file from current block sync marker to next block sync marker
    */
@@ -259,6 +300,9 @@ public class LogLocation {
     private final long maxEvents;
 
     private DataFileReader<GenericRecord> dataFileReader;
+    private LogFileIndex index;
+    private int levelMask;
+    private int entryIdx;
 
     private ILoggingEvent loggingEvent;
     private GenericRecord datum;
@@ -276,7 +320,15 @@ public class LogLocation {
 
       try {
         dataFileReader = createReader();
-        if (dataFileReader.hasNext()) {
+        index = readIndex();
+        if (index != null) {
+          // Seek directly to the first index entry that can have events at or after fromTimeMs
+          levelMask = LogFileIndex.getLevelMask(logFilter);
+          entryIdx = index.findFirst(fromTimeMs);
+          if (entryIdx < index.getEntries().size()) {
+            dataFileReader.seek(index.getEntries().get(entryIdx).getPosition());
+          }
+        } else if (dataFileReader.hasNext()) {
           datum = dataFileReader.next();
           loggingEvent = new LoggingEvent(datum);
           loggingEvent.prepareForDeferredProcessing();
@@ -316,6 +368,9 @@ public class LogLocation {
       try {
         // read events from file
         while (next == null && dataFileReader.hasNext()) {
+          if (index != null && !skipToMatchingEntry()) {
+            break;
+          }
           loggingEvent = new LoggingEvent(dataFileReader.next(datum));
           loggingEvent.prepareForDeferredProcessing();
 
@@ -338,6 +393,36 @@ public class LogLocation {
       }
     }
 
+    /**
+     * Moves the reader to the next index entry that can have events of the levels accepted by the filter,
+     * if the block to be read next is not covered by such an entry.
+     *
+     * @return {@code true} if there are more events to read
+     */
+    private boolean skipToMatchingEntry() throws IOException {
+      List<LogFileIndex.Entry> entries = index.getEntries();
+      // Find the entry covering the block to be read next
+      while (entryIdx + 1 < entries.size()
+        && dataFileReader.previousSync() >= entries.get(entryIdx + 1).getPosition()) {
+        entryIdx++;
+      }
+      if (entryIdx >= entries.size()) {
+        return false;
+      }
+      if (entries.get(entryIdx).hasLevels(levelMask)) {
+        return true;
+      }
+      do {
+        entryIdx++;
+      } while (entryIdx < entries.size() && !entries.get(entryIdx).hasLevels(levelMask));
+
+      if (entryIdx >= entries.size()) {
+        return false;
+      }
+      dataFileReader.seek(entries.get(entryIdx).getPosition());
+      return dataFileReader.hasNext();
+    }
+
     @Override
     public void close() {
       try {
@@ -371,6 +456,31 @@ public class LogLocation {
     }
   }
 
+  /**
+   * Reads the {@link LogFileIndex} of the log file.
+   *
+   * @return the index, or {@code null} if the file has no index or the index cannot be read. Files written by
+   *         the old logging framework and files that are still being written have no index.
+   */
+  @Nullable
+  private LogFileIndex readIndex() {
+    if (!VERSION_1.equals(frameworkVersion)) {
+      return null;
+    }
+    try {
+      Location indexLocation = LogFileIndex.getIndexLocation(location);
+      if (!indexLocation.exists()) {
+        return null;
+      }
+      try (InputStream is = new BufferedInputStream(indexLocation.getInputStream())) {
+        return LogFileIndex.read(is);
+      }
+    } catch (IOException e) {
+      READ_FAILURE_LOG.warn("Failed to read index of log file {}, reading the file without index", location, e);
+      return null;
+    }
+  }
+
   private DataFileReader<GenericRecord> createReader() throws IOException {
     boolean shouldImpersonate = this.getFrameworkVersion().equals(VERSION_0);
     return new DataFileReader<>(new LocationSeekableInput(location, namespaceId, impersonator, shouldImpersonate),
@@ -0,0 +1,134 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.logging.appender.system;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import co.cask.cdap.api.dataset.lib.CloseableIterator;
+import co.cask.cdap.logging.filter.AndFilter;
+import co.cask.cdap.logging.filter.Filter;
+import co.cask.cdap.logging.filter.LogLevelExpression;
+import co.cask.cdap.logging.read.LogEvent;
+import co.cask.cdap.logging.write.LogFileIndex;
+import co.cask.cdap.logging.write.LogLocation;
+import com.google.common.collect.ImmutableList;
+import org.apache.twill.filesystem.LocalLocationFactory;
+import org.apache.twill.filesystem.Location;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Tests for {@link LogFileOutputStream} and reading of the log file with its {@link LogFileIndex}.
+ */
+public class LogFileOutputStreamTest {
+
+  @ClassRule
+  public static final TemporaryFolder TMP_FOLDER = new TemporaryFolder();
+
+  @Test
+  public void testIndex() throws Exception {
+    Location location = new LocalLocationFactory(TMP_FOLDER.newFolder()).create("1000.avro");
+    Logger logger = (Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME);
+
+    // Write 1000 events with timestamps from 1000 to 1999, in blocks of 50 events.
+    // Only events with (timestamp % 100 == 50) are ERROR events.
+    try (LogFileOutputStream os = new LogFileOutputStream(location, "", 1024 * 1024, 1000L, new Closeable() {
+      @Override
+      public void close() {
+        // no-op
+      }
+    })) {
+      for (int i = 0; i < 1000; i++) {
+        long timestamp = 1000 + i;
+        LoggingEvent event = new LoggingEvent("co.cask.Test", logger, timestamp % 100 == 50 ? Level.ERROR : Level.DEBUG,
+                                              "message " + timestamp, null, null);
+        event.setTimeStamp(timestamp);
+        os.append(event);
+        if ((i + 1) % 50 == 0) {
+          os.flush();
+        }
+      }
+    }
+
+    Location indexLocation = LogFileIndex.getIndexLocation(location);
+    Assert.assertTrue(indexLocation.exists());
+
+    LogLocation logLocation = new LogLocation(LogLocation.VERSION_1, 1000L, 1000L, location, "default", null);
+    assertRead(logLocation);
+
+    // Reading without the index should give the same result
+    Assert.assertTrue(indexLocation.delete());
+    assertRead(logLocation);
+  }
+
+  @Test
+  public void testLevelMask() {
+    int allLevels = LogFileIndex.getLevelMask(Filter.EMPTY_FILTER);
+    int warnLevels = LogFileIndex.getLevelMask(Level.WARN) | LogFileIndex.getLevelMask(Level.ERROR);
+    Assert.assertEquals(allLevels, LogFileIndex.getLevelMask((Level) null));
+    Assert.assertEquals(warnLevels, LogFileIndex.getLevelMask(new LogLevelExpression("WARN")));
+    Assert.assertEquals(LogFileIndex.getLevelMask(Level.ERROR),
+                        LogFileIndex.getLevelMask(new AndFilter(ImmutableList.of(new LogLevelExpression("WARN"),
+                                                                                   new LogLevelExpression("ERROR")))));
+  }
+
+  private void assertRead(LogLocation logLocation) throws IOException {
+    Filter errorFilter = new AndFilter(ImmutableList.of(Filter.EMPTY_FILTER, new LogLevelExpression("ERROR")));
+
+    Assert.assertEquals(timestamps(1500, 1600, 1), readLog(logLocation, Filter.EMPTY_FILTER, 1500, 1600));
+    Assert.assertEquals(timestamps(1050, 2000, 100), readLog(logLocation, errorFilter, 0, Long.MAX_VALUE));
+    Assert.assertEquals(timestamps(1570, 1600, 1),
+                        getTimestamps(logLocation.readLogPrev(Filter.EMPTY_FILTER, 1599, 30)));
+    Assert.assertEquals(timestamps(1350, 1600, 100), getTimestamps(logLocation.readLogPrev(errorFilter, 1599, 3)));
+  }
+
+  private List<Long> readLog(LogLocation logLocation, Filter filter, long fromTimeMs, long toTimeMs) {
+    List<LogEvent> events = new ArrayList<>();
+    try (CloseableIterator<LogEvent> iterator = logLocation.readLog(filter, fromTimeMs, toTimeMs, Integer.MAX_VALUE)) {
+      while (iterator.hasNext()) {
+        events.add(iterator.next());
+      }
+    }
+    return getTimestamps(events);
+  }
+
+  private List<Long> getTimestamps(Collection<LogEvent> events) {
+    List<Long> timestamps = new ArrayList<>();
+    for (LogEvent event : events) {
+      timestamps.add(event.getLoggingEvent().getTimeStamp());
+    }
+    return timestamps;
+  }
+
+  private List<Long> timestamps(long start, long end, long step) {
+    List<Long> timestamps = new ArrayList<>();
+    for (long timestamp = start; timestamp < end; timestamp += step) {
+      timestamps.add(timestamp);
+    }
+    return timestamps;
+  }
+}